@@ -28,19 +28,12 @@ import com.intellij.util.PlatformUtils;
 import com.jetbrains.lang.dart.DartFileType;
 import com.jetbrains.lang.dart.psi.DartFile;
 import io.flutter.pub.PubRoot;
+import io.flutter.pub.PubspecCache;
 import io.flutter.run.FlutterRunConfigurationProducer;
 import io.flutter.utils.FlutterModuleUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.constructor.SafeConstructor;
-import org.yaml.snakeyaml.nodes.Tag;
-import org.yaml.snakeyaml.representer.Representer;
-import org.yaml.snakeyaml.resolver.Resolver;
-
-import java.io.IOException;
-import java.util.Map;
+
 import java.util.Objects;
 import java.util.regex.Pattern;
 
@@ -108,7 +101,7 @@ public class FlutterUtils {
 
   public static boolean isInTestDir(@Nullable DartFile file) {
     if (file == null) return false;
-    final PubRoot root = PubRoot.forFile(file.getVirtualFile());
+    final PubRoot root = PubRoot.forFile(file.getProject(), file.getVirtualFile());
     if (root == null) return false;
 
     if (!FlutterModuleUtils.isFlutterModule(root.getModule(file.getProject()))) return false;
@@ -234,63 +227,14 @@ public class FlutterUtils {
    * Returns true if passed pubspec declares a flutter dependency.
    */
   public static boolean declaresFlutter(@NotNull final VirtualFile pubspec) {
-    // It uses Flutter if it contains:
-    // dependencies:
-    //   flutter:
-
-    try {
-      final String contents = new String(pubspec.contentsToByteArray(true /* cache contents */));
-      final Map<String, Object> yaml = loadPubspecInfo(contents);
-      if (yaml == null) {
-        return false;
-      }
-
-      // Special case the 'flutter' package itself - this allows us to run their unit tests from IntelliJ.
-      final Object name = yaml.get("name");
-      if ("flutter".equals(name)) {
-        return true;
-      }
-
-      // Check for a dependency on the flutter package.
-      final Object dependencies = yaml.get("dependencies");
-      //noinspection SimplifiableIfStatement
-      if (dependencies instanceof Map) {
-        return ((Map)dependencies).containsKey("flutter");
-      }
-
-      return false;
-    }
-    catch (IOException e) {
-      return false;
-    }
+    return PubspecCache.getInstance().get(pubspec).declaresFlutter();
   }
 
   /**
    * Returns true if the passed pubspec indicates that it is a Flutter plugin.
    */
   public static boolean isFlutterPlugin(@NotNull final VirtualFile pubspec) {
-    // It's a plugin if it contains:
-    // flutter:
-    //   plugin:
-
-    try {
-      final String contents = new String(pubspec.contentsToByteArray(true /* cache contents */));
-      final Map<String, Object> yaml = loadPubspecInfo(contents);
-      if (yaml == null) {
-        return false;
-      }
-
-      final Object flutterEntry = yaml.get("flutter");
-      //noinspection SimplifiableIfStatement
-      if (flutterEntry instanceof Map) {
-        return ((Map)flutterEntry).containsKey("plugin");
-      }
-
-      return false;
-    }
-    catch (IOException e) {
-      return false;
-    }
+    return PubspecCache.getInstance().get(pubspec).isFlutterPlugin();
   }
 
   /**
@@ -308,25 +252,4 @@ public class FlutterUtils {
     }
     return null;
   }
-
-  private static Map<String, Object> loadPubspecInfo(@NotNull String yamlContents) {
-    final Yaml yaml = new Yaml(new SafeConstructor(), new Representer(), new DumperOptions(), new Resolver() {
-      @Override
-      protected void addImplicitResolvers() {
-        this.addImplicitResolver(Tag.BOOL, BOOL, "yYnNtTfFoO");
-        this.addImplicitResolver(Tag.NULL, NULL, "~nN\u0000");
-        this.addImplicitResolver(Tag.NULL, EMPTY, null);
-        this.addImplicitResolver(new Tag("tag:yaml.org,2002:value"), VALUE, "=");
-        this.addImplicitResolver(Tag.MERGE, MERGE, "<");
-      }
-    });
-
-    try {
-      //noinspection unchecked
-      return (Map)yaml.load(yamlContents);
-    }
-    catch (Exception e) {
-      return null;
-    }
-  }
 }
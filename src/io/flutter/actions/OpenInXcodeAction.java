@@ -61,7 +61,7 @@ public class OpenInXcodeAction extends AnAction {
       return;
     }
 
-    final PubRoot pubRoot = PubRoot.forFile(file);
+    final PubRoot pubRoot = PubRoot.forFile(project, file);
     if (pubRoot == null) {
       FlutterMessages.showError("Error Opening Xcode", "Unable to run `flutter build` (no pub root found)");
       return;
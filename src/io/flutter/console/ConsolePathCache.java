@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.console;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers which console paths resolve to files in a module's content roots.
+ * <p>
+ * Console output tends to mention the same few files over and over, so both found and missing
+ * paths are kept, up to a fixed number of entries. Each entry remembers the absolute paths that were
+ * probed to resolve it, and is dropped when a file is created, deleted, moved or renamed at or above
+ * one of them. The whole cache is cleared when module roots change.
+ */
+public class ConsolePathCache {
+  static final int MAX_ENTRIES = 512;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  @NotNull private final Resolver resolver;
+
+  private ConsolePathCache(@NotNull final Project project) {
+    this(ConsolePathCache::resolve);
+
+    final MessageBusConnection bus = project.getMessageBus().connect(project);
+    bus.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        final List<String> changedPaths = new ArrayList<>();
+        for (VFileEvent event : events) {
+          addChangedPaths(event, changedPaths);
+        }
+        invalidate(changedPaths);
+      }
+    });
+    bus.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        clear();
+      }
+    });
+  }
+
+  @VisibleForTesting
+  ConsolePathCache(@NotNull Resolver resolver) {
+    this.resolver = resolver;
+  }
+
+  @NotNull
+  public static ConsolePathCache getInstance(@NotNull final Project project) {
+    return ServiceManager.getService(project, ConsolePathCache.class);
+  }
+
+  /**
+   * Returns the file at a path relative to one of the module's content roots, or null if there is none.
+   * <p>
+   * Based on the filesystem cache; doesn't refresh anything.
+   */
+  @Nullable
+  public VirtualFile findFile(@NotNull Module module, @NotNull String path) {
+    final Key key = new Key(module, path);
+    synchronized (entries) {
+      final Entry cached = entries.get(key);
+      if (cached != null && (cached.file == null || cached.file.isValid())) {
+        return cached.file;
+      }
+    }
+
+    final List<String> probedPaths = new ArrayList<>();
+    final VirtualFile file = resolver.resolve(module, path, probedPaths);
+    synchronized (entries) {
+      entries.put(key, new Entry(file, ArrayUtil.toStringArray(probedPaths)));
+    }
+    return file;
+  }
+
+  /**
+   * Drops the entries that probed a path at or below one of the given paths.
+   */
+  @VisibleForTesting
+  void invalidate(@NotNull Collection<String> changedPaths) {
+    if (changedPaths.isEmpty()) {
+      return;
+    }
+    synchronized (entries) {
+      entries.values().removeIf((entry) -> entry.isAffectedBy(changedPaths));
+    }
+  }
+
+  @VisibleForTesting
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Adds the paths whose files may have appeared or disappeared because of the event.
+   * <p>
+   * Edits and changes to other properties don't change which paths exist.
+   */
+  private static void addChangedPaths(@NotNull VFileEvent event, @NotNull List<String> out) {
+    if (event instanceof VFileCreateEvent || event instanceof VFileDeleteEvent) {
+      out.add(event.getPath());
+    }
+    else if (event instanceof VFileCopyEvent) {
+      final VFileCopyEvent copy = (VFileCopyEvent)event;
+      out.add(copy.getNewParent().getPath() + "/" + copy.getNewChildName());
+    }
+    else if (event instanceof VFileMoveEvent) {
+      final VFileMoveEvent move = (VFileMoveEvent)event;
+      final String name = move.getFile().getName();
+      out.add(move.getOldParent().getPath() + "/" + name);
+      out.add(move.getNewParent().getPath() + "/" + name);
+    }
+    else if (event instanceof VFilePropertyChangeEvent) {
+      final VFilePropertyChangeEvent change = (VFilePropertyChangeEvent)event;
+      final VirtualFile parent = change.getFile().getParent();
+      if (VirtualFile.PROP_NAME.equals(change.getPropertyName()) && parent != null) {
+        out.add(parent.getPath() + "/" + change.getOldValue());
+        out.add(parent.getPath() + "/" + change.getNewValue());
+      }
+    }
+  }
+
+  @Nullable
+  private static VirtualFile resolve(@NotNull Module module, @NotNull String path, @NotNull List<String> probedPaths) {
+    for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+      VirtualFile file = findChild(root, path, probedPaths);
+      if (file == null) {
+        // check example dir too
+        // TODO(pq): remove when `example` is a content root: https://github.com/flutter/flutter-intellij/issues/2519
+        probedPaths.add(root.getPath() + "/example");
+        final VirtualFile example = root.findChild("example");
+        if (example != null) {
+          file = findChild(example, path, probedPaths);
+        }
+      }
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static VirtualFile findChild(@NotNull VirtualFile dir, @NotNull String path, @NotNull List<String> probedPaths) {
+    probedPaths.add(dir.getPath() + "/" + path);
+    final VirtualFile file = dir.findFileByRelativePath(path);
+    return file != null && file.exists() ? file : null;
+  }
+
+  private static boolean isAtOrBelow(@NotNull String path, @NotNull String ancestor) {
+    return path.startsWith(ancestor) && (path.length() == ancestor.length() || path.charAt(ancestor.length()) == '/');
+  }
+
+  /**
+   * Resolves a console path to a file, adding each absolute path it looks at to probedPaths.
+   */
+  @VisibleForTesting
+  interface Resolver {
+    @Nullable
+    VirtualFile resolve(@NotNull Module module, @NotNull String path, @NotNull List<String> probedPaths);
+  }
+
+  private static class Entry {
+    @Nullable final VirtualFile file;
+    @NotNull final String[] probedPaths;
+
+    Entry(@Nullable VirtualFile file, @NotNull String[] probedPaths) {
+      this.file = file;
+      this.probedPaths = probedPaths;
+    }
+
+    boolean isAffectedBy(@NotNull Collection<String> changedPaths) {
+      for (String changed : changedPaths) {
+        for (String probed : probedPaths) {
+          if (isAtOrBelow(probed, changed)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class Key {
+    @NotNull final Module module;
+    @NotNull final String path;
+
+    Key(@NotNull Module module, @NotNull String path) {
+      this.module = module;
+      this.path = path;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) return false;
+      final Key other = (Key)obj;
+      return module.equals(other.module) && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(module, path);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.console;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the text in a line of console output that might be a path to a file in the project.
+ * <p>
+ * The line is scanned once, without splitting it, so that chatty apps don't slow the console down.
+ * The candidates are:
+ * <ul>
+ * <li>the path after "Launching " or "open ", e.g. "Launching lib/main.dart"</li>
+ * <li>the last parenthesized word, e.g. "  • MyApp.build (lib/main.dart:49)"</li>
+ * <li>otherwise, the whole line with surrounding whitespace trimmed</li>
+ * </ul>
+ */
+class ConsolePathScanner {
+  private static final String LAUNCHING = "Launching ";
+  private static final String OPEN = "open ";
+
+  private ConsolePathScanner() {
+  }
+
+  /**
+   * Returns the candidate path in the line, or null if there isn't one.
+   */
+  @Nullable
+  static Match scan(@NotNull String line) {
+    int start = 0;
+    int end = line.length();
+    while (start < end && line.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && line.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    // "Launching lib/main.dart" or "open ios/Runner.xcworkspace"
+    final int prefixLength = line.startsWith(LAUNCHING, start) ? LAUNCHING.length() : line.startsWith(OPEN, start) ? OPEN.length() : 0;
+    if (prefixLength > 0) {
+      start += prefixLength;
+      final int space = line.indexOf(' ', start);
+      if (space >= 0 && space < end) {
+        end = space;
+      }
+    }
+
+    // "  • _MyHomePageState._incrementCounter (lib/main.dart:49)"
+    int matchStart = start;
+    int matchEnd = end;
+    int lineNumber = 0;
+    int wordStart = start;
+    while (wordStart < end) {
+      int wordEnd = line.indexOf(' ', wordStart);
+      if (wordEnd < 0 || wordEnd > end) {
+        wordEnd = end;
+      }
+      if (wordEnd - wordStart >= 2 && line.charAt(wordStart) == '(' && line.charAt(wordEnd - 1) == ')') {
+        matchStart = wordStart + 1;
+        matchEnd = wordEnd - 1;
+        final int parsed = parseLineNumber(line, matchStart, matchEnd);
+        if (parsed >= 0) {
+          // Reconcile line number indexing.
+          lineNumber = Math.max(0, parsed - 1);
+        }
+      }
+      wordStart = wordEnd + 1;
+    }
+
+    // "lib/main.dart:6"
+    int pathEnd = line.indexOf(':', matchStart);
+    if (pathEnd < 0 || pathEnd > matchEnd) {
+      pathEnd = matchEnd;
+    }
+    if (pathEnd == matchStart) {
+      return null;
+    }
+    return new Match(line, matchStart, matchEnd, pathEnd, lineNumber);
+  }
+
+  /**
+   * Parses the number after the only colon in "path:line", or returns -1 if there isn't one.
+   */
+  private static int parseLineNumber(@NotNull String line, int start, int end) {
+    final int colon = line.indexOf(':', start);
+    if (colon < 0 || colon >= end - 1) {
+      return -1;
+    }
+    int result = 0;
+    for (int i = colon + 1; i < end; i++) {
+      final char c = line.charAt(i);
+      if (c < '0' || c > '9' || result > (Integer.MAX_VALUE - 9) / 10) {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  /**
+   * A candidate path found in a line.
+   */
+  static class Match {
+    @NotNull private final String line;
+
+    /**
+     * The start of the text to link, including any line number.
+     */
+    final int start;
+
+    /**
+     * The end of the text to link.
+     */
+    final int end;
+
+    /**
+     * The end of the path, not including any line number.
+     */
+    final int pathEnd;
+
+    /**
+     * The zero-based line number, or 0 if there isn't one.
+     */
+    final int lineNumber;
+
+    private Match(@NotNull String line, int start, int end, int pathEnd, int lineNumber) {
+      this.line = line;
+      this.start = start;
+      this.end = end;
+      this.pathEnd = pathEnd;
+      this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Returns the path, relative to a content root.
+     */
+    @NotNull
+    String getPath() {
+      return line.substring(start, pathEnd);
+    }
+
+    /**
+     * Returns the text to link.
+     */
+    @NotNull
+    String getText() {
+      return line.substring(start, end);
+    }
+  }
+}
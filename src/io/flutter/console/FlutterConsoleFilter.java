@@ -17,9 +17,7 @@ import com.intellij.execution.process.ProcessEvent;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import io.flutter.FlutterInitializer;
 import io.flutter.FlutterMessages;
@@ -77,32 +75,15 @@ public class FlutterConsoleFilter implements Filter {
   public VirtualFile fileAtPath(@NotNull String pathPart) {
 
     // "lib/main.dart:6"
-    pathPart = pathPart.split(":")[0];
-
-    final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
-    for (VirtualFile root : roots) {
-      if (!pathPart.isEmpty()) {
-        final String baseDirPath = root.getPath();
-        final String path = baseDirPath + "/" + pathPart;
-        VirtualFile file = findFile(path);
-        if (file == null) {
-          // check example dir too
-          // TODO(pq): remove when `example` is a content root: https://github.com/flutter/flutter-intellij/issues/2519
-          final String exampleDirRelativePath = baseDirPath + "/example/" + pathPart;
-          file = findFile(exampleDirRelativePath);
-        }
-        if (file != null) {
-          return file;
-        }
-      }
+    final int colon = pathPart.indexOf(':');
+    if (colon >= 0) {
+      pathPart = pathPart.substring(0, colon);
+    }
+    if (pathPart.isEmpty()) {
+      return null;
     }
 
-    return null;
-  }
-
-  private static VirtualFile findFile(final String path) {
-    final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
-    return file != null && file.exists() ? file : null;
+    return ConsolePathCache.getInstance(module.getProject()).findFile(module, pathPart);
   }
 
   @Nullable
@@ -116,50 +97,25 @@ public class FlutterConsoleFilter implements Filter {
       return getRestartAppResult(line, entireLength - line.length());
     }
 
-    int lineNumber = 0;
-    String pathPart = line.trim();
-
     // Check for, e.g.,
     //   * "Launching lib/main.dart"
     //   * "open ios/Runner.xcworkspace"
-    if (pathPart.startsWith("Launching ") || pathPart.startsWith("open ")) {
-      final String[] parts = pathPart.split(" ");
-      if (parts.length > 1) {
-        pathPart = parts[1];
-      }
-    }
-
-    // Check for embedded paths, e.g.,
-    //    * "  • MyApp.xzzzz (lib/main.dart:6)"
-    //    * "  • _MyHomePageState._incrementCounter (lib/main.dart:49)"
-    final String[] parts = pathPart.split(" ");
-    for (String part : parts) {
-      // "(lib/main.dart:49)"
-      if (part.startsWith("(") && part.endsWith(")")) {
-        part = part.substring(1, part.length() - 1);
-        final String[] split = part.split(":");
-        if (split.length == 2) {
-          try {
-            // Reconcile line number indexing.
-            lineNumber = Math.max(0, Integer.parseInt(split[1]) - 1);
-          }
-          catch (NumberFormatException e) {
-            // Ignored.
-          }
-        }
-        pathPart = part;
-      }
+    //   * "  • _MyHomePageState._incrementCounter (lib/main.dart:49)"
+    final ConsolePathScanner.Match match = ConsolePathScanner.scan(line);
+    if (match == null) {
+      return null;
     }
 
-    final VirtualFile file = fileAtPath(pathPart);
+    final String path = match.getPath();
+    final VirtualFile file = ConsolePathCache.getInstance(module.getProject()).findFile(module, path);
     if (file != null) {
       // "open ios/Runner.xcworkspace"
-      final boolean openAsExternalFile = FlutterUtils.isXcodeFileName(pathPart);
-      final int lineStart = entireLength - line.length() + line.indexOf(pathPart);
+      final boolean openAsExternalFile = FlutterUtils.isXcodeFileName(match.getText());
+      final int lineStart = entireLength - line.length();
 
       final HyperlinkInfo hyperlinkInfo =
-        openAsExternalFile ? new OpenExternalFileHyperlink(file) : new OpenFileHyperlinkInfo(module.getProject(), file, lineNumber, 0);
-      return new Result(lineStart, lineStart + pathPart.length(), hyperlinkInfo);
+        openAsExternalFile ? new OpenExternalFileHyperlink(file) : new OpenFileHyperlinkInfo(module.getProject(), file, match.lineNumber, 0);
+      return new Result(lineStart + match.start, lineStart + match.end, hyperlinkInfo);
     }
 
     return null;
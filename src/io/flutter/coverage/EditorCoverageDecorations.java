@@ -14,6 +14,7 @@ import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.ui.JBColor;
+import io.flutter.server.vmService.TokenPositionTable;
 import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -61,8 +62,6 @@ class EditorCoverageDecorations implements Disposable {
     @NotNull VirtualFile reloadFile,
     @NotNull SourceReport report
   ) {
-    scriptManager.reset();
-
     final java.util.List<ScriptRef> scripts = new ArrayList<>();
     for (ScriptRef scriptRef : report.getScripts()) {
       scripts.add(scriptRef);
@@ -85,23 +84,21 @@ class EditorCoverageDecorations implements Disposable {
       if (uri.startsWith("file:")) {
         final VirtualFile file = virtualFileManager.findFileByUrl(uri);
         if (file != null && file.equals(reloadFile)) {
-          scriptManager.populateFor(scriptRef);
-
-          final Script script = scriptManager.getScriptFor(scriptRef);
-          if (script == null) {
+          final TokenPositionTable positions = scriptManager.getPositionTable(scriptRef);
+          if (positions == null) {
             continue;
           }
 
-          for (List<Integer> encoded : script.getTokenPosTable()) {
-            coverageInfo.addUncovered(encoded.get(0) - 1);
+          for (int line : positions.getLines()) {
+            coverageInfo.addUncovered(line);
           }
 
           for (int tokenPos : coverage.getHits()) {
-            coverageInfo.addCovered(scriptManager.getLineColumnPosForTokenPos(scriptRef, tokenPos));
+            coverageInfo.addCovered(positions.getLine(tokenPos));
           }
 
           for (int tokenPos : coverage.getMisses()) {
-            coverageInfo.addUncovered(scriptManager.getLineColumnPosForTokenPos(scriptRef, tokenPos));
+            coverageInfo.addUncovered(positions.getLine(tokenPos));
           }
         }
       }
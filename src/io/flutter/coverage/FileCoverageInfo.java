@@ -5,7 +5,6 @@
  */
 package io.flutter.coverage;
 
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import gnu.trove.TIntHashSet;
 
@@ -23,28 +22,23 @@ class FileCoverageInfo {
     return file;
   }
 
-  public void addCovered(Pair<Integer, Integer> pos) {
-    if (pos == null) {
+  /**
+   * Marks a line as covered; ignored if the line is negative (unknown).
+   */
+  public void addCovered(int line) {
+    if (line < 0) {
       return;
     }
 
-    final int line = pos.first;
     coveredLines.add(line);
     uncoveredLines.remove(line);
   }
 
+  /**
+   * Marks a line as uncovered unless it's already covered; ignored if the line is negative (unknown).
+   */
   public void addUncovered(int line) {
-    if (!coveredLines.contains(line)) {
-      uncoveredLines.add(line);
-    }
-  }
-
-  public void addUncovered(Pair<Integer, Integer> pos) {
-    if (pos == null) {
-      return;
-    }
-    final int line = pos.first;
-    if (!coveredLines.contains(line)) {
+    if (line >= 0 && !coveredLines.contains(line)) {
       uncoveredLines.add(line);
     }
   }
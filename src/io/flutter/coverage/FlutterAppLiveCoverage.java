@@ -12,7 +12,10 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ui.EdtInvocationManager;
+import io.flutter.run.FlutterDebugProcess;
 import io.flutter.run.daemon.FlutterApp;
+import io.flutter.server.vmService.TokenPositionCache;
+import io.flutter.server.vmService.VmServiceWrapper;
 import io.flutter.utils.StreamSubscription;
 import io.flutter.utils.VmServiceListenerAdapter;
 import org.dartlang.vm.service.VmService;
@@ -22,9 +25,8 @@ import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 class FlutterAppLiveCoverage implements Disposable {
@@ -63,11 +65,13 @@ class FlutterAppLiveCoverage implements Disposable {
 
       @Override
       public void notifyAppReloaded() {
+        resetScripts();
         requestRepaint(When.now);
       }
 
       @Override
       public void notifyAppRestarted() {
+        resetScripts();
         requestRepaint(When.now);
       }
 
@@ -102,6 +106,17 @@ class FlutterAppLiveCoverage implements Disposable {
     return app.getPerfService().getCurrentFlutterIsolateRaw();
   }
 
+  /**
+   * Return the token position tables of the debugger's connection, or null if no debugger is
+   * attached; looked up on each use, since the debugger can attach after coverage starts.
+   */
+  @Nullable
+  private TokenPositionCache getDebuggerPositionCache() {
+    final FlutterDebugProcess debugProcess = app.getFlutterDebugProcess();
+    final VmServiceWrapper debuggerConnection = debugProcess == null ? null : debugProcess.getVmServiceWrapper();
+    return debuggerConnection == null ? null : debuggerConnection.getTokenPositionCache();
+  }
+
   private void setupConnection(@NotNull VmService vmService) {
     if (isDisposed) {
       return;
@@ -111,7 +126,8 @@ class FlutterAppLiveCoverage implements Disposable {
       return;
     }
 
-    scriptManager = new ScriptManager(vmService);
+    // Share the decoded scripts with the debugger when it is attached.
+    scriptManager = new ScriptManager(vmService, this::getDebuggerPositionCache);
 
     assert app.getPerfService() != null;
     isolateRefStreamSubscription = app.getPerfService().getCurrentFlutterIsolate(
@@ -126,13 +142,18 @@ class FlutterAppLiveCoverage implements Disposable {
 
         final EventKind kind = event.getKind();
 
-        if (kind == EventKind.PauseBreakpoint || kind == EventKind.PauseException ||
-            kind == EventKind.PauseInterrupted) {
+        if (kind == EventKind.IsolateReload) {
+          // Libraries and scripts have new ids after a reload.
+          resetScripts();
+          requestRepaint(When.soon);
+        }
+        else if (kind == EventKind.PauseBreakpoint || kind == EventKind.PauseException ||
+                 kind == EventKind.PauseInterrupted) {
           requestRepaint(When.soon);
         }
       }
     };
-    vmService.addVmServiceListener(vmServiceListener);
+    vmService.addVmServiceListener(vmServiceListener, VmService.DEBUG_STREAM_ID, VmService.ISOLATE_STREAM_ID);
 
     requestRepaint(When.soon);
   }
@@ -179,13 +200,33 @@ class FlutterAppLiveCoverage implements Disposable {
 
     this.isDirty = false;
 
-    scriptManager.setCurrentIsolate(isolateRef);
-
-    @Nullable final ScriptRef scriptRef = scriptManager.getScriptRefFor(file);
-    if (scriptRef == null) {
-      performRequestFinish();
+    final ScriptManager scriptManager = this.scriptManager;
+    if (scriptManager == null) {
+      requestInProgress = false;
       return;
     }
+    scriptManager.setCurrentIsolate(isolateRef);
+
+    scriptManager.getScriptRefFor(file).whenComplete((scriptRef, error) -> {
+      if (scriptRef == null) {
+        performRequestFinish();
+        return;
+      }
+      requestSourceReport(vmService, isolateRef, scriptManager, scriptRef, fileEditor, file);
+    });
+  }
+
+  /**
+   * Request the coverage of the given script, downloading the script itself (if it is not already
+   * cached) at the same time.
+   */
+  private void requestSourceReport(@NotNull VmService vmService,
+                                   @NotNull IsolateRef isolateRef,
+                                   @NotNull ScriptManager scriptManager,
+                                   @NotNull ScriptRef scriptRef,
+                                   @NotNull FileEditor fileEditor,
+                                   @NotNull VirtualFile file) {
+    final CompletableFuture<Script> script = scriptManager.getScript(scriptRef);
 
     final JsonObject params = new JsonObject();
     final JsonArray arr = new JsonArray();
@@ -204,14 +245,14 @@ class FlutterAppLiveCoverage implements Disposable {
     vmService.callServiceExtension(isolateRef.getId(), "getSourceReport", params, new ServiceExtensionConsumer() {
       @Override
       public void received(JsonObject object) {
-        JobScheduler.getScheduler().schedule(() -> {
+        script.whenComplete((ignored, error) -> JobScheduler.getScheduler().schedule(() -> {
           final SourceReport report = new SourceReport(object);
           final EditorCoverageDecorations editorDecoration = editorDecorations.get(fileEditor);
 
           editorDecoration.updateFromSourceReport(scriptManager, file, report);
 
           performRequestFinish();
-        }, 0, TimeUnit.MILLISECONDS);
+        }, 0, TimeUnit.MILLISECONDS));
       }
 
       @Override
@@ -221,6 +262,13 @@ class FlutterAppLiveCoverage implements Disposable {
     });
   }
 
+  private void resetScripts() {
+    final ScriptManager scriptManager = this.scriptManager;
+    if (scriptManager != null) {
+      scriptManager.reset();
+    }
+  }
+
   private void performRequestFinish() {
     requestInProgress = false;
 
@@ -242,6 +290,17 @@ class FlutterAppLiveCoverage implements Disposable {
         editorDecorations.put(fileEditor, new EditorCoverageDecorations(fileEditor));
       }
 
+      // Get the scripts for the other open editors ready too.
+      if (scriptManager != null) {
+        final List<VirtualFile> files = new ArrayList<>();
+        for (FileEditor editor : editorDecorations.keySet()) {
+          if (editor.getFile() != null) {
+            files.add(editor.getFile());
+          }
+        }
+        scriptManager.prefetch(files);
+      }
+
       requestRepaint(When.now);
     }
   }
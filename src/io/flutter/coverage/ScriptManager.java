@@ -5,13 +5,11 @@
  */
 package io.flutter.coverage;
 
-import com.intellij.openapi.util.Pair;
-import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
-import com.intellij.util.concurrency.Semaphore;
-import gnu.trove.THashMap;
-import gnu.trove.TIntObjectHashMap;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import io.flutter.server.vmService.TokenPositionCache;
+import io.flutter.server.vmService.TokenPositionTable;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.consumer.GetIsolateConsumer;
 import org.dartlang.vm.service.consumer.GetLibraryConsumer;
@@ -20,177 +18,276 @@ import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Finds and downloads the scripts of the current isolate's libraries.
+ * <p>
+ * The scripts of the isolate's file: libraries are indexed by file url the first time a script is
+ * requested, fetching all the libraries in parallel. The index and the downloaded scripts are
+ * kept until the isolate changes or is reloaded.
+ */
 class ScriptManager {
-  private static final long RESPONSE_WAIT_TIMEOUT = 3000;
-
   @NotNull private final VmService vmService;
 
+  /**
+   * Returns the token position tables of the debugger's connection, or null if no debugger is
+   * attached. Called each time, since the debugger may attach or detach while coverage is shown.
+   */
+  @NotNull private final Supplier<TokenPositionCache> debuggerPositionCache;
+
+  /**
+   * The token position tables of scripts decoded while no debugger was attached. The tables of an
+   * isolate are dropped when the manager switches to another one.
+   */
+  @NotNull private final TokenPositionCache ownPositionCache = new TokenPositionCache();
+
   private final VirtualFileManager virtualFileManager = VirtualFileManager.getInstance();
 
   private IsolateRef isolateRef;
-  private final Map<String, Script> scriptMap = new HashMap<>();
-  private final Map<String, TIntObjectHashMap<Pair<Integer, Integer>>> linesAndColumnsMap = new THashMap<>();
 
-  public ScriptManager(@NotNull VmService vmService) {
+  /**
+   * The script of each file: library of the current isolate, keyed by the url of the local file
+   * (or by the library uri if there is no local file), or null if not yet requested.
+   */
+  @Nullable
+  private CompletableFuture<Map<String, ScriptRef>> scriptIndex;
+
+  private final Map<String, CompletableFuture<Script>> scripts = new ConcurrentHashMap<>();
+
+  public ScriptManager(@NotNull VmService vmService, @NotNull Supplier<TokenPositionCache> debuggerPositionCache) {
     this.vmService = vmService;
+    this.debuggerPositionCache = debuggerPositionCache;
   }
 
-  public void reset() {
-    scriptMap.clear();
+  /**
+   * Forget the script index and the downloaded scripts, e.g. because the isolate has been reloaded.
+   */
+  public synchronized void reset() {
+    scriptIndex = null;
+    scripts.clear();
   }
 
-  public void setCurrentIsolate(IsolateRef isolateRef) {
+  public synchronized void setCurrentIsolate(IsolateRef isolateRef) {
+    if (this.isolateRef != null && isolateRef != null && Objects.equals(this.isolateRef.getId(), isolateRef.getId())) {
+      return;
+    }
+    if (this.isolateRef != null) {
+      ownPositionCache.evict(this.isolateRef.getId());
+    }
     this.isolateRef = isolateRef;
+    reset();
   }
 
-  @Nullable
-  private Isolate getCurrentIsolate() {
-    final Ref<Isolate> resultRef = Ref.create();
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
+  /**
+   * Return the script of the library for the given file, or null if the isolate has no such library.
+   */
+  @NotNull
+  public CompletableFuture<ScriptRef> getScriptRefFor(@NotNull VirtualFile file) {
+    return getScriptIndex().thenApply((index) -> index.get(file.getUrl()));
+  }
+
+  /**
+   * Start downloading the scripts for the given files, so that they are ready by the time their
+   * coverage is requested.
+   */
+  public void prefetch(@NotNull Collection<VirtualFile> files) {
+    for (VirtualFile file : files) {
+      getScriptRefFor(file).thenAccept((scriptRef) -> {
+        if (scriptRef != null) {
+          getScript(scriptRef);
+        }
+      });
+    }
+  }
+
+  @NotNull
+  private synchronized CompletableFuture<Map<String, ScriptRef>> getScriptIndex() {
+    if (scriptIndex == null) {
+      if (isolateRef == null) {
+        return CompletableFuture.completedFuture(Collections.emptyMap());
+      }
+      final CompletableFuture<Map<String, ScriptRef>> index = buildScriptIndex(isolateRef);
+      scriptIndex = index;
+      index.thenAccept((scripts) -> {
+        if (scripts.isEmpty()) {
+          // The isolate may not have been ready; try again next time.
+          synchronized (this) {
+            if (scriptIndex == index) {
+              scriptIndex = null;
+            }
+          }
+        }
+      });
+      return index;
+    }
+    return scriptIndex;
+  }
+
+  /**
+   * Index the isolate's libraries by file url.
+   * <p>
+   * Looking up the files may touch the disk, so that runs on a pooled thread rather than on the
+   * thread that delivers the VM service's responses.
+   */
+  @NotNull
+  private CompletableFuture<Map<String, ScriptRef>> buildScriptIndex(@NotNull IsolateRef isolateRef) {
+    return getIsolate(isolateRef).thenComposeAsync((isolate) -> {
+      if (isolate == null) {
+        return CompletableFuture.completedFuture(Collections.emptyMap());
+      }
+
+      final Map<String, CompletableFuture<Library>> libraries = new HashMap<>();
+      for (LibraryRef libraryRef : isolate.getLibraries()) {
+        final String uri = libraryRef.getUri();
+        if (uri.startsWith("file:")) {
+          final VirtualFile libraryFile = virtualFileManager.findFileByUrl(uri);
+          libraries.put(libraryFile == null ? uri : libraryFile.getUrl(), getLibrary(isolateRef, libraryRef));
+        }
+      }
+
+      return CompletableFuture.allOf(libraries.values().toArray(new CompletableFuture[0])).thenApply((ignored) -> {
+        final Map<String, ScriptRef> result = new HashMap<>();
+        libraries.forEach((url, future) -> {
+          final Library library = future.join();
+          if (library != null && !library.getScripts().isEmpty()) {
+            // TODO(devoncarew): If more than one, should we return the newest script?
+            result.put(url, library.getScripts().get(0));
+          }
+        });
+        return result;
+      });
+    }, AppExecutorUtil.getAppExecutorService());
+  }
 
+  @NotNull
+  private CompletableFuture<Isolate> getIsolate(@NotNull IsolateRef isolateRef) {
+    final CompletableFuture<Isolate> future = new CompletableFuture<>();
     vmService.getIsolate(isolateRef.getId(), new GetIsolateConsumer() {
       @Override
       public void received(Isolate isolate) {
-        resultRef.set(isolate);
-        semaphore.up();
+        future.complete(isolate);
       }
 
       @Override
       public void received(Sentinel sentinel) {
-        semaphore.up();
+        future.complete(null);
       }
 
       @Override
       public void onError(RPCError error) {
-        semaphore.up();
+        future.complete(null);
       }
     });
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return future;
   }
 
-  @Nullable
-  public ScriptRef getScriptRefFor(@NotNull VirtualFile file) {
-    final Isolate isolate = getCurrentIsolate();
-    if (isolate == null) {
-      return null;
-    }
-
-    for (LibraryRef libraryRef : isolate.getLibraries()) {
-      final String uri = libraryRef.getUri();
-
-      if (uri.startsWith("file:")) {
-        final VirtualFile libraryFile = virtualFileManager.findFileByUrl(uri);
-
-        if (file.equals(libraryFile)) {
-          final Library library = getLibrary(libraryRef);
-          if (library != null) {
-            if (!library.getScripts().isEmpty()) {
-              // TODO(devoncarew): If more than one, should we return the newest script?
-              return library.getScripts().get(0);
-            }
-          }
-        }
-      }
-    }
-
-    return null;
-  }
-
-  @Nullable
-  private Library getLibrary(LibraryRef libraryRef) {
-    // TODO(devoncarew): Consider changing the signature to `CompletableFuture getLibrary(LibraryRef instance)`
-    // (see also the EvalOnDartLibrary implementation).
-
-    final Ref<Library> resultRef = Ref.create();
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
-
+  @NotNull
+  private CompletableFuture<Library> getLibrary(@NotNull IsolateRef isolateRef, @NotNull LibraryRef libraryRef) {
+    final CompletableFuture<Library> future = new CompletableFuture<>();
     vmService.getLibrary(isolateRef.getId(), libraryRef.getId(), new GetLibraryConsumer() {
       @Override
       public void received(Library library) {
-        resultRef.set(library);
-        semaphore.up();
+        future.complete(library);
       }
 
       @Override
       public void onError(RPCError error) {
-        semaphore.up();
+        future.complete(null);
       }
     });
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return future;
   }
 
-  public void populateFor(ScriptRef scriptRef) {
-    if (!scriptMap.containsKey(scriptRef.getId())) {
-      scriptMap.put(scriptRef.getId(), getScriptSync(scriptRef));
-      linesAndColumnsMap.put(scriptRef.getId(), createTokenPosToLineAndColumnMap(scriptMap.get(scriptRef.getId())));
+  /**
+   * Return the script with the given id, downloading it if it has not already been requested.
+   * <p>
+   * The future completes with null if the script could not be downloaded.
+   */
+  @NotNull
+  public CompletableFuture<Script> getScript(@NotNull ScriptRef scriptRef) {
+    final IsolateRef isolateRef;
+    synchronized (this) {
+      isolateRef = this.isolateRef;
     }
+    if (isolateRef == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final String id = scriptRef.getId();
+    final CompletableFuture<Script> future = scripts.computeIfAbsent(id, (key) -> downloadScript(isolateRef, key).thenApply((script) -> {
+      if (script != null) {
+        // Decode the positions now, off the UI thread; the debugger may already have done so.
+        getPositionCache().get(isolateRef.getId(), key, script);
+      }
+      return script;
+    }));
+    future.thenAccept((script) -> {
+      if (script == null) {
+        // Try again next time.
+        scripts.remove(id, future);
+      }
+    });
+    return future;
   }
 
-  public Pair<Integer, Integer> getLineColumnPosForTokenPos(@NotNull ScriptRef scriptRef, int tokenPos) {
-    final TIntObjectHashMap<Pair<Integer, Integer>> map = linesAndColumnsMap.get(scriptRef.getId());
-    return map == null ? null : map.get(tokenPos);
-  }
-
-  private Script getScriptSync(@NotNull final ScriptRef scriptRef) {
-    final Ref<Script> resultRef = Ref.create();
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
-
-    vmService.getObject(isolateRef.getId(), scriptRef.getId(), new GetObjectConsumer() {
+  @NotNull
+  private CompletableFuture<Script> downloadScript(@NotNull IsolateRef isolateRef, @NotNull String scriptId) {
+    final CompletableFuture<Script> future = new CompletableFuture<>();
+    vmService.getObject(isolateRef.getId(), scriptId, new GetObjectConsumer() {
       @Override
       public void received(Obj script) {
-        resultRef.set((Script)script);
-        semaphore.up();
+        future.complete(script instanceof Script ? (Script)script : null);
       }
 
       @Override
       public void received(Sentinel response) {
-        semaphore.up();
+        future.complete(null);
       }
 
       @Override
       public void onError(RPCError error) {
-        semaphore.up();
+        future.complete(null);
       }
     });
-
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return future;
   }
 
-  private static TIntObjectHashMap<Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@Nullable final Script script) {
-    if (script == null) {
-      return null;
+  /**
+   * Return the token positions of the given script if it has been downloaded, or null otherwise.
+   */
+  @Nullable
+  public TokenPositionTable getPositionTable(@NotNull ScriptRef scriptRef) {
+    final IsolateRef isolateRef;
+    synchronized (this) {
+      isolateRef = this.isolateRef;
     }
-
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs;
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script.
-    final TIntObjectHashMap<Pair<Integer, Integer>> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> lineAndPairs : script.getTokenPosTable()) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      final int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
-      }
+    if (isolateRef == null) {
+      return null;
     }
+    final TokenPositionCache debuggerCache = debuggerPositionCache.get();
+    final TokenPositionTable table = debuggerCache == null ? null : debuggerCache.getIfPresent(isolateRef.getId(), scriptRef.getId());
+    return table != null ? table : ownPositionCache.getIfPresent(isolateRef.getId(), scriptRef.getId());
+  }
 
-    return result;
+  /**
+   * Return the debugger's token position tables if it is attached, so that scripts are decoded once
+   * for both, or this manager's own otherwise.
+   */
+  @NotNull
+  private TokenPositionCache getPositionCache() {
+    final TokenPositionCache debuggerCache = debuggerPositionCache.get();
+    return debuggerCache != null ? debuggerCache : ownPositionCache;
   }
 
+  /**
+   * Return the script with the given id if it has been downloaded, or null otherwise.
+   */
   @Nullable
   public Script getScriptFor(@NotNull ScriptRef ref) {
-    return scriptMap.get(ref.getId());
+    final CompletableFuture<Script> future = scripts.get(ref.getId());
+    return future == null ? null : future.getNow(null);
   }
 }
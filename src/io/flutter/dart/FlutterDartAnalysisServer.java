@@ -6,15 +6,14 @@
 package io.flutter.dart;
 
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.intellij.concurrency.JobScheduler;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.util.Consumer;
 import com.intellij.util.ReflectionUtil;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
@@ -28,13 +27,30 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
 
 public class FlutterDartAnalysisServer {
   private static final String FLUTTER_DESIGN_TIME_CONSTRUCTOR = "flutter.getChangeAddForDesignTimeConstructor";
   private static final String FLUTTER_NOTIFICATION_OUTLINE = "flutter.outline";
+  private static final String FLUTTER_SET_SUBSCRIPTIONS = "flutter.setSubscriptions";
+
+  /**
+   * How long a design time constructor request may take before it is abandoned.
+   */
+  private static final long DESIGN_TIME_CONSTRUCTOR_TIMEOUT_MS = 1000;
+
+  /**
+   * How long to wait for more subscription changes before sending them all in one request.
+   */
+  private static final long SUBSCRIPTIONS_DELAY_MS = 50;
+
+  /**
+   * How long to track a subscriptions request for the metrics.
+   */
+  private static final long SUBSCRIPTIONS_TIMEOUT_MS = 5000;
 
   @NotNull final DartAnalysisServerService analysisService;
 
@@ -44,13 +60,27 @@ public class FlutterDartAnalysisServer {
    */
   private final Map<String, List<String>> subscriptions = new HashMap<>();
 
+  /**
+   * A copy of the subscriptions last sent to the server, or null if none were sent.
+   * Guarded by {@link #subscriptions}.
+   */
+  @Nullable private Map<String, List<String>> sentSubscriptions;
+
+  /**
+   * True if sending the subscriptions is already scheduled. Guarded by {@link #subscriptions}.
+   */
+  private boolean subscriptionsScheduled;
+
   private final Map<String, List<FlutterOutlineListener>> fileOutlineListeners = new HashMap<>();
 
   /**
    * Each key is a request identifier.
-   * Each value is the {@link Consumer} for the response.
+   * Each value is the request waiting for its response. Requests are removed when they are
+   * answered, or when their deadline passes.
    */
-  private final Map<String, Consumer<JsonObject>> responseConsumers = new HashMap<>();
+  private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+  private final RequestMetrics requestMetrics = new RequestMetrics();
 
   @NotNull
   public static FlutterDartAnalysisServer getInstance(@NotNull final Project project) {
@@ -76,23 +106,63 @@ public class FlutterDartAnalysisServer {
     }
   }
 
+  /**
+   * Returns the counters for the requests this class sent to the analysis server.
+   */
+  @NotNull
+  public RequestMetrics getRequestMetrics() {
+    return requestMetrics;
+  }
+
   private void addSubscription(@NotNull final String service, @NotNull final String filePath) {
-    final List<String> files = subscriptions.computeIfAbsent(service, k -> new ArrayList<>());
-    if (files.add(filePath)) {
-      sendSubscriptions();
+    synchronized (subscriptions) {
+      final List<String> files = subscriptions.computeIfAbsent(service, k -> new ArrayList<>());
+      if (files.add(filePath)) {
+        scheduleSendSubscriptions();
+      }
     }
   }
 
   private void removeSubscription(@NotNull final String service, @NotNull final String filePath) {
-    final List<String> files = subscriptions.get(service);
-    if (files != null && files.remove(filePath)) {
-      sendSubscriptions();
+    synchronized (subscriptions) {
+      final List<String> files = subscriptions.get(service);
+      if (files != null && files.remove(filePath)) {
+        scheduleSendSubscriptions();
+      }
+    }
+  }
+
+  /**
+   * Sends the subscriptions after a short delay, so that the changes made while switching
+   * editors are sent in one request.
+   */
+  private void scheduleSendSubscriptions() {
+    synchronized (subscriptions) {
+      if (subscriptionsScheduled) {
+        return;
+      }
+      subscriptionsScheduled = true;
     }
+    JobScheduler.getScheduler().schedule(this::sendSubscriptions, SUBSCRIPTIONS_DELAY_MS, TimeUnit.MILLISECONDS);
   }
 
   private void sendSubscriptions() {
+    final Map<String, List<String>> toSend = new HashMap<>();
+    synchronized (subscriptions) {
+      subscriptionsScheduled = false;
+      for (Map.Entry<String, List<String>> entry : subscriptions.entrySet()) {
+        toSend.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+      }
+      // The changes since the last request cancelled each other out.
+      if (toSend.equals(sentSubscriptions)) {
+        return;
+      }
+      sentSubscriptions = toSend;
+    }
+
     final String id = analysisService.generateUniqueId();
-    analysisService.sendRequest(id, FlutterRequestUtilities.generateAnalysisSetSubscriptions(id, subscriptions));
+    sendRequest(id, FLUTTER_SET_SUBSCRIPTIONS, FlutterRequestUtilities.generateAnalysisSetSubscriptions(id, toSend),
+                SUBSCRIPTIONS_TIMEOUT_MS);
   }
 
   @NotNull
@@ -100,30 +170,47 @@ public class FlutterDartAnalysisServer {
     return analysisService.edit_getAssists(file, offset, length);
   }
 
-  @Nullable
-  public SourceChange flutter_getChangeAddForDesignTimeConstructor(@NotNull VirtualFile file, int _offset) {
+  /**
+   * Requests the change that adds a forDesignTime() constructor to the widget at the offset.
+   * <p>
+   * The future completes with null if the server has no change for the offset, and exceptionally
+   * if the server reports an error or doesn't respond in time.
+   */
+  @NotNull
+  public CompletableFuture<SourceChange> flutter_getChangeAddForDesignTimeConstructor(@NotNull VirtualFile file, int _offset) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
     final int offset = getOriginalOffset(file, _offset);
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    final AtomicReference<SourceChange> result = new AtomicReference<>();
     final String id = analysisService.generateUniqueId();
-    responseConsumers.put(id, (resultObject) -> {
-      try {
-        final JsonObject changeObject = resultObject.getAsJsonObject("change");
-        final SourceChange change = SourceChange.fromJson(changeObject);
-        result.set(change);
-      }
-      catch (Throwable ignored) {
-      }
-      latch.countDown();
+    final JsonObject request = FlutterRequestUtilities.generateFlutterGetChangeAddForDesignTimeConstructor(id, filePath, offset);
+    return sendRequest(id, FLUTTER_DESIGN_TIME_CONSTRUCTOR, request, DESIGN_TIME_CONSTRUCTOR_TIMEOUT_MS).thenApply((resultObject) -> {
+      final JsonObject changeObject = resultObject.getAsJsonObject("change");
+      return changeObject == null ? null : SourceChange.fromJson(changeObject);
     });
+  }
 
-    final JsonObject request = FlutterRequestUtilities.generateFlutterGetChangeAddForDesignTimeConstructor(id, filePath, offset);
-    analysisService.sendRequest(id, request);
+  /**
+   * Sends the request and returns a future for its result.
+   * <p>
+   * If there is no response within the timeout, the request is forgotten and the future completes
+   * with a {@link TimeoutException}.
+   */
+  @NotNull
+  private CompletableFuture<JsonObject> sendRequest(@NotNull String id, @NotNull String method, @NotNull JsonObject request,
+                                                    long timeoutMs) {
+    final PendingRequest pending = new PendingRequest(method);
+    pendingRequests.put(id, pending);
+
+    JobScheduler.getScheduler().schedule(() -> {
+      if (pendingRequests.remove(id, pending)) {
+        requestMetrics.recordTimeout(method);
+        pending.future.completeExceptionally(new TimeoutException(method + " timed out after " + timeoutMs + " ms"));
+      }
+    }, timeoutMs, TimeUnit.MILLISECONDS);
 
-    Uninterruptibles.awaitUninterruptibly(latch, 100, TimeUnit.MILLISECONDS);
-    return result.get();
+    requestMetrics.recordSent(method);
+    analysisService.sendRequest(id, request);
+    return pending.future;
   }
 
   /**
@@ -134,27 +221,27 @@ public class FlutterDartAnalysisServer {
       return;
     }
 
-    if (response.has("error")) {
-      return;
-    }
-
-    final JsonObject resultObject = response.getAsJsonObject("result");
-    if (resultObject == null) {
-      return;
-    }
-
     final JsonPrimitive idJsonPrimitive = (JsonPrimitive)response.get("id");
     if (idJsonPrimitive == null) {
       return;
     }
     final String idString = idJsonPrimitive.getAsString();
 
-    final Consumer<JsonObject> consumer = responseConsumers.remove(idString);
-    if (consumer == null) {
+    final PendingRequest pending = pendingRequests.remove(idString);
+    if (pending == null) {
       return;
     }
 
-    consumer.consume(resultObject);
+    final JsonElement errorElement = response.get("error");
+    if (errorElement != null) {
+      requestMetrics.recordError(pending.method);
+      pending.future.completeExceptionally(new RuntimeException(pending.method + " failed: " + errorElement));
+      return;
+    }
+
+    requestMetrics.recordResponse(pending.method, System.nanoTime() - pending.startNanos);
+    final JsonObject resultObject = response.getAsJsonObject("result");
+    pending.future.complete(resultObject != null ? resultObject : new JsonObject());
   }
 
   /**
@@ -202,4 +289,14 @@ public class FlutterDartAnalysisServer {
     }
     return convertedOffset;
   }
+
+  private static class PendingRequest {
+    @NotNull final String method;
+    final long startNanos = System.nanoTime();
+    @NotNull final CompletableFuture<JsonObject> future = new CompletableFuture<>();
+
+    PendingRequest(@NotNull String method) {
+      this.method = method;
+    }
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the requests sent to the analysis server, by method.
+ */
+public class RequestMetrics {
+  private final Map<String, Counters> countersByMethod = new ConcurrentHashMap<>();
+
+  void recordResponse(@NotNull String method, long latencyNanos) {
+    final Counters counters = getCounters(method);
+    counters.responses.incrementAndGet();
+    counters.totalLatencyNanos.addAndGet(latencyNanos);
+    counters.maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+  }
+
+  void recordError(@NotNull String method) {
+    getCounters(method).errors.incrementAndGet();
+  }
+
+  void recordTimeout(@NotNull String method) {
+    getCounters(method).timeouts.incrementAndGet();
+  }
+
+  void recordSent(@NotNull String method) {
+    getCounters(method).sent.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of requests sent with the given method.
+   */
+  public long getSentCount(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    return counters == null ? 0 : counters.sent.get();
+  }
+
+  /**
+   * Returns the number of requests with the given method that got a successful response in time.
+   */
+  public long getResponseCount(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    return counters == null ? 0 : counters.responses.get();
+  }
+
+  /**
+   * Returns the number of requests with the given method that got an error response.
+   */
+  public long getErrorCount(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    return counters == null ? 0 : counters.errors.get();
+  }
+
+  /**
+   * Returns the number of requests with the given method that didn't get a response by their deadline.
+   */
+  public long getTimeoutCount(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    return counters == null ? 0 : counters.timeouts.get();
+  }
+
+  /**
+   * Returns the mean time to a successful response, in milliseconds, or 0 if there were none.
+   */
+  public double getMeanLatencyMs(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    if (counters == null || counters.responses.get() == 0) {
+      return 0;
+    }
+    return counters.totalLatencyNanos.get() / 1e6 / counters.responses.get();
+  }
+
+  /**
+   * Returns the longest time to a successful response, in milliseconds.
+   */
+  public double getMaxLatencyMs(@NotNull String method) {
+    final Counters counters = countersByMethod.get(method);
+    return counters == null ? 0 : counters.maxLatencyNanos.get() / 1e6;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder();
+    for (String method : new TreeMap<>(countersByMethod).keySet()) {
+      builder.append(String.format("%s: sent %d, responses %d, errors %d, timeouts %d, mean %.1f ms, max %.1f ms%n",
+                                   method, getSentCount(method), getResponseCount(method), getErrorCount(method),
+                                   getTimeoutCount(method), getMeanLatencyMs(method), getMaxLatencyMs(method)));
+    }
+    return builder.toString();
+  }
+
+  @NotNull
+  private Counters getCounters(@NotNull String method) {
+    return countersByMethod.computeIfAbsent(method, (key) -> new Counters());
+  }
+
+  private static class Counters {
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong responses = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    final AtomicLong totalLatencyNanos = new AtomicLong();
+    final AtomicLong maxLatencyNanos = new AtomicLong();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 64-bit fingerprints of the JSON describing a {@link DiagnosticsNode}, used to tell whether a
+ * node, or a whole subtree, is shown the same way after the tree is fetched again.
+ * <p>
+ * Object ids are left out, since each fetch creates new Dart DiagnosticsNode objects. The value
+ * ids of properties are left out too, since some property values are created on every request.
+ * The node fingerprint includes the value id of the node itself, as it identifies the widget or
+ * element it describes.
+ */
+final class DiagnosticsFingerprint {
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  /**
+   * Combined with a node's fingerprint when its children haven't been fetched.
+   */
+  static final long CHILDREN_NOT_LOADED = 0x6c62272e07bb0142L;
+
+  private DiagnosticsFingerprint() {
+  }
+
+  /**
+   * Returns the fingerprint of how the node is displayed, leaving out its value id and children.
+   */
+  static long ofDisplay(@NotNull JsonObject json) {
+    return hashObject(OFFSET_BASIS, json, true, true);
+  }
+
+  /**
+   * Combines a display fingerprint with the value id of the node, giving its node fingerprint.
+   */
+  static long withValueId(long displayFingerprint, @Nullable String valueId) {
+    return valueId == null ? mix(displayFingerprint, 'n') : mix(mix(displayFingerprint, 's'), valueId);
+  }
+
+  /**
+   * Combines a node's fingerprint with the subtree fingerprints of its children, in order.
+   */
+  static long ofSubtree(long nodeFingerprint, @NotNull List<Long> childFingerprints) {
+    long hash = mix(OFFSET_BASIS, nodeFingerprint);
+    hash = mix(hash, childFingerprints.size());
+    for (long child : childFingerprints) {
+      hash = mix(hash, child);
+    }
+    return hash;
+  }
+
+  private static long hashObject(long hash, @NotNull JsonObject json, boolean isProperty, boolean skipChildren) {
+    hash = mix(hash, '{');
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      final String key = entry.getKey();
+      if (key.equals("objectId") || (isProperty && key.equals("valueId")) || (skipChildren && key.equals("children"))) {
+        continue;
+      }
+      hash = mix(hash, key);
+      if (key.equals("properties") && entry.getValue().isJsonArray()) {
+        hash = mix(hash, '[');
+        for (JsonElement property : entry.getValue().getAsJsonArray()) {
+          hash = property.isJsonObject() ? hashObject(hash, property.getAsJsonObject(), true, false) : hash(hash, property);
+        }
+        hash = mix(hash, ']');
+      }
+      else {
+        hash = hash(hash, entry.getValue());
+      }
+    }
+    return mix(hash, '}');
+  }
+
+  private static long hash(long hash, @NotNull JsonElement element) {
+    if (element.isJsonObject()) {
+      return hashObject(hash, element.getAsJsonObject(), false, false);
+    }
+    if (element.isJsonArray()) {
+      final JsonArray array = element.getAsJsonArray();
+      hash = mix(hash, '[');
+      for (JsonElement item : array) {
+        hash = hash(hash, item);
+      }
+      return mix(hash, ']');
+    }
+    if (element.isJsonNull()) {
+      return mix(hash, 'n');
+    }
+    // Distinguish the string "1" from the number 1.
+    hash = mix(hash, element.getAsJsonPrimitive().isString() ? 's' : 'p');
+    return mix(hash, element.getAsString());
+  }
+
+  private static long mix(long hash, @NotNull String value) {
+    hash = mix(hash, value.length());
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * PRIME;
+    }
+    return hash;
+  }
+
+  private static long mix(long hash, long value) {
+    for (int i = 0; i < 8; i++) {
+      hash = (hash ^ (value & 0xff)) * PRIME;
+      value >>>= 8;
+    }
+    return hash;
+  }
+}
@@ -5,6 +5,8 @@
  */
 package io.flutter.inspector;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -17,7 +19,6 @@ import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.server.vmService.frame.DartVmServiceValue;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.utils.CustomIconMaker;
-import io.flutter.utils.JsonUtils;
 import org.apache.commons.lang.StringUtils;
 import org.dartlang.analysis.server.protocol.HoverInformation;
 import org.dartlang.vm.service.element.InstanceRef;
@@ -51,6 +52,31 @@ import java.util.function.BiConsumer;
 public class DiagnosticsNode {
   private static final CustomIconMaker iconMaker = new CustomIconMaker();
 
+  /**
+   * Pool shared by all nodes for names, descriptions and other strings that
+   * repeat across a tree.
+   */
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+  /**
+   * String members that only some properties have. These are kept in a map
+   * so that nodes without them don't pay for a field each.
+   */
+  private static final Set<String> DETAIL_MEMBERS = new HashSet<>(Arrays.asList(
+    "emptyBodyDescription", "unit", "numberToString", "ifTrue", "ifFalse", "ifPresent", "defaultValue", "ifEmpty", "ifNull", "tooltip",
+    "exception"));
+
+  private static final int SHOW_SEPARATOR = 1;
+  private static final int SHOW_NAME = 1 << 1;
+  private static final int QUOTED = 1 << 2;
+  private static final int HAS_QUOTED = 1 << 3;
+  private static final int MISSING_IF_NULL = 1 << 4;
+  private static final int DIAGNOSTICABLE_VALUE = 1 << 5;
+  private static final int HAS_CHILDREN = 1 << 6;
+  private static final int CREATED_BY_LOCAL_PROJECT = 1 << 7;
+  private static final int SUMMARY_TREE = 1 << 8;
+  private static final int CHILDREN_INCLUDED = 1 << 9;
+
   private InspectorSourceLocation location;
   private DiagnosticsNode parent;
 
@@ -58,10 +84,130 @@ public class DiagnosticsNode {
 
   private ArrayList<DiagnosticsNode> cachedProperties;
 
+  /**
+   * Decodes the node from its JSON.
+   * <p>
+   * The JSON isn't kept, apart from the children and inline properties, which
+   * are decoded and released the first time they are asked for. Strings that
+   * repeat across nodes, such as widget and property names, are interned.
+   */
   public DiagnosticsNode(JsonObject json, InspectorService.ObjectGroup inspectorService, boolean isProperty) {
-    this.json = json;
     this.inspectorService = inspectorService;
     this.isProperty = isProperty;
+
+    String name = null;
+    String description = null;
+    String type = null;
+    String propertyType = null;
+    String objectId = null;
+    String valueId = null;
+    DiagnosticLevel level = DiagnosticLevel.info;
+    DiagnosticLevel defaultLevel = DiagnosticLevel.info;
+    DiagnosticsTreeStyle style = DiagnosticsTreeStyle.sparse;
+    int flags = SHOW_SEPARATOR | SHOW_NAME;
+    Map<String, String> details = null;
+    String[] values = null;
+    JsonObject valuePropertiesJson = null;
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      final String key = entry.getKey();
+      final JsonElement value = entry.getValue();
+      switch (key) {
+        case "name":
+          name = getString(value);
+          break;
+        case "description":
+          description = getString(value);
+          break;
+        case "type":
+          type = getString(value);
+          break;
+        case "propertyType":
+          propertyType = getString(value);
+          break;
+        case "objectId":
+          objectId = value.isJsonNull() ? null : value.getAsString();
+          break;
+        case "valueId":
+          valueId = value.isJsonNull() ? null : value.getAsString();
+          break;
+        case "level":
+          level = getLevel(value, level);
+          break;
+        case "defaultLevel":
+          defaultLevel = getLevel(value, defaultLevel);
+          break;
+        case "style":
+          style = getStyle(value, style);
+          break;
+        case "showSeparator":
+          flags = setFlag(flags, SHOW_SEPARATOR, value, true);
+          break;
+        case "showName":
+          flags = setFlag(flags, SHOW_NAME, value, true);
+          break;
+        case "quoted":
+          flags = setFlag(flags, QUOTED, value, false) | HAS_QUOTED;
+          break;
+        case "missingIfNull":
+          flags = setFlag(flags, MISSING_IF_NULL, value, false);
+          break;
+        case "isDiagnosticableValue":
+          flags = setFlag(flags, DIAGNOSTICABLE_VALUE, value, false);
+          break;
+        case "hasChildren":
+          flags = setFlag(flags, HAS_CHILDREN, value, false);
+          break;
+        case "createdByLocalProject":
+          flags = setFlag(flags, CREATED_BY_LOCAL_PROJECT, value, false);
+          break;
+        case "summaryTree":
+          flags = setFlag(flags, SUMMARY_TREE, value, false);
+          break;
+        case "values":
+          if (value.isJsonArray()) {
+            final JsonArray rawValues = value.getAsJsonArray();
+            values = new String[rawValues.size()];
+            for (int i = 0; i < values.length; ++i) {
+              values[i] = STRINGS.intern(rawValues.get(i).getAsString());
+            }
+          }
+          break;
+        case "creationLocation":
+          location = new InspectorSourceLocation(value.getAsJsonObject(), null);
+          break;
+        case "valueProperties":
+          valuePropertiesJson = value.isJsonObject() ? value.getAsJsonObject() : null;
+          break;
+        case "children":
+          childrenJson = value.getAsJsonArray();
+          flags |= CHILDREN_INCLUDED;
+          break;
+        case "properties":
+          propertiesJson = value.getAsJsonArray();
+          break;
+        default:
+          if (DETAIL_MEMBERS.contains(key)) {
+            if (details == null) {
+              details = new HashMap<>(4);
+            }
+            details.put(key, getString(value));
+          }
+      }
+    }
+    this.name = name;
+    this.description = description;
+    this.type = type;
+    this.propertyType = propertyType;
+    this.dartDiagnosticRef = new InspectorInstanceRef(objectId);
+    this.valueRef = new InspectorInstanceRef(valueId);
+    this.level = level;
+    this.defaultLevel = defaultLevel;
+    this.style = style;
+    this.flags = flags;
+    this.details = details;
+    this.values = values;
+    this.valuePropertiesJson = valuePropertiesJson;
+    this.displayFingerprint = DiagnosticsFingerprint.ofDisplay(json);
   }
 
   @Override
@@ -112,7 +258,7 @@ public class DiagnosticsNode {
    * The name should be omitted if the [showName] property is false.
    */
   public String getName() {
-    return getStringMember("name");
+    return name;
   }
 
   /**
@@ -122,7 +268,7 @@ public class DiagnosticsNode {
    * `:` is typically used as a separator when displaying as text.
    */
   public boolean getShowSeparator() {
-    return getBooleanMember("showSeparator", true);
+    return hasFlag(SHOW_SEPARATOR);
   }
 
   /**
@@ -134,7 +280,7 @@ public class DiagnosticsNode {
    * description of a property should also be a single line if possible.
    */
   public String getDescription() {
-    return getStringMember("description");
+    return description;
   }
 
   /**
@@ -149,7 +295,7 @@ public class DiagnosticsNode {
    * [DiagnosticLevel.error] is returned.
    */
   public DiagnosticLevel getLevel() {
-    return getLevelMember("level", DiagnosticLevel.info);
+    return level;
   }
 
   /**
@@ -160,21 +306,21 @@ public class DiagnosticsNode {
    * will make the name self-evident.
    */
   public boolean getShowName() {
-    return getBooleanMember("showName", true);
+    return hasFlag(SHOW_NAME);
   }
 
   /**
    * Description to show if the node has no displayed properties or children.
    */
   public String getEmptyBodyDescription() {
-    return getStringMember("emptyBodyDescription");
+    return getDetail("emptyBodyDescription");
   }
 
   /**
    * Hint for how the node should be displayed.
    */
   public DiagnosticsTreeStyle getStyle() {
-    return getStyleMember("style", DiagnosticsTreeStyle.sparse);
+    return style;
   }
 
   /**
@@ -184,7 +330,7 @@ public class DiagnosticsNode {
    * of a specific Dart diagnostic class.
    */
   String getType() {
-    return getStringMember("type");
+    return type;
   }
 
   /**
@@ -193,11 +339,11 @@ public class DiagnosticsNode {
    * Only relevant for String properties.
    */
   public boolean getIsQuoted() {
-    return getBooleanMember("quoted", false);
+    return hasFlag(QUOTED);
   }
 
   public boolean hasIsQuoted() {
-    return json.has("quoted");
+    return hasFlag(HAS_QUOTED);
   }
 
   /**
@@ -210,11 +356,11 @@ public class DiagnosticsNode {
    * Only specified for Number properties.
    */
   public String getUnit() {
-    return getStringMember("unit");
+    return getDetail("unit");
   }
 
   public boolean hasUnit() {
-    return json.has("unit");
+    return hasDetail("unit");
   }
 
   /**
@@ -223,11 +369,11 @@ public class DiagnosticsNode {
    * Only specified for Number properties.
    */
   public String getNumberToString() {
-    return getStringMember("numberToString");
+    return getDetail("numberToString");
   }
 
   public boolean hasNumberToString() {
-    return json.has("numberToString");
+    return hasDetail("numberToString");
   }
 
   /**
@@ -239,11 +385,11 @@ public class DiagnosticsNode {
    * Only applies to Flag properties.
    */
   public String getIfTrue() {
-    return getStringMember("ifTrue");
+    return getDetail("ifTrue");
   }
 
   public boolean hasIfTrue() {
-    return json.has("ifTrue");
+    return hasDetail("ifTrue");
   }
 
   /**
@@ -255,11 +401,11 @@ public class DiagnosticsNode {
    * Only applies to Flag properties.
    */
   public String getIfFalse() {
-    return getStringMember("ifFalse");
+    return getDetail("ifFalse");
   }
 
   public boolean hasIfFalse() {
-    return json.has("ifFalse");
+    return hasDetail("ifFalse");
   }
 
   /**
@@ -270,19 +416,11 @@ public class DiagnosticsNode {
    * Only applies to IterableProperty.
    */
   public ArrayList<String> getValues() {
-    if (!json.has("values")) {
-      return null;
-    }
-    final JsonArray rawValues = json.getAsJsonArray("values");
-    final ArrayList<String> values = new ArrayList<>(rawValues.size());
-    for (int i = 0; i < rawValues.size(); ++i) {
-      values.add(rawValues.get(i).getAsString());
-    }
-    return values;
+    return values == null ? null : new ArrayList<>(Arrays.asList(values));
   }
 
   public boolean hasValues() {
-    return json.has("values");
+    return values != null;
   }
 
   /**
@@ -295,11 +433,11 @@ public class DiagnosticsNode {
    * Only specified for ObjectFlagProperty.
    */
   public String getIfPresent() {
-    return getStringMember("ifPresent");
+    return getDetail("ifPresent");
   }
 
   public boolean hasIfPresent() {
-    return json.has("ifPresent");
+    return hasDetail("ifPresent");
   }
 
   /**
@@ -317,14 +455,14 @@ public class DiagnosticsNode {
    * default value.
    */
   public String getDefaultValue() {
-    return getStringMember("defaultValue");
+    return getDetail("defaultValue");
   }
 
   /**
    * Whether a property has a default value.
    */
   public boolean hasDefaultValue() {
-    return json.has("defaultValue");
+    return hasDetail("defaultValue");
   }
 
   /**
@@ -334,14 +472,14 @@ public class DiagnosticsNode {
    * ifEmpty.
    */
   public String getIfEmpty() {
-    return getStringMember("ifEmpty");
+    return getDetail("ifEmpty");
   }
 
   /**
    * Description if the property [value] is null.
    */
   public String getIfNull() {
-    return getStringMember("ifNull");
+    return getDetail("ifNull");
   }
 
   /**
@@ -353,11 +491,11 @@ public class DiagnosticsNode {
    * generating the string description.
    */
   public String getTooltip() {
-    return getStringMember("tooltip");
+    return getDetail("tooltip");
   }
 
   public boolean hasTooltip() {
-    return json.has("tooltip");
+    return hasDetail("tooltip");
   }
 
   /**
@@ -365,7 +503,7 @@ public class DiagnosticsNode {
    * [DiagnosticLevel.warning] warning that the property is missing a [value].
    */
   public boolean getMissingIfNull() {
-    return getBooleanMember("missingIfNull", false);
+    return hasFlag(MISSING_IF_NULL);
   }
 
   /**
@@ -373,28 +511,21 @@ public class DiagnosticsNode {
    * [value] threw an exception.
    */
   public String exception() {
-    return getStringMember("exception");
+    return getDetail("exception");
   }
 
   /**
    * Whether accessing the property throws an exception.
    */
   boolean hasException() {
-    return json.has("exception");
+    return hasDetail("exception");
   }
 
   public boolean hasCreationLocation() {
-    return location != null || json.has("creationLocation");
+    return location != null;
   }
 
   public InspectorSourceLocation getCreationLocation() {
-    if (location != null) {
-      return location;
-    }
-    if (!hasCreationLocation()) {
-      return null;
-    }
-    location = new InspectorSourceLocation(json.getAsJsonObject("creationLocation"), null);
     return location;
   }
 
@@ -412,7 +543,7 @@ public class DiagnosticsNode {
    * the word "null".
    */
   public String getPropertyType() {
-    return getStringMember("propertyType");
+    return propertyType;
   }
 
   /**
@@ -423,7 +554,7 @@ public class DiagnosticsNode {
    * [defaultValue] has type [T] or is [kNoDefaultValue].
    */
   public DiagnosticLevel getDefaultLevel() {
-    return getLevelMember("defaultLevel", DiagnosticLevel.info);
+    return defaultLevel;
   }
 
   /**
@@ -438,7 +569,7 @@ public class DiagnosticsNode {
    * could.
    */
   public boolean getIsDiagnosticableValue() {
-    return getBooleanMember("isDiagnosticableValue", false);
+    return hasFlag(DIAGNOSTICABLE_VALUE);
   }
 
   /**
@@ -447,10 +578,40 @@ public class DiagnosticsNode {
    */
   private final InspectorService.ObjectGroup inspectorService;
 
+  private final String name;
+  private final String description;
+  private final String type;
+  private final String propertyType;
+  private final InspectorInstanceRef dartDiagnosticRef;
+  private final InspectorInstanceRef valueRef;
+  private final DiagnosticLevel level;
+  private final DiagnosticLevel defaultLevel;
+  private final DiagnosticsTreeStyle style;
+
+  /**
+   * Boolean members of the JSON, as a mask of the flag constants.
+   */
+  private final int flags;
+
   /**
-   * JSON describing the diagnostic node.
+   * String members that only some properties have, keyed by member name, or
+   * null if the node has none of them.
    */
-  private final JsonObject json;
+  @Nullable private final Map<String, String> details;
+
+  private final String[] values;
+  private final JsonObject valuePropertiesJson;
+  private final long displayFingerprint;
+
+  /**
+   * JSON for the children sent with this node, released once they are decoded.
+   */
+  private JsonArray childrenJson;
+
+  /**
+   * JSON for the inline properties, released once they are decoded.
+   */
+  private JsonArray propertiesJson;
 
   private CompletableFuture<ArrayList<DiagnosticsNode>> children;
 
@@ -458,41 +619,43 @@ public class DiagnosticsNode {
 
   private final boolean isProperty;
 
+  private Long nodeFingerprint;
+
+  private Long subtreeFingerprint;
+
   public boolean isProperty() {
     return isProperty;
   }
 
-  public String getStringMember(@NotNull String memberName) {
-    return JsonUtils.getStringMember(json, memberName);
+  private boolean hasFlag(int flag) {
+    return (flags & flag) != 0;
   }
 
-  private boolean getBooleanMember(String memberName, boolean defaultValue) {
-    if (!json.has(memberName)) {
-      return defaultValue;
-    }
-    final JsonElement value = json.get(memberName);
-    if (value instanceof JsonNull) {
-      return defaultValue;
-    }
-    return value.getAsBoolean();
+  private String getDetail(String memberName) {
+    return details == null ? null : details.get(memberName);
   }
 
-  private DiagnosticLevel getLevelMember(String memberName, DiagnosticLevel defaultValue) {
-    if (!json.has(memberName)) {
-      return defaultValue;
-    }
-    final JsonElement value = json.get(memberName);
+  private boolean hasDetail(String memberName) {
+    return details != null && details.containsKey(memberName);
+  }
+
+  private static String getString(JsonElement value) {
+    return value instanceof JsonNull ? null : STRINGS.intern(value.getAsString());
+  }
+
+  private static int setFlag(int flags, int flag, JsonElement value, boolean defaultValue) {
+    final boolean set = value instanceof JsonNull ? defaultValue : value.getAsBoolean();
+    return set ? flags | flag : flags & ~flag;
+  }
+
+  private static DiagnosticLevel getLevel(JsonElement value, DiagnosticLevel defaultValue) {
     if (value instanceof JsonNull) {
       return defaultValue;
     }
     return DiagnosticLevel.valueOf(value.getAsString());
   }
 
-  private DiagnosticsTreeStyle getStyleMember(String memberName, DiagnosticsTreeStyle defaultValue) {
-    if (!json.has(memberName)) {
-      return defaultValue;
-    }
-    final JsonElement value = json.get(memberName);
+  private static DiagnosticsTreeStyle getStyle(JsonElement value, DiagnosticsTreeStyle defaultValue) {
     if (value instanceof JsonNull) {
       return defaultValue;
     }
@@ -503,8 +666,7 @@ public class DiagnosticsNode {
    * Returns a reference to the value the DiagnosticsNode object is describing.
    */
   public InspectorInstanceRef getValueRef() {
-    final JsonElement valueId = json.get("valueId");
-    return new InspectorInstanceRef(valueId.isJsonNull() ? null : valueId.getAsString());
+    return valueRef;
   }
 
   public boolean isEnumProperty() {
@@ -554,41 +716,55 @@ public class DiagnosticsNode {
     return valueProperties;
   }
 
+  /**
+   * Returns whether the value properties are loaded or being loaded.
+   */
+  public boolean valuePropertiesRequested() {
+    return valueProperties != null;
+  }
+
   public JsonObject getValuePropertiesJson() {
-    return json.getAsJsonObject("valueProperties");
+    return valuePropertiesJson;
   }
 
   public boolean hasChildren() {
-    return getBooleanMember("hasChildren", false);
+    return hasFlag(HAS_CHILDREN);
   }
 
   public boolean isCreatedByLocalProject() {
-    return getBooleanMember("createdByLocalProject", false);
+    return hasFlag(CREATED_BY_LOCAL_PROJECT);
   }
 
   /**
    * Whether this node is being displayed as a full tree or a filtered tree.
    */
   public boolean isSummaryTree() {
-    return getBooleanMember("summaryTree", false);
+    return hasFlag(SUMMARY_TREE);
   }
 
   /**
    * Check whether children are already available.
    */
   public boolean childrenReady() {
-    return json.has("children") || (children != null && children.isDone());
+    return childrenJson != null || (children != null && children.isDone());
+  }
+
+  /**
+   * Returns whether the children are loaded or being loaded.
+   */
+  public boolean childrenRequested() {
+    return childrenJson != null || children != null;
   }
 
   public CompletableFuture<ArrayList<DiagnosticsNode>> getChildren() {
     if (children == null) {
-      if (json.has("children")) {
-        final JsonArray jsonArray = json.get("children").getAsJsonArray();
-        final ArrayList<DiagnosticsNode> nodes = new ArrayList<>();
-        for (JsonElement element : jsonArray) {
+      if (childrenJson != null) {
+        final ArrayList<DiagnosticsNode> nodes = new ArrayList<>(childrenJson.size());
+        for (JsonElement element : childrenJson) {
           nodes.add(new DiagnosticsNode(element.getAsJsonObject(), inspectorService, false));
         }
         children = CompletableFuture.completedFuture(nodes);
+        childrenJson = null;
       } else  if (hasChildren()) {
         children = inspectorService.getChildren(getDartDiagnosticRef(), isSummaryTree());
       }
@@ -600,11 +776,46 @@ public class DiagnosticsNode {
     return children;
   }
 
+  /**
+   * Returns a fingerprint of how this node and its inline properties are shown, ignoring the
+   * object ids that change each time the tree is fetched.
+   */
+  public long getNodeFingerprint() {
+    if (nodeFingerprint == null) {
+      nodeFingerprint = DiagnosticsFingerprint.withValueId(displayFingerprint, valueRef.getId());
+    }
+    return nodeFingerprint;
+  }
+
+  /**
+   * Returns a fingerprint of this node and the children included in its JSON, recursively.
+   * <p>
+   * Children that are fetched separately aren't included, so a node whose children weren't
+   * sent with it never has the same subtree fingerprint as one whose children were.
+   */
+  public long getSubtreeFingerprint() {
+    if (subtreeFingerprint == null) {
+      if (hasFlag(CHILDREN_INCLUDED)) {
+        final ArrayList<DiagnosticsNode> nodes = getChildren().getNow(null);
+        final List<Long> childFingerprints = new ArrayList<>(nodes.size());
+        for (DiagnosticsNode child : nodes) {
+          childFingerprints.add(child.getSubtreeFingerprint());
+        }
+        subtreeFingerprint = DiagnosticsFingerprint.ofSubtree(getNodeFingerprint(), childFingerprints);
+      }
+      else {
+        subtreeFingerprint = DiagnosticsFingerprint.ofSubtree(getNodeFingerprint(),
+                                                              Collections.singletonList(DiagnosticsFingerprint.CHILDREN_NOT_LOADED));
+      }
+    }
+    return subtreeFingerprint;
+  }
+
   /**
    * Reference the actual Dart DiagnosticsNode object this object is referencing.
    */
   public InspectorInstanceRef getDartDiagnosticRef() {
-    return new InspectorInstanceRef(json.get("objectId").getAsString());
+    return dartDiagnosticRef;
   }
 
   /**
@@ -613,11 +824,11 @@ public class DiagnosticsNode {
   public ArrayList<DiagnosticsNode> getInlineProperties() {
     if (cachedProperties == null) {
       cachedProperties = new ArrayList<>();
-      if (json.has("properties")) {
-        final JsonArray jsonArray = json.get("properties").getAsJsonArray();
-        for (JsonElement element : jsonArray) {
+      if (propertiesJson != null) {
+        for (JsonElement element : propertiesJson) {
           cachedProperties.add(new DiagnosticsNode(element.getAsJsonObject(), inspectorService, true));
         }
+        propertiesJson = null;
         trackPropertiesMatchingParameters(cachedProperties);
       }
     }
@@ -737,25 +948,10 @@ public class DiagnosticsNode {
    * field may change even for properties that have not changed because in
    * some cases such as the 'created' property for an element, the property
    * value is created dynamically each time 'getProperties' is called.
+   * Children aren't compared.
    */
   public boolean identicalDisplay(DiagnosticsNode node) {
-    if (node == null) {
-      return false;
-    }
-    final Set<Map.Entry<String, JsonElement>> entries = json.entrySet();
-    if (entries.size() != node.json.entrySet().size()) {
-      return false;
-    }
-    for (Map.Entry<String, JsonElement> entry : entries) {
-      final String key = entry.getKey();
-      if (key.equals("objectId") || key.equals("valueId")) {
-        continue;
-      }
-      if (entry.getValue().equals(node.json.get(key))) {
-        return false;
-      }
-    }
-    return true;
+    return node != null && displayFingerprint == node.displayFingerprint;
   }
 
   /**
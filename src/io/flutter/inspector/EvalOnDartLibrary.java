@@ -8,6 +8,7 @@ package io.flutter.inspector;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
 import com.intellij.util.Alarm;
 import com.intellij.util.Producer;
 import com.intellij.util.ReflectionUtil;
@@ -25,6 +26,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -42,11 +47,41 @@ public class EvalOnDartLibrary implements Disposable {
   private static final Logger LOG = Logger.getInstance(EvalOnDartLibrary.class);
 
   /**
-   * For robustness we ensure at most one pending request is issued at a time.
+   * The default number of requests that may be waiting for a response from the VM at once.
    */
-  private CompletableFuture<?> allPendingRequestsDone;
+  public static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 4;
+
   private final Object pendingRequestLock = new Object();
 
+  /**
+   * Requests that have not been sent yet, in the order they were added. Guarded by
+   * {@link #pendingRequestLock}.
+   */
+  private final ArrayDeque<PendingRequest<?>> queuedRequests = new ArrayDeque<>();
+
+  /**
+   * Requests disposing a group that reached the front of {@link #queuedRequests} while requests
+   * from the group were still in flight. They are put back at the front once the last of those
+   * completes. Guarded by {@link #pendingRequestLock}.
+   */
+  private final Map<InspectorService.ObjectGroup, List<PendingRequest<?>>> blockedDisposeRequests = new HashMap<>();
+
+  /**
+   * The number of sent requests from each ObjectGroup that have not completed yet. Requests
+   * without a group are counted under the null key. Guarded by {@link #pendingRequestLock}.
+   */
+  private final Map<InspectorService.ObjectGroup, Integer> inFlightByGroup = new HashMap<>();
+  private int inFlightCount;
+  private int maxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+
+  /**
+   * getObject requests that have been added but not completed, so that a second request for the
+   * same object from the same group can share the first one's response. Guarded by
+   * {@link #pendingRequestLock}.
+   */
+  private final Map<Pair<InspectorService.ObjectGroup, String>, CompletableFuture<? extends Obj>> pendingObjectRequests =
+    new HashMap<>();
+
   /**
    * Public so that other related classes such as InspectorService can ensure their
    * requests are in a consistent order with requests which eliminates otherwise
@@ -55,55 +90,153 @@ public class EvalOnDartLibrary implements Disposable {
    * from an object in a group but the request to dispose the object group
    * occurred first.
    * <p>
-   * The design is we have at most 1 pending request at a time. This sacrifices
-   * some throughput with the advantage of predictable semantics and the benefit
-   * that we are able to skip large numbers of requests if they happen to be
-   * from groups of objects that should no longer be kept alive.
+   * Requests are started in the order they were added, with up to
+   * {@link #setMaxRequestsInFlight} of them awaiting a response at once. The
+   * request disposing an ObjectGroup (see {@link #addDisposeGroupRequest}) is
+   * only sent once every earlier request from that group has completed.
    * <p>
    * The optional ObjectGroup specified by isAlive, indicates whether the
    * request is still relevant or should be cancelled. This is an optimization
    * for the Inspector to avoid overloading the service with stale requests if
    * the user is quickly navigating through the UI generating lots of stale
-   * requests to view specific details subtrees.
+   * requests to view specific details subtrees. Requests that are still queued
+   * when their group is disposed complete with null without being sent.
    */
   public <T> CompletableFuture<T> addRequest(InspectorService.ObjectGroup isAlive, Producer<CompletableFuture<T>> request) {
     if (isAlive != null && isAlive.isDisposed()) {
       return CompletableFuture.completedFuture(null);
     }
+    return enqueue(new PendingRequest<>(isAlive, request, false));
+  }
 
-    // Future that completes when the request has finished.
-    final CompletableFuture<T> response = new CompletableFuture<>();
-    // This is an optimization to avoid sending stale requests across the wire.
-    final Runnable wrappedRequest = () -> {
-      if (isAlive != null && isAlive.isDisposed()) {
-        response.complete(null);
-        return;
-      }
-      final CompletableFuture<T> future = request.produce();
-      future.whenCompleteAsync((v, t) -> {
-        if (t != null) {
-          response.completeExceptionally(t);
+  /**
+   * Adds the request that disposes the given group on the device.
+   * <p>
+   * Unlike other requests this one is never cancelled. It is sent after all
+   * requests previously added for the group have completed, and any of them
+   * still queued are cancelled as the group should already be marked as
+   * disposed.
+   */
+  public <T> CompletableFuture<T> addDisposeGroupRequest(InspectorService.ObjectGroup group, Producer<CompletableFuture<T>> request) {
+    return enqueue(new PendingRequest<>(group, request, true));
+  }
+
+  /**
+   * Sets how many requests may be waiting for a response from the VM at once.
+   */
+  public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+    assert (maxRequestsInFlight > 0);
+    synchronized (pendingRequestLock) {
+      this.maxRequestsInFlight = maxRequestsInFlight;
+    }
+    scheduleRequests();
+  }
+
+  private <T> CompletableFuture<T> enqueue(PendingRequest<T> pending) {
+    synchronized (pendingRequestLock) {
+      queuedRequests.add(pending);
+    }
+    scheduleRequests();
+    return pending.response;
+  }
+
+  /**
+   * Sends requests from the front of the queue while the in flight window
+   * allows, cancelling the ones whose group has been disposed on the way.
+   * <p>
+   * Only the front of the queue is looked at, so each request is handled a
+   * constant number of times however long the queue is. A cancelled request
+   * further back completes once it reaches the front.
+   */
+  private void scheduleRequests() {
+    final List<PendingRequest<?>> toCancel = new ArrayList<>();
+    final List<PendingRequest<?>> toSend = new ArrayList<>();
+    synchronized (pendingRequestLock) {
+      while (!queuedRequests.isEmpty()) {
+        final PendingRequest<?> pending = queuedRequests.peek();
+        final InspectorService.ObjectGroup group = pending.group;
+        if (!pending.disposesGroup && group != null && group.isDisposed()) {
+          queuedRequests.poll();
+          toCancel.add(pending);
+          continue;
+        }
+        if (pending.disposesGroup && inFlightByGroup.containsKey(group)) {
+          // Later requests are from other groups, as this group is disposed,
+          // so they don't need to wait for it.
+          queuedRequests.poll();
+          blockedDisposeRequests.computeIfAbsent(group, (key) -> new ArrayList<>()).add(pending);
+          continue;
         }
-        else {
-          response.complete(v);
+        if (inFlightCount >= maxRequestsInFlight) {
+          break;
         }
-      });
-    };
+        queuedRequests.poll();
+        inFlightCount++;
+        inFlightByGroup.merge(group, 1, Integer::sum);
+        toSend.add(pending);
+      }
+    }
+
+    for (PendingRequest<?> pending : toCancel) {
+      pending.response.complete(null);
+    }
+    for (PendingRequest<?> pending : toSend) {
+      myRequestsScheduler.addRequest(() -> send(pending), 0);
+    }
+  }
+
+  private <T> void send(PendingRequest<T> pending) {
+    final CompletableFuture<T> future;
+    try {
+      future = pending.request.produce();
+    }
+    catch (RuntimeException e) {
+      onRequestDone(pending);
+      pending.response.completeExceptionally(e);
+      return;
+    }
+    future.whenCompleteAsync((v, t) -> {
+      onRequestDone(pending);
+      if (t != null) {
+        pending.response.completeExceptionally(t);
+      }
+      else {
+        pending.response.complete(v);
+      }
+    });
+  }
+
+  private void onRequestDone(PendingRequest<?> pending) {
     synchronized (pendingRequestLock) {
-      if (allPendingRequestsDone == null || allPendingRequestsDone.isDone()) {
-        allPendingRequestsDone = response;
-        myRequestsScheduler.addRequest(wrappedRequest, 0);
+      inFlightCount--;
+      final int remaining = inFlightByGroup.get(pending.group) - 1;
+      if (remaining == 0) {
+        inFlightByGroup.remove(pending.group);
+        final List<PendingRequest<?>> blocked = blockedDisposeRequests.remove(pending.group);
+        if (blocked != null) {
+          for (int i = blocked.size() - 1; i >= 0; i--) {
+            queuedRequests.addFirst(blocked.get(i));
+          }
+        }
       }
       else {
-        final CompletableFuture<?> previousDone = allPendingRequestsDone;
-        allPendingRequestsDone = response;
-        // Actually schedule this request only after the previous request completes.
-        previousDone.whenCompleteAsync((v, error) -> {
-          myRequestsScheduler.addRequest(wrappedRequest, 0);
-        });
+        inFlightByGroup.put(pending.group, remaining);
       }
     }
-    return response;
+    scheduleRequests();
+  }
+
+  private static class PendingRequest<T> {
+    final InspectorService.ObjectGroup group;
+    final Producer<CompletableFuture<T>> request;
+    final boolean disposesGroup;
+    final CompletableFuture<T> response = new CompletableFuture<>();
+
+    PendingRequest(InspectorService.ObjectGroup group, Producer<CompletableFuture<T>> request, boolean disposesGroup) {
+      this.group = group;
+      this.request = request;
+      this.disposesGroup = disposesGroup;
+    }
   }
 
   public EvalOnDartLibrary(String libraryName, VmService vmService, PerfService perfService) {
@@ -155,42 +288,81 @@ public class EvalOnDartLibrary implements Disposable {
   }
 
   public CompletableFuture<InstanceRef> eval(String expression, Map<String, String> scope, InspectorService.ObjectGroup isAlive) {
-    return addRequest(isAlive, () -> {
-      final CompletableFuture<InstanceRef> future = new CompletableFuture<>();
-      libraryRef.thenAcceptAsync((LibraryRef ref) -> {
-        evaluateHelper(
-          getIsolateId(), ref.getId(), expression, scope,
-          new EvaluateConsumer() {
-            @Override
-            public void onError(RPCError error) {
-              LOG.error(error);
-              future.completeExceptionally(new RuntimeException(error.toString()));
-            }
-
-            @Override
-            public void received(ErrorRef response) {
-              LOG.error("Error evaluating expression:\n" + expression + "\nResponse:" + response.getMessage());
-              future.completeExceptionally(new RuntimeException(response.toString()));
-            }
-
-            @Override
-            public void received(InstanceRef response) {
-              future.complete(response);
-            }
-
-            @Override
-            public void received(Sentinel response) {
-              future.completeExceptionally(new RuntimeException(response.toString()));
-            }
+    return addRequest(isAlive, () -> evalNow(expression, scope));
+  }
+
+  /**
+   * Evaluates the expression as the request disposing the group; see
+   * {@link #addDisposeGroupRequest}.
+   */
+  public CompletableFuture<InstanceRef> evalDisposeGroup(String expression, InspectorService.ObjectGroup group) {
+    return addDisposeGroupRequest(group, () -> evalNow(expression, null));
+  }
+
+  private CompletableFuture<InstanceRef> evalNow(String expression, Map<String, String> scope) {
+    final CompletableFuture<InstanceRef> future = new CompletableFuture<>();
+    libraryRef.thenAcceptAsync((LibraryRef ref) -> {
+      evaluateHelper(
+        getIsolateId(), ref.getId(), expression, scope,
+        new EvaluateConsumer() {
+          @Override
+          public void onError(RPCError error) {
+            LOG.error(error);
+            future.completeExceptionally(new RuntimeException(error.toString()));
           }
-        );
-      });
-      return future;
+
+          @Override
+          public void received(ErrorRef response) {
+            LOG.error("Error evaluating expression:\n" + expression + "\nResponse:" + response.getMessage());
+            future.completeExceptionally(new RuntimeException(response.toString()));
+          }
+
+          @Override
+          public void received(InstanceRef response) {
+            future.complete(response);
+          }
+
+          @Override
+          public void received(Sentinel response) {
+            future.completeExceptionally(new RuntimeException(response.toString()));
+          }
+        }
+      );
     });
+    return future;
   }
 
+  /**
+   * Gets the object for the given reference. Concurrent requests for the same
+   * object from the same group share a single request to the VM.
+   */
   @SuppressWarnings("unchecked")
   public <T extends Obj> CompletableFuture<T> getObjHelper(ObjRef instance, InspectorService.ObjectGroup isAlive) {
+    final Pair<InspectorService.ObjectGroup, String> key = Pair.create(isAlive, instance.getId());
+    final CompletableFuture<T> shared = new CompletableFuture<>();
+    synchronized (pendingRequestLock) {
+      final CompletableFuture<T> existing = (CompletableFuture<T>)pendingObjectRequests.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      pendingObjectRequests.put(key, shared);
+    }
+    this.<T>getObjUncoalesced(instance, isAlive).whenComplete((v, t) -> {
+      synchronized (pendingRequestLock) {
+        pendingObjectRequests.remove(key, shared);
+      }
+      if (t != null) {
+        shared.completeExceptionally(t);
+      }
+      else {
+        shared.complete(v);
+      }
+    });
+    return shared;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends Obj> CompletableFuture<T> getObjUncoalesced(ObjRef instance, InspectorService.ObjectGroup isAlive) {
     return addRequest(isAlive, () -> {
       final CompletableFuture<T> future = new CompletableFuture<>();
       vmService.getObject(
@@ -220,7 +392,7 @@ public class EvalOnDartLibrary implements Disposable {
                                                               ScriptRef script,
                                                               int tokenPos,
                                                               InspectorService.ObjectGroup isAlive) {
-    return addRequest(isAlive, () -> CompletableFuture.completedFuture(debugProcess.getSourcePosition(isolateId, script, tokenPos)));
+    return addRequest(isAlive, () -> debugProcess.getSourcePosition(isolateId, script, tokenPos));
   }
 
   public CompletableFuture<Instance> getInstance(InstanceRef instance, InspectorService.ObjectGroup isAlive) {
@@ -69,10 +69,17 @@ public class FPSDisplay {
       fpsPanel.update();
 
       final int ms = Math.round(event.elapsedMicros / 1000.0f);
-      elapsedLabel.setText(ms + "ms");
+      final long p90Micros = flutterFramesMonitor.getElapsedPercentile(90);
+      elapsedLabel.setText(ms + "ms (p90 " + formatMs(p90Micros) + ")");
+      elapsedLabel.setToolTipText("Build time of recent frames: p50 " + formatMs(flutterFramesMonitor.getElapsedPercentile(50)) +
+                                  ", p90 " + formatMs(p90Micros) +
+                                  ", p99 " + formatMs(flutterFramesMonitor.getElapsedPercentile(99)));
       SwingUtilities.invokeLater(elapsedLabel::repaint);
 
-      fpsLabel.setText(df.format(flutterFramesMonitor.getFPS()) + " FPS");
+      final int jankCount = flutterFramesMonitor.getJankCount();
+      fpsLabel.setText(df.format(flutterFramesMonitor.getFPS()) + " FPS" + (jankCount > 0 ? ", " + jankCount + " janky" : ""));
+      fpsLabel.setToolTipText(jankCount + " of the recent frames and " + flutterFramesMonitor.getTotalJankCount() +
+                              " frames in total took longer than " + formatMs(FlutterFramesMonitor.microsPerFrame) + " to build");
       SwingUtilities.invokeLater(fpsLabel::repaint);
     };
 
@@ -81,6 +88,10 @@ public class FPSDisplay {
 
     return panel;
   }
+
+  private static String formatMs(long micros) {
+    return df.format(micros / 1000.0d) + "ms";
+  }
 }
 
 class FPSPanel extends JPanel {
@@ -156,40 +167,40 @@ class FPSPanel extends JPanel {
 
     final int widgetWidth = Math.min(Math.max(Math.round(height / 8.0f), 2), 5);
 
-    synchronized (framesMonitor) {
-      for (FlutterFramesMonitor.FlutterFrameEvent frame : framesMonitor.frames) {
-        if (x + widgetWidth < 0) {
-          break;
-        }
-
-        x -= (widgetWidth + inc);
-
-        final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
-        JComponent widget = frameWidgets.get(frame);
-        if (widget != null) {
-          frames.remove(frame);
-        }
-        else {
-          widget = new JLabel();
-          widget.setOpaque(true);
-          widget.setBackground(frame.isSlowFrame() ? UIUtil.getLabelForeground() : UIUtil.getLabelDisabledForeground());
-          widget.setToolTipText(FPSDisplay.df.format(frame.elapsedMicros / 1000.0d) + "ms");
-          frameWidgets.put(frame, widget);
-          add(widget);
-        }
-
-        int pixelHeight = Math.round(frame.elapsedMicros / msPerPixel);
-        if (pixelHeight > height) {
-          pixelHeight = height;
-        }
-        pixelHeight = Math.max(1, pixelHeight);
-        widget.setPreferredSize(new Dimension(widgetWidth, pixelHeight));
-        widget.setBounds(x, height - pixelHeight, widgetWidth, pixelHeight);
-
-        // Add a gap between sets of frames.
-        if (frame.frameSetStart) {
-          x -= widgetWidth;
-        }
+    // Only fetch as many frames as can be shown.
+    final int maxFrames = x / (widgetWidth + inc) + 1;
+    for (FlutterFramesMonitor.FlutterFrameEvent frame : framesMonitor.getRecentFrames(maxFrames)) {
+      if (x + widgetWidth < 0) {
+        break;
+      }
+
+      x -= (widgetWidth + inc);
+
+      final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
+      JComponent widget = frameWidgets.get(frame);
+      if (widget != null) {
+        frames.remove(frame);
+      }
+      else {
+        widget = new JLabel();
+        widget.setOpaque(true);
+        widget.setBackground(frame.isSlowFrame() ? UIUtil.getLabelForeground() : UIUtil.getLabelDisabledForeground());
+        widget.setToolTipText(FPSDisplay.df.format(frame.elapsedMicros / 1000.0d) + "ms");
+        frameWidgets.put(frame, widget);
+        add(widget);
+      }
+
+      int pixelHeight = Math.round(frame.elapsedMicros / msPerPixel);
+      if (pixelHeight > height) {
+        pixelHeight = height;
+      }
+      pixelHeight = Math.max(1, pixelHeight);
+      widget.setPreferredSize(new Dimension(widgetWidth, pixelHeight));
+      widget.setBounds(x, height - pixelHeight, widgetWidth, pixelHeight);
+
+      // Add a gap between sets of frames.
+      if (frame.frameSetStart) {
+        x -= widgetWidth;
       }
     }
 
@@ -12,14 +12,15 @@ import com.intellij.ui.SideBorder;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
+import io.flutter.perf.HeapHistory;
 import io.flutter.perf.HeapMonitor;
 import io.flutter.perf.HeapMonitor.HeapListener;
-import io.flutter.perf.HeapMonitor.HeapSample;
 import io.flutter.perf.HeapMonitor.HeapSpace;
 import io.flutter.perf.HeapMonitor.IsolateObject;
 import io.flutter.run.daemon.FlutterApp;
 import org.dartlang.vm.service.element.IsolateRef;
 import org.dartlang.vm.service.element.VM;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
@@ -49,7 +50,8 @@ public class HeapDisplay extends JPanel {
     heapLabel.setForeground(UIUtil.getLabelDisabledForeground());
     heapLabel.setBorder(JBUI.Borders.empty(4));
 
-    final HeapState heapState = new HeapState(60 * 1000);
+    assert app.getPerfService() != null;
+    final HeapState heapState = new HeapState(60 * 1000, app.getPerfService().getHeapHistory());
     final HeapDisplay graph = new HeapDisplay(state -> {
       rssLabel.setText(heapState.getRSSSummary());
       heapLabel.setText(heapState.getHeapSummary());
@@ -79,9 +81,13 @@ public class HeapDisplay extends JPanel {
         graph.updateFrom(heapState);
         SwingUtilities.invokeLater(panel::repaint);
       }
+
+      @Override
+      public boolean isVisible() {
+        return panel.isShowing();
+      }
     };
 
-    assert app.getPerfService() != null;
     app.getPerfService().addHeapListener(listener);
     Disposer.register(parentDisposable, () -> app.getPerfService().removeHeapListener(listener));
 
@@ -115,7 +121,6 @@ public class HeapDisplay extends JPanel {
     this.heapState = state;
 
     if (!heapState.getSamples().isEmpty()) {
-      final HeapSample sample = heapState.getSamples().get(0);
       if (summaryCallback != null) {
         summaryCallback.updatedSummary(state);
       }
@@ -134,7 +139,7 @@ public class HeapDisplay extends JPanel {
     final int width = getWidth();
     final long now = System.currentTimeMillis();
 
-    final int maxDataSize = Math.round(heapState.getMaxHeapInBytes() / TEN_MB) * TEN_MB + TEN_MB;
+    final long maxDataSize = heapState.getMaxHeapInBytes() / TEN_MB * TEN_MB + TEN_MB;
 
     final Graphics2D graphics2D = (Graphics2D)g;
     graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -144,9 +149,9 @@ public class HeapDisplay extends JPanel {
 
     Path2D path = null;
 
-    for (HeapSample sample : heapState.getSamples()) {
-      final double x = width - (((double)(now - sample.getSampleTime())) / ((double)heapState.getMaxSampleSizeMs()) * width);
-      final double y = (double)height * sample.getBytes() / maxDataSize;
+    for (HeapHistory.Sample sample : heapState.getSamples()) {
+      final double x = width - (((double)(now - sample.timeMillis)) / ((double)heapState.getMaxSampleSizeMs()) * width);
+      final double y = (double)height * sample.getUsed() / maxDataSize;
 
       if (path == null) {
         path = new Path2D.Double();
@@ -157,32 +162,18 @@ public class HeapDisplay extends JPanel {
       }
     }
 
-    graphics2D.draw(path);
+    if (path != null) {
+      graphics2D.draw(path);
+    }
   }
 }
 
 /**
- * A fixed-length list of captured samples.
+ * The heap summary of an app, with its recent samples read from the app's {@link HeapHistory}.
+ * <p>
+ * The samples are recorded by the {@link HeapMonitor} before it notifies listeners, so each update
+ * reads the history rather than keeping a separate list.
  */
-class HeapSamples {
-  final LinkedList<HeapSample> samples = new LinkedList<>();
-  final int maxSampleSizeMs;
-
-  HeapSamples(int maxSampleSizeMs) {
-    this.maxSampleSizeMs = maxSampleSizeMs;
-  }
-
-  void add(HeapMonitor.HeapSample sample) {
-    samples.add(sample);
-
-    // Leave a little bit extra in the samples we trim off.
-    final long oldestTime = System.currentTimeMillis() - maxSampleSizeMs - 2000;
-    while (!samples.isEmpty() && samples.get(0).getSampleTime() < oldestTime) {
-      samples.removeFirst();
-    }
-  }
-}
-
 class HeapState implements HeapListener {
   private static final DecimalFormat df = new DecimalFormat();
   private static final DecimalFormat df1 = new DecimalFormat();
@@ -195,38 +186,41 @@ class HeapState implements HeapListener {
   private int rssBytes;
 
   // Running count of the max heap (in bytes).
-  private int heapMaxInBytes;
+  private long heapMaxInBytes;
 
-  private final HeapSamples samples;
-  private final Map<String, List<HeapSpace>> isolateHeaps = new HashMap<>();
+  private final int maxSampleSizeMs;
+  @NotNull private final HeapHistory history;
+  @NotNull private List<HeapHistory.Sample> samples = Collections.emptyList();
 
-  HeapState(int maxSampleSizeMs) {
-    samples = new HeapSamples(maxSampleSizeMs);
+  HeapState(int maxSampleSizeMs, @NotNull HeapHistory history) {
+    this.maxSampleSizeMs = maxSampleSizeMs;
+    this.history = history;
   }
 
   public int getMaxSampleSizeMs() {
-    return samples.maxSampleSizeMs;
+    return maxSampleSizeMs;
   }
 
-  public List<HeapSample> getSamples() {
-    return samples.samples;
+  @NotNull
+  public List<HeapHistory.Sample> getSamples() {
+    return samples;
   }
 
-  public int getMaxHeapInBytes() {
-    int max = heapMaxInBytes;
+  public long getMaxHeapInBytes() {
+    long max = heapMaxInBytes;
 
-    for (HeapSample sample : samples.samples) {
-      max = Math.max(max, sample.getBytes());
+    for (HeapHistory.Sample sample : samples) {
+      max = Math.max(max, sample.getUsed());
     }
 
     return max;
   }
 
-  private static String printMb(int bytes) {
+  private static String printMb(long bytes) {
     return df.format(bytes / (1024 * 1024.0)) + "MB";
   }
 
-  private static String printMb1(int bytes) {
+  private static String printMb1(long bytes) {
     return df1.format(bytes / (1024 * 1024.0)) + "MB";
   }
 
@@ -235,29 +229,24 @@ class HeapState implements HeapListener {
   }
 
   public String getHeapSummary() {
-    return printMb1(samples.samples.getLast().getBytes()) + " of " + printMb1(heapMaxInBytes);
+    return printMb1(samples.get(samples.size() - 1).getUsed()) + " of " + printMb1(heapMaxInBytes);
   }
 
   public String getSimpleHeapSummary() {
-    return printMb(samples.samples.getLast().getBytes());
+    return printMb(samples.get(samples.size() - 1).getUsed());
   }
 
-  void addSample(HeapSample sample) {
-    samples.add(sample);
+  private void updateSamples() {
+    // Leave a little bit extra in the samples we read.
+    samples = history.getSamples(System.currentTimeMillis() - maxSampleSizeMs - 2000);
   }
 
   @Override
   public void handleIsolatesInfo(VM vm, List<IsolateObject> isolates) {
-    int current = 0;
-    int total = 0;
-
-    isolateHeaps.clear();
+    long total = 0;
 
     for (IsolateObject isolate : isolates) {
-      isolateHeaps.put(isolate.getId(), isolate.getHeaps());
-
       for (HeapSpace heap : isolate.getHeaps()) {
-        current += heap.getUsed() + heap.getExternal();
         total += heap.getCapacity() + heap.getExternal();
       }
     }
@@ -265,21 +254,11 @@ class HeapState implements HeapListener {
     rssBytes = vm.getJson().get("_currentRSS").getAsInt();
     heapMaxInBytes = total;
 
-    addSample(new HeapSample(current, false));
+    updateSamples();
   }
 
   @Override
   public void handleGCEvent(IsolateRef isolateRef, HeapSpace newHeapSpace, HeapSpace oldHeapSpace) {
-    int current = 0;
-
-    isolateHeaps.put(isolateRef.getId(), new ArrayList<>(Arrays.asList(newHeapSpace, oldHeapSpace)));
-
-    for (List<HeapSpace> heaps : isolateHeaps.values()) {
-      for (HeapSpace heap : heaps) {
-        current += heap.getUsed() + heap.getExternal();
-      }
-    }
-
-    addSample(new HeapSample(current, true));
+    updateSamples();
   }
 }
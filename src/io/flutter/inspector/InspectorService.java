@@ -107,7 +107,7 @@ public class InspectorService implements Disposable {
       public void connectionClosed() {
         // TODO(jacobr): dispose?
       }
-    });
+    }, VmService.DEBUG_STREAM_ID, VmService.EXTENSION_STREAM_ID);
 
     vmService.streamListen(VmService.EXTENSION_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
 
@@ -325,8 +325,19 @@ public class InspectorService implements Disposable {
     @Override
     public void dispose() {
       lock.writeLock().lock();
-      invokeVoidServiceMethod("disposeGroup", groupName);
-      disposed = true;
+      if (!disposed) {
+        // Mark the group as disposed first so that its queued requests are
+        // cancelled instead of being sent for a group that is going away.
+        disposed = true;
+        if (isDaemonApiSupported) {
+          final Map<String, Object> params = new HashMap<>();
+          params.put("objectGroup", groupName);
+          getInspectorLibrary().addDisposeGroupRequest(this, () -> callServiceMethodDaemon("disposeGroup", params));
+        }
+        else {
+          getInspectorLibrary().evalDisposeGroup("WidgetInspectorService.instance.disposeGroup(\"" + groupName + "\")", this);
+        }
+      }
       lock.writeLock().unlock();
     }
 
@@ -443,14 +454,18 @@ public class InspectorService implements Disposable {
 
     // All calls to invokeServiceMethodDaemon bottom out to this call.
     CompletableFuture<JsonElement> invokeServiceMethodDaemon(String methodName, Map<String, Object> params) {
-      return getInspectorLibrary().addRequest(this, () -> getApp().callServiceExtension("ext.flutter.inspector." + methodName, params)
+      return getInspectorLibrary().addRequest(this, () -> callServiceMethodDaemon(methodName, params));
+    }
+
+    private CompletableFuture<JsonElement> callServiceMethodDaemon(String methodName, Map<String, Object> params) {
+      return getApp().callServiceExtension("ext.flutter.inspector." + methodName, params)
         .thenApply((JsonObject json) -> nullValueIfDisposed(() -> {
           if (json.has("errorMessage")) {
             String message = json.get("errorMessage").getAsString();
             throw new RuntimeException(methodName + " -- " + message);
           }
           return json.get("result");
-        })));
+        }));
     }
 
     CompletableFuture<JsonElement> invokeServiceMethodDaemon(String methodName, InspectorInstanceRef arg) {
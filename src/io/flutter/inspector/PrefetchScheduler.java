@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.common.collect.MapMaker;
+import com.intellij.openapi.Disposable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads data for tree rows in the background before the user expands them.
+ * <p>
+ * The tree passes in the items that are on screen, or about to be, in priority order. Only a
+ * few fetches run at a time so that prefetching doesn't hold up the requests the user is
+ * waiting on. Queued items that scroll out of view are dropped before their fetch starts.
+ * Fetches for items whose object group was disposed stop counting against the limit, as the
+ * group ignores their results.
+ * <p>
+ * Items are compared by identity. All methods must be called on the thread the callback
+ * executor runs tasks on.
+ */
+public class PrefetchScheduler<T> implements Disposable {
+  public interface Fetcher<T> {
+    /**
+     * Returns whether the item has data that is neither loaded nor loading.
+     */
+    boolean needsFetch(@NotNull T item);
+
+    /**
+     * Returns whether the item is stale, e.g. because its object group was disposed.
+     */
+    boolean isDisposed(@NotNull T item);
+
+    @NotNull
+    CompletableFuture<?> fetch(@NotNull T item);
+  }
+
+  public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+
+  @NotNull private final Fetcher<T> fetcher;
+  @NotNull private final Executor callbackExecutor;
+  private final int maxInFlight;
+
+  private final Deque<T> queue = new ArrayDeque<>();
+  private final Set<T> inFlight = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * The fetches started for each item, used to tell whether a later use was a hit. Items are
+   * held weakly so that nodes from trees that have been replaced can be collected.
+   */
+  private final Map<T, CompletableFuture<?>> prefetched = new MapMaker().weakKeys().makeMap();
+
+  private int started;
+  private int cancelled;
+  private int hits;
+  private int late;
+  private int misses;
+  private boolean disposed;
+
+  public PrefetchScheduler(@NotNull Fetcher<T> fetcher, @NotNull Executor callbackExecutor) {
+    this(fetcher, callbackExecutor, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public PrefetchScheduler(@NotNull Fetcher<T> fetcher, @NotNull Executor callbackExecutor, int maxInFlight) {
+    this.fetcher = fetcher;
+    this.callbackExecutor = callbackExecutor;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Replaces the items to prefetch, most important first.
+   * <p>
+   * Queued items that aren't in the new list are dropped.
+   */
+  public void setTargets(@NotNull List<T> items) {
+    if (disposed) {
+      return;
+    }
+    final Set<T> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (T item : items) {
+      if (!inFlight.contains(item) && !fetcher.isDisposed(item) && fetcher.needsFetch(item)) {
+        targets.add(item);
+      }
+    }
+    for (T item : queue) {
+      if (!targets.contains(item)) {
+        cancelled++;
+      }
+    }
+    queue.clear();
+    for (T item : items) {
+      if (targets.remove(item)) {
+        queue.add(item);
+      }
+    }
+    inFlight.removeIf(fetcher::isDisposed);
+    startFetches();
+  }
+
+  /**
+   * Records that the user needed the item's data, to track how often it was prefetched.
+   */
+  public void recordUse(@NotNull T item) {
+    final CompletableFuture<?> future = prefetched.get(item);
+    if (future == null) {
+      misses++;
+    }
+    else if (future.isDone()) {
+      hits++;
+    }
+    else {
+      late++;
+    }
+  }
+
+  /**
+   * Returns the number of prefetches started.
+   */
+  public int getStartedCount() {
+    return started;
+  }
+
+  /**
+   * Returns the number of queued prefetches dropped before they started.
+   */
+  public int getCancelledCount() {
+    return cancelled;
+  }
+
+  /**
+   * Returns the number of uses whose data had already been prefetched.
+   */
+  public int getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of uses whose prefetch was still in progress.
+   */
+  public int getLateCount() {
+    return late;
+  }
+
+  /**
+   * Returns the number of uses whose data wasn't prefetched.
+   */
+  public int getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Returns the fraction of uses whose data had already been prefetched, or 0 if there were none.
+   */
+  public double getHitRate() {
+    final int uses = hits + late + misses;
+    return uses == 0 ? 0 : (double)hits / uses;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("prefetch: started %d, cancelled %d, hits %d, late %d, misses %d, hit rate %.2f",
+                         started, cancelled, hits, late, misses, getHitRate());
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+    queue.clear();
+    inFlight.clear();
+  }
+
+  private void startFetches() {
+    while (!disposed && inFlight.size() < maxInFlight && !queue.isEmpty()) {
+      final T item = queue.poll();
+      if (fetcher.isDisposed(item) || !fetcher.needsFetch(item)) {
+        continue;
+      }
+      final CompletableFuture<?> future = fetcher.fetch(item);
+      started++;
+      prefetched.put(item, future);
+      if (future.isDone()) {
+        continue;
+      }
+      inFlight.add(item);
+      future.whenComplete((value, throwable) -> callbackExecutor.execute(() -> {
+        if (inFlight.remove(item)) {
+          startFetches();
+        }
+      }));
+    }
+  }
+}
@@ -5,7 +5,6 @@
  */
 package io.flutter.logging;
 
-import com.google.common.collect.ImmutableList;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
@@ -21,7 +20,6 @@ import org.dartlang.vm.service.element.Event;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
 
@@ -73,8 +71,16 @@ public class FlutterLog {
 
   private final FlutterLogEntryParser logEntryParser = new FlutterLogEntryParser();
 
-  // TODO(pq): consider limiting size.
-  private final List<FlutterLogEntry> entries = new ArrayList<>();
+  /**
+   * How much of the log evicted from memory is kept in temp files, to be read back by windowed reads.
+   */
+  private static final long MAX_SPILL_BYTES = 128 * 1024 * 1024;
+
+  private final FlutterLogStore store = new FlutterLogStore();
+
+  public FlutterLog() {
+    store.setMaxSpillBytes(MAX_SPILL_BYTES);
+  }
 
   public static boolean isLoggingEnabled() {
     return FlutterSettings.getInstance().useFlutterLogView();
@@ -89,12 +95,21 @@ public class FlutterLog {
   }
 
   public void clear() {
-    // TODO(pq): add locking.
-    entries.clear();
+    store.clear();
+  }
+
+  /**
+   * Return up to count entries, oldest first, starting at the given sequence number (or the oldest
+   * entry still available after it). Entries that were spilled to disk are read back.
+   */
+  @NotNull
+  public List<FlutterLogEntry> getEntries(int fromSequenceNumber, int count) {
+    return store.getEntries(fromSequenceNumber, count);
   }
 
-  public List<FlutterLogEntry> getEntries() {
-    return ImmutableList.copyOf(entries);
+  @NotNull
+  public FlutterLogStore getStore() {
+    return store;
   }
 
   public void removeListener(@NotNull Listener listener) {
@@ -103,8 +118,7 @@ public class FlutterLog {
 
   private void onEntry(@Nullable FlutterLogEntry entry) {
     if (entry != null) {
-      entries.add(entry);
-      entry.setSequenceNumber(entries.size());
+      store.add(entry);
       dispatcher.getMulticaster().onEvent(entry);
     }
   }
@@ -134,7 +148,7 @@ public class FlutterLog {
       public void connectionClosed() {
         onVmConnectionClosed();
       }
-    });
+    }, LOGGING_STREAM_ID, VmService.GC_STREAM_ID);
 
     // Listen for logging events (note: no way to unregister).
     vmService.streamListen(LOGGING_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
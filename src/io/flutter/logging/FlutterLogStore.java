@@ -0,0 +1,617 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * A bounded store for log entries.
+ * <p>
+ * Entries are kept in fixed size segments. Once the store holds more than
+ * {@link #getMaxEntries()} entries or {@link #getMaxBytes()} (estimated) bytes,
+ * the oldest segment is evicted. If spilling is enabled, evicted segments are
+ * written to memory-mapped temp files and read back by windowed reads until the
+ * spill limit is reached, after which the oldest spilled segments are deleted.
+ * Spilled segments are read back without holding the store's lock so that
+ * appends don't wait on disk I/O.
+ * <p>
+ * Each in-memory segment indexes its entries by log level and the (lower case)
+ * trigrams of their text so that searches can skip segments and entries without
+ * looking at every message.
+ */
+public class FlutterLogStore {
+  private static final Logger LOG = Logger.getInstance(FlutterLogStore.class);
+
+  public static final int DEFAULT_MAX_ENTRIES = 50000;
+  public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+  static final int SEGMENT_SIZE = 1024;
+
+  private static final FlutterLog.Level[] LEVELS = FlutterLog.Level.values();
+
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+  private long maxBytes = DEFAULT_MAX_BYTES;
+
+  /**
+   * The maximum size of the spill files, or 0 if spilling is disabled.
+   */
+  private long maxSpillBytes;
+
+  /**
+   * Counts for the in-memory segments.
+   */
+  private int entryCount;
+  private long byteCount;
+
+  private long spilledByteCount;
+  private int nextSequenceNumber = 1;
+
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Set the limits for the entries held in memory. Must be at least one segment.
+   */
+  synchronized void setLimits(int maxEntries, long maxBytes) {
+    assert (maxEntries >= SEGMENT_SIZE);
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    evictIfNeeded();
+  }
+
+  /**
+   * Enable writing evicted segments to temp files, keeping up to the given number of bytes on disk.
+   * Pass 0 to disable spilling and delete any spilled segments.
+   */
+  public synchronized void setMaxSpillBytes(long maxSpillBytes) {
+    this.maxSpillBytes = maxSpillBytes;
+    trimSpilled();
+  }
+
+  /**
+   * Append the entry, assigning its sequence number.
+   */
+  public synchronized void add(@NotNull FlutterLogEntry entry) {
+    entry.setSequenceNumber(nextSequenceNumber++);
+    Segment last = segments.peekLast();
+    if (last == null || last.isFull() || last.isSpilled()) {
+      last = new Segment(entry.getSequenceNumber());
+      segments.addLast(last);
+    }
+    entryCount++;
+    byteCount += last.add(entry);
+    evictIfNeeded();
+  }
+
+  public synchronized void clear() {
+    for (Segment segment : segments) {
+      segment.deleteSpillFile();
+    }
+    segments.clear();
+    entryCount = 0;
+    byteCount = 0;
+    spilledByteCount = 0;
+    nextSequenceNumber = 1;
+  }
+
+  /**
+   * Return the number of entries held in memory.
+   */
+  public synchronized int size() {
+    return entryCount;
+  }
+
+  /**
+   * Return the sequence number of the oldest entry still available (in memory or spilled), or
+   * the next sequence number if the store is empty.
+   */
+  public synchronized int getFirstSequenceNumber() {
+    final Segment first = segments.peekFirst();
+    return first == null ? nextSequenceNumber : first.firstSequenceNumber;
+  }
+
+  /**
+   * Return the sequence number the next entry will be given.
+   */
+  public synchronized int getNextSequenceNumber() {
+    return nextSequenceNumber;
+  }
+
+  /**
+   * Return up to count entries starting at the given sequence number, reading spilled segments
+   * back if needed.
+   */
+  @NotNull
+  public List<FlutterLogEntry> getEntries(int fromSequenceNumber, int count) {
+    // Each part is either a list of in-memory entries or a spilled segment to read back.
+    final List<Object> parts = new ArrayList<>();
+    synchronized (this) {
+      int remaining = count;
+      for (Segment segment : segments) {
+        if (remaining <= 0) {
+          break;
+        }
+        if (segment.firstSequenceNumber + segment.size() <= fromSequenceNumber) {
+          continue;
+        }
+        final int start = Math.max(0, fromSequenceNumber - segment.firstSequenceNumber);
+        final int end = start + Math.min(segment.size() - start, remaining);
+        if (segment.isSpilled()) {
+          parts.add(new SpilledRange(segment, start, end));
+        }
+        else {
+          parts.add(new ArrayList<>(Arrays.asList(segment.entries).subList(start, end)));
+        }
+        remaining -= end - start;
+      }
+    }
+
+    final List<FlutterLogEntry> result = new ArrayList<>(Math.min(count, SEGMENT_SIZE));
+    for (Object part : parts) {
+      if (part instanceof SpilledRange) {
+        final SpilledRange range = (SpilledRange)part;
+        final FlutterLogEntry[] entries = range.segment.loadSpilled();
+        result.addAll(Arrays.asList(entries).subList(Math.min(range.start, entries.length), Math.min(range.end, entries.length)));
+      }
+      else {
+        //noinspection unchecked
+        result.addAll((List<FlutterLogEntry>)part);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Search the in-memory entries for those accepted by the given filter, passing the matches in
+   * each segment to the consumer, oldest first.
+   * <p>
+   * The store is only locked while a single segment is searched so that entries can be added
+   * while a long search runs. The search stops early once isCancelled returns true.
+   *
+   * @return the sequence number of the first entry that was not searched (because it was added
+   * after the search started)
+   */
+  public int search(@NotNull FlutterLogTree.EntryFilter filter,
+                    @NotNull BooleanSupplier isCancelled,
+                    @NotNull Consumer<List<FlutterLogEntry>> consumer) {
+    final List<Segment> snapshot;
+    final int endSequenceNumber;
+    synchronized (this) {
+      snapshot = new ArrayList<>(segments);
+      endSequenceNumber = nextSequenceNumber;
+    }
+    final int[] queryTrigrams = getQueryTrigrams(filter);
+    for (Segment segment : snapshot) {
+      if (isCancelled.getAsBoolean()) {
+        break;
+      }
+      final List<FlutterLogEntry> matches = new ArrayList<>();
+      synchronized (this) {
+        // Evicted or spilled since the search started.
+        if (segment.isSpilled() || !segments.contains(segment)) {
+          continue;
+        }
+        segment.collectMatches(filter, queryTrigrams, endSequenceNumber - segment.firstSequenceNumber, matches);
+      }
+      if (!matches.isEmpty()) {
+        consumer.accept(matches);
+      }
+    }
+    return endSequenceNumber;
+  }
+
+  private void evictIfNeeded() {
+    while (entryCount > maxEntries || (byteCount > maxBytes && countInMemorySegments() > 1)) {
+      final Segment oldest = firstInMemorySegment();
+      if (oldest == null) {
+        break;
+      }
+      entryCount -= oldest.size();
+      byteCount -= oldest.byteCount;
+      if (maxSpillBytes > 0 && oldest.spill()) {
+        spilledByteCount += oldest.spillFileLength;
+      }
+      else {
+        segments.remove(oldest);
+      }
+    }
+    trimSpilled();
+  }
+
+  private void trimSpilled() {
+    while (spilledByteCount > maxSpillBytes) {
+      final Segment oldest = segments.peekFirst();
+      if (oldest == null || !oldest.isSpilled()) {
+        break;
+      }
+      segments.removeFirst();
+      spilledByteCount -= oldest.spillFileLength;
+      oldest.deleteSpillFile();
+    }
+  }
+
+  @Nullable
+  private Segment firstInMemorySegment() {
+    for (Segment segment : segments) {
+      if (!segment.isSpilled()) {
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  private int countInMemorySegments() {
+    int count = 0;
+    for (Segment segment : segments) {
+      if (!segment.isSpilled()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @NotNull
+  private static int[] getQueryTrigrams(@NotNull FlutterLogTree.EntryFilter filter) {
+    final String requiredText = filter.getRequiredText();
+    return requiredText == null ? new int[0] : trigrams(requiredText.toLowerCase(Locale.ROOT));
+  }
+
+  private static long estimateBytes(@NotNull FlutterLogEntry entry) {
+    // Object headers and fields, plus two bytes per char; category strings are mostly shared.
+    return 64 + 2L * entry.getMessage().length();
+  }
+
+  /**
+   * The estimated size of a new trigram posting list: the list and its initial array, plus the
+   * index's key, value and slot overhead.
+   */
+  private static final long POSTING_LIST_BYTES = 80;
+
+  /**
+   * The estimated size of each offset added to a posting list, allowing for unused capacity.
+   */
+  private static final long POSTING_BYTES = 6;
+
+  private static int levelOrdinal(int levelValue) {
+    return FlutterLog.Level.forValue(levelValue).ordinal();
+  }
+
+  /**
+   * Return the distinct trigrams of the given text, each hashed to an int. Distinct trigrams may
+   * share a hash, which only makes the index return extra candidates.
+   */
+  @NotNull
+  static int[] trigrams(@NotNull String text) {
+    if (text.length() < 3) {
+      return new int[0];
+    }
+    final int[] result = new int[text.length() - 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (text.charAt(i) * 31 + text.charAt(i + 1)) * 31 + text.charAt(i + 2);
+    }
+    Arrays.sort(result);
+    int count = 0;
+    for (int i = 0; i < result.length; i++) {
+      if (i == 0 || result[i] != result[i - 1]) {
+        result[count++] = result[i];
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * The entries from start (inclusive) to end (exclusive) of a spilled segment.
+   */
+  private static class SpilledRange {
+    final Segment segment;
+    final int start;
+    final int end;
+
+    SpilledRange(Segment segment, int start, int end) {
+      this.segment = segment;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * A segment of up to {@link #SEGMENT_SIZE} entries.
+   * <p>
+   * Once spilled, a segment doesn't change except for its spill file being deleted, so it may be
+   * read back without holding the store's lock.
+   */
+  private static class Segment {
+    final int firstSequenceNumber;
+
+    /**
+     * The entries, or null once the segment has been spilled.
+     */
+    @Nullable FlutterLogEntry[] entries = new FlutterLogEntry[SEGMENT_SIZE];
+    int size;
+    long byteCount;
+
+    /**
+     * The number of entries at each level.
+     */
+    final int[] levelCounts = new int[LEVELS.length];
+
+    /**
+     * The level ordinal of each entry. Released when the segment is spilled.
+     */
+    byte[] levels = new byte[SEGMENT_SIZE];
+
+    /**
+     * The offsets of the entries whose lower case message or category contains each trigram.
+     * Released when the segment is spilled.
+     */
+    TIntObjectHashMap<TIntArrayList> trigramIndex = new TIntObjectHashMap<>();
+
+    @Nullable volatile File spillFile;
+    long spillFileLength;
+
+    Segment(int firstSequenceNumber) {
+      this.firstSequenceNumber = firstSequenceNumber;
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean isFull() {
+      return size == SEGMENT_SIZE;
+    }
+
+    boolean isSpilled() {
+      return entries == null;
+    }
+
+    /**
+     * Add the entry and index it, returning the estimated number of bytes that added, including
+     * the index.
+     */
+    long add(@NotNull FlutterLogEntry entry) {
+      assert entries != null;
+      final int ordinal = levelOrdinal(entry.getLevel());
+      entries[size] = entry;
+      levels[size] = (byte)ordinal;
+      levelCounts[ordinal]++;
+      final long bytes = estimateBytes(entry) +
+                         indexTrigrams(entry.getMessage().toLowerCase(Locale.ROOT)) +
+                         indexTrigrams(entry.getCategory().toLowerCase(Locale.ROOT));
+      byteCount += bytes;
+      size++;
+      return bytes;
+    }
+
+    /**
+     * Add the current offset to the posting list of each trigram of the text, returning the
+     * estimated number of bytes that added to the index.
+     */
+    private long indexTrigrams(@NotNull String text) {
+      long bytes = 0;
+      for (int trigram : trigrams(text)) {
+        TIntArrayList offsets = trigramIndex.get(trigram);
+        if (offsets == null) {
+          offsets = new TIntArrayList(4);
+          trigramIndex.put(trigram, offsets);
+          bytes += POSTING_LIST_BYTES;
+        }
+        // Offsets are added in order, so checking the last one is enough to avoid duplicates.
+        if (offsets.isEmpty() || offsets.get(offsets.size() - 1) != size) {
+          offsets.add(size);
+          bytes += POSTING_BYTES;
+        }
+      }
+      return bytes;
+    }
+
+    /**
+     * Return the sorted offsets of the entries that contain all the given trigrams, or null if
+     * there are no trigrams to narrow the search by.
+     */
+    @Nullable
+    TIntArrayList findCandidates(@NotNull int[] queryTrigrams) {
+      if (queryTrigrams.length == 0) {
+        return null;
+      }
+      // Intersect the posting lists, starting with the shortest.
+      final TIntArrayList[] postings = new TIntArrayList[queryTrigrams.length];
+      for (int i = 0; i < queryTrigrams.length; i++) {
+        postings[i] = trigramIndex.get(queryTrigrams[i]);
+        if (postings[i] == null) {
+          return new TIntArrayList(0);
+        }
+      }
+      Arrays.sort(postings, Comparator.comparingInt(TIntArrayList::size));
+      TIntArrayList result = postings[0];
+      for (int i = 1; i < postings.length && !result.isEmpty(); i++) {
+        result = intersect(result, postings[i]);
+      }
+      return result;
+    }
+
+    @NotNull
+    private static TIntArrayList intersect(@NotNull TIntArrayList a, @NotNull TIntArrayList b) {
+      final TIntArrayList result = new TIntArrayList(Math.min(a.size(), b.size()));
+      int i = 0;
+      int j = 0;
+      while (i < a.size() && j < b.size()) {
+        final int x = a.getQuick(i);
+        final int y = b.getQuick(j);
+        if (x == y) {
+          result.add(x);
+          i++;
+          j++;
+        }
+        else if (x < y) {
+          i++;
+        }
+        else {
+          j++;
+        }
+      }
+      return result;
+    }
+
+    boolean hasLevelAtLeast(@NotNull FlutterLog.Level level) {
+      for (int i = level.ordinal(); i < levelCounts.length; i++) {
+        if (levelCounts[i] > 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Add the entries among the first limit entries of the in-memory segment that the filter
+     * accepts to the result, using the level and trigram indexes to skip entries that cannot match.
+     */
+    void collectMatches(@NotNull FlutterLogTree.EntryFilter filter,
+                        @NotNull int[] queryTrigrams,
+                        int limit,
+                        @NotNull List<FlutterLogEntry> result) {
+      final FlutterLog.Level minLevel = filter.getMinLevel();
+      if (!hasLevelAtLeast(minLevel)) {
+        return;
+      }
+      final TIntArrayList candidates = findCandidates(queryTrigrams);
+      if (candidates != null && candidates.isEmpty()) {
+        return;
+      }
+      assert entries != null;
+      final int end = Math.min(size, limit);
+      final int candidateCount = candidates == null ? end : candidates.size();
+      for (int i = 0; i < candidateCount; i++) {
+        final int offset = candidates == null ? i : candidates.getQuick(i);
+        if (offset >= end) {
+          break;
+        }
+        if (levels[offset] >= minLevel.ordinal() && filter.accept(entries[offset])) {
+          result.add(entries[offset]);
+        }
+      }
+    }
+
+    /**
+     * Read the entries of the spilled segment back from its spill file. Return no entries if the
+     * file has been deleted.
+     */
+    @NotNull
+    FlutterLogEntry[] loadSpilled() {
+      final File spillFile = this.spillFile;
+      if (spillFile == null) {
+        return new FlutterLogEntry[0];
+      }
+      final FlutterLogEntry[] result = new FlutterLogEntry[size];
+      try (RandomAccessFile file = new RandomAccessFile(spillFile, "r");
+           FileChannel channel = file.getChannel()) {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, spillFileLength);
+        for (int i = 0; i < size; i++) {
+          final long timestamp = buffer.getLong();
+          final int level = buffer.getInt();
+          final String category = readString(buffer);
+          final String message = readString(buffer);
+          result[i] = new FlutterLogEntry(timestamp, category, level, message);
+          result[i].setSequenceNumber(firstSequenceNumber + i);
+        }
+      }
+      catch (IOException e) {
+        if (this.spillFile == null) {
+          // Deleted while it was being read.
+          return new FlutterLogEntry[0];
+        }
+        LOG.warn("Unable to read spilled log entries", e);
+        for (int i = 0; i < size; i++) {
+          result[i] = new FlutterLogEntry(0, "", FlutterLog.Level.WARNING.value, "<log entry unavailable>");
+          result[i].setSequenceNumber(firstSequenceNumber + i);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Write the entries to a memory-mapped temp file and release them along with the indexes.
+     * Return false if the segment could not be written, in which case it
+     * should be dropped.
+     */
+    boolean spill() {
+      assert entries != null;
+      long length = 0;
+      for (int i = 0; i < size; i++) {
+        length += 8 + 4 + 4 + 2L * entries[i].getCategory().length() + 4 + 2L * entries[i].getMessage().length();
+      }
+      try {
+        final File file = FileUtil.createTempFile("flutter-log", ".segment", true);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw");
+             FileChannel channel = out.getChannel()) {
+          final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+          for (int i = 0; i < size; i++) {
+            buffer.putLong(entries[i].getTimestamp());
+            buffer.putInt(entries[i].getLevel());
+            writeString(buffer, entries[i].getCategory());
+            writeString(buffer, entries[i].getMessage());
+          }
+        }
+        spillFileLength = length;
+        spillFile = file;
+        entries = null;
+        levels = null;
+        trigramIndex = null;
+        return true;
+      }
+      catch (IOException e) {
+        LOG.warn("Unable to spill log entries", e);
+        return false;
+      }
+    }
+
+    void deleteSpillFile() {
+      if (spillFile != null && !spillFile.delete()) {
+        // A mapping may still be open (e.g. on Windows); try again on exit.
+        spillFile.deleteOnExit();
+      }
+      spillFile = null;
+    }
+
+    private static void writeString(@NotNull MappedByteBuffer buffer, @NotNull String value) {
+      buffer.putInt(value.length());
+      for (int i = 0; i < value.length(); i++) {
+        buffer.putChar(value.charAt(i));
+      }
+    }
+
+    @NotNull
+    private static String readString(@NotNull MappedByteBuffer buffer) {
+      final int length = buffer.getInt();
+      final char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = buffer.getChar();
+      }
+      return new String(chars);
+    }
+  }
+}
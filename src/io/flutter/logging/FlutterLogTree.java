@@ -36,7 +36,6 @@ import javax.swing.table.TableColumn;
 import javax.swing.table.TableModel;
 import javax.swing.table.TableRowSorter;
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
@@ -47,6 +46,8 @@ import java.awt.event.MouseListener;
 import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
@@ -59,21 +60,6 @@ public class FlutterLogTree extends TreeTable {
 
   private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS");
   private static final Logger LOG = Logger.getInstance(FlutterLogTree.class);
-  @NotNull
-  private static final Map<FlutterLog.Level, String> LOG_LEVEL_FILTER;
-
-  static {
-    LOG_LEVEL_FILTER = new HashMap<>();
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.NONE, "NONE|FINEST|FINER|FINE|CONFIG|INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.FINEST, "FINEST|FINER|FINE|CONFIG|INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.FINER, "FINER|FINE|CONFIG|INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.FINE, "FINE|CONFIG|INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.CONFIG, "CONFIG|INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.INFO, "INFO|WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.WARNING, "WARNING|SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.SEVERE, "SEVERE|SHOUT");
-    LOG_LEVEL_FILTER.put(FlutterLog.Level.SHOUT, "SHOUT");
-  }
 
   private static class ColumnModel {
 
@@ -337,6 +323,21 @@ public class FlutterLogTree extends TreeTable {
       void updated();
     }
 
+    /**
+     * How long appended entries are held so that a burst of them is added to the tree at once.
+     */
+    static final int FLUSH_DELAY_MS = 32;
+
+    /**
+     * The most nodes added in a single pass on the UI thread; the rest are added in later passes.
+     */
+    static final int MAX_NODES_PER_FLUSH = 2000;
+
+    /**
+     * How many entries logged before the model was created are read from the log at a time.
+     */
+    static final int LOAD_WINDOW_SIZE = FlutterLogStore.SEGMENT_SIZE;
+
     @NotNull
     private final ColumnModel columns;
     @NotNull
@@ -354,6 +355,32 @@ public class FlutterLogTree extends TreeTable {
     @NotNull
     private final FlutterLogPreferences logPreferences;
 
+    /**
+     * Entries waiting to be added to the tree. Synchronize on this list before accessing it,
+     * {@link #clearRequested} or {@link #flushScheduled}.
+     */
+    private final List<FlutterLogEntry> pendingEntries = new ArrayList<>();
+    private boolean clearRequested;
+    private boolean flushScheduled;
+
+    // Only accessed on the UI thread.
+    private int lastFlushSize;
+    private int flushCount;
+    private long flushedEntryCount;
+
+    /**
+     * Appended entries numbered below this were logged before the model was created and are
+     * loaded by {@link #loadEarlierEntries}. Reset to 0 when the log is cleared, since that
+     * restarts the numbering. Guarded by pendingEntries.
+     */
+    private int firstAppendedSequenceNumber;
+
+    /**
+     * Incremented when the log is cleared, so that earlier entries loaded before then are dropped.
+     * Guarded by pendingEntries.
+     */
+    private int clearCount;
+
     public TreeModel(@NotNull FlutterApp app,
                      @NotNull EntryModel entryModel,
                      @NotNull Disposable parent) {
@@ -421,10 +448,24 @@ public class FlutterLogTree extends TreeTable {
       columns.init(treeTable);
     }
 
+    /**
+     * Removes all entries. Entries appended before this call and not yet shown are dropped;
+     * entries appended after it are kept.
+     */
     public void clearEntries() {
       log.clear();
-      getRoot().removeAllChildren();
-      update();
+      synchronized (pendingEntries) {
+        pendingEntries.clear();
+        clearRequested = true;
+        firstAppendedSequenceNumber = 0;
+        clearCount++;
+      }
+      if (ApplicationManager.getApplication().isDispatchThread()) {
+        flushPendingEntries();
+      }
+      else {
+        scheduleFlush(0);
+      }
     }
 
     public void appendNodes(List<FlutterLogEntry> entries) {
@@ -432,11 +473,178 @@ public class FlutterLogTree extends TreeTable {
         return;
       }
 
-      uiThreadAlarm.addRequest(() -> {
-        final MutableTreeNode root = getRoot();
-        entries.forEach(entry -> insertNodeInto(new FlutterEventNode(entry), root, root.getChildCount()));
-        update();
-      }, 10);
+      synchronized (pendingEntries) {
+        for (FlutterLogEntry entry : entries) {
+          if (entry.getSequenceNumber() >= firstAppendedSequenceNumber) {
+            pendingEntries.add(entry);
+          }
+        }
+      }
+      scheduleFlush(FLUSH_DELAY_MS);
+    }
+
+    /**
+     * Adds the entries that were logged before the model was created, up to the number the log
+     * keeps in memory, ahead of the appended ones.
+     * <p>
+     * They are read from the log a window at a time on a pooled thread, since entries that were
+     * spilled to disk are read back.
+     */
+    void loadEarlierEntries() {
+      final int end = log.getStore().getNextSequenceNumber();
+      final int expectedClearCount;
+      synchronized (pendingEntries) {
+        firstAppendedSequenceNumber = end;
+        expectedClearCount = clearCount;
+      }
+      final int start = Math.max(log.getStore().getFirstSequenceNumber(), end - log.getStore().getMaxEntries());
+      if (start >= end) {
+        return;
+      }
+
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        final List<FlutterLogEntry> earlier = new ArrayList<>(end - start);
+        int from = start;
+        while (from < end) {
+          final List<FlutterLogEntry> window = log.getEntries(from, Math.min(LOAD_WINDOW_SIZE, end - from));
+          if (window.isEmpty()) {
+            break;
+          }
+          for (FlutterLogEntry entry : window) {
+            if (entry.getSequenceNumber() < end) {
+              earlier.add(entry);
+            }
+          }
+          from = window.get(window.size() - 1).getSequenceNumber() + 1;
+        }
+        if (!earlier.isEmpty() && !uiThreadAlarm.isDisposed()) {
+          uiThreadAlarm.addRequest(() -> prependEntries(earlier, expectedClearCount), 0);
+        }
+      });
+    }
+
+    private void prependEntries(@NotNull List<FlutterLogEntry> earlier, int expectedClearCount) {
+      synchronized (pendingEntries) {
+        if (clearCount != expectedClearCount) {
+          return;
+        }
+      }
+      final LogRootTreeNode root = getRoot();
+      final int room = log.getStore().getMaxEntries() - root.getChildCount();
+      if (room <= 0) {
+        return;
+      }
+      final List<FlutterLogEntry> added = earlier.size() > room ? earlier.subList(earlier.size() - room, earlier.size()) : earlier;
+      final int[] insertedIndices = new int[added.size()];
+      for (int i = 0; i < added.size(); i++) {
+        root.insert(new FlutterEventNode(added.get(i)), i);
+        insertedIndices[i] = i;
+      }
+      nodesWereInserted(root, insertedIndices);
+      notifyUpdated();
+    }
+
+    private void scheduleFlush(int delay) {
+      synchronized (pendingEntries) {
+        if (flushScheduled) {
+          return;
+        }
+        flushScheduled = true;
+      }
+      if (!uiThreadAlarm.isDisposed()) {
+        uiThreadAlarm.addRequest(this::flushPendingEntries, delay);
+      }
+    }
+
+    /**
+     * Adds the pending entries to the tree, notifying listeners of just the inserted (and
+     * trimmed) rows rather than reloading the whole model.
+     */
+    private void flushPendingEntries() {
+      final List<FlutterLogEntry> batch;
+      final boolean clear;
+      final boolean hasMore;
+      synchronized (pendingEntries) {
+        clear = clearRequested;
+        clearRequested = false;
+        final List<FlutterLogEntry> head = pendingEntries.subList(0, Math.min(pendingEntries.size(), MAX_NODES_PER_FLUSH));
+        batch = new ArrayList<>(head);
+        head.clear();
+        hasMore = !pendingEntries.isEmpty();
+        flushScheduled = hasMore;
+      }
+      if (hasMore) {
+        // Give the UI thread a chance to handle other events before the next pass.
+        uiThreadAlarm.addRequest(this::flushPendingEntries, 0);
+      }
+
+      final LogRootTreeNode root = getRoot();
+      if (clear) {
+        root.removeAllChildren();
+        reload(root);
+      }
+      if (batch.isEmpty()) {
+        if (clear) {
+          notifyUpdated();
+        }
+        return;
+      }
+
+      // Keep no more rows than the log keeps entries in memory.
+      final int maxEntries = log.getStore().getMaxEntries();
+      final List<FlutterLogEntry> added = batch.size() > maxEntries ? batch.subList(batch.size() - maxEntries, batch.size()) : batch;
+      final int removeCount = Math.min(root.getChildCount(), root.getChildCount() + added.size() - maxEntries);
+      if (removeCount > 0) {
+        final int[] removedIndices = new int[removeCount];
+        final Object[] removedNodes = new Object[removeCount];
+        for (int i = 0; i < removeCount; i++) {
+          removedIndices[i] = i;
+          removedNodes[i] = root.getChildAt(i);
+        }
+        for (int i = 0; i < removeCount; i++) {
+          root.remove(0);
+        }
+        nodesWereRemoved(root, removedIndices, removedNodes);
+      }
+
+      final int firstIndex = root.getChildCount();
+      final int[] insertedIndices = new int[added.size()];
+      for (int i = 0; i < added.size(); i++) {
+        root.add(new FlutterEventNode(added.get(i)));
+        insertedIndices[i] = firstIndex + i;
+      }
+      nodesWereInserted(root, insertedIndices);
+
+      lastFlushSize = batch.size();
+      flushCount++;
+      flushedEntryCount += batch.size();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Flushed " + lastFlushSize + " log entries; " + getAverageFlushSize() + " per flush on average");
+      }
+      notifyUpdated();
+    }
+
+    private void notifyUpdated() {
+      if (updateCallback != null) {
+        updateCallback.updated();
+      }
+      if (autoScrollToEnd) {
+        uiThreadAlarm.addRequest(this::scrollToEnd, 100);
+      }
+    }
+
+    /**
+     * Returns the number of entries added to the tree by the most recent flush.
+     */
+    int getLastFlushSize() {
+      return lastFlushSize;
+    }
+
+    /**
+     * Returns the mean number of entries coalesced into each flush.
+     */
+    double getAverageFlushSize() {
+      return flushCount == 0 ? 0 : (double)flushedEntryCount / flushCount;
     }
 
     public boolean shouldShowTimestamps() {
@@ -504,36 +712,100 @@ public class FlutterLogTree extends TreeTable {
   }
 
   public static class EntryFilter {
+    /**
+     * Characters with a special meaning in a regular expression.
+     */
+    private static final String REGEX_META_CHARACTERS = "\\.[]{}()*+?^$|";
+
     @NotNull
     private final FlutterLogFilterPanel.FilterParam filterParam;
 
+    /**
+     * The expression (lower cased unless matching case), or null to accept entries of any text.
+     */
+    @Nullable
+    private final String standardText;
+
+    /**
+     * The compiled expression if it is a regex, or null if it is not a regex or is invalid.
+     */
+    @Nullable
+    private final Pattern pattern;
+
+    private final boolean valid;
+
     public EntryFilter(@NotNull FlutterLogFilterPanel.FilterParam filterParam) {
       this.filterParam = filterParam;
+      final String text = StringUtils.isEmpty(filterParam.getExpression()) ? null : filterParam.getExpression();
+      standardText = text == null || filterParam.isMatchCase() ? text : text.toLowerCase(Locale.ROOT);
+      Pattern compiled = null;
+      if (text != null && filterParam.isRegex()) {
+        try {
+          compiled = Pattern.compile(text, filterParam.isMatchCase()
+                                           ? Pattern.DOTALL
+                                           : Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        }
+        catch (PatternSyntaxException e) {
+          // Leave the pattern null; the filter is invalid.
+        }
+      }
+      pattern = compiled;
+      valid = text == null || !filterParam.isRegex() || compiled != null;
+    }
+
+    /**
+     * Return false if the expression is a regex that does not compile.
+     */
+    public boolean isValid() {
+      return valid;
+    }
+
+    /**
+     * Return true if entries are filtered by their text as well as their level.
+     */
+    public boolean hasExpression() {
+      return standardText != null;
+    }
+
+    /**
+     * Return text that every accepted entry's message or category contains (ignoring case), or
+     * null if there is no such text.
+     */
+    @Nullable
+    public String getRequiredText() {
+      if (standardText == null) {
+        return null;
+      }
+      if (filterParam.isRegex() && StringUtils.containsAny(standardText, REGEX_META_CHARACTERS)) {
+        return null;
+      }
+      return standardText;
+    }
+
+    /**
+     * Return the lowest level of the entries this filter can accept.
+     */
+    @NotNull
+    public FlutterLog.Level getMinLevel() {
+      return filterParam.getLogLevel();
     }
 
     public boolean accept(@NotNull FlutterLogEntry entry) {
       if (entry.getLevel() < filterParam.getLogLevel().value) {
         return false;
       }
-      final String text = filterParam.getExpression();
-      if (text == null) {
+      if (standardText == null) {
         return true;
       }
-      final boolean isMatchCase = filterParam.isMatchCase();
-      final String standardText = isMatchCase ? text : text.toLowerCase();
-      final String standardMessage = isMatchCase ? entry.getMessage() : entry.getMessage().toLowerCase();
-      final String standardCategory = isMatchCase ? entry.getCategory() : entry.getCategory().toLowerCase();
-      if (acceptByCheckingRegexOption(standardCategory, standardText)) {
-        return true;
-      }
-      return acceptByCheckingRegexOption(standardMessage, standardText);
+      return acceptText(entry.getCategory()) || acceptText(entry.getMessage());
     }
 
-    private boolean acceptByCheckingRegexOption(@NotNull String message, @NotNull String text) {
+    private boolean acceptText(@NotNull String text) {
       if (filterParam.isRegex()) {
-        return message.matches("(?s).*" + text + ".*");
+        return pattern != null && pattern.matcher(text).find();
       }
-      return message.contains(text);
+      assert standardText != null;
+      return (filterParam.isMatchCase() ? text : text.toLowerCase(Locale.ROOT)).contains(standardText);
     }
 
     @Override
@@ -564,6 +836,10 @@ public class FlutterLogTree extends TreeTable {
   @NotNull
   private final TableRowSorter<TableModel> rowSorter;
   @NotNull
+  private final FlutterTreeTableModel filterModel;
+  @Nullable
+  private SearchRowFilter search;
+  @NotNull
   private final FlutterLogEntryPopup flutterLogPopup;
 
   public FlutterLogTree(@NotNull FlutterApp app,
@@ -577,7 +853,8 @@ public class FlutterLogTree extends TreeTable {
     model.setTree(this.getTree());
     this.model = model;
     final TableModel tableModel = getModel();
-    rowSorter = new TableRowSorter<>(new FlutterTreeTableModel(this));
+    filterModel = new FlutterTreeTableModel(this);
+    rowSorter = new TableRowSorter<>(filterModel);
     setRowSorter(rowSorter);
     registerCopyHandler();
     flutterLogPopup = new FlutterLogEntryPopup();
@@ -592,6 +869,7 @@ public class FlutterLogTree extends TreeTable {
       }
     });
     model.setUpdateCallback(this::updateCounter);
+    model.loadEarlierEntries();
   }
 
   @NotNull
@@ -668,24 +946,34 @@ public class FlutterLogTree extends TreeTable {
   }
 
   private void updateRowFilter(@NotNull FlutterLogFilterPanel.FilterParam filter) {
-    final String nonNullExpression = filter.getExpression() == null ? "" : filter.getExpression();
-    final String quoteRegex = filter.isRegex() ? nonNullExpression : Pattern.quote(nonNullExpression);
-
-    final String matchCaseRegex = filter.isMatchCase() ? "" : "(?i)";
-    final String standardRegex = matchCaseRegex + "(?s).*" + quoteRegex + ".*";
-    final RowFilter<TableModel, Object> logMessageFilter;
-    final RowFilter<TableModel, Object> logLevelFilter;
-    try {
-      logMessageFilter = RowFilter.regexFilter(
-        standardRegex,
-        FlutterTreeTableModel.ColumnIndex.MESSAGE.index, FlutterTreeTableModel.ColumnIndex.CATEGORY.index
-      );
-      logLevelFilter = RowFilter.regexFilter(LOG_LEVEL_FILTER.get(filter.getLogLevel()), FlutterTreeTableModel.ColumnIndex.LOG_LEVEL.index);
-    }
-    catch (PatternSyntaxException e) {
+    final EntryFilter entryFilter = new EntryFilter(filter);
+    if (!entryFilter.isValid()) {
       return;
     }
-    rowSorter.setRowFilter(RowFilter.andFilter(Arrays.asList(logMessageFilter, logLevelFilter)));
+    startSearch(entryFilter);
+  }
+
+  /**
+   * Replace the row filter with one backed by a search of the log store, cancelling any search
+   * still running for a previous filter.
+   */
+  private void startSearch(@NotNull EntryFilter entryFilter) {
+    if (search != null) {
+      search.cancel();
+    }
+    search = new SearchRowFilter(entryFilter);
+    rowSorter.setRowFilter(search);
+    search.start(model.log.getStore());
+  }
+
+  /**
+   * Restart the search for the current filter; needed once the log has been cleared, as
+   * sequence numbers start again from 1.
+   */
+  private void restartSearch() {
+    if (search != null) {
+      startSearch(search.entryFilter);
+    }
   }
 
   void append(@NotNull FlutterLogEntry entry) {
@@ -693,6 +981,7 @@ public class FlutterLogTree extends TreeTable {
         entry.getKind() == FlutterLogEntry.Kind.RESTART && model.getLogPreferences().isClearOnRestart()
     ) {
       model.clearEntries();
+      ApplicationManager.getApplication().invokeLater(this::restartSearch);
     }
     model.appendNodes(Collections.singletonList(entry));
   }
@@ -705,6 +994,133 @@ public class FlutterLogTree extends TreeTable {
 
   public void clearEntries() {
     model.clearEntries();
+    restartSearch();
+  }
+
+  /**
+   * A row filter that accepts the entries found by a search of the log store.
+   * <p>
+   * The search runs on a pooled thread, using the store's trigram index to narrow the candidates
+   * before running the filter, and its matches are shown as they are found. Entries added after
+   * the search started are checked directly, once each, as they are appended. All other state is
+   * only accessed on the UI thread.
+   */
+  private class SearchRowFilter extends RowFilter<TableModel, Integer> {
+    @NotNull
+    final EntryFilter entryFilter;
+
+    /**
+     * The entries found by the search, and the entries added since it started that were accepted.
+     */
+    private final Set<FlutterLogEntry> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The entries added since the search started that have been checked.
+     */
+    private final Set<FlutterLogEntry> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Matches found by the search and not yet shown.
+     */
+    private final Queue<FlutterLogEntry> pendingMatches = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    @Nullable
+    private FlutterLogStore store;
+    private int pruneThreshold = FlutterLogStore.SEGMENT_SIZE;
+
+    /**
+     * The sequence number of the first entry not covered by the search, or 0 while that is not
+     * yet known (in which case only the entries found so far are shown).
+     */
+    private int searchEnd;
+
+    SearchRowFilter(@NotNull EntryFilter entryFilter) {
+      this.entryFilter = entryFilter;
+    }
+
+    void start(@NotNull FlutterLogStore store) {
+      this.store = store;
+      if (!entryFilter.hasExpression()) {
+        // Only the level is filtered, which is cheap enough to check for every row.
+        searchEnd = Integer.MAX_VALUE;
+        return;
+      }
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        final int end = store.search(entryFilter, () -> cancelled, (found) -> {
+          pendingMatches.addAll(found);
+          schedulePublish();
+        });
+        ApplicationManager.getApplication().invokeLater(() -> {
+          if (!cancelled) {
+            searchEnd = end;
+            publishMatches();
+          }
+        });
+      });
+    }
+
+    void cancel() {
+      cancelled = true;
+      pendingMatches.clear();
+    }
+
+    private void schedulePublish() {
+      if (publishScheduled.compareAndSet(false, true)) {
+        ApplicationManager.getApplication().invokeLater(this::publishMatches);
+      }
+    }
+
+    private void publishMatches() {
+      publishScheduled.set(false);
+      if (cancelled || search != this) {
+        return;
+      }
+      FlutterLogEntry entry;
+      while ((entry = pendingMatches.poll()) != null) {
+        matches.add(entry);
+      }
+      rowSorter.allRowsChanged();
+      updateCounter();
+    }
+
+    @Override
+    public boolean include(Entry<? extends TableModel, ? extends Integer> row) {
+      final FlutterLogEntry entry = filterModel.getLogEntry(row.getIdentifier());
+      if (entry == null) {
+        return false;
+      }
+      if (entry.getLevel() < entryFilter.getMinLevel().value) {
+        return false;
+      }
+      if (searchEnd == Integer.MAX_VALUE) {
+        return entryFilter.accept(entry);
+      }
+      if (searchEnd == 0 || entry.getSequenceNumber() < searchEnd || checked.contains(entry)) {
+        return matches.contains(entry);
+      }
+      checked.add(entry);
+      if (checked.size() > pruneThreshold) {
+        prune();
+      }
+      if (entryFilter.accept(entry)) {
+        matches.add(entry);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Forget the entries that have since been evicted from the store.
+     */
+    private void prune() {
+      assert store != null;
+      final int first = store.getFirstSequenceNumber();
+      matches.removeIf((entry) -> entry.getSequenceNumber() < first);
+      checked.removeIf((entry) -> entry.getSequenceNumber() < first);
+      pruneThreshold = Math.max(FlutterLogStore.SEGMENT_SIZE, checked.size() * 2);
+    }
   }
 
   private static class SimpleMouseListener implements MouseListener {
@@ -7,6 +7,7 @@ package io.flutter.logging;
 
 import com.intellij.ui.treeStructure.treetable.TreeTable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
@@ -55,6 +56,15 @@ class FlutterTreeTableModel implements TableModel {
     return obj;
   }
 
+  /**
+   * Return the log entry shown in the given row, or null if the row does not hold an entry.
+   */
+  @Nullable
+  public FlutterLogEntry getLogEntry(int rowIndex) {
+    final Object obj = model.getValueAt(rowIndex, ColumnIndex.MESSAGE.index);
+    return obj instanceof FlutterLogEntry ? (FlutterLogEntry)obj : null;
+  }
+
   @Override
   public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
     model.setValueAt(aValue, rowIndex, columnIndex);
@@ -15,14 +15,11 @@ import org.dartlang.vm.service.element.ExtensionData;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.EventListener;
-import java.util.LinkedList;
 import java.util.List;
 
 public class FlutterFramesMonitor {
   public static final long microsPerFrame = 1000000 / 60;
 
-  static final int maxFrames = 200;
-
   private final EventDispatcher<Listener> eventDispatcher = EventDispatcher.create(Listener.class);
 
   private long lastEventFinished = 0;
@@ -45,6 +42,13 @@ public class FlutterFramesMonitor {
       frameSetStart = (startTimeMicros - lastEventFinished) > (FlutterFramesMonitor.microsPerFrame * 2);
     }
 
+    FlutterFrameEvent(int frameId, long startTimeMicros, long elapsedMicros, boolean frameSetStart) {
+      this.frameId = frameId;
+      this.startTimeMicros = startTimeMicros;
+      this.elapsedMicros = elapsedMicros;
+      this.frameSetStart = frameSetStart;
+    }
+
     public long getFrameFinishedMicros() {
       return startTimeMicros + elapsedMicros;
     }
@@ -66,7 +70,7 @@ public class FlutterFramesMonitor {
     }
   }
 
-  public List<FlutterFrameEvent> frames = new LinkedList<>();
+  private final FrameHistory history = new FrameHistory();
 
   FlutterFramesMonitor(@NotNull VmService vmService) {
     vmService.addVmServiceListener(new VmServiceListenerAdapter() {
@@ -78,7 +82,7 @@ public class FlutterFramesMonitor {
       @Override
       public void connectionClosed() {
       }
-    });
+    }, VmService.EXTENSION_STREAM_ID);
   }
 
   private void onVmServiceReceived(String streamId, Event event) {
@@ -90,38 +94,45 @@ public class FlutterFramesMonitor {
   }
 
   public boolean hasFps() {
-    return !frames.isEmpty();
+    return !history.isEmpty();
   }
 
   /**
    * Return the most recent FPS value.
    */
   public double getFPS() {
-    int frameCount = 0;
-    int costCount = 0;
-
-    synchronized (this) {
-      for (FlutterFrameEvent frame : frames) {
-        frameCount++;
-
-        long thisCost = frame.elapsedMicros / microsPerFrame;
-        if (frame.elapsedMicros > (thisCost * microsPerFrame)) {
-          thisCost++;
-        }
+    return history.getFPS();
+  }
 
-        costCount += thisCost;
+  /**
+   * Return up to max of the most recent frames, newest first.
+   */
+  @NotNull
+  public List<FlutterFrameEvent> getRecentFrames(int max) {
+    return history.getRecentFrames(max);
+  }
 
-        if (frame.frameSetStart) {
-          break;
-        }
-      }
-    }
+  /**
+   * Return the approximate time, in microseconds, that the given percentage (e.g. 50, 90 or 99) of
+   * the recent frames took no longer than to build.
+   */
+  public long getElapsedPercentile(double percentile) {
+    return history.getElapsedPercentile(percentile);
+  }
 
-    if (costCount == 0) {
-      return 0.0;
-    }
+  /**
+   * Return the number of recent frames that took longer than a frame interval to build.
+   */
+  public int getJankCount() {
+    return history.getJankCount();
+  }
 
-    return frameCount * 60.0 / costCount;
+  /**
+   * Return the number of frames that took longer than a frame interval to build since the app
+   * started.
+   */
+  public long getTotalJankCount() {
+    return history.getTotalJankCount();
   }
 
   public void addListener(Listener listener) {
@@ -136,12 +147,7 @@ public class FlutterFramesMonitor {
     final FlutterFrameEvent frameEvent = new FlutterFrameEvent(event.getExtensionData(), lastEventFinished);
     lastEventFinished = frameEvent.getFrameFinishedMicros();
 
-    synchronized (this) {
-      frames.add(0, frameEvent);
-      if (frames.size() > maxFrames) {
-        frames.remove(frames.size() - 1);
-      }
-    }
+    history.add(frameEvent.frameId, frameEvent.startTimeMicros, frameEvent.elapsedMicros, frameEvent.frameSetStart);
 
     eventDispatcher.getMulticaster().handleFrameEvent(frameEvent);
   }
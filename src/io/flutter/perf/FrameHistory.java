@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The timings of the most recent frames, kept in a ring of primitive arrays, along with
+ * statistics that are updated as each frame is added.
+ * <p>
+ * There must be a single writer (the thread delivering Flutter.Frame events); any thread can read.
+ * The ring is guarded by a lock that the writer holds only while it stores a frame's slots, so a
+ * reader copying the frames it wants delays the writer by at most that copy.
+ */
+class FrameHistory {
+  static final int DEFAULT_CAPACITY = 10000;
+
+  /**
+   * The most recent frames, back to the start of the current set of frames, used to compute the FPS.
+   */
+  static final int FPS_WINDOW = 200;
+
+  private final int capacity;
+
+  /**
+   * Guards the slots of the ring.
+   */
+  private final Object lock = new Object();
+
+  private final int[] frameIds;
+  private final long[] startTimes;
+  private final long[] elapsedTimes;
+  private final boolean[] frameSetStarts;
+
+  /**
+   * The number of frames written. Only changed while holding {@link #lock}.
+   */
+  private volatile long writtenCount;
+
+  private final BuildTimeHistogram histogram = new BuildTimeHistogram();
+
+  // Statistics; only written by the writer.
+  private int fpsFrameCount;
+  private long fpsCost;
+  private volatile double fps;
+  private volatile int jankCount;
+  private volatile long totalJankCount;
+
+  FrameHistory() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  FrameHistory(int capacity) {
+    assert capacity >= FPS_WINDOW;
+    this.capacity = capacity;
+    frameIds = new int[capacity];
+    startTimes = new long[capacity];
+    elapsedTimes = new long[capacity];
+    frameSetStarts = new boolean[capacity];
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Add a frame. Must only be called by the writer thread.
+   */
+  void add(int frameId, long startTimeMicros, long elapsedMicros, boolean frameSetStart) {
+    final long index = writtenCount;
+    final int slot = (int)(index % capacity);
+
+    if (index >= capacity) {
+      // Evict the frame being overwritten from the statistics.
+      final long evictedElapsed = elapsedTimes[slot];
+      histogram.remove(evictedElapsed);
+      if (isJank(evictedElapsed)) {
+        jankCount--;
+      }
+    }
+
+    synchronized (lock) {
+      frameIds[slot] = frameId;
+      startTimes[slot] = startTimeMicros;
+      elapsedTimes[slot] = elapsedMicros;
+      frameSetStarts[slot] = frameSetStart;
+      writtenCount = index + 1;
+    }
+
+    histogram.add(elapsedMicros);
+    if (isJank(elapsedMicros)) {
+      jankCount++;
+      totalJankCount++;
+    }
+    updateFps(index, elapsedMicros, frameSetStart);
+  }
+
+  private void updateFps(long index, long elapsedMicros, boolean frameSetStart) {
+    if (frameSetStart) {
+      fpsFrameCount = 0;
+      fpsCost = 0;
+    }
+    fpsFrameCount++;
+    fpsCost += frameCost(elapsedMicros);
+    if (fpsFrameCount > FPS_WINDOW) {
+      fpsFrameCount--;
+      fpsCost -= frameCost(elapsedTimes[(int)((index - FPS_WINDOW) % capacity)]);
+    }
+    fps = fpsCost == 0 ? 0.0 : fpsFrameCount * 60.0 / fpsCost;
+  }
+
+  /**
+   * Return the number of frame intervals the frame took.
+   */
+  private static long frameCost(long elapsedMicros) {
+    long cost = elapsedMicros / FlutterFramesMonitor.microsPerFrame;
+    if (elapsedMicros > (cost * FlutterFramesMonitor.microsPerFrame)) {
+      cost++;
+    }
+    return cost;
+  }
+
+  private static boolean isJank(long elapsedMicros) {
+    return elapsedMicros > FlutterFramesMonitor.microsPerFrame;
+  }
+
+  boolean isEmpty() {
+    return writtenCount == 0;
+  }
+
+  /**
+   * Return the number of frames currently retained.
+   */
+  int size() {
+    return (int)Math.min(writtenCount, capacity);
+  }
+
+  /**
+   * Return the frames per second over the current set of frames (at most {@link #FPS_WINDOW}).
+   */
+  double getFPS() {
+    return fps;
+  }
+
+  /**
+   * Return the number of retained frames that took longer than a frame interval.
+   */
+  int getJankCount() {
+    return jankCount;
+  }
+
+  /**
+   * Return the number of frames that took longer than a frame interval since monitoring started.
+   */
+  long getTotalJankCount() {
+    return totalJankCount;
+  }
+
+  /**
+   * Return the approximate elapsed time, in microseconds, that the given percentage of the retained
+   * frames took no longer than.
+   */
+  long getElapsedPercentile(double percentile) {
+    return histogram.getValueAtPercentile(percentile);
+  }
+
+  /**
+   * Return up to max of the most recent frames, newest first.
+   */
+  @NotNull
+  List<FlutterFramesMonitor.FlutterFrameEvent> getRecentFrames(int max) {
+    final int[] ids;
+    final long[] starts;
+    final long[] elapsed;
+    final boolean[] setStarts;
+    synchronized (lock) {
+      final long end = writtenCount;
+      final int count = (int)Math.min(end, Math.min(max, capacity));
+      ids = new int[count];
+      starts = new long[count];
+      elapsed = new long[count];
+      setStarts = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        final int slot = (int)((end - 1 - i) % capacity);
+        ids[i] = frameIds[slot];
+        starts[i] = startTimes[slot];
+        elapsed[i] = elapsedTimes[slot];
+        setStarts[i] = frameSetStarts[slot];
+      }
+    }
+
+    // Build the events outside the lock, so the writer only waits for the copy.
+    final List<FlutterFramesMonitor.FlutterFrameEvent> result = new ArrayList<>(ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      result.add(new FlutterFramesMonitor.FlutterFrameEvent(ids[i], starts[i], elapsed[i], setStarts[i]));
+    }
+    return result;
+  }
+
+  /**
+   * A histogram of elapsed times with buckets whose width grows with their value, so that every
+   * value is recorded to within about 3% without needing a bucket per microsecond.
+   * <p>
+   * Values below 2 * {@link #SUB_BUCKETS} get a bucket each; above that, each power of two is
+   * split into {@link #SUB_BUCKETS} buckets.
+   */
+  static class BuildTimeHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 31 - SUB_BUCKET_BITS - 1;
+    private static final int BUCKET_COUNT = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKET_COUNT);
+    private volatile int totalCount;
+
+    void add(long value) {
+      final int index = bucketIndex(value);
+      counts.lazySet(index, counts.get(index) + 1);
+      totalCount++;
+    }
+
+    void remove(long value) {
+      final int index = bucketIndex(value);
+      counts.lazySet(index, counts.get(index) - 1);
+      totalCount--;
+    }
+
+    int getTotalCount() {
+      return totalCount;
+    }
+
+    /**
+     * Return the highest value in the bucket holding the value at the given percentile, or 0 if
+     * the histogram is empty.
+     */
+    long getValueAtPercentile(double percentile) {
+      final int total = totalCount;
+      if (total <= 0) {
+        return 0;
+      }
+      final long target = Math.max(1, (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+      long seen = 0;
+      for (int index = 0; index < BUCKET_COUNT; index++) {
+        seen += counts.get(index);
+        if (seen >= target) {
+          return highestValueInBucket(index);
+        }
+      }
+      return highestValueInBucket(BUCKET_COUNT - 1);
+    }
+
+    static int bucketIndex(long value) {
+      final long clamped = Math.min(Math.max(value, 0), Integer.MAX_VALUE);
+      final int magnitude = 63 - Long.numberOfLeadingZeros(clamped | 1);
+      final int shift = Math.max(0, magnitude - SUB_BUCKET_BITS);
+      return (shift << SUB_BUCKET_BITS) + (int)(clamped >> shift);
+    }
+
+    static long highestValueInBucket(int index) {
+      final int shift = index < 2 * SUB_BUCKETS ? 0 : (index >> SUB_BUCKET_BITS) - 1;
+      final long lowest = (long)(index - (shift << SUB_BUCKET_BITS)) << shift;
+      return lowest + (1L << shift) - 1;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact history of the heap samples of an app.
+ * <p>
+ * Samples are kept in several tiers: every sample for the recent past, and the peak values over
+ * longer and longer intervals for the rest of the session. Each tier stores its samples in blocks
+ * of delta-encoded variable length integers, which for slowly changing heap sizes is a few bytes
+ * per value.
+ */
+public class HeapHistory {
+  static final int SAMPLES_PER_BLOCK = 256;
+
+  /**
+   * The sampling interval (0 for every sample) and the number of samples kept, for each tier.
+   */
+  private static final long[][] TIERS = {
+    {0, 3600},
+    {10 * 1000, 8640},
+    {60 * 1000, 10080},
+  };
+
+  public static class Sample {
+    public final long timeMillis;
+    public final long newUsed;
+    public final long newCapacity;
+    public final long newExternal;
+    public final long oldUsed;
+    public final long oldCapacity;
+    public final long oldExternal;
+
+    /**
+     * Whether the sample was taken in response to (or, for a downsampled sample, covers) a GC.
+     */
+    public final boolean isGC;
+
+    public Sample(long timeMillis,
+                  long newUsed,
+                  long newCapacity,
+                  long newExternal,
+                  long oldUsed,
+                  long oldCapacity,
+                  long oldExternal,
+                  boolean isGC) {
+      this.timeMillis = timeMillis;
+      this.newUsed = newUsed;
+      this.newCapacity = newCapacity;
+      this.newExternal = newExternal;
+      this.oldUsed = oldUsed;
+      this.oldCapacity = oldCapacity;
+      this.oldExternal = oldExternal;
+      this.isGC = isGC;
+    }
+
+    Sample(@NotNull long[] values) {
+      this(values[0], values[1], values[2], values[3], values[4], values[5], values[6], values[7] != 0);
+    }
+
+    public long getUsed() {
+      return newUsed + oldUsed + newExternal + oldExternal;
+    }
+
+    public long getCapacity() {
+      return newCapacity + oldCapacity + newExternal + oldExternal;
+    }
+
+    @NotNull
+    long[] toValues() {
+      return new long[]{timeMillis, newUsed, newCapacity, newExternal, oldUsed, oldCapacity, oldExternal, isGC ? 1 : 0};
+    }
+
+    @Override
+    public String toString() {
+      return timeMillis + ": " + getUsed() + " of " + getCapacity() + (isGC ? " (GC)" : "");
+    }
+  }
+
+  private static final int VALUE_COUNT = 8;
+
+  private final Tier[] tiers;
+
+  public HeapHistory() {
+    tiers = new Tier[TIERS.length];
+    for (int i = 0; i < TIERS.length; i++) {
+      tiers[i] = new Tier(TIERS[i][0], (int)TIERS[i][1]);
+    }
+  }
+
+  public synchronized void add(@NotNull Sample sample) {
+    for (Tier tier : tiers) {
+      tier.add(sample.toValues());
+    }
+  }
+
+  public synchronized void clear() {
+    for (Tier tier : tiers) {
+      tier.clear();
+    }
+  }
+
+  /**
+   * Return the samples since the given time, oldest first, each from the finest tier that still
+   * holds samples for its time.
+   */
+  @NotNull
+  public synchronized List<Sample> getSamples(long sinceMillis) {
+    final List<List<Sample>> parts = new ArrayList<>();
+    long until = Long.MAX_VALUE;
+    for (Tier tier : tiers) {
+      final long end = until;
+      final List<Sample> part = new ArrayList<>();
+      tier.decode((values) -> {
+        // Only use whole intervals from before the finer tiers begin.
+        if (values[0] >= sinceMillis && values[0] + tier.intervalMillis <= end && values[0] < end) {
+          part.add(new Sample(values));
+        }
+      });
+      parts.add(part);
+      until = Math.min(until, tier.getOldestTime());
+      if (until <= sinceMillis) {
+        break;
+      }
+    }
+    final List<Sample> result = new ArrayList<>();
+    for (int i = parts.size() - 1; i >= 0; i--) {
+      result.addAll(parts.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Return the number of bytes used to hold the samples.
+   */
+  public synchronized long getEncodedSize() {
+    long size = 0;
+    for (Tier tier : tiers) {
+      size += tier.getEncodedSize();
+    }
+    return size;
+  }
+
+  /**
+   * Write all the samples, oldest first and as finely grained as they are still available, as CSV.
+   */
+  public void export(@NotNull Writer writer) throws IOException {
+    final List<Sample> samples = getSamples(Long.MIN_VALUE);
+    writer.write("time,newUsed,newCapacity,newExternal,oldUsed,oldCapacity,oldExternal,gc\n");
+    for (Sample sample : samples) {
+      writer.write(sample.timeMillis + "," + sample.newUsed + "," + sample.newCapacity + "," + sample.newExternal + "," +
+                   sample.oldUsed + "," + sample.oldCapacity + "," + sample.oldExternal + "," + (sample.isGC ? 1 : 0) + "\n");
+    }
+    writer.flush();
+  }
+
+  private interface ValuesConsumer {
+    void accept(long[] values);
+  }
+
+  /**
+   * The samples at one resolution.
+   */
+  private static class Tier {
+    final long intervalMillis;
+    final int maxBlocks;
+
+    final ArrayDeque<Block> blocks = new ArrayDeque<>();
+
+    /**
+     * The peak values of the samples in the current interval, or null if there are none.
+     */
+    long[] pending;
+
+    Tier(long intervalMillis, int maxSamples) {
+      this.intervalMillis = intervalMillis;
+      this.maxBlocks = Math.max(1, maxSamples / SAMPLES_PER_BLOCK);
+    }
+
+    void add(@NotNull long[] values) {
+      if (intervalMillis == 0) {
+        append(values);
+        return;
+      }
+      if (pending != null && values[0] / intervalMillis != pending[0] / intervalMillis) {
+        append(pending);
+        pending = null;
+      }
+      if (pending == null) {
+        pending = values.clone();
+        // Time the sample from the start of its interval.
+        pending[0] = values[0] - values[0] % intervalMillis;
+      }
+      else {
+        for (int i = 1; i < VALUE_COUNT; i++) {
+          pending[i] = Math.max(pending[i], values[i]);
+        }
+      }
+    }
+
+    private void append(@NotNull long[] values) {
+      Block last = blocks.peekLast();
+      if (last == null || last.count == SAMPLES_PER_BLOCK) {
+        last = new Block();
+        blocks.addLast(last);
+        if (blocks.size() > maxBlocks) {
+          blocks.removeFirst();
+        }
+      }
+      last.add(values);
+    }
+
+    void clear() {
+      blocks.clear();
+      pending = null;
+    }
+
+    long getOldestTime() {
+      final Block first = blocks.peekFirst();
+      if (first != null) {
+        return first.first[0];
+      }
+      return pending != null ? pending[0] : Long.MAX_VALUE;
+    }
+
+    long getEncodedSize() {
+      long size = 0;
+      for (Block block : blocks) {
+        size += block.length;
+      }
+      return size;
+    }
+
+    void decode(@NotNull ValuesConsumer consumer) {
+      for (Block block : blocks) {
+        block.decode(consumer);
+      }
+      if (pending != null) {
+        consumer.accept(pending.clone());
+      }
+    }
+  }
+
+  /**
+   * Up to {@link #SAMPLES_PER_BLOCK} samples, each stored as the zig-zag varint encoded
+   * differences of its values from the previous sample's.
+   */
+  private static class Block {
+    long[] first;
+    final long[] last = new long[VALUE_COUNT];
+    byte[] bytes = new byte[256];
+    int length;
+    int count;
+
+    void add(@NotNull long[] values) {
+      if (first == null) {
+        first = values.clone();
+      }
+      else {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+          writeVarLong(values[i] - last[i]);
+        }
+      }
+      System.arraycopy(values, 0, last, 0, VALUE_COUNT);
+      count++;
+    }
+
+    void decode(@NotNull ValuesConsumer consumer) {
+      if (first == null) {
+        return;
+      }
+      final long[] values = first.clone();
+      consumer.accept(values.clone());
+      final int[] position = {0};
+      for (int sample = 1; sample < count; sample++) {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+          values[i] += readVarLong(position);
+        }
+        consumer.accept(values.clone());
+      }
+    }
+
+    private void writeVarLong(long value) {
+      long zigZag = (value << 1) ^ (value >> 63);
+      if (length + 10 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      while ((zigZag & ~0x7FL) != 0) {
+        bytes[length++] = (byte)((zigZag & 0x7F) | 0x80);
+        zigZag >>>= 7;
+      }
+      bytes[length++] = (byte)zigZag;
+    }
+
+    private long readVarLong(@NotNull int[] position) {
+      long zigZag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position[0]++];
+        zigZag |= (long)(b & 0x7F) << shift;
+        shift += 7;
+      }
+      while ((b & 0x80) != 0);
+      return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+  }
+}
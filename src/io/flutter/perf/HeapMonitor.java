@@ -14,11 +14,18 @@ import org.dartlang.vm.service.consumer.GetIsolateConsumer;
 import org.dartlang.vm.service.consumer.VMConsumer;
 import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -32,10 +39,23 @@ public class HeapMonitor {
 
   private static final int POLL_PERIOD_IN_MS = 1000;
 
+  /**
+   * The longest time between polls while no listener is visible.
+   */
+  private static final int MAX_POLL_PERIOD_IN_MS = 16000;
+
   public interface HeapListener {
     void handleIsolatesInfo(VM vm, List<IsolateObject> isolates);
 
     void handleGCEvent(IsolateRef iIsolateRef, HeapSpace newHeapSpace, HeapSpace oldHeapSpace);
+
+    /**
+     * Return whether the listener is currently showing heap information; the heap is polled less
+     * often while no listener is.
+     */
+    default boolean isVisible() {
+      return true;
+    }
   }
 
   static class HeapObject extends Obj {
@@ -94,42 +114,38 @@ public class HeapMonitor {
       }
       return heaps;
     }
-  }
-
-  public static class HeapSample {
-    final int bytes;
-    final boolean isGC;
-
-    public long getSampleTime() {
-      return sampleTime;
-    }
-
-    public final long sampleTime;
-
-    public HeapSample(int bytes, boolean isGC) {
-      this.bytes = bytes;
-      this.isGC = isGC;
-
-      this.sampleTime = System.currentTimeMillis();
-    }
-
-    public int getBytes() {
-      return bytes;
-    }
 
-    @Override
-    public String toString() {
-      return "bytes: " + bytes + (isGC ? " (GC)" : "");
+    @Nullable
+    HeapSpace getHeap(@NotNull String name) {
+      final JsonElement heap = getAsJsonObject("_heaps").get(name);
+      return heap == null ? null : new HeapSpace(heap.getAsJsonObject());
     }
   }
 
-  private final List<HeapMonitor.HeapListener> heapListeners = new ArrayList<>();
+  private final List<HeapMonitor.HeapListener> heapListeners = new CopyOnWriteArrayList<>();
   private ScheduledFuture pollingScheduler;
 
   @NotNull
   private final VmService vmService;
 
-  private boolean isPolling;
+  private volatile boolean isPolling;
+  private boolean isRunning;
+  private int pollPeriodInMs = POLL_PERIOD_IN_MS;
+
+  /**
+   * Incremented whenever polling is rescheduled, so that a poll that was already running does not
+   * schedule another.
+   */
+  private int pollGeneration;
+
+  @NotNull
+  private final HeapHistory history = new HeapHistory();
+
+  /**
+   * The most recent new and old space of each isolate, used to record totals when a single
+   * isolate reports a GC.
+   */
+  private final Map<String, HeapSpace[]> isolateHeaps = new ConcurrentHashMap<>();
 
   public HeapMonitor(@NotNull VmService vmService, @NotNull FlutterDebugProcess debugProcess) {
     this.vmService = vmService;
@@ -137,19 +153,40 @@ public class HeapMonitor {
 
   public void addListener(@NotNull HeapMonitor.HeapListener listener) {
     heapListeners.add(listener);
+    pollSoon();
   }
 
   public void removeListener(@NotNull HeapMonitor.HeapListener listener) {
-    heapListeners.add(listener);
+    heapListeners.remove(listener);
   }
 
   public boolean hasListeners() {
     return !heapListeners.isEmpty();
   }
 
-  void start() {
+  /**
+   * Return the samples recorded since polling started.
+   */
+  @NotNull
+  public HeapHistory getHistory() {
+    return history;
+  }
+
+  /**
+   * Write the recorded samples to the given file as CSV.
+   */
+  public void exportHistory(@NotNull File file) throws IOException {
+    try (Writer writer = new FileWriter(file)) {
+      history.export(writer);
+    }
+  }
+
+  synchronized void start() {
     isPolling = true;
-    pollingScheduler = executor.scheduleAtFixedRate(this::poll, 0, POLL_PERIOD_IN_MS, TimeUnit.MILLISECONDS);
+    isRunning = true;
+    pollPeriodInMs = POLL_PERIOD_IN_MS;
+    pollGeneration++;
+    schedulePoll(0);
   }
 
   public void pausePolling() {
@@ -158,6 +195,50 @@ public class HeapMonitor {
 
   public void resumePolling() {
     isPolling = true;
+    pollSoon();
+  }
+
+  /**
+   * Go back to polling at the normal rate, e.g. because a listener has become visible.
+   */
+  public synchronized void pollSoon() {
+    if (!isRunning || pollPeriodInMs == POLL_PERIOD_IN_MS) {
+      return;
+    }
+    pollPeriodInMs = POLL_PERIOD_IN_MS;
+    if (pollingScheduler != null) {
+      pollingScheduler.cancel(false);
+    }
+    pollGeneration++;
+    schedulePoll(0);
+  }
+
+  private synchronized void schedulePoll(long delayInMs) {
+    if (isRunning) {
+      final int generation = pollGeneration;
+      pollingScheduler = executor.schedule(() -> pollAndReschedule(generation), delayInMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void pollAndReschedule(int generation) {
+    synchronized (this) {
+      if (generation != pollGeneration) {
+        return;
+      }
+    }
+    try {
+      poll();
+    }
+    finally {
+      synchronized (this) {
+        if (generation == pollGeneration) {
+          // Back off while nobody is looking at the results.
+          final boolean isVisible = heapListeners.stream().anyMatch(HeapListener::isVisible);
+          pollPeriodInMs = isVisible ? POLL_PERIOD_IN_MS : Math.min(pollPeriodInMs * 2, MAX_POLL_PERIOD_IN_MS);
+          schedulePoll(pollPeriodInMs);
+        }
+      }
+    }
   }
 
   private void poll() {
@@ -211,14 +292,37 @@ public class HeapMonitor {
   }
 
   void handleGCEvent(IsolateRef isolateRef, HeapSpace newHeapSpace, HeapSpace oldHeapSpace) {
+    isolateHeaps.put(isolateRef.getId(), new HeapSpace[]{newHeapSpace, oldHeapSpace});
+    recordSample(true);
     heapListeners.forEach(listener -> listener.handleGCEvent(isolateRef, newHeapSpace, oldHeapSpace));
   }
 
   private void notifyListeners(VM vm, List<IsolateObject> isolates) {
+    isolateHeaps.clear();
+    for (IsolateObject isolate : isolates) {
+      isolateHeaps.put(isolate.getId(), new HeapSpace[]{isolate.getHeap("new"), isolate.getHeap("old")});
+    }
+    recordSample(false);
     heapListeners.forEach(listener -> listener.handleIsolatesInfo(vm, isolates));
   }
 
-  void stop() {
+  private void recordSample(boolean isGC) {
+    final long[] totals = new long[6];
+    for (HeapSpace[] spaces : isolateHeaps.values()) {
+      for (int i = 0; i < spaces.length; i++) {
+        if (spaces[i] != null) {
+          totals[i * 3] += spaces[i].getUsed();
+          totals[i * 3 + 1] += spaces[i].getCapacity();
+          totals[i * 3 + 2] += spaces[i].getExternal();
+        }
+      }
+    }
+    history.add(new HeapHistory.Sample(System.currentTimeMillis(), totals[0], totals[1], totals[2], totals[3], totals[4], totals[5], isGC));
+  }
+
+  synchronized void stop() {
+    isRunning = false;
+    pollGeneration++;
     if (pollingScheduler != null) {
       pollingScheduler.cancel(false);
       pollingScheduler = null;
@@ -20,6 +20,8 @@ import org.dartlang.vm.service.consumer.VMConsumer;
 import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -50,7 +52,7 @@ public class PerfService {
       public void connectionClosed() {
         onVmConnectionClosed();
       }
-    });
+    }, VmService.ISOLATE_STREAM_ID, VmService.EXTENSION_STREAM_ID, VmService.GC_STREAM_ID);
 
     vmService.streamListen(VmService.ISOLATE_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
     vmService.streamListen(VmService.EXTENSION_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -252,6 +254,21 @@ public class PerfService {
     }
   }
 
+  /**
+   * Return the heap samples recorded while heap listeners were registered.
+   */
+  @NotNull
+  public HeapHistory getHeapHistory() {
+    return heapMonitor.getHistory();
+  }
+
+  /**
+   * Write the recorded heap samples to the given file as CSV.
+   */
+  public void exportHeapHistory(@NotNull File file) throws IOException {
+    heapMonitor.exportHistory(file);
+  }
+
   /**
    * Remove a heap listener.
    */
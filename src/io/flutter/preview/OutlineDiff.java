@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.dartlang.analysis.server.protocol.Element;
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The differences between two versions of a file's {@link FlutterOutline}.
+ * <p>
+ * Outlines are matched with the children of their matched parent, by kind and name (the Dart
+ * element name, or the widget class name) and then by position among the siblings with the same
+ * kind and name. New outlines without a match were inserted, and matched outlines are changed if
+ * anything shown for them, other than their offsets, is different.
+ */
+class OutlineDiff {
+  private final Map<FlutterOutline, FlutterOutline> newToOld = Maps.newIdentityHashMap();
+  private final Set<FlutterOutline> changed = Sets.newIdentityHashSet();
+
+  private OutlineDiff() {
+  }
+
+  /**
+   * Compares two outlines of a file. The roots are always matched with each other.
+   */
+  @NotNull
+  static OutlineDiff compute(@NotNull FlutterOutline oldRoot, @NotNull FlutterOutline newRoot) {
+    final OutlineDiff diff = new OutlineDiff();
+    diff.match(oldRoot, newRoot);
+    return diff;
+  }
+
+  /**
+   * Returns the old outline matched with the given new outline, or null if it was inserted.
+   */
+  @Nullable
+  FlutterOutline getOldOutline(@NotNull FlutterOutline newOutline) {
+    return newToOld.get(newOutline);
+  }
+
+  /**
+   * Returns true if the given new outline was matched and is shown differently than before.
+   */
+  boolean isChanged(@NotNull FlutterOutline newOutline) {
+    return changed.contains(newOutline);
+  }
+
+  private void match(@NotNull FlutterOutline oldOutline, @NotNull FlutterOutline newOutline) {
+    newToOld.put(newOutline, oldOutline);
+    if (!isSameShown(oldOutline, newOutline)) {
+      changed.add(newOutline);
+    }
+
+    final List<FlutterOutline> oldChildren = childrenOf(oldOutline);
+    final List<FlutterOutline> newChildren = childrenOf(newOutline);
+    if (oldChildren.isEmpty() || newChildren.isEmpty()) {
+      return;
+    }
+
+    // The old children with each key, in order.
+    final Map<String, Deque<FlutterOutline>> oldByKey = new HashMap<>();
+    for (FlutterOutline child : oldChildren) {
+      oldByKey.computeIfAbsent(keyOf(child), (key) -> new ArrayDeque<>()).add(child);
+    }
+
+    for (FlutterOutline child : newChildren) {
+      final Deque<FlutterOutline> candidates = oldByKey.get(keyOf(child));
+      final FlutterOutline oldChild = candidates == null ? null : candidates.poll();
+      if (oldChild != null) {
+        match(oldChild, child);
+      }
+    }
+  }
+
+  @NotNull
+  private static List<FlutterOutline> childrenOf(@NotNull FlutterOutline outline) {
+    final List<FlutterOutline> children = outline.getChildren();
+    return children == null ? Collections.emptyList() : children;
+  }
+
+  @NotNull
+  private static String keyOf(@NotNull FlutterOutline outline) {
+    final Element element = outline.getDartElement();
+    final String name = element != null ? element.getName() : outline.getClassName();
+    return outline.getKind() + ":" + name;
+  }
+
+  /**
+   * Returns true if the outlines look the same in the tree, ignoring offsets and children.
+   */
+  private static boolean isSameShown(@NotNull FlutterOutline a, @NotNull FlutterOutline b) {
+    return Objects.equals(a.getKind(), b.getKind()) &&
+           Objects.equals(a.getLabel(), b.getLabel()) &&
+           Objects.equals(a.getClassName(), b.getClassName()) &&
+           Objects.equals(a.getVariableName(), b.getVariableName()) &&
+           Objects.equals(a.getParentAssociationLabel(), b.getParentAssociationLabel()) &&
+           Objects.equals(a.getAttributes(), b.getAttributes()) &&
+           a.isWidgetClass() == b.isWidgetClass() &&
+           Objects.equals(a.getRenderConstructor(), b.getRenderConstructor()) &&
+           Objects.equals(a.getStateClassName(), b.getStateClassName()) &&
+           isSameShown(a.getDartElement(), b.getDartElement());
+  }
+
+  private static boolean isSameShown(@Nullable Element a, @Nullable Element b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return Objects.equals(a.getKind(), b.getKind()) &&
+           Objects.equals(a.getName(), b.getName()) &&
+           Objects.equals(a.getParameters(), b.getParameters()) &&
+           Objects.equals(a.getReturnType(), b.getReturnType()) &&
+           Objects.equals(a.getTypeParameters(), b.getTypeParameters()) &&
+           a.getFlags() == b.getFlags();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The ranges of the outlines in a file's {@link FlutterOutline}, converted to editor offsets.
+ * <p>
+ * The index is built once for each outline received from the analysis server, so that caret moves
+ * don't convert offsets again or visit every outline. Siblings are searched by binary search, so a
+ * lookup takes time proportional to the depth of the tree times the log of the number of siblings.
+ */
+class OutlineIndex {
+  @NotNull private final FlutterOutline root;
+  @NotNull private final Node rootNode;
+  @NotNull private final Map<FlutterOutline, Node> nodes = new IdentityHashMap<>();
+
+  /**
+   * Builds the index for an outline, converting each offset with the given function.
+   */
+  OutlineIndex(@NotNull FlutterOutline root, @NotNull IntUnaryOperator convertOffset) {
+    this.root = root;
+    this.rootNode = build(root, convertOffset);
+  }
+
+  @NotNull
+  FlutterOutline getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns the converted start of the outline, or -1 if it isn't in this index.
+   */
+  int getStart(@NotNull FlutterOutline outline) {
+    final Node node = nodes.get(outline);
+    return node == null ? -1 : node.start;
+  }
+
+  /**
+   * Returns the converted end of the outline, or -1 if it isn't in this index.
+   */
+  int getEnd(@NotNull FlutterOutline outline) {
+    final Node node = nodes.get(outline);
+    return node == null ? -1 : node.end;
+  }
+
+  /**
+   * Returns the innermost outline containing the offset (inclusive at both ends), or null if the
+   * offset is outside the root. When siblings touch at the offset, the first one is used.
+   */
+  @Nullable
+  FlutterOutline findAt(int offset) {
+    if (!rootNode.contains(offset)) {
+      return null;
+    }
+    Node node = rootNode;
+    while (true) {
+      final Node child = node.findChildAt(offset);
+      if (child == null) {
+        return node.outline;
+      }
+      node = child;
+    }
+  }
+
+  /**
+   * Returns the outlines covered by the range from start to end, in order.
+   * <p>
+   * These are the outermost outlines that lie completely within the range, among the children of
+   * the outlines that contain the whole range.
+   */
+  @NotNull
+  List<FlutterOutline> findCoveredBy(int start, int end) {
+    final List<FlutterOutline> covered = new ArrayList<>();
+    addCoveredBy(covered, rootNode, start, end);
+    return covered;
+  }
+
+  /**
+   * Returns the first top-level outline whose range, or whose State class, strictly contains the
+   * offset, or null if there is none.
+   */
+  @Nullable
+  FlutterOutline findTopLevelAt(int offset) {
+    for (Node node : rootNode.children) {
+      if (node.start < offset && offset < node.end || node.stateStart < offset && offset < node.stateEnd) {
+        return node.outline;
+      }
+    }
+    return null;
+  }
+
+  private static void addCoveredBy(@NotNull List<FlutterOutline> covered, @NotNull Node node, int start, int end) {
+    // The outline ends before, or starts after the selection.
+    if (node.end < start || node.start > end) {
+      return;
+    }
+    // The outline is covered by the selection.
+    if (node.start >= start && node.end <= end) {
+      covered.add(node.outline);
+      return;
+    }
+    // The outline covers the selection.
+    if (node.start <= start && end <= node.end) {
+      final Node[] children = node.children;
+      for (int i = node.firstChildEndingAtOrAfter(start); i < children.length; i++) {
+        if (node.sorted && children[i].start > end) {
+          break;
+        }
+        addCoveredBy(covered, children[i], start, end);
+      }
+    }
+  }
+
+  @NotNull
+  private Node build(@NotNull FlutterOutline outline, @NotNull IntUnaryOperator convertOffset) {
+    final List<FlutterOutline> childOutlines = outline.getChildren();
+    final Node[] children = new Node[childOutlines == null ? 0 : childOutlines.size()];
+    for (int i = 0; i < children.length; i++) {
+      children[i] = build(childOutlines.get(i), convertOffset);
+    }
+
+    int stateStart = -1;
+    int stateEnd = -1;
+    if (outline.getStateOffset() != null && outline.getStateLength() != null) {
+      stateStart = convertOffset.applyAsInt(outline.getStateOffset());
+      stateEnd = convertOffset.applyAsInt(outline.getStateOffset() + outline.getStateLength());
+    }
+
+    final Node node = new Node(outline,
+                               convertOffset.applyAsInt(outline.getOffset()),
+                               convertOffset.applyAsInt(outline.getOffset() + outline.getLength()),
+                               stateStart, stateEnd,
+                               children);
+    nodes.put(outline, node);
+    return node;
+  }
+
+  private static class Node {
+    @NotNull final FlutterOutline outline;
+    final int start;
+    final int end;
+    final int stateStart;
+    final int stateEnd;
+    @NotNull final Node[] children;
+
+    /**
+     * True if the children are in order and don't overlap, so that they can be binary searched.
+     */
+    final boolean sorted;
+
+    Node(@NotNull FlutterOutline outline, int start, int end, int stateStart, int stateEnd, @NotNull Node[] children) {
+      this.outline = outline;
+      this.start = start;
+      this.end = end;
+      this.stateStart = stateStart;
+      this.stateEnd = stateEnd;
+      this.children = children;
+
+      boolean sorted = true;
+      for (int i = 1; i < children.length && sorted; i++) {
+        sorted = children[i - 1].end <= children[i].start;
+      }
+      this.sorted = sorted;
+    }
+
+    boolean contains(int offset) {
+      return start <= offset && offset <= end;
+    }
+
+    /**
+     * Returns the first child containing the offset, or null if there is none.
+     */
+    @Nullable
+    Node findChildAt(int offset) {
+      if (!sorted) {
+        for (Node child : children) {
+          if (child.contains(offset)) {
+            return child;
+          }
+        }
+        return null;
+      }
+      final int index = firstChildEndingAtOrAfter(offset);
+      return index < children.length && children[index].start <= offset ? children[index] : null;
+    }
+
+    /**
+     * Returns the index of the first child that ends at or after the offset, or the number of
+     * children if there is none. Returns 0 if the children aren't sorted.
+     */
+    int firstChildEndingAtOrAfter(int offset) {
+      if (!sorted) {
+        return 0;
+      }
+      int low = 0;
+      int high = children.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (children[mid].end < offset) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
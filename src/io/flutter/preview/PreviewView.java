@@ -28,6 +28,7 @@ import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.SimpleToolWindowPanel;
 import com.intellij.openapi.ui.Splitter;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -118,14 +119,15 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
   private OutlineTree tree;
   private PreviewArea previewArea;
 
-  private final Set<FlutterOutline> outlinesWithWidgets = Sets.newHashSet();
-  private final Map<FlutterOutline, DefaultMutableTreeNode> outlineToNodeMap = Maps.newHashMap();
+  private final Set<FlutterOutline> outlinesWithWidgets = Sets.newIdentityHashSet();
+  private final Map<FlutterOutline, DefaultMutableTreeNode> outlineToNodeMap = Maps.newIdentityHashMap();
 
   private VirtualFile currentFile;
   private String currentFilePath;
   FileEditor currentFileEditor;
   private Editor currentEditor;
   private FlutterOutline currentOutline;
+  private OutlineIndex currentOutlineIndex;
 
   private final RenderHelper myRenderHelper;
 
@@ -133,10 +135,12 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     @Override
     public void outlineUpdated(@NotNull String filePath, @NotNull FlutterOutline outline, @Nullable String instrumentedCode) {
       if (Objects.equals(currentFilePath, filePath)) {
-        ApplicationManager.getApplication().invokeLater(() -> updateOutline(outline));
+        // Convert the offsets once for each outline, rather than on every caret move.
+        final OutlineIndex outlineIndex = new OutlineIndex(outline, PreviewView.this::getConvertedFileOffset);
+        ApplicationManager.getApplication().invokeLater(() -> updateOutline(outlineIndex));
         if (myRenderHelper != null && previewArea != null) {
           previewArea.renderingStarted();
-          myRenderHelper.setFile(currentFile, outline, instrumentedCode);
+          myRenderHelper.setFile(currentFile, outlineIndex, instrumentedCode);
           ApplicationManager.getApplication().invokeLater(() -> {
             final Caret caret = currentEditor.getCaretModel().getPrimaryCaret();
             myRenderHelper.setOffset(caret.getOffset());
@@ -182,7 +186,7 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
           previewArea.show(currentOutline, widget, response);
 
           final Caret caret = currentEditor.getCaretModel().getPrimaryCaret();
-          final FlutterOutline outline = findOutlineAtOffset(currentOutline, caret.getOffset());
+          final FlutterOutline outline = findOutlineAtOffset(caret.getOffset());
           if (outline != null) {
             previewArea.select(ImmutableList.of(outline));
           }
@@ -287,6 +291,9 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
 
   @Override
   public void dispose() {
+    if (myRenderHelper != null) {
+      Disposer.dispose(myRenderHelper);
+    }
   }
 
   @NotNull
@@ -621,21 +628,48 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     return (DefaultMutableTreeNode)getTreeModel().getRoot();
   }
 
-  private void updateOutline(@NotNull FlutterOutline outline) {
+  private void updateOutline(@NotNull OutlineIndex outlineIndex) {
+    final FlutterOutline previousOutline = currentOutline;
+    final FlutterOutline outline = outlineIndex.getRoot();
     currentOutline = outline;
+    currentOutlineIndex = outlineIndex;
 
     final DefaultMutableTreeNode rootNode = getRootNode();
-    rootNode.removeAllChildren();
 
     outlinesWithWidgets.clear();
-    outlineToNodeMap.clear();
-    if (outline.getChildren() != null) {
-      computeOutlinesWithWidgets(outline);
-      updateOutlineImpl(rootNode, outline.getChildren());
+    computeOutlinesWithWidgets(outline);
+
+    if (previousOutline == null || rootNode.getChildCount() == 0) {
+      rootNode.removeAllChildren();
+      outlineToNodeMap.clear();
+      if (outline.getChildren() != null) {
+        updateOutlineImpl(rootNode, outline.getChildren());
+      }
+
+      getTreeModel().reload(rootNode);
+      tree.expandAll();
     }
+    else {
+      // Update only the parts of the tree that changed, keeping the rest of it (and its expansion state).
+      final OutlineDiff diff = OutlineDiff.compute(previousOutline, outline);
+      final Map<FlutterOutline, DefaultMutableTreeNode> nodes = Maps.newIdentityHashMap();
+      final List<DefaultMutableTreeNode> insertedNodes = new ArrayList<>();
 
-    getTreeModel().reload(rootNode);
-    tree.expandAll();
+      // Removing or moving selected nodes changes the selection; that shouldn't move the caret.
+      tree.removeTreeSelectionListener(treeSelectionListener);
+      try {
+        updateChildNodes(rootNode, outline, diff, nodes, insertedNodes);
+      }
+      finally {
+        tree.addTreeSelectionListener(treeSelectionListener);
+      }
+
+      outlineToNodeMap.clear();
+      outlineToNodeMap.putAll(nodes);
+      for (DefaultMutableTreeNode node : insertedNodes) {
+        expandSubtree(node);
+      }
+    }
 
     if (currentEditor != null) {
       final Caret caret = currentEditor.getCaretModel().getPrimaryCaret();
@@ -671,10 +705,14 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     return hasWidget;
   }
 
+  private boolean isShownInTree(@NotNull FlutterOutline outline) {
+    return !FlutterSettings.getInstance().isShowOnlyWidgets() || outlinesWithWidgets.contains(outline);
+  }
+
   private void updateOutlineImpl(@NotNull DefaultMutableTreeNode parent, @NotNull List<FlutterOutline> outlines) {
     int index = 0;
     for (final FlutterOutline outline : outlines) {
-      if (FlutterSettings.getInstance().isShowOnlyWidgets() && !outlinesWithWidgets.contains(outline)) {
+      if (!isShownInTree(outline)) {
         continue;
       }
 
@@ -690,6 +728,90 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     }
   }
 
+  /**
+   * Makes the children of a node show the children of its new outline.
+   * <p>
+   * The nodes of matched outlines are reused, so only inserted, removed and changed outlines cause
+   * tree model events.
+   */
+  private void updateChildNodes(@NotNull DefaultMutableTreeNode parent,
+                                @NotNull FlutterOutline outline,
+                                @NotNull OutlineDiff diff,
+                                @NotNull Map<FlutterOutline, DefaultMutableTreeNode> nodes,
+                                @NotNull List<DefaultMutableTreeNode> insertedNodes) {
+    final List<DefaultMutableTreeNode> childNodes = new ArrayList<>();
+    if (outline.getChildren() != null) {
+      for (FlutterOutline child : outline.getChildren()) {
+        if (!isShownInTree(child)) {
+          continue;
+        }
+
+        final FlutterOutline oldChild = diff.getOldOutline(child);
+        DefaultMutableTreeNode node = oldChild == null ? null : outlineToNodeMap.get(oldChild);
+        if (node == null || node.getParent() != parent) {
+          node = createNodes(child, nodes);
+          insertedNodes.add(node);
+        }
+        else {
+          node.setUserObject(new OutlineObject(child));
+          nodes.put(child, node);
+          if (diff.isChanged(child)) {
+            getTreeModel().nodeChanged(node);
+          }
+          updateChildNodes(node, child, diff, nodes, insertedNodes);
+        }
+        childNodes.add(node);
+      }
+    }
+
+    // Remove the nodes that are no longer shown, then put the others in order.
+    final Set<DefaultMutableTreeNode> shown = Sets.newIdentityHashSet();
+    shown.addAll(childNodes);
+    for (int i = parent.getChildCount() - 1; i >= 0; i--) {
+      final DefaultMutableTreeNode node = (DefaultMutableTreeNode)parent.getChildAt(i);
+      if (!shown.contains(node)) {
+        getTreeModel().removeNodeFromParent(node);
+      }
+    }
+    for (int i = 0; i < childNodes.size(); i++) {
+      final DefaultMutableTreeNode node = childNodes.get(i);
+      if (i < parent.getChildCount() && parent.getChildAt(i) == node) {
+        continue;
+      }
+      if (node.getParent() == parent) {
+        getTreeModel().removeNodeFromParent(node);
+      }
+      getTreeModel().insertNodeInto(node, parent, i);
+    }
+  }
+
+  /**
+   * Creates the nodes for an outline and its shown descendants, without adding them to the tree.
+   */
+  @NotNull
+  private DefaultMutableTreeNode createNodes(@NotNull FlutterOutline outline, @NotNull Map<FlutterOutline, DefaultMutableTreeNode> nodes) {
+    final DefaultMutableTreeNode node = new DefaultMutableTreeNode(new OutlineObject(outline));
+    nodes.put(outline, node);
+    if (outline.getChildren() != null) {
+      for (FlutterOutline child : outline.getChildren()) {
+        if (isShownInTree(child)) {
+          node.add(createNodes(child, nodes));
+        }
+      }
+    }
+    return node;
+  }
+
+  private void expandSubtree(@NotNull DefaultMutableTreeNode node) {
+    if (node.isLeaf()) {
+      return;
+    }
+    tree.expandPath(new TreePath(node.getPath()));
+    for (int i = 0; i < node.getChildCount(); i++) {
+      expandSubtree((DefaultMutableTreeNode)node.getChildAt(i));
+    }
+  }
+
   @NotNull
   private List<FlutterOutline> getOutlinesSelectedInTree() {
     final List<FlutterOutline> selectedOutlines = new ArrayList<>();
@@ -721,57 +843,18 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
   }
 
   private int getConvertedOutlineOffset(FlutterOutline outline) {
-    final int offset = outline.getOffset();
-    return getConvertedFileOffset(offset);
+    final int offset = currentOutlineIndex != null ? currentOutlineIndex.getStart(outline) : -1;
+    return offset != -1 ? offset : getConvertedFileOffset(outline.getOffset());
   }
 
   private int getConvertedOutlineEnd(FlutterOutline outline) {
-    final int end = outline.getOffset() + outline.getLength();
-    return getConvertedFileOffset(end);
+    final int end = currentOutlineIndex != null ? currentOutlineIndex.getEnd(outline) : -1;
+    return end != -1 ? end : getConvertedFileOffset(outline.getOffset() + outline.getLength());
   }
 
-  private FlutterOutline findOutlineAtOffset(FlutterOutline outline, int offset) {
-    if (outline == null) {
-      return null;
-    }
-    if (getConvertedOutlineOffset(outline) <= offset && offset <= getConvertedOutlineEnd(outline)) {
-      if (outline.getChildren() != null) {
-        for (FlutterOutline child : outline.getChildren()) {
-          final FlutterOutline foundChild = findOutlineAtOffset(child, offset);
-          if (foundChild != null) {
-            return foundChild;
-          }
-        }
-      }
-      return outline;
-    }
-    return null;
-  }
-
-  private void addOutlinesCoveredByRange(List<FlutterOutline> covered, int start, int end, @Nullable FlutterOutline outline) {
-    if (outline == null) {
-      return;
-    }
-
-    final int outlineStart = getConvertedOutlineOffset(outline);
-    final int outlineEnd = getConvertedOutlineEnd(outline);
-    // The outline ends before, or starts after the selection.
-    if (outlineEnd < start || outlineStart > end) {
-      return;
-    }
-    // The outline is covered by the selection.
-    if (outlineStart >= start && outlineEnd <= end) {
-      covered.add(outline);
-      return;
-    }
-    // The outline covers the selection.
-    if (outlineStart <= start && end <= outlineEnd) {
-      if (outline.getChildren() != null) {
-        for (FlutterOutline child : outline.getChildren()) {
-          addOutlinesCoveredByRange(covered, start, end, child);
-        }
-      }
-    }
+  @Nullable
+  private FlutterOutline findOutlineAtOffset(int offset) {
+    return currentOutlineIndex != null ? currentOutlineIndex.findAt(offset) : null;
   }
 
   private void setSelectedFile(VirtualFile newFile) {
@@ -834,11 +917,13 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     final List<FlutterOutline> selectedOutlines = new ArrayList<>();
 
     // Try to find outlines covered by the selection.
-    addOutlinesCoveredByRange(selectedOutlines, caret.getSelectionStart(), caret.getSelectionEnd(), currentOutline);
+    if (currentOutlineIndex != null) {
+      selectedOutlines.addAll(currentOutlineIndex.findCoveredBy(caret.getSelectionStart(), caret.getSelectionEnd()));
+    }
 
     // If no covered outlines, try to find the outline under the caret.
     if (selectedOutlines.isEmpty()) {
-      final FlutterOutline outline = findOutlineAtOffset(currentOutline, caret.getOffset());
+      final FlutterOutline outline = findOutlineAtOffset(caret.getOffset());
       if (outline != null) {
         selectedOutlines.add(outline);
       }
@@ -932,10 +1017,12 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     panel.add(new JBLabel(PreviewArea.NOT_RENDERABLE), "cell 0 0");
 
     final LinkLabel linkLabel = LinkLabel.create("Add forDesignTime() constructor...", () -> {
-      final SourceChange change = flutterAnalysisServer.flutter_getChangeAddForDesignTimeConstructor(currentFile, widget.getOffset());
-      if (change != null) {
-        applyChangeAndShowException(change);
-      }
+      flutterAnalysisServer.flutter_getChangeAddForDesignTimeConstructor(currentFile, widget.getOffset())
+        .whenComplete((change, error) -> {
+          if (change != null) {
+            ApplicationManager.getApplication().invokeLater(() -> applyChangeAndShowException(change));
+          }
+        });
     });
     panel.add(linkLabel, "cell 0 1");
 
@@ -1092,8 +1179,8 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState>,
     public void actionPerformed(AnActionEvent e) {
       final FlutterSettings flutterSettings = FlutterSettings.getInstance();
       flutterSettings.setShowOnlyWidgets(!flutterSettings.isShowOnlyWidgets());
-      if (currentOutline != null) {
-        updateOutline(currentOutline);
+      if (currentOutlineIndex != null) {
+        updateOutline(currentOutlineIndex);
       }
     }
 
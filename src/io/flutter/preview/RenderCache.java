@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Successful render responses, so that going back to a widget that was already rendered with the
+ * same code and size shows it without asking a render server again.
+ * <p>
+ * Responses are keyed by a hash of the instrumented code of the file, the widget, its constructor and
+ * the size, and the least recently used ones are dropped once there are more than {@link #MAX_ENTRIES}.
+ * Changes to other files that the widget uses are not part of the key.
+ */
+class RenderCache {
+  static final int MAX_ENTRIES = 32;
+
+  private final LinkedHashMap<String, JsonObject> responses = new LinkedHashMap<String, JsonObject>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  /**
+   * Returns the key for rendering a widget of the given code in a pub root at the given size.
+   */
+  @NotNull
+  static String createKey(@NotNull String pubRootPath,
+                          @NotNull String code,
+                          @NotNull String widgetClass,
+                          @NotNull String widgetConstructor,
+                          int width,
+                          int height) {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for (String value : new String[]{pubRootPath, code, widgetClass, widgetConstructor}) {
+      hasher.putInt(value.length());
+      hasher.putString(value, StandardCharsets.UTF_8);
+    }
+    hasher.putInt(width);
+    hasher.putInt(height);
+    return hasher.hash().toString();
+  }
+
+  @Nullable
+  synchronized JsonObject get(@NotNull String key) {
+    return responses.get(key);
+  }
+
+  synchronized void put(@NotNull String key, @NotNull JsonObject response) {
+    responses.put(key, response);
+  }
+}
@@ -10,11 +10,11 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.JsonObject;
 import com.intellij.execution.configurations.GeneralCommandLine;
 import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.pub.PubRoot;
 import io.flutter.run.daemon.DaemonApi;
 import io.flutter.run.daemon.FlutterApp;
@@ -27,25 +27,25 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class RenderHelper {
+public class RenderHelper implements Disposable {
   private final Project myProject;
   private final Listener myListener;
 
   private final FlutterSdk myFlutterSdk;
-  private final RenderThread myRenderThread = new RenderThread();
+  private final RenderCache myRenderCache = new RenderCache();
+  private final RenderThread myRenderThread = new RenderThread(myRenderCache);
 
   private PubRoot myPubRoot;
   private Module myModule;
 
-  private VirtualFile myFile;
-  private FlutterOutline myFileOutline;
+  private OutlineIndex myOutlineIndex;
   private String myInstrumentedCode;
 
   private FlutterOutline myWidgetOutline;
@@ -62,17 +62,24 @@ public class RenderHelper {
     myRenderThread.start();
   }
 
+  /**
+   * Stop rendering and shut down the render servers.
+   */
+  @Override
+  public void dispose() {
+    myRenderThread.shutdown();
+  }
+
   /**
    * Set a new file, with or without outline.
    */
-  public void setFile(@Nullable VirtualFile file,
-                      @Nullable FlutterOutline fileOutline,
-                      @Nullable String instrumentedCode) {
-    myFile = file;
-    myFileOutline = fileOutline;
+  void setFile(@Nullable VirtualFile file,
+               @Nullable OutlineIndex outlineIndex,
+               @Nullable String instrumentedCode) {
+    myOutlineIndex = outlineIndex;
     myInstrumentedCode = instrumentedCode;
 
-    myPubRoot = PubRoot.forFile(file);
+    myPubRoot = PubRoot.forFile(myProject, file);
     if (myPubRoot != null) {
       myModule = myPubRoot.getModule(myProject);
     }
@@ -116,34 +123,11 @@ public class RenderHelper {
    * Return null if there is no associated widget class outline.
    */
   private FlutterOutline getContainingWidgetOutline(int offset) {
-    if (myFileOutline != null && myFileOutline.getChildren() != null) {
-      for (FlutterOutline outline : myFileOutline.getChildren()) {
-        final int outlineStart = getConvertedFileOffset(outline.getOffset());
-        final int outlineEnd = getConvertedFileOffset(outline.getOffset() + outline.getLength());
-
-        int stateStart = -1;
-        int stateEnd = -1;
-        if (outline.getStateOffset() != null && outline.getStateLength() != null) {
-          stateStart = getConvertedFileOffset(outline.getStateOffset());
-          stateEnd = getConvertedFileOffset(outline.getStateOffset() + outline.getStateLength());
-        }
-
-        if (outlineStart < offset && offset < outlineEnd ||
-            stateStart < offset && offset < stateEnd) {
-          if (outline.isWidgetClass()) {
-            return outline;
-          }
-          else {
-            return null;
-          }
-        }
-      }
+    if (myOutlineIndex == null) {
+      return null;
     }
-    return null;
-  }
-
-  private int getConvertedFileOffset(int offset) {
-    return DartAnalysisServerService.getInstance(myProject).getConvertedOffset(myFile, offset);
+    final FlutterOutline outline = myOutlineIndex.findTopLevelAt(offset);
+    return outline != null && outline.isWidgetClass() ? outline : null;
   }
 
   private void scheduleRendering() {
@@ -162,12 +146,25 @@ public class RenderHelper {
 
     final String widgetClass = myWidgetOutline.getDartElement().getName();
     final String constructor = myWidgetOutline.getRenderConstructor();
+    final String cacheKey =
+      RenderCache.createKey(myPubRoot.getPath(), myInstrumentedCode, widgetClass, constructor, myWidth, myHeight);
+
+    // If this widget was already rendered with the same code and size, show that.
+    final JsonObject cachedResponse = myRenderCache.get(cacheKey);
+    if (cachedResponse != null) {
+      myRenderThread.setRequest(null);
+      myListener.onSchedule(myWidgetOutline);
+      myListener.onResponse(myWidgetOutline, cachedResponse);
+      return;
+    }
+
     final RenderRequest request =
       new RenderRequest(myFlutterSdk,
                         myProject, myPubRoot, myModule,
                         myInstrumentedCode,
                         myWidgetOutline, widgetClass, constructor,
                         myWidth, myHeight,
+                        cacheKey,
                         myListener);
     myRenderThread.setRequest(request);
 
@@ -216,6 +213,11 @@ class RenderRequest {
   final int width;
   final int height;
 
+  /**
+   * The key of the response in the {@link RenderCache}.
+   */
+  @NotNull final String cacheKey;
+
   final RenderHelper.Listener listener;
 
   RenderRequest(@NotNull FlutterSdk flutterSdk,
@@ -228,6 +230,7 @@ class RenderRequest {
                 @NotNull String widgetConstructor,
                 int width,
                 int height,
+                @NotNull String cacheKey,
                 RenderHelper.Listener listener) {
     this.flutterSdk = flutterSdk;
     this.project = project;
@@ -239,22 +242,38 @@ class RenderRequest {
     this.widgetConstructor = widgetConstructor;
     this.width = width;
     this.height = height;
+    this.cacheKey = cacheKey;
     this.listener = listener;
   }
 }
 
 class RenderThread extends Thread {
+  private static String ourTemplate;
+
   final Object myRequestLock = new Object();
   RenderRequest myLastRequest;
   RenderRequest myNextRequest;
 
-  RenderRequest myProcessRequest;
-  FlutterApp myApp;
+  private final RenderServerPool myServerPool = new RenderServerPool();
+  private final RenderCache myRenderCache;
+
+  private volatile boolean myIsShutDown;
 
-  RenderThread() {
+  RenderThread(@NotNull RenderCache renderCache) {
+    myRenderCache = renderCache;
     setDaemon(true);
   }
 
+  /**
+   * Stop the thread after the current request, and shut down the render servers.
+   */
+  void shutdown() {
+    myIsShutDown = true;
+    setRequest(null);
+    interrupt();
+    myServerPool.shutdown();
+  }
+
   void setRequest(@Nullable RenderRequest request) {
     synchronized (myRequestLock) {
       if (myLastRequest != null) {
@@ -268,12 +287,11 @@ class RenderThread extends Thread {
 
   @Override
   public void run() {
-    //noinspection InfiniteLoopStatement
-    while (true) {
+    while (!myIsShutDown) {
       final RenderRequest request;
       try {
         synchronized (myRequestLock) {
-          if (myNextRequest == null) {
+          if (myNextRequest == null && !myIsShutDown) {
             myRequestLock.wait();
           }
 
@@ -297,6 +315,7 @@ class RenderThread extends Thread {
   private void render(@NotNull RenderRequest request) {
     final FlutterOutline widget = request.widget;
 
+    FlutterApp app = null;
     try {
       final String packagePath = request.pubRoot.getPath();
       final File dartToolDirectory = new File(packagePath, ".dart_tool");
@@ -308,8 +327,7 @@ class RenderThread extends Thread {
 
       final String widgetCreation = "new " + request.widgetClass + "." + request.widgetConstructor + "();";
 
-      final URL templateUri = RenderHelper.class.getResource("render_server_template.txt");
-      String template = Resources.toString(templateUri, StandardCharsets.UTF_8);
+      String template = getTemplate();
       template = template.replace("// TEMPLATE_VALUE: import library to render", "import '" + toRenderFile.getName() + "';");
       template = template.replace("new Container(); // TEMPLATE_VALUE: create widget", widgetCreation);
       template = template.replace("{}; // TEMPLATE_VALUE: use flutterDesignerWidgets", "flutterDesignerWidgets;");
@@ -320,36 +338,29 @@ class RenderThread extends Thread {
       final String renderServerPath = renderServerFile.getPath();
       FileUtil.writeToFile(renderServerFile, template);
 
-      // If the process is dead, clear the instance.
-      if (myApp != null && !myApp.isConnected()) {
-        myProcessRequest = null;
-        myApp = null;
-      }
-
-      // Check if the current render server process is compatible with the new request.
-      // If it is, attempt to perform hot reload.
+      // If there is a render server process for this pub root, attempt to perform hot reload.
       // If not successful, terminate the process.
-      boolean canRenderWithCurrentProcess = false;
-      if (myProcessRequest != null && myApp != null) {
-        if (Objects.equals(myProcessRequest.pubRoot.getPath(), packagePath)) {
-          try {
-            final DaemonApi.RestartResult restartResult = myApp.performHotReload(false).get(5000, TimeUnit.MILLISECONDS);
-            if (restartResult.ok()) {
-              canRenderWithCurrentProcess = true;
-            }
-          }
-          catch (Throwable ignored) {
+      app = myServerPool.get(packagePath);
+      if (app != null) {
+        boolean canRenderWithCurrentProcess = false;
+        try {
+          final DaemonApi.RestartResult restartResult = app.performHotReload(false).get(5000, TimeUnit.MILLISECONDS);
+          if (restartResult.ok()) {
+            canRenderWithCurrentProcess = true;
           }
         }
+        catch (Throwable ignored) {
+        }
 
         if (!canRenderWithCurrentProcess) {
-          terminateCurrentProcess("Project root or file changed, or reload failed");
+          myServerPool.terminate(packagePath);
+          app = null;
         }
       }
 
       // If there is no rendering server process, start a new one.
       // Wait for it to start.
-      if (myApp == null) {
+      if (app == null) {
         final FlutterCommand command = request.flutterSdk.flutterRunOnTester(request.pubRoot, renderServerPath);
         final GeneralCommandLine commandLine = command.createGeneralCommandLine(request.project);
 
@@ -357,7 +368,7 @@ class RenderThread extends Thread {
         // Set FLUTTER_TEST to force using Android (everywhere, not just on Windows)
         commandLine.getEnvironment().put("FLUTTER_TEST", "true");
 
-        final FlutterApp app = FlutterApp.start(
+        final FlutterApp newApp = FlutterApp.start(
           new ExecutionEnvironment(),
           request.project,
           request.module,
@@ -368,34 +379,30 @@ class RenderThread extends Thread {
           null);
 
         final CountDownLatch startedLatch = new CountDownLatch(1);
-        app.addStateListener(new FlutterApp.FlutterAppListener() {
+        newApp.addStateListener(new FlutterApp.FlutterAppListener() {
           @Override
           public void stateChanged(FlutterApp.State newState) {
             if (newState == FlutterApp.State.STARTED) {
               startedLatch.countDown();
             }
-            if (newState == FlutterApp.State.TERMINATING) {
-              myProcessRequest = null;
-              myApp = null;
-            }
           }
         });
 
         final boolean started = Uninterruptibles.awaitUninterruptibly(startedLatch, 10000, TimeUnit.MILLISECONDS);
         if (!started) {
-          terminateCurrentProcess("Initial start timeout.");
+          newApp.getProcessHandler().destroyProcess();
           invokeIfSameRequest(request, () -> request.listener.onFailure(RenderProblemKind.TIMEOUT_START, request.widget));
           return;
         }
 
-        myProcessRequest = request;
-        myApp = app;
+        myServerPool.add(packagePath, newApp);
+        app = newApp;
       }
 
       // Ask to render the widget.
       final CountDownLatch responseReceivedLatch = new CountDownLatch(1);
       final AtomicReference<JsonObject> responseRef = new AtomicReference<>();
-      myApp.callServiceExtension("ext.flutter.designer.render").thenAccept((response) -> {
+      app.callServiceExtension("ext.flutter.designer.render").thenAccept((response) -> {
         responseRef.set(response);
         responseReceivedLatch.countDown();
       });
@@ -403,7 +410,7 @@ class RenderThread extends Thread {
       // Wait for the response.
       final boolean responseReceived = Uninterruptibles.awaitUninterruptibly(responseReceivedLatch, 4000, TimeUnit.MILLISECONDS);
       if (!responseReceived) {
-        terminateCurrentProcess("Render response timeout.");
+        myServerPool.terminate(packagePath);
         invokeIfSameRequest(request, () -> request.listener.onFailure(RenderProblemKind.TIMEOUT_RENDER, widget));
         return;
       }
@@ -414,11 +421,15 @@ class RenderThread extends Thread {
         return;
       }
 
+      myRenderCache.put(request.cacheKey, response);
+
       // Send the respose to the client.
       invokeIfSameRequest(request, () -> request.listener.onResponse(widget, response));
     }
     catch (Throwable e) {
-      terminateCurrentProcess("Exception");
+      if (app != null) {
+        myServerPool.terminate(request.pubRoot.getPath());
+      }
       invokeIfSameRequest(request, () -> request.listener.onLocalException(widget, e));
     }
   }
@@ -429,12 +440,15 @@ class RenderThread extends Thread {
     }
   }
 
-  private void terminateCurrentProcess(String reason) {
-    myProcessRequest = null;
-
-    if (myApp != null) {
-      myApp.getProcessHandler().destroyProcess();
-      myApp = null;
+  /**
+   * Returns the render server template, reading it the first time it's needed.
+   */
+  @NotNull
+  private static synchronized String getTemplate() throws IOException {
+    if (ourTemplate == null) {
+      final URL templateUri = RenderHelper.class.getResource("render_server_template.txt");
+      ourTemplate = Resources.toString(templateUri, StandardCharsets.UTF_8);
     }
+    return ourTemplate;
   }
 }
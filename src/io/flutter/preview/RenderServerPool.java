@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import com.intellij.concurrency.JobScheduler;
+import io.flutter.run.daemon.FlutterApp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running render servers, one per pub root, so that switching between files of a few packages
+ * doesn't cold start flutter-tester every time.
+ * <p>
+ * At most {@link #MAX_SERVERS} servers are kept; the least recently used one is shut down to make
+ * room for another. Servers that haven't been used for {@link #IDLE_TIMEOUT_MS} are shut down too.
+ */
+class RenderServerPool {
+  static final int MAX_SERVERS = 3;
+  static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * The servers by pub root path, least recently used first.
+   */
+  private final LinkedHashMap<String, Server> servers = new LinkedHashMap<>(8, 0.75f, true);
+
+  /**
+   * Shuts down idle servers; non-null while there are any servers.
+   */
+  private ScheduledFuture idleCheck;
+
+  /**
+   * Set once the pool is shut down; servers that finish starting after that are terminated.
+   */
+  private boolean isShutDown;
+
+  /**
+   * Returns the running server for the given pub root, or null if there isn't one.
+   */
+  @Nullable
+  synchronized FlutterApp get(@NotNull String pubRootPath) {
+    final Server server = servers.get(pubRootPath);
+    if (server == null) {
+      return null;
+    }
+    if (!server.app.isConnected()) {
+      remove(pubRootPath, server.app);
+      return null;
+    }
+    server.lastUsed = System.currentTimeMillis();
+    return server.app;
+  }
+
+  /**
+   * Adds a started server, shutting down the least recently used one if the pool is full.
+   */
+  void add(@NotNull String pubRootPath, @NotNull FlutterApp app) {
+    final List<FlutterApp> toTerminate = new ArrayList<>();
+    final boolean shutDown;
+    synchronized (this) {
+      shutDown = isShutDown;
+      if (shutDown) {
+        toTerminate.add(app);
+      }
+      else {
+        final Server previous = servers.put(pubRootPath, new Server(app));
+        if (previous != null && previous.app != app) {
+          toTerminate.add(previous.app);
+        }
+        final Iterator<Server> it = servers.values().iterator();
+        while (servers.size() > MAX_SERVERS && it.hasNext()) {
+          toTerminate.add(it.next().app);
+          it.remove();
+        }
+        if (idleCheck == null) {
+          idleCheck = JobScheduler.getScheduler().scheduleWithFixedDelay(this::terminateIdle, 1, 1, TimeUnit.MINUTES);
+        }
+      }
+    }
+    toTerminate.forEach(RenderServerPool::terminate);
+    if (shutDown) {
+      return;
+    }
+
+    app.addStateListener(new FlutterApp.FlutterAppListener() {
+      @Override
+      public void stateChanged(FlutterApp.State newState) {
+        if (newState == FlutterApp.State.TERMINATING) {
+          remove(pubRootPath, app);
+        }
+      }
+    });
+  }
+
+  /**
+   * Shuts down the server for the given pub root, if there is one.
+   */
+  void terminate(@NotNull String pubRootPath) {
+    final Server server;
+    synchronized (this) {
+      server = servers.remove(pubRootPath);
+      cancelIdleCheckIfEmpty();
+    }
+    if (server != null) {
+      terminate(server.app);
+    }
+  }
+
+  /**
+   * Shuts down all servers and the idle check, and terminates any server added later.
+   */
+  void shutdown() {
+    final List<FlutterApp> toTerminate = new ArrayList<>();
+    synchronized (this) {
+      isShutDown = true;
+      for (Server server : servers.values()) {
+        toTerminate.add(server.app);
+      }
+      servers.clear();
+      cancelIdleCheckIfEmpty();
+    }
+    toTerminate.forEach(RenderServerPool::terminate);
+  }
+
+  private synchronized void remove(@NotNull String pubRootPath, @NotNull FlutterApp app) {
+    final Server server = servers.get(pubRootPath);
+    if (server != null && server.app == app) {
+      servers.remove(pubRootPath);
+      cancelIdleCheckIfEmpty();
+    }
+  }
+
+  private void terminateIdle() {
+    final List<FlutterApp> toTerminate = new ArrayList<>();
+    synchronized (this) {
+      final long now = System.currentTimeMillis();
+      for (Iterator<Map.Entry<String, Server>> it = servers.entrySet().iterator(); it.hasNext(); ) {
+        final Server server = it.next().getValue();
+        if (now - server.lastUsed >= IDLE_TIMEOUT_MS) {
+          toTerminate.add(server.app);
+          it.remove();
+        }
+      }
+      cancelIdleCheckIfEmpty();
+    }
+    toTerminate.forEach(RenderServerPool::terminate);
+  }
+
+  private void cancelIdleCheckIfEmpty() {
+    if (servers.isEmpty() && idleCheck != null) {
+      idleCheck.cancel(false);
+      idleCheck = null;
+    }
+  }
+
+  private static void terminate(@NotNull FlutterApp app) {
+    app.getProcessHandler().destroyProcess();
+  }
+
+  private static class Server {
+    @NotNull final FlutterApp app;
+    long lastUsed = System.currentTimeMillis();
+
+    Server(@NotNull FlutterApp app) {
+      this.app = app;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A map from '/'-separated paths to values that can find the values stored at a path's ancestors.
+ * <p>
+ * A lookup takes one step per path segment, however many paths are stored.
+ */
+class PathTrie<T> {
+  private final Node<T> root = new Node<>();
+  private int size;
+
+  /**
+   * Stores a value at the given path, replacing any value already there.
+   */
+  void put(@NotNull String path, @NotNull T value) {
+    Node<T> node = root;
+    for (String name : path.split("/")) {
+      if (!name.isEmpty()) {
+        node = node.children.computeIfAbsent(name, (key) -> new Node<>());
+      }
+    }
+    if (node.value == null) {
+      size++;
+    }
+    node.value = value;
+  }
+
+  /**
+   * Returns the value stored at exactly the given path, or null if there is none.
+   */
+  @Nullable
+  T get(@NotNull String path) {
+    Node<T> node = root;
+    for (String name : path.split("/")) {
+      if (!name.isEmpty()) {
+        node = node.children.get(name);
+        if (node == null) {
+          return null;
+        }
+      }
+    }
+    return node.value;
+  }
+
+  /**
+   * Returns the value stored at the longest prefix of the given path (the path itself or its nearest
+   * ancestor) that is accepted by the filter, or null if there is none.
+   */
+  @Nullable
+  T findLongestPrefix(@NotNull String path, @NotNull Predicate<T> filter) {
+    Node<T> node = root;
+    T result = root.value != null && filter.test(root.value) ? root.value : null;
+    for (String name : path.split("/")) {
+      if (name.isEmpty()) {
+        continue;
+      }
+      node = node.children.get(name);
+      if (node == null) {
+        break;
+      }
+      if (node.value != null && filter.test(node.value)) {
+        result = node.value;
+      }
+    }
+    return result;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private static class Node<T> {
+    final Map<String, Node<T>> children = new HashMap<>();
+    @Nullable T value;
+  }
+}
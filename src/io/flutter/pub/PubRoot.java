@@ -13,7 +13,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
@@ -65,6 +64,19 @@ public class PubRoot {
     return forFile(file.getParent());
   }
 
+  /**
+   * Returns the innermost pub root containing the given file, looking it up in the project's
+   * {@link PubRootCache} first.
+   * <p>
+   * Falls back to walking up from the file when it's not under one of the project's content roots.
+   */
+  @Nullable
+  public static PubRoot forFile(@NotNull Project project, @Nullable VirtualFile file) {
+    if (file == null) return null;
+    final PubRoot root = PubRootCache.getInstance(project).forFile(file);
+    return root != null ? root : forFile(file);
+  }
+
   /**
    * Returns the appropriate pub root for an event.
    * <p>
@@ -124,10 +136,9 @@ public class PubRoot {
    * Based on the filesystem cache; doesn't refresh anything.
    */
   @Nullable
-  public static PubRoot forDescendant(VirtualFile fileOrDir, Project project) {
-    final ProjectFileIndex index = ProjectRootManager.getInstance(project).getFileIndex();
-    final VirtualFile root = index.getContentRootForFile(fileOrDir);
-    return forDirectory(root);
+  public static PubRoot forDescendant(@Nullable VirtualFile fileOrDir, @NotNull Project project) {
+    if (fileOrDir == null) return null;
+    return PubRootCache.getInstance(project).forDescendant(fileOrDir);
   }
 
   /**
@@ -234,6 +245,14 @@ public class PubRoot {
     return pubspec;
   }
 
+  /**
+   * Returns the parsed contents of the pubspec.
+   */
+  @NotNull
+  public PubspecModel getPubspecModel() {
+    return PubspecCache.getInstance().get(pubspec);
+  }
+
   /**
    * Returns true if the pubspec declares a flutter dependency.
    */
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import io.flutter.project.ProjectWatch;
+import io.flutter.utils.FileWatch;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the PubRoots of a Project's content roots.
+ * <p>
+ * The index is built the first time it's needed. It is rebuilt after module roots change, and each
+ * content root's entry is updated when its pubspec.yaml, .packages file or lib directory is created
+ * or deleted.
+ * <p>
+ * Like {@link PubRoot#forDirectory}, it's based on the filesystem cache and doesn't refresh anything.
+ */
+public class PubRootCache {
+  private static final List<String> WATCHED_PATHS = ImmutableList.of("pubspec.yaml", ".packages", "lib");
+
+  @NotNull private final Project project;
+
+  /**
+   * The current index, or null if it needs to be rebuilt.
+   */
+  @Nullable private volatile Index index;
+
+  private PubRootCache(@NotNull final Project project) {
+    this.project = project;
+
+    // Detect module root changes.
+    ProjectWatch.subscribe(project, this::invalidate);
+  }
+
+  @NotNull
+  public static PubRootCache getInstance(@NotNull final Project project) {
+    return ServiceManager.getService(project, PubRootCache.class);
+  }
+
+  /**
+   * Returns a PubRoot for each of the project's content roots that contains a pubspec.yaml file.
+   */
+  @NotNull
+  public List<PubRoot> getRoots() {
+    return getIndex().roots;
+  }
+
+  /**
+   * Returns a PubRoot for each of the module's content roots that contains a pubspec.yaml file.
+   */
+  @NotNull
+  public List<PubRoot> getRoots(@NotNull Module module) {
+    final List<PubRoot> roots = getIndex().rootsByModule.get(module);
+    // A module that isn't indexed yet (for example, one just added) is looked up directly.
+    return roots != null ? roots : PubRoots.findRoots(module);
+  }
+
+  /**
+   * Returns the innermost PubRoot among the project's content roots that contains the given file or
+   * directory, or null if there is none.
+   */
+  @Nullable
+  public PubRoot forFile(@NotNull VirtualFile fileOrDir) {
+    final ContentRoot root = getIndex().trie.findLongestPrefix(fileOrDir.getPath(), (entry) -> entry.pubRoot != null);
+    return root == null ? null : root.pubRoot;
+  }
+
+  /**
+   * Returns the PubRoot for the innermost content root containing the given file or directory, or
+   * null if that content root has no pubspec.yaml file.
+   */
+  @Nullable
+  public PubRoot forDescendant(@NotNull VirtualFile fileOrDir) {
+    final ContentRoot root = getIndex().trie.findLongestPrefix(fileOrDir.getPath(), (entry) -> true);
+    return root == null ? null : root.pubRoot;
+  }
+
+  @NotNull
+  private Index getIndex() {
+    final Index current = index;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (index == null) {
+        index = new Index(project);
+      }
+      return index;
+    }
+  }
+
+  private void invalidate() {
+    final Index previous;
+    synchronized (this) {
+      previous = index;
+      index = null;
+    }
+    if (previous != null) {
+      previous.dispose();
+    }
+  }
+
+  /**
+   * A content root of a module and its current PubRoot, if any.
+   */
+  private static class ContentRoot {
+    @NotNull final Module module;
+    @NotNull final VirtualFile dir;
+    @Nullable volatile PubRoot pubRoot;
+
+    ContentRoot(@NotNull Module module, @NotNull VirtualFile dir) {
+      this.module = module;
+      this.dir = dir;
+      this.pubRoot = PubRoot.forDirectory(dir);
+    }
+  }
+
+  private static class Index {
+    @NotNull final PathTrie<ContentRoot> trie = new PathTrie<>();
+    @NotNull final List<ContentRoot> contentRoots = new ArrayList<>();
+    @NotNull final List<FileWatch> watches = new ArrayList<>();
+
+    // Derived from contentRoots; replaced when a content root's PubRoot changes.
+    @NotNull volatile List<PubRoot> roots = ImmutableList.of();
+    @NotNull volatile Map<Module, List<PubRoot>> rootsByModule = new LinkedHashMap<>();
+
+    Index(@NotNull Project project) {
+      for (Module module : ModuleManager.getInstance(project).getModules()) {
+        for (VirtualFile dir : ModuleRootManager.getInstance(module).getContentRoots()) {
+          final ContentRoot root = new ContentRoot(module, dir);
+          contentRoots.add(root);
+          trie.put(dir.getPath(), root);
+
+          final FileWatch watch = FileWatch.subscribe(dir, WATCHED_PATHS, () -> update(root));
+          watch.setDisposeParent(project);
+          watches.add(watch);
+        }
+      }
+      updateLists();
+    }
+
+    private void update(@NotNull ContentRoot root) {
+      root.pubRoot = PubRoot.forDirectory(root.dir);
+      updateLists();
+    }
+
+    private synchronized void updateLists() {
+      final List<PubRoot> all = new ArrayList<>();
+      final Map<Module, List<PubRoot>> byModule = new LinkedHashMap<>();
+      for (ContentRoot root : contentRoots) {
+        final List<PubRoot> moduleRoots = byModule.computeIfAbsent(root.module, (module) -> new ArrayList<>());
+        final PubRoot pubRoot = root.pubRoot;
+        if (pubRoot != null) {
+          all.add(pubRoot);
+          moduleRoots.add(pubRoot);
+        }
+      }
+      byModule.replaceAll((module, list) -> ImmutableList.copyOf(list));
+      rootsByModule = byModule;
+      roots = ImmutableList.copyOf(all);
+    }
+
+    void dispose() {
+      for (FileWatch watch : watches) {
+        watch.unsubscribe();
+      }
+    }
+  }
+}
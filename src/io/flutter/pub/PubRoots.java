@@ -6,7 +6,6 @@
 package io.flutter.pub;
 
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -30,6 +29,14 @@ public class PubRoots {
    */
   @NotNull
   public static List<PubRoot> forModule(@NotNull Module module) {
+    return PubRootCache.getInstance(module.getProject()).getRoots(module);
+  }
+
+  /**
+   * Looks up the PubRoots of a module's content roots without using the {@link PubRootCache}.
+   */
+  @NotNull
+  static List<PubRoot> findRoots(@NotNull Module module) {
     final List<PubRoot> result = new ArrayList<>();
     for (VirtualFile dir : ModuleRootManager.getInstance(module).getContentRoots()) {
       final PubRoot root = PubRoot.forDirectory(dir);
@@ -47,10 +54,6 @@ public class PubRoots {
    */
   @NotNull
   public static List<PubRoot> forProject(@NotNull Project project) {
-    final List<PubRoot> result = new ArrayList<>();
-    for (Module module : ModuleManager.getInstance(project).getModules()) {
-      result.addAll(forModule(module));
-    }
-    return result;
+    return PubRootCache.getInstance(project).getRoots();
   }
 }
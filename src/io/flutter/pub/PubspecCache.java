@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed pubspec files, so that checks such as {@link PubRoot#declaresFlutter} don't read and parse
+ * the YAML again on every call.
+ * <p>
+ * Each entry remembers the modification stamp of the file it was parsed from and is re-parsed if
+ * the stamp changes. Entries are dropped as soon as the VFS reports that their file (or a directory
+ * above it) changed, and the least recently used ones are dropped once there are more than
+ * {@link #MAX_ENTRIES}.
+ * <p>
+ * This is an application service rather than a project one because most lookups, such as
+ * {@link io.flutter.FlutterUtils#declaresFlutter}, only have the pubspec file, and finding its project
+ * would cost a read action per call. Since the cache is bounded, it doesn't need to be released
+ * when a project closes.
+ */
+public class PubspecCache implements Disposable {
+  static final int MAX_ENTRIES = 256;
+
+  private final LinkedHashMap<VirtualFile, Entry> entries = new LinkedHashMap<VirtualFile, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<VirtualFile, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  private PubspecCache() {
+    ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          invalidate(event);
+        }
+      }
+    });
+  }
+
+  @NotNull
+  public static PubspecCache getInstance() {
+    return ServiceManager.getService(PubspecCache.class);
+  }
+
+  /**
+   * Returns the model of the given pubspec, parsing it if it has changed since it was last parsed.
+   * <p>
+   * Returns an empty model if the file can't be read or isn't valid YAML.
+   */
+  @NotNull
+  public PubspecModel get(@NotNull VirtualFile pubspec) {
+    final long stamp = pubspec.getModificationStamp();
+    synchronized (entries) {
+      final Entry cached = entries.get(pubspec);
+      if (cached != null && cached.stamp == stamp) {
+        hitCount.incrementAndGet();
+        return cached.model;
+      }
+    }
+
+    // Parse outside the lock; if two threads race, both results are equivalent.
+    missCount.incrementAndGet();
+    final PubspecModel model = parse(pubspec);
+    synchronized (entries) {
+      entries.put(pubspec, new Entry(stamp, model));
+    }
+    return model;
+  }
+
+  /**
+   * Forgets the parsed model of the given pubspec.
+   */
+  public void invalidate(@NotNull VirtualFile pubspec) {
+    synchronized (entries) {
+      entries.remove(pubspec);
+    }
+  }
+
+  /**
+   * Returns the number of lookups answered from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups that had to parse the file.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  private void invalidate(@NotNull VFileEvent event) {
+    final VirtualFile file = event.getFile();
+    if (file == null) {
+      return;
+    }
+    if (event instanceof VFileContentChangeEvent) {
+      invalidate(file);
+      return;
+    }
+
+    // A delete, move or rename may affect any pubspec at or below the event's file.
+    synchronized (entries) {
+      entries.keySet().removeIf((pubspec) -> VfsUtilCore.isAncestor(file, pubspec, false));
+    }
+  }
+
+  @NotNull
+  private static PubspecModel parse(@NotNull VirtualFile pubspec) {
+    try {
+      return PubspecModel.parse(new String(pubspec.contentsToByteArray(true /* cache contents */), StandardCharsets.UTF_8));
+    }
+    catch (IOException e) {
+      return PubspecModel.NONE;
+    }
+  }
+
+  private static class Entry {
+    final long stamp;
+    @NotNull final PubspecModel model;
+
+    Entry(long stamp, @NotNull PubspecModel model) {
+      this.stamp = stamp;
+      this.model = model;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The parts of a pubspec.yaml file that the plugin looks at.
+ * <p>
+ * Use {@link PubspecCache} to get the model for a file without parsing it again.
+ */
+public class PubspecModel {
+  static final PubspecModel NONE = new PubspecModel(null, ImmutableSet.of(), ImmutableSet.of(), null);
+
+  @Nullable
+  private final String name;
+
+  @NotNull
+  private final ImmutableSet<String> dependencies;
+
+  @NotNull
+  private final ImmutableSet<String> devDependencies;
+
+  @Nullable
+  private final Map<String, Object> flutter;
+
+  private PubspecModel(@Nullable String name,
+                       @NotNull ImmutableSet<String> dependencies,
+                       @NotNull ImmutableSet<String> devDependencies,
+                       @Nullable Map<String, Object> flutter) {
+    this.name = name;
+    this.dependencies = dependencies;
+    this.devDependencies = devDependencies;
+    this.flutter = flutter;
+  }
+
+  /**
+   * Parses the contents of a pubspec. Returns an empty model if it isn't a valid YAML map.
+   */
+  @NotNull
+  public static PubspecModel parse(@NotNull String contents) {
+    final Map<String, Object> yaml = loadPubspecInfo(contents);
+    if (yaml == null) {
+      return NONE;
+    }
+
+    final Object name = yaml.get("name");
+    return new PubspecModel(name == null ? null : name.toString(),
+                            keysOf(yaml.get("dependencies")),
+                            keysOf(yaml.get("dev_dependencies")),
+                            sectionOf(yaml.get("flutter")));
+  }
+
+  /**
+   * Returns the package name, or null if not set.
+   */
+  @Nullable
+  public String getName() {
+    return name;
+  }
+
+  @NotNull
+  public ImmutableSet<String> getDependencies() {
+    return dependencies;
+  }
+
+  @NotNull
+  public ImmutableSet<String> getDevDependencies() {
+    return devDependencies;
+  }
+
+  /**
+   * Returns the contents of the 'flutter:' section, or null if there isn't one.
+   */
+  @Nullable
+  public Map<String, Object> getFlutterSection() {
+    return flutter;
+  }
+
+  /**
+   * Returns true if the pubspec declares a flutter dependency.
+   */
+  public boolean declaresFlutter() {
+    // It uses Flutter if it contains:
+    // dependencies:
+    //   flutter:
+
+    // Special case the 'flutter' package itself - this allows us to run their unit tests from IntelliJ.
+    return "flutter".equals(name) || dependencies.contains("flutter");
+  }
+
+  /**
+   * Returns true if the pubspec indicates that it is a Flutter plugin.
+   */
+  public boolean isFlutterPlugin() {
+    // It's a plugin if it contains:
+    // flutter:
+    //   plugin:
+    return flutter != null && flutter.containsKey("plugin");
+  }
+
+  @NotNull
+  private static ImmutableSet<String> keysOf(@Nullable Object section) {
+    if (!(section instanceof Map)) {
+      return ImmutableSet.of();
+    }
+    final ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+    for (Object key : ((Map<?, ?>)section).keySet()) {
+      keys.add(Objects.toString(key));
+    }
+    return keys.build();
+  }
+
+  @Nullable
+  private static Map<String, Object> sectionOf(@Nullable Object section) {
+    if (!(section instanceof Map)) {
+      return null;
+    }
+    final Map<String, Object> entries = new LinkedHashMap<>();
+    for (Map.Entry<?, ?> entry : ((Map<?, ?>)section).entrySet()) {
+      entries.put(Objects.toString(entry.getKey()), entry.getValue());
+    }
+    return Collections.unmodifiableMap(entries);
+  }
+
+  private static Map<String, Object> loadPubspecInfo(@NotNull String yamlContents) {
+    final Yaml yaml = new Yaml(new SafeConstructor(), new Representer(), new DumperOptions(), new Resolver() {
+      @Override
+      protected void addImplicitResolvers() {
+        this.addImplicitResolver(Tag.BOOL, BOOL, "yYnNtTfFoO");
+        this.addImplicitResolver(Tag.NULL, NULL, "~nN\u0000");
+        this.addImplicitResolver(Tag.NULL, EMPTY, null);
+        this.addImplicitResolver(new Tag("tag:yaml.org,2002:value"), VALUE, "=");
+        this.addImplicitResolver(Tag.MERGE, MERGE, "<");
+      }
+    });
+
+    try {
+      //noinspection unchecked
+      return (Map)yaml.load(yamlContents);
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+}
@@ -64,7 +64,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -154,24 +153,62 @@ public class FlutterReloadManager {
     }, project);
   }
 
-  private final AtomicBoolean handlingSave = new AtomicBoolean(false);
+  /**
+   * Saves are merged into at most one scheduled reload and, while a reload is in flight, at most
+   * one trailing reload. All fields below are guarded by reloadLock.
+   */
+  private final Object reloadLock = new Object();
+
+  /**
+   * True when a reload is waiting for its debounce delay to pass.
+   */
+  private boolean reloadScheduled;
+
+  /**
+   * True from the end of the debounce delay until the reload has completed.
+   */
+  private boolean reloadRunning;
+
+  /**
+   * True when a save happened while a reload was running, so another reload should follow it.
+   */
+  private boolean reloadPending;
+
+  private @Nullable FlutterApp reloadApp;
+  private @Nullable Editor reloadEditor;
+
+  /**
+   * When the first save merged into the scheduled reload happened.
+   */
+  private long firstSaveTime;
+
+  /**
+   * When the first save merged into the trailing reload happened.
+   */
+  private long pendingSaveTime;
+
+  private final ReloadStats reloadStats = new ReloadStats();
+
+  /**
+   * Returns the timings of recent reloads on save.
+   */
+  @NotNull
+  public ReloadStats getReloadStats() {
+    return reloadStats;
+  }
 
   private void handleSaveAllNotification(@Nullable Editor editor) {
     if (!mySettings.isReloadOnSave() || editor == null) {
       return;
     }
 
-    if (handlingSave.get()) {
-      return;
-    }
-
     final AnAction reloadAction = ProjectActions.getAction(myProject, ReloadFlutterApp.ID);
     final FlutterApp app = getApp(reloadAction);
     if (app == null) {
       return;
     }
 
-    if (!app.isStarted() || app.isReloading()) {
+    if (!app.isStarted()) {
       return;
     }
 
@@ -179,57 +216,142 @@ public class FlutterReloadManager {
       return;
     }
 
-    // Add an arbitrary 125ms delay to allow analysis to catch up. This delay gives the analysis server a
-    // small pause to return error results in the (relatively infrequent) case where the user makes a bad
-    // edit and immediately hits save.
-    final int reloadDelayMs = 125;
+    synchronized (reloadLock) {
+      reloadApp = app;
+      reloadEditor = editor;
 
-    handlingSave.set(true);
+      if (reloadRunning) {
+        // The reload in flight may not include this save; do one more once it's done.
+        if (!reloadPending) {
+          reloadPending = true;
+          pendingSaveTime = System.currentTimeMillis();
+        }
+      }
+      else if (!reloadScheduled) {
+        firstSaveTime = System.currentTimeMillis();
+        scheduleReload();
+      }
+    }
+  }
 
-    JobScheduler.getScheduler().schedule(() -> {
-      clearLastNotification();
+  /**
+   * Schedules a reload after the debounce delay. Must be called while holding reloadLock.
+   */
+  private void scheduleReload() {
+    reloadScheduled = true;
+    JobScheduler.getScheduler().schedule(this::performReloadOnSave, getReloadDelayMs(), TimeUnit.MILLISECONDS);
+  }
 
-      if (app.getState() == FlutterApp.State.TERMINATING || app.getState() == FlutterApp.State.TERMINATED) {
-        handlingSave.set(false);
+  /**
+   * Returns how long to wait after a save before reloading.
+   * <p>
+   * The delay is at least 125ms, to allow analysis to catch up. This gives the analysis server a small
+   * pause to return error results in the (relatively infrequent) case where the user makes a bad edit
+   * and immediately hits save. When reloads are slow it grows, up to half a second, so that a burst of
+   * saves is more likely to be handled by a single reload.
+   */
+  private long getReloadDelayMs() {
+    final long medianReloadMs = reloadStats.getPercentile(ReloadStats.Phase.TOTAL, 50);
+    return Math.max(125, Math.min(500, medianReloadMs / 4));
+  }
 
-        return;
-      }
+  private void performReloadOnSave() {
+    try {
+      startReloadOnSave();
+    }
+    catch (Throwable t) {
+      LOG.error(t);
+      finishReload(false);
+    }
+  }
 
-      if (hasErrors(app.getProject(), app.getModule(), editor.getDocument())) {
-        handlingSave.set(false);
+  private void startReloadOnSave() {
+    final FlutterApp app;
+    final Editor editor;
+    final long saveTime;
+    synchronized (reloadLock) {
+      reloadScheduled = false;
+      reloadRunning = true;
+      app = reloadApp;
+      editor = reloadEditor;
+      saveTime = firstSaveTime;
+    }
+    if (app == null || editor == null) {
+      finishReload(false);
+      return;
+    }
 
-        showAnalysisNotification("Reload not performed", "Analysis issues found", true);
+    clearLastNotification();
 
-        return;
-      }
+    if (app.getState() == FlutterApp.State.TERMINATING || app.getState() == FlutterApp.State.TERMINATED) {
+      finishReload(false);
+      return;
+    }
 
-      final Notification notification = showRunNotification(app, null, "Reloading…", false);
-      final long startTime = System.currentTimeMillis();
+    if (app.isReloading()) {
+      // Another reload or restart (for example, one started by hand) is in flight; try again after it.
+      finishReload(true);
+      return;
+    }
 
-      app.performHotReload(supportsPauseAfterReload()).thenAccept(result -> {
-        if (!result.ok()) {
-          notification.expire();
-          showRunNotification(app, "Hot Reload Error", result.getMessage(), true);
-        }
-        else if (result.isRestartRecommended()) {
+    final long analysisStart = System.currentTimeMillis();
+    if (hasErrors(app.getProject(), app.getModule(), editor.getDocument())) {
+      showAnalysisNotification("Reload not performed", "Analysis issues found", true);
+      finishReload(false);
+      return;
+    }
+    final long analysisMs = System.currentTimeMillis() - analysisStart;
+
+    final Notification notification = showRunNotification(app, null, "Reloading…", false);
+    final long startTime = System.currentTimeMillis();
+
+    app.performHotReload(supportsPauseAfterReload()).thenAccept(result -> {
+      final long endTime = System.currentTimeMillis();
+      reloadStats.record(analysisMs, endTime - startTime, endTime - saveTime);
+
+      if (!result.ok()) {
+        notification.expire();
+        showRunNotification(app, "Hot Reload Error", result.getMessage(), true);
+      }
+      else if (result.isRestartRecommended()) {
+        notification.expire();
+        showRunNotification(app, "Reloading…", RESTART_SUGGESTED_TEXT, false);
+      }
+      else {
+        // Make sure the reloading message is displayed for at least 2 seconds (so it doesn't just flash by).
+        final long delay = Math.max(0, 2000 - (System.currentTimeMillis() - startTime));
+
+        JobScheduler.getScheduler().schedule(() -> UIUtil.invokeLaterIfNeeded(() -> {
           notification.expire();
-          showRunNotification(app, "Reloading…", RESTART_SUGGESTED_TEXT, false);
-        }
-        else {
-          // Make sure the reloading message is displayed for at least 2 seconds (so it doesn't just flash by).
-          final long delay = Math.max(0, 2000 - (System.currentTimeMillis() - startTime));
 
-          JobScheduler.getScheduler().schedule(() -> UIUtil.invokeLaterIfNeeded(() -> {
-            notification.expire();
+          // If the 'Reloading…' notification is still the most recent one, then clear it.
+          if (isLastNotification(notification)) {
+            removeRunNotifications(app);
+          }
+        }), delay, TimeUnit.MILLISECONDS);
+      }
+    }).whenComplete((aVoid, throwable) -> finishReload(false));
+  }
 
-            // If the 'Reloading…' notification is still the most recent one, then clear it.
-            if (isLastNotification(notification)) {
-              removeRunNotifications(app);
-            }
-          }), delay, TimeUnit.MILLISECONDS);
-        }
-      }).whenComplete((aVoid, throwable) -> handlingSave.set(false));
-    }, reloadDelayMs, TimeUnit.MILLISECONDS);
+  /**
+   * Ends the current reload, scheduling a trailing reload if saves happened while it ran.
+   */
+  private void finishReload(boolean retry) {
+    synchronized (reloadLock) {
+      reloadRunning = false;
+      if (reloadPending) {
+        reloadPending = false;
+        firstSaveTime = pendingSaveTime;
+        scheduleReload();
+      }
+      else if (retry) {
+        scheduleReload();
+      }
+      else {
+        reloadApp = null;
+        reloadEditor = null;
+      }
+    }
   }
 
   public void saveAllAndReload(@NotNull FlutterApp app) {
@@ -12,15 +12,18 @@ import com.intellij.xdebugger.XDebuggerUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.DartFileType;
 import io.flutter.server.vmService.DartVmServiceDebugProcess;
+import io.flutter.server.vmService.TokenPositionCache;
+import io.flutter.server.vmService.TokenPositionTable;
 import gnu.trove.THashMap;
-import gnu.trove.TIntObjectHashMap;
+import gnu.trove.THashSet;
 import org.dartlang.vm.service.element.Script;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Iterator;
-import java.util.List;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A specific version of a Dart file, as downloaded from Observatory.
@@ -34,9 +37,11 @@ import java.util.Map;
 class ObservatoryFile {
   /**
    * Maps an observatory token id to its line and column.
+   * <p>
+   * Shared with other users of the same script version; see {@link TokenPositionCache}.
    */
   @NotNull
-  private final TIntObjectHashMap<Position> positionMap;
+  private final TokenPositionTable positions;
 
   /**
    * User-visible source code downloaded from Observatory.
@@ -49,8 +54,8 @@ class ObservatoryFile {
   @Nullable
   private final LightVirtualFile snapshot;
 
-  ObservatoryFile(@NotNull Script script, boolean wantSnapshot) {
-    positionMap = createPositionMap(script.getTokenPosTable());
+  ObservatoryFile(@NotNull TokenPositionTable positions, @NotNull Script script, boolean wantSnapshot) {
+    this.positions = positions;
     snapshot = !wantSnapshot ? null : createSnapshot(script);
   }
 
@@ -58,6 +63,19 @@ class ObservatoryFile {
     return snapshot != null;
   }
 
+  /**
+   * Returns the zero-based line that a breakpoint on each of the given lines will stop on,
+   * or -1 if there is no code at or after that line.
+   */
+  @NotNull
+  int[] findBreakpointLines(@NotNull int[] lines) {
+    final int[] result = new int[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      result[i] = positions.findLineWithCode(lines[i]);
+    }
+    return result;
+  }
+
   /**
    * Given a token id, returns the source position to display to the user.
    * <p>
@@ -69,37 +87,11 @@ class ObservatoryFile {
     final VirtualFile fileToUse = local == null ? snapshot : local;
     if (fileToUse == null) return null;
 
-    final Position pos = positionMap.get(tokenPos);
-    if (pos == null) {
+    final int line = positions.getLine(tokenPos);
+    if (line < 0) {
       return XDebuggerUtil.getInstance().createPositionByOffset(fileToUse, 0);
     }
-    return XDebuggerUtil.getInstance().createPosition(fileToUse, pos.line, pos.column);
-  }
-
-  /**
-   * Unpacks a position token table into a map from position id to Position.
-   * <p>
-   * <p>See <a href="https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#scrip">docs</a>.
-   */
-  @NotNull
-  private static TIntObjectHashMap<Position> createPositionMap(@NotNull final List<List<Integer>> table) {
-    final TIntObjectHashMap<Position> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> line : table) {
-      // Each line consists of a line number followed by (tokenId, columnNumber) pairs.
-      // Both lines and columns are one-based.
-      final Iterator<Integer> items = line.iterator();
-
-      // Convert line number from one-based to zero-based.
-      final int lineNumber = Math.max(0, items.next() - 1);
-      while (items.hasNext()) {
-        final int tokenId = items.next();
-        // Convert column from one-based to zero-based.
-        final int column = Math.max(0, items.next() - 1);
-        result.put(tokenId, new Position(lineNumber, column));
-      }
-    }
-    return result;
+    return XDebuggerUtil.getInstance().createPosition(fileToUse, line, positions.getColumn(tokenPos));
   }
 
   private static LightVirtualFile createSnapshot(@NotNull Script script) {
@@ -121,47 +113,94 @@ class ObservatoryFile {
     @NotNull
     private final DartVmServiceDebugProcess.ScriptProvider provider;
 
+    @NotNull
+    private final TokenPositionCache positionCache;
+
     /**
      * A cache containing each file downloaded from Observatory. The key is a script id.
      * Each version of a file is stored as a separate entry.
      */
     private final Map<String, ObservatoryFile> versions = new THashMap<>();
 
-    Cache(@NotNull String isolateId, @NotNull DartVmServiceDebugProcess.ScriptProvider provider) {
+    /**
+     * Script downloads that haven't finished yet. The key is a script id.
+     * <p>
+     * Requests for a script that is already being downloaded share the download.
+     */
+    private final Map<String, CompletableFuture<Script>> pending = new THashMap<>();
+
+    /**
+     * The uris of the scripts that have been downloaded.
+     */
+    private final Set<String> uris = new THashSet<>();
+
+    Cache(@NotNull String isolateId,
+          @NotNull DartVmServiceDebugProcess.ScriptProvider provider,
+          @NotNull TokenPositionCache positionCache) {
       this.isolateId = isolateId;
       this.provider = provider;
+      this.positionCache = positionCache;
     }
 
     /**
-     * Returns an observatory file, optionally containing a snapshot.
+     * Returns an observatory file, optionally containing a snapshot, downloading it without
+     * blocking if not in the cache.
      * <p>
-     * Downloads it if not in the cache.
-     * <p>
-     * Returns null if not available.
+     * The future completes with null if not available.
      */
-    @Nullable
-    ObservatoryFile downloadOrGet(@NotNull String scriptId, boolean wantSnapshot) {
-      final ObservatoryFile cached = this.versions.get(scriptId);
-      if (cached != null && (cached.hasSnapshot() || !wantSnapshot)) {
-        return cached;
+    @NotNull
+    CompletableFuture<ObservatoryFile> downloadOrGet(@NotNull String scriptId, boolean wantSnapshot) {
+      final CompletableFuture<Script> download;
+      synchronized (this) {
+        final ObservatoryFile cached = this.versions.get(scriptId);
+        if (cached != null && (cached.hasSnapshot() || !wantSnapshot)) {
+          return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<Script> inProgress = pending.get(scriptId);
+        if (inProgress != null) {
+          download = inProgress;
+        }
+        else {
+          download = provider.downloadScript(isolateId, scriptId);
+          if (!download.isDone()) {
+            pending.put(scriptId, download);
+            download.whenComplete((script, error) -> {
+              synchronized (this) {
+                pending.remove(scriptId, download);
+              }
+            });
+          }
+        }
       }
+      return download.thenApply((script) -> script == null ? null : add(scriptId, script, wantSnapshot));
+    }
 
-      final Script script = provider.downloadScript(isolateId, scriptId);
-      if (script == null) return null;
-
-      final ObservatoryFile downloaded = new ObservatoryFile(script, wantSnapshot);
-      this.versions.put(scriptId, downloaded);
+    @NotNull
+    private ObservatoryFile add(@NotNull String scriptId, @NotNull Script script, boolean wantSnapshot) {
+      final TokenPositionTable positions = positionCache.get(isolateId, scriptId, script);
+      final ObservatoryFile downloaded = new ObservatoryFile(positions, script, wantSnapshot);
+      synchronized (this) {
+        final ObservatoryFile cached = this.versions.get(scriptId);
+        if (cached != null && (cached.hasSnapshot() || !wantSnapshot)) {
+          return cached;
+        }
+        this.versions.put(scriptId, downloaded);
+        this.uris.add(script.getUri());
+      }
       return downloaded;
     }
-  }
 
-  private static class Position {
-    final int line; // zero-based
-    final int column; // zero-based
-
-    Position(int line, int column) {
-      this.line = line;
-      this.column = column;
+    /**
+     * Returns true if a version of a script with one of the given uris has been downloaded.
+     */
+    synchronized boolean hasScript(@NotNull Collection<String> candidates) {
+      for (String uri : candidates) {
+        if (uris.contains(uri)) {
+          return true;
+        }
+      }
+      return false;
     }
   }
 }
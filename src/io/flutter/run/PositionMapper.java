@@ -21,6 +21,7 @@ import com.intellij.util.PathUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.server.vmService.DartVmServiceDebugProcess;
+import io.flutter.server.vmService.TokenPositionCache;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import gnu.trove.THashMap;
@@ -36,6 +37,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Converts positions between Dart files in Observatory and local Dart files.
@@ -72,6 +74,14 @@ public class PositionMapper implements DartVmServiceDebugProcess.PositionMapper
   @Nullable
   private DartVmServiceDebugProcess.ScriptProvider scriptProvider;
 
+  /**
+   * The token position tables of the VM service connection, shared with other users of the connection.
+   * <p>
+   * Initialized when the debugger connects.
+   */
+  @Nullable
+  private TokenPositionCache positionCache;
+
   /**
    * The "devfs" base uri reported by the flutter process on startup.
    * <p>
@@ -88,9 +98,10 @@ public class PositionMapper implements DartVmServiceDebugProcess.PositionMapper
   @Nullable
   private String remoteSourceRoot;
 
-  // TODO(skybrian) clear the cache at hot restart? (Old cache entries seem unlikely to be used again.)
   /**
    * A cache containing each file version downloaded from Observatory. The key is an isolate id.
+   * <p>
+   * An isolate's entry is removed when it exits, so a hot restart starts with an empty cache.
    */
   private final Map<String, ObservatoryFile.Cache> fileCache = new THashMap<>();
 
@@ -110,11 +121,14 @@ public class PositionMapper implements DartVmServiceDebugProcess.PositionMapper
     return project;
   }
 
-  public void onConnect(@NotNull DartVmServiceDebugProcess.ScriptProvider provider, @Nullable String remoteBaseUri) {
+  public void onConnect(@NotNull DartVmServiceDebugProcess.ScriptProvider provider,
+                        @NotNull TokenPositionCache positionCache,
+                        @Nullable String remoteBaseUri) {
     if (this.scriptProvider != null) {
       throw new IllegalStateException("already connected");
     }
     this.scriptProvider = provider;
+    this.positionCache = positionCache;
     this.remoteBaseUri = remoteBaseUri;
   }
 
@@ -226,40 +240,79 @@ public class PositionMapper implements DartVmServiceDebugProcess.PositionMapper
 
   /**
    * Returns the local position (to display to the user) corresponding to a token position in Observatory.
+   * <p>
+   * Downloads the script without blocking if it's not in the cache. The future completes with null if the
+   * script isn't available.
    */
-  @Nullable
-  public XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final ScriptRef scriptRef, int tokenPos) {
+  @NotNull
+  public CompletableFuture<XSourcePosition> getSourcePosition(@NotNull final String isolateId, @NotNull final ScriptRef scriptRef,
+                                                              int tokenPos) {
     return getSourcePosition(isolateId, scriptRef.getId(), scriptRef.getUri(), tokenPos);
   }
 
   /**
    * Returns the local position (to display to the user) corresponding to a token position in Observatory.
+   * <p>
+   * Downloads the script without blocking if it's not in the cache. The future completes with null if the
+   * script isn't available.
    */
-  @Nullable
-  public XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final Script script, int tokenPos) {
+  @NotNull
+  public CompletableFuture<XSourcePosition> getSourcePosition(@NotNull final String isolateId, @NotNull final Script script, int tokenPos) {
     return getSourcePosition(isolateId, script.getId(), script.getUri(), tokenPos);
   }
 
   /**
    * Returns the local position (to display to the user) corresponding to a token position in Observatory.
    */
-  @Nullable
-  private XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final String scriptId,
-                                            @NotNull final String scriptUri, int tokenPos) {
+  @NotNull
+  private CompletableFuture<XSourcePosition> getSourcePosition(@NotNull final String isolateId, @NotNull final String scriptId,
+                                                               @NotNull final String scriptUri, int tokenPos) {
     if (scriptProvider == null) {
       LOG.warn("attempted to get source position before connected to observatory");
-      return null;
+      return CompletableFuture.completedFuture(null);
     }
 
     final VirtualFile local = findLocalFile(scriptUri);
 
-    final ObservatoryFile.Cache cache =
-      fileCache.computeIfAbsent(isolateId, (id) -> new ObservatoryFile.Cache(id, scriptProvider));
+    return getCache(isolateId, scriptProvider).downloadOrGet(scriptId, local == null)
+      .thenApply((remote) -> remote == null ? null : remote.createPosition(local, tokenPos));
+  }
 
-    final ObservatoryFile remote = cache.downloadOrGet(scriptId, local == null);
-    if (remote == null) return null;
+  /**
+   * Returns the zero-based line that a breakpoint on each of the given lines of a script will stop on,
+   * or -1 where there is no code at or after the line, so that a file's breakpoints can be checked in one pass.
+   * <p>
+   * Downloads the script without blocking if it's not in the cache. The future completes with null if the
+   * script isn't available.
+   */
+  @NotNull
+  public CompletableFuture<int[]> getBreakpointLines(@NotNull String isolateId, @NotNull String scriptId, @NotNull int[] lines) {
+    if (scriptProvider == null) {
+      LOG.warn("attempted to resolve breakpoints before connected to observatory");
+      return CompletableFuture.completedFuture(null);
+    }
 
-    return remote.createPosition(local, tokenPos);
+    return getCache(isolateId, scriptProvider).downloadOrGet(scriptId, false)
+      .thenApply((remote) -> remote == null ? null : remote.findBreakpointLines(lines));
+  }
+
+  /**
+   * Returns true if a script with one of the given uris has already been downloaded for the isolate.
+   */
+  public boolean hasScript(@NotNull String isolateId, @NotNull Collection<String> uris) {
+    final ObservatoryFile.Cache cache;
+    synchronized (fileCache) {
+      cache = fileCache.get(isolateId);
+    }
+    return cache != null && cache.hasScript(uris);
+  }
+
+  @NotNull
+  private ObservatoryFile.Cache getCache(@NotNull String isolateId, @NotNull DartVmServiceDebugProcess.ScriptProvider provider) {
+    assert positionCache != null;
+    synchronized (fileCache) {
+      return fileCache.computeIfAbsent(isolateId, (id) -> new ObservatoryFile.Cache(id, provider, positionCache));
+    }
   }
 
   @VisibleForTesting
@@ -342,7 +395,16 @@ public class PositionMapper implements DartVmServiceDebugProcess.PositionMapper
     return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
   }
 
+  public void onIsolateExit(@NotNull String isolateId) {
+    synchronized (fileCache) {
+      fileCache.remove(isolateId);
+    }
+  }
+
   public void shutdown() {
+    synchronized (fileCache) {
+      fileCache.clear();
+    }
     if (analyzer != null) {
       analyzer.close();
     }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The timings of the most recent hot reloads performed on save.
+ * <p>
+ * Each reload records how long the analysis check took, how long the daemon took to answer the
+ * app.restart request, and the total time from the first save to the end of the reload.
+ */
+public class ReloadStats {
+  static final int DEFAULT_CAPACITY = 50;
+
+  public enum Phase {
+    ANALYSIS, RESTART, TOTAL
+  }
+
+  public interface Listener {
+    void reloadRecorded(@NotNull ReloadStats stats);
+  }
+
+  private final int capacity;
+
+  // Ring buffers, indexed by Phase.ordinal().
+  private final long[][] times;
+
+  private int count;
+  private int next;
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  ReloadStats() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  ReloadStats(int capacity) {
+    this.capacity = capacity;
+    this.times = new long[Phase.values().length][capacity];
+  }
+
+  void record(long analysisMs, long restartMs, long totalMs) {
+    synchronized (this) {
+      times[Phase.ANALYSIS.ordinal()][next] = analysisMs;
+      times[Phase.RESTART.ordinal()][next] = restartMs;
+      times[Phase.TOTAL.ordinal()][next] = totalMs;
+      next = (next + 1) % capacity;
+      count = Math.min(count + 1, capacity);
+    }
+
+    for (Listener listener : listeners) {
+      listener.reloadRecorded(this);
+    }
+  }
+
+  /**
+   * Returns the number of reloads in the window.
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the time in milliseconds that the given percentage of recent reloads took at most for
+   * a phase, or 0 if there have been none.
+   */
+  public long getPercentile(@NotNull Phase phase, double percentile) {
+    final long[] sorted;
+    synchronized (this) {
+      if (count == 0) {
+        return 0;
+      }
+      sorted = Arrays.copyOf(times[phase.ordinal()], count);
+    }
+    Arrays.sort(sorted);
+    final int index = (int)Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, index)];
+  }
+
+  public void addListener(@NotNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(@NotNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns a one-line summary of the recent reload timings.
+   */
+  @NotNull
+  public String getSummary() {
+    final int reloads = getCount();
+    if (reloads == 0) {
+      return "No hot reloads on save yet";
+    }
+    return "Hot reload on save (last " + reloads + "): median " + getPercentile(Phase.TOTAL, 50) +
+           " ms (analysis " + getPercentile(Phase.ANALYSIS, 50) + " ms, reload " + getPercentile(Phase.RESTART, 50) +
+           " ms), 90th percentile " + getPercentile(Phase.TOTAL, 90) + " ms";
+  }
+}
@@ -539,7 +539,7 @@ public class FlutterApp {
           }
         }
       }
-    });
+    }, VmService.EXTENSION_STREAM_ID);
 
     listenersDispatcher.getMulticaster().notifyVmServiceAvailable(vmService);
   }
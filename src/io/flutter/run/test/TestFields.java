@@ -128,7 +128,7 @@ public class TestFields {
   @Nullable
   public PubRoot getPubRoot(@NotNull Project project) {
     final VirtualFile dir = getFileOrDir();
-    final PubRoot root = PubRoot.forFile(dir);
+    final PubRoot root = PubRoot.forFile(project, dir);
     return root != null ? root : PubRoot.forDescendant(dir, project);
   }
 
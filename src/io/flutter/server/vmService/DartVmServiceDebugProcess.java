@@ -61,6 +61,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class DartVmServiceDebugProcess extends XDebugProcess {
   private static final Logger LOG = Logger.getInstance(DartVmServiceDebugProcess.class.getName());
@@ -415,11 +416,15 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   public void isolateResumed(@NotNull final IsolateRef isolateRef) {
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.clearObjectCache(isolateRef.getId());
   }
 
   public void isolateExit(@NotNull final IsolateRef isolateRef) {
     myIsolatesInfo.deleteIsolate(isolateRef);
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.clearObjectCache(isolateRef.getId());
+    myVmServiceWrapper.getTokenPositionCache().evict(isolateRef.getId());
+    mapper.onIsolateExit(isolateRef.getId());
 
     if (isolateRef.getId().equals(myLatestCurrentIsolateId)) {
       resume(getSession().getSuspendContext()); // otherwise no way no resume them from UI
@@ -456,8 +461,19 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
     return mapper.getBreakpointUris(file);
   }
 
-  @Nullable
-  public XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final ScriptRef scriptRef, int tokenPos) {
+  @NotNull
+  public CompletableFuture<int[]> getBreakpointLines(@NotNull final String isolateId, @NotNull final String scriptId, @NotNull final int[] lines) {
+    return mapper.getBreakpointLines(isolateId, scriptId, lines);
+  }
+
+  public boolean hasScript(@NotNull final String isolateId, @NotNull final Collection<String> uris) {
+    return mapper.hasScript(isolateId, uris);
+  }
+
+  @NotNull
+  public CompletableFuture<XSourcePosition> getSourcePosition(@NotNull final String isolateId,
+                                                              @NotNull final ScriptRef scriptRef,
+                                                              int tokenPos) {
     return mapper.getSourcePosition(isolateId, scriptRef, tokenPos);
   }
 
@@ -540,10 +556,7 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
     myVmOpenSourceLocationListener = vmOpenSourceLocationListener;
     myVmServiceWrapper = new VmServiceWrapper(this, vmService, vmServiceListener, myIsolatesInfo, breakpointHandler);
 
-    final ScriptProvider provider =
-      (isolateId, scriptId) -> myVmServiceWrapper.getScriptSync(isolateId, scriptId);
-
-    mapper.onConnect(provider, myConnector.getRemoteBaseUrl());
+    mapper.onConnect(myVmServiceWrapper::getScript, myVmServiceWrapper.getTokenPositionCache(), myConnector.getRemoteBaseUrl());
 
     final FlutterLaunchMode launchMode = FlutterLaunchMode.fromEnv(executionEnvironment);
     if (launchMode.supportsDebugConnection()) {
@@ -606,26 +619,25 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
       @Override
       public void received(Obj response) {
         if (response instanceof Script) {
-          ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            final XSourcePosition source =
-              getSourcePosition(isolateId, toScriptRef((Script)response), tokenPos);
-            if (source != null) {
-              final Project project = getSession().getProject();
-              final OpenFileHyperlinkInfo
-                info = new OpenFileHyperlinkInfo(project, source.getFile(), source.getLine());
-              ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(() -> {
-                info.navigate(project);
-
-                if (SystemInfo.isLinux) {
-                  // TODO(cbernaschina): remove when ProjectUtil.focusProjectWindow(project, true); works as expected.
-                  focusProject(project);
-                }
-                else {
-                  ProjectUtil.focusProjectWindow(project, true);
-                }
-              }));
-            }
-          });
+          ApplicationManager.getApplication().executeOnPooledThread(
+            () -> getSourcePosition(isolateId, toScriptRef((Script)response), tokenPos).thenAccept((source) -> {
+              if (source != null) {
+                final Project project = getSession().getProject();
+                final OpenFileHyperlinkInfo
+                  info = new OpenFileHyperlinkInfo(project, source.getFile(), source.getLine());
+                ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(() -> {
+                  info.navigate(project);
+
+                  if (SystemInfo.isLinux) {
+                    // TODO(cbernaschina): remove when ProjectUtil.focusProjectWindow(project, true); works as expected.
+                    focusProject(project);
+                  }
+                  else {
+                    ProjectUtil.focusProjectWindow(project, true);
+                  }
+                }));
+              }
+            }));
         }
       }
 
@@ -703,7 +715,7 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
   }
 
   public interface PositionMapper {
-    void onConnect(ScriptProvider provider, String remoteBaseUrl);
+    void onConnect(ScriptProvider provider, TokenPositionCache positionCache, String remoteBaseUrl);
 
     // TODO(skybrian) this is called once per isolate. Should we pass in the isolate id?
 
@@ -721,23 +733,41 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
     /**
      * Returns the local position (to display to the user) corresponding to a token position in Observatory.
+     * Completes with null if the script isn't available.
      */
-    XSourcePosition getSourcePosition(String isolateId, ScriptRef scriptRef, int tokenPos);
+    CompletableFuture<XSourcePosition> getSourcePosition(String isolateId, ScriptRef scriptRef, int tokenPos);
 
     /**
      * Returns the local position (to display to the user) corresponding to a token position in Observatory.
+     * Completes with null if the script isn't available.
+     */
+    CompletableFuture<XSourcePosition> getSourcePosition(String isolateId, Script script, int tokenPos);
+
+    /**
+     * Returns the zero-based line that a breakpoint on each of the given lines of a script will stop on,
+     * or -1 where there is no code at or after the line. Completes with null if the script isn't available.
+     */
+    CompletableFuture<int[]> getBreakpointLines(String isolateId, String scriptId, int[] lines);
+
+    /**
+     * Returns true if a script with one of the given uris has already been downloaded for the isolate.
+     */
+    boolean hasScript(String isolateId, Collection<String> uris);
+
+    /**
+     * Called when an isolate exits (for example, on hot restart); its scripts won't be needed again.
      */
-    XSourcePosition getSourcePosition(String isolateId, Script script, int tokenPos);
+    void onIsolateExit(String isolateId);
 
     void shutdown();
   }
 
   public interface ScriptProvider {
     /**
-     * Downloads a script from observatory. Blocks until it's available.
+     * Downloads a script from observatory without blocking. Completes with null if it's not available.
      */
-    @Nullable
-    Script downloadScript(@NotNull String isolateId, @NotNull String scriptId);
+    @NotNull
+    CompletableFuture<Script> downloadScript(@NotNull String isolateId, @NotNull String scriptId);
   }
 
 }
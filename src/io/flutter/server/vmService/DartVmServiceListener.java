@@ -76,11 +76,13 @@ public class DartVmServiceListener implements VmServiceListener {
       case PauseInterrupted:
         myDebugProcess.isolateSuspended(event.getIsolate());
 
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-          final ElementList<Breakpoint> breakpoints = event.getKind() == EventKind.PauseBreakpoint ? event.getPauseBreakpoints() : null;
-          final InstanceRef exception = event.getKind() == EventKind.PauseException ? event.getException() : null;
-          onIsolatePaused(event.getIsolate(), breakpoints, exception, event.getTopFrame(), event.getAtAsyncSuspension());
-        });
+        // Find the top frame's position first, so that creating the suspend context doesn't wait on its script.
+        myDebugProcess.getVmServiceWrapper().getTopFramePosition(event.getIsolate().getId(), event.getTopFrame())
+          .whenComplete((position, error) -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            final ElementList<Breakpoint> breakpoints = event.getKind() == EventKind.PauseBreakpoint ? event.getPauseBreakpoints() : null;
+            final InstanceRef exception = event.getKind() == EventKind.PauseException ? event.getException() : null;
+            onIsolatePaused(event.getIsolate(), breakpoints, exception, event.getTopFrame(), position, event.getAtAsyncSuspension());
+          }));
         break;
       case PausePostRequest:
         // We get this event after an isolate reload call, when pause after reload has been requested.
@@ -122,6 +124,7 @@ public class DartVmServiceListener implements VmServiceListener {
                        @Nullable final ElementList<Breakpoint> vmBreakpoints,
                        @Nullable final InstanceRef exception,
                        @Nullable final Frame vmTopFrame,
+                       @Nullable final XSourcePosition topFramePosition,
                        boolean atAsyncSuspension) {
     if (vmTopFrame == null) {
       myDebugProcess.getSession().positionReached(new XSuspendContext() {
@@ -130,7 +133,7 @@ public class DartVmServiceListener implements VmServiceListener {
     }
 
     final DartVmServiceSuspendContext suspendContext =
-      new DartVmServiceSuspendContext(myDebugProcess, isolateRef, vmTopFrame, exception, atAsyncSuspension);
+      new DartVmServiceSuspendContext(myDebugProcess, isolateRef, vmTopFrame, topFramePosition, exception, atAsyncSuspension);
     final XStackFrame xTopFrame = suspendContext.getActiveExecutionStack().getTopFrame();
     final XSourcePosition sourcePosition = xTopFrame == null ? null : xTopFrame.getSourcePosition();
 
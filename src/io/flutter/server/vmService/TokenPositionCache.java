@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.server.vmService;
+
+import org.dartlang.vm.service.element.Script;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The token position tables of the scripts downloaded from Observatory over one VM service
+ * connection, per isolate.
+ * <p>
+ * Owned by the {@link VmServiceWrapper} of the connection and shared by the debugger and live
+ * coverage so that each version of a script is decoded once. An isolate's tables are evicted when
+ * it exits; a hot restart starts a new isolate, so this drops the tables of the previous run. All
+ * the tables are dropped when the connection is closed.
+ */
+public class TokenPositionCache {
+  /**
+   * The tables of each isolate, keyed by isolate id and then by script id.
+   */
+  private final Map<String, Map<String, TokenPositionTable>> isolates = new ConcurrentHashMap<>();
+
+  private volatile boolean disposed;
+
+  /**
+   * Returns the table for a script, decoding it from the given download if not already cached.
+   * <p>
+   * Once the cache has been disposed, the table is decoded but not cached.
+   */
+  @NotNull
+  public TokenPositionTable get(@NotNull String isolateId, @NotNull String scriptId, @NotNull Script script) {
+    if (disposed) {
+      return TokenPositionTable.create(script);
+    }
+    return isolates.computeIfAbsent(isolateId, (id) -> new ConcurrentHashMap<>())
+      .computeIfAbsent(scriptId, (id) -> TokenPositionTable.create(script));
+  }
+
+  /**
+   * Returns the table for a script, or null if it hasn't been downloaded.
+   */
+  @Nullable
+  public TokenPositionTable getIfPresent(@NotNull String isolateId, @NotNull String scriptId) {
+    final Map<String, TokenPositionTable> scripts = isolates.get(isolateId);
+    return scripts == null ? null : scripts.get(scriptId);
+  }
+
+  /**
+   * Drops the tables of an isolate that has exited.
+   */
+  public void evict(@NotNull String isolateId) {
+    isolates.remove(isolateId);
+  }
+
+  /**
+   * Drops all the tables and stops caching new ones, as the connection has been closed.
+   */
+  public void dispose() {
+    disposed = true;
+    isolates.clear();
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.server.vmService;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.dartlang.vm.service.element.Script;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The line and column of each token in a script, as reported by the VM's token position table.
+ * <p>
+ * The table is decoded straight from the script's JSON into parallel int arrays sorted by token
+ * position, so a lookup is a binary search and a script costs three ints per token rather than an
+ * object (and several boxed Integers) per token.
+ * <p>
+ * A reverse index from each line with code to its first and last token is built at the same time,
+ * for resolving breakpoint lines.
+ * <p>
+ * See <a href="https://github.com/dart-lang/sdk/blob/master/runtime/vm/service/service.md#script">Script</a>.
+ */
+public final class TokenPositionTable {
+  private static final TokenPositionTable EMPTY = new TokenPositionTable(new int[0], new int[0], new int[0], new int[0]);
+
+  private final int[] tokenPositions;
+  private final int[] tokenLines; // zero-based
+  private final int[] tokenColumns; // zero-based
+
+  /**
+   * Every line in the table (zero-based), in the order they appear.
+   */
+  private final int[] lines;
+
+  /**
+   * Each line that has at least one token (zero-based, ascending), with its first and last token.
+   */
+  private final int[] codeLines;
+  private final int[] firstTokens;
+  private final int[] lastTokens;
+
+  private TokenPositionTable(@NotNull int[] tokenPositions, @NotNull int[] tokenLines, @NotNull int[] tokenColumns, @NotNull int[] lines) {
+    this.tokenPositions = tokenPositions;
+    this.tokenLines = tokenLines;
+    this.tokenColumns = tokenColumns;
+    this.lines = lines;
+
+    // Tokens are sorted by position, so (line, tokenPos) pairs are usually already in order too.
+    final long[] byLine = new long[tokenPositions.length];
+    boolean sorted = true;
+    for (int i = 0; i < byLine.length; i++) {
+      byLine[i] = ((long)tokenLines[i] << 32) | tokenPositions[i];
+      if (i > 0 && byLine[i] < byLine[i - 1]) {
+        sorted = false;
+      }
+    }
+    if (!sorted) {
+      Arrays.sort(byLine);
+    }
+
+    int lineCount = 0;
+    for (int i = 0; i < byLine.length; i++) {
+      if (i == 0 || (int)(byLine[i] >>> 32) != (int)(byLine[i - 1] >>> 32)) {
+        lineCount++;
+      }
+    }
+    codeLines = new int[lineCount];
+    firstTokens = new int[lineCount];
+    lastTokens = new int[lineCount];
+    int line = -1;
+    for (int i = 0; i < byLine.length; i++) {
+      final boolean newLine = i == 0 || (int)(byLine[i] >>> 32) != (int)(byLine[i - 1] >>> 32);
+      if (newLine) {
+        line++;
+        codeLines[line] = (int)(byLine[i] >>> 32);
+        firstTokens[line] = (int)byLine[i];
+      }
+      lastTokens[line] = (int)byLine[i];
+    }
+  }
+
+  @NotNull
+  public static TokenPositionTable create(@NotNull Script script) {
+    final JsonElement table = script.getJson().get("tokenPosTable");
+    return table != null && table.isJsonArray() ? create(table.getAsJsonArray()) : EMPTY;
+  }
+
+  /**
+   * Unpacks a token position table, where each entry is a line number followed by
+   * (tokenPos, columnNumber) pairs. Both lines and columns are one-based.
+   */
+  @NotNull
+  public static TokenPositionTable create(@NotNull JsonArray table) {
+    int count = 0;
+    for (JsonElement line : table) {
+      count += (line.getAsJsonArray().size() - 1) / 2;
+    }
+
+    final int[] tokenPositions = new int[count];
+    final int[] tokenLines = new int[count];
+    final int[] tokenColumns = new int[count];
+    final int[] lines = new int[table.size()];
+
+    boolean sorted = true;
+    int token = 0;
+    for (int i = 0; i < lines.length; i++) {
+      final JsonArray items = table.get(i).getAsJsonArray();
+      // Convert line number from one-based to zero-based.
+      final int line = Math.max(0, items.get(0).getAsInt() - 1);
+      lines[i] = line;
+      for (int j = 1; j + 1 < items.size(); j += 2) {
+        tokenPositions[token] = items.get(j).getAsInt();
+        tokenLines[token] = line;
+        // Convert column from one-based to zero-based.
+        tokenColumns[token] = Math.max(0, items.get(j + 1).getAsInt() - 1);
+        if (token > 0 && tokenPositions[token] < tokenPositions[token - 1]) {
+          sorted = false;
+        }
+        token++;
+      }
+    }
+
+    if (!sorted) {
+      return sortByTokenPosition(tokenPositions, tokenLines, tokenColumns, lines);
+    }
+    return new TokenPositionTable(tokenPositions, tokenLines, tokenColumns, lines);
+  }
+
+  @NotNull
+  private static TokenPositionTable sortByTokenPosition(@NotNull int[] tokenPositions,
+                                                        @NotNull int[] tokenLines,
+                                                        @NotNull int[] tokenColumns,
+                                                        @NotNull int[] lines) {
+    // Sort (tokenPos, index) pairs packed into longs, keeping the table order for equal positions.
+    final long[] order = new long[tokenPositions.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = ((long)tokenPositions[i] << 32) | i;
+    }
+    Arrays.sort(order);
+
+    final int[] sortedPositions = new int[order.length];
+    final int[] sortedLines = new int[order.length];
+    final int[] sortedColumns = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      final int index = (int)order[i];
+      sortedPositions[i] = tokenPositions[index];
+      sortedLines[i] = tokenLines[index];
+      sortedColumns[i] = tokenColumns[index];
+    }
+    return new TokenPositionTable(sortedPositions, sortedLines, sortedColumns, lines);
+  }
+
+  /**
+   * Returns the number of tokens in the table.
+   */
+  public int size() {
+    return tokenPositions.length;
+  }
+
+  /**
+   * Returns the zero-based line of the given token, or -1 if it's not in the table.
+   */
+  public int getLine(int tokenPos) {
+    final int index = indexOf(tokenPos);
+    return index < 0 ? -1 : tokenLines[index];
+  }
+
+  /**
+   * Returns the zero-based column of the given token, or -1 if it's not in the table.
+   */
+  public int getColumn(int tokenPos) {
+    final int index = indexOf(tokenPos);
+    return index < 0 ? -1 : tokenColumns[index];
+  }
+
+  /**
+   * Returns every line (zero-based) that has an entry in the table.
+   */
+  @NotNull
+  public int[] getLines() {
+    return lines.clone();
+  }
+
+  /**
+   * Returns the first token on the given (zero-based) line, or -1 if the line has no tokens.
+   */
+  public int getFirstToken(int line) {
+    final int index = Arrays.binarySearch(codeLines, line);
+    return index < 0 ? -1 : firstTokens[index];
+  }
+
+  /**
+   * Returns the last token on the given (zero-based) line, or -1 if the line has no tokens.
+   */
+  public int getLastToken(int line) {
+    final int index = Arrays.binarySearch(codeLines, line);
+    return index < 0 ? -1 : lastTokens[index];
+  }
+
+  /**
+   * Returns the first line at or after the given (zero-based) line that has any tokens, or -1 if
+   * there is none.
+   * <p>
+   * This is where the VM will put a breakpoint requested for the given line.
+   */
+  public int findLineWithCode(int line) {
+    int index = Arrays.binarySearch(codeLines, line);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index < codeLines.length ? codeLines[index] : -1;
+  }
+
+  private int indexOf(int tokenPos) {
+    int index = Arrays.binarySearch(tokenPositions, tokenPos);
+    if (index < 0) {
+      return -1;
+    }
+    // A token listed more than once maps to its last entry, as it did when the table was a map.
+    while (index + 1 < tokenPositions.length && tokenPositions[index + 1] == tokenPos) {
+      index++;
+    }
+    return index;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenPositionTable(" + size() + " tokens on " + lines.length + " lines)";
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.server.vmService;
+
+import org.dartlang.vm.service.consumer.EvaluateConsumer;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The objects and toString() results fetched from the VM while an isolate is paused.
+ * <p>
+ * Object ids stay valid and objects can't change while the isolate is paused, so the debugger
+ * tree can ask for the same object again, e.g. when the user switches back to a frame, without
+ * another round trip. Requests for an object that is already being fetched wait for that
+ * request instead of sending another one. The entries for an isolate must be cleared when it
+ * resumes. Errors aren't kept, so that a failed request is tried again.
+ * <p>
+ * Expressions the user evaluates run arbitrary Dart code and may change any object, so the
+ * entries are also cleared when one is sent and again when it completes. Responses to requests
+ * sent while it runs aren't kept.
+ */
+public class VmObjectCache {
+  /**
+   * Sends the requests for the objects that aren't in the cache.
+   */
+  public interface Loader {
+    void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer);
+
+    void getCollectionObject(@NotNull String isolateId,
+                             @NotNull String objectId,
+                             int offset,
+                             int count,
+                             @NotNull GetObjectConsumer consumer);
+
+    void evaluate(@NotNull String isolateId, @NotNull String targetId, @NotNull String expression, @NotNull EvaluateConsumer consumer);
+  }
+
+  @NotNull private final Loader myLoader;
+
+  /**
+   * Each key is an isolate id. Each value maps a request key to the response for it.
+   * <p>
+   * A response is an {@link Obj}, {@link InstanceRef}, {@link ErrorRef}, {@link Sentinel} or {@link RPCError}.
+   */
+  private final Map<String, Map<String, CompletableFuture<Object>>> myResponses = new HashMap<>();
+
+  /**
+   * The number of user expressions being evaluated in each isolate. Guarded by myResponses.
+   */
+  private final Map<String, Integer> myEvaluations = new HashMap<>();
+
+  public VmObjectCache(@NotNull final Loader loader) {
+    myLoader = loader;
+  }
+
+  public void getObject(@NotNull final String isolateId, @NotNull final String objectId, @NotNull final GetObjectConsumer consumer) {
+    final CompletableFuture<Object> response = getResponse(isolateId, "object:" + objectId, (future) ->
+      myLoader.getObject(isolateId, objectId, new ObjectConsumer(future)));
+    response.thenAccept((result) -> deliver(result, consumer));
+  }
+
+  public void getCollectionObject(@NotNull final String isolateId,
+                                  @NotNull final String objectId,
+                                  final int offset,
+                                  final int count,
+                                  @NotNull final GetObjectConsumer consumer) {
+    final String key = "collection:" + objectId + ":" + offset + ":" + count;
+    final CompletableFuture<Object> response = getResponse(isolateId, key, (future) ->
+      myLoader.getCollectionObject(isolateId, objectId, offset, count, new ObjectConsumer(future)));
+    response.thenAccept((result) -> deliver(result, consumer));
+  }
+
+  public void evaluate(@NotNull final String isolateId,
+                       @NotNull final String targetId,
+                       @NotNull final String expression,
+                       @NotNull final EvaluateConsumer consumer) {
+    final String key = "evaluate:" + targetId + ":" + expression;
+    final CompletableFuture<Object> response = getResponse(isolateId, key, (future) ->
+      myLoader.evaluate(isolateId, targetId, expression, new EvaluateResultConsumer(future)));
+    response.thenAccept((result) -> deliver(result, consumer));
+  }
+
+  /**
+   * Starts fetching the object, if it isn't already cached, so that it is ready when it's asked for.
+   */
+  public void prefetchObject(@NotNull final String isolateId, @NotNull final String objectId) {
+    getResponse(isolateId, "object:" + objectId, (future) -> myLoader.getObject(isolateId, objectId, new ObjectConsumer(future)));
+  }
+
+  /**
+   * Starts fetching the elements of a collection, if they aren't already cached.
+   */
+  public void prefetchCollectionObject(@NotNull final String isolateId, @NotNull final String objectId, final int offset, final int count) {
+    final String key = "collection:" + objectId + ":" + offset + ":" + count;
+    getResponse(isolateId, key, (future) ->
+      myLoader.getCollectionObject(isolateId, objectId, offset, count, new ObjectConsumer(future)));
+  }
+
+  /**
+   * Forgets the responses for the isolate. Must be called when it resumes or exits.
+   */
+  public void clear(@NotNull final String isolateId) {
+    synchronized (myResponses) {
+      myResponses.remove(isolateId);
+    }
+  }
+
+  /**
+   * Forgets the responses for the isolate before a user expression is evaluated in it, and stops
+   * keeping responses until {@link #endEvaluation} is called.
+   */
+  public void beginEvaluation(@NotNull final String isolateId) {
+    synchronized (myResponses) {
+      myResponses.remove(isolateId);
+      myEvaluations.merge(isolateId, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Forgets the responses for the isolate once a user expression has been evaluated in it.
+   */
+  public void endEvaluation(@NotNull final String isolateId) {
+    synchronized (myResponses) {
+      myResponses.remove(isolateId);
+      myEvaluations.computeIfPresent(isolateId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+  }
+
+  /**
+   * Returns the number of responses cached or pending for the isolate.
+   */
+  public int size(@NotNull final String isolateId) {
+    synchronized (myResponses) {
+      final Map<String, CompletableFuture<Object>> responses = myResponses.get(isolateId);
+      return responses == null ? 0 : responses.size();
+    }
+  }
+
+  @NotNull
+  private CompletableFuture<Object> getResponse(@NotNull final String isolateId,
+                                                @NotNull final String key,
+                                                @NotNull final Consumer<CompletableFuture<Object>> load) {
+    final CompletableFuture<Object> future = new CompletableFuture<>();
+    synchronized (myResponses) {
+      // While a user expression is being evaluated the objects may still change, so don't keep the response.
+      if (!myEvaluations.containsKey(isolateId)) {
+        final Map<String, CompletableFuture<Object>> responses = myResponses.computeIfAbsent(isolateId, (id) -> new HashMap<>());
+        final CompletableFuture<Object> existing = responses.get(key);
+        if (existing != null) {
+          return existing;
+        }
+        responses.put(key, future);
+      }
+    }
+
+    // Don't keep errors; the next request for the key sends a new request.
+    future.thenAccept((result) -> {
+      if (result instanceof RPCError) {
+        synchronized (myResponses) {
+          final Map<String, CompletableFuture<Object>> responses = myResponses.get(isolateId);
+          if (responses != null) {
+            responses.remove(key, future);
+          }
+        }
+      }
+    });
+
+    load.accept(future);
+    return future;
+  }
+
+  private static void deliver(@NotNull final Object result, @NotNull final GetObjectConsumer consumer) {
+    if (result instanceof Obj) {
+      consumer.received((Obj)result);
+    }
+    else if (result instanceof Sentinel) {
+      consumer.received((Sentinel)result);
+    }
+    else {
+      consumer.onError((RPCError)result);
+    }
+  }
+
+  private static void deliver(@NotNull final Object result, @NotNull final EvaluateConsumer consumer) {
+    if (result instanceof InstanceRef) {
+      consumer.received((InstanceRef)result);
+    }
+    else if (result instanceof ErrorRef) {
+      consumer.received((ErrorRef)result);
+    }
+    else if (result instanceof Sentinel) {
+      consumer.received((Sentinel)result);
+    }
+    else {
+      consumer.onError((RPCError)result);
+    }
+  }
+
+  private static class ObjectConsumer implements GetObjectConsumer {
+    @NotNull private final CompletableFuture<Object> myFuture;
+
+    ObjectConsumer(@NotNull final CompletableFuture<Object> future) {
+      myFuture = future;
+    }
+
+    @Override
+    public void received(Obj response) {
+      myFuture.complete(response);
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      myFuture.complete(response);
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      myFuture.complete(error);
+    }
+  }
+
+  private static class EvaluateResultConsumer implements EvaluateConsumer {
+    @NotNull private final CompletableFuture<Object> myFuture;
+
+    EvaluateResultConsumer(@NotNull final CompletableFuture<Object> future) {
+      myFuture = future;
+    }
+
+    @Override
+    public void received(InstanceRef response) {
+      myFuture.complete(response);
+    }
+
+    @Override
+    public void received(ErrorRef response) {
+      myFuture.complete(response);
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      myFuture.complete(response);
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      myFuture.complete(error);
+    }
+  }
+}
@@ -5,9 +5,10 @@ import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Alarm;
-import com.intellij.util.concurrency.Semaphore;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.breakpoints.XBreakpointProperties;
 import com.intellij.xdebugger.breakpoints.XLineBreakpoint;
@@ -25,15 +26,24 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
 
   public static final Logger LOG = Logger.getInstance(VmServiceWrapper.class.getName());
-  private static final long RESPONSE_WAIT_TIMEOUT = 3000; // millis
+
+  /**
+   * Files with at most this many breakpoints have them set by uri, without downloading the file's
+   * script to check the lines first, unless the script has already been downloaded.
+   */
+  private static final int MAX_UNCHECKED_BREAKPOINTS_PER_FILE = 3;
 
   private final DartVmServiceDebugProcess myDebugProcess;
   private final VmService myVmService;
@@ -41,8 +51,8 @@ public class VmServiceWrapper implements Disposable {
   private final IsolatesInfo myIsolatesInfo;
   private final DartVmServiceBreakpointHandler myBreakpointHandler;
   private final Alarm myRequestsScheduler;
-
-  private long myVmServiceReceiverThreadId;
+  private final VmObjectCache myObjectCache;
+  private final TokenPositionCache myTokenPositionCache = new TokenPositionCache();
 
   @Nullable private StepOption myLatestStep;
 
@@ -57,10 +67,42 @@ public class VmServiceWrapper implements Disposable {
     myIsolatesInfo = isolatesInfo;
     myBreakpointHandler = breakpointHandler;
     myRequestsScheduler = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    myObjectCache = new VmObjectCache(new VmObjectCache.Loader() {
+      @Override
+      public void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer) {
+        addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+      }
+
+      @Override
+      public void getCollectionObject(@NotNull String isolateId,
+                                      @NotNull String objectId,
+                                      int offset,
+                                      int count,
+                                      @NotNull GetObjectConsumer consumer) {
+        addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+      }
+
+      @Override
+      public void evaluate(@NotNull String isolateId,
+                           @NotNull String targetId,
+                           @NotNull String expression,
+                           @NotNull EvaluateConsumer consumer) {
+        addRequest(() -> myVmService.evaluate(isolateId, targetId, expression, consumer));
+      }
+    });
   }
 
   @Override
   public void dispose() {
+    myTokenPositionCache.dispose();
+  }
+
+  /**
+   * Returns the token position tables of the scripts downloaded over this connection.
+   */
+  @NotNull
+  public TokenPositionCache getTokenPositionCache() {
+    return myTokenPositionCache;
   }
 
   private void addRequest(@NotNull final Runnable runnable) {
@@ -74,23 +116,10 @@ public class VmServiceWrapper implements Disposable {
     return myLatestStep;
   }
 
-  private void assertSyncRequestAllowed() {
-    if (ApplicationManager.getApplication().isDispatchThread()) {
-      LOG.error("EDT should not be blocked by waiting for for the answer from the Dart debugger");
-    }
-    if (ApplicationManager.getApplication().isReadAccessAllowed()) {
-      LOG.error("Waiting for for the answer from the Dart debugger under read action may lead to EDT freeze");
-    }
-    if (myVmServiceReceiverThreadId == Thread.currentThread().getId()) {
-      LOG.error("Synchronous requests must not be made in Web Socket listening thread: answer will never be received");
-    }
-  }
-
   public void handleDebuggerConnected() {
     streamListen(VmService.DEBUG_STREAM_ID, new VmServiceConsumers.SuccessConsumerWrapper() {
       @Override
       public void received(final Success success) {
-        myVmServiceReceiverThreadId = Thread.currentThread().getId();
         streamListen(VmService.ISOLATE_STREAM_ID, new VmServiceConsumers.SuccessConsumerWrapper() {
           @Override
           public void received(final Success success) {
@@ -123,12 +152,14 @@ public class VmServiceWrapper implements Disposable {
                           eventKind == EventKind.PauseInterrupted) {
                         myDebugProcess.isolateSuspended(isolateRef);
 
-                        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-                          final ElementList<Breakpoint> breakpoints =
-                            eventKind == EventKind.PauseBreakpoint ? event.getPauseBreakpoints() : null;
-                          final InstanceRef exception = eventKind == EventKind.PauseException ? event.getException() : null;
-                          myVmServiceListener
-                            .onIsolatePaused(isolateRef, breakpoints, exception, event.getTopFrame(), event.getAtAsyncSuspension());
+                        getTopFramePosition(isolateRef.getId(), event.getTopFrame()).whenComplete((position, error) -> {
+                          ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                            final ElementList<Breakpoint> breakpoints =
+                              eventKind == EventKind.PauseBreakpoint ? event.getPauseBreakpoints() : null;
+                            final InstanceRef exception = eventKind == EventKind.PauseException ? event.getException() : null;
+                            myVmServiceListener.onIsolatePaused(isolateRef, breakpoints, exception, event.getTopFrame(), position,
+                                                                event.getAtAsyncSuspension());
+                          });
                         });
                       }
                     }
@@ -244,33 +275,132 @@ public class VmServiceWrapper implements Disposable {
     }
 
     final AtomicInteger counter = new AtomicInteger(xBreakpoints.size());
+    final Runnable checkDone = () -> {
+      if (counter.decrementAndGet() == 0 && onFinished != null) {
+        onFinished.run();
+      }
+    };
 
+    // Set the breakpoints of each file together, so that the file's script is found once rather than
+    // trying every possible uri for every breakpoint.
+    final Map<VirtualFile, List<XLineBreakpoint<XBreakpointProperties>>> breakpointsByFile = new LinkedHashMap<>();
     for (final XLineBreakpoint<XBreakpointProperties> xBreakpoint : xBreakpoints) {
-      addBreakpoint(isolateId, xBreakpoint.getSourcePosition(), new VmServiceConsumers.BreakpointConsumerWrapper() {
-        @Override
-        void sourcePositionNotApplicable() {
-          checkDone();
+      final XSourcePosition position = xBreakpoint.getSourcePosition();
+      if (position == null || position.getFile().getFileType() != DartFileType.INSTANCE) {
+        checkDone.run();
+        continue;
+      }
+      breakpointsByFile.computeIfAbsent(position.getFile(), (file) -> new ArrayList<>()).add(xBreakpoint);
+    }
+
+    for (Map.Entry<VirtualFile, List<XLineBreakpoint<XBreakpointProperties>>> entry : breakpointsByFile.entrySet()) {
+      addBreakpointsForFile(isolateId, entry.getKey(), entry.getValue(), checkDone);
+    }
+  }
+
+  /**
+   * Sets breakpoints in one file, calling onEachDone once for each breakpoint.
+   * <p>
+   * When the file is one of the isolate's libraries and either its script has already been downloaded
+   * or it has more than {@link #MAX_UNCHECKED_BREAKPOINTS_PER_FILE} breakpoints, breakpoints on lines
+   * after the last line of code fail without a request and the rest are set by script id. Otherwise
+   * (for example, for a part file), each breakpoint is set by uri.
+   */
+  private void addBreakpointsForFile(@NotNull final String isolateId,
+                                     @NotNull final VirtualFile file,
+                                     @NotNull final List<XLineBreakpoint<XBreakpointProperties>> xBreakpoints,
+                                     @NotNull final Runnable onEachDone) {
+    final int[] lines = new int[xBreakpoints.size()];
+    for (int i = 0; i < lines.length; i++) {
+      final XSourcePosition position = xBreakpoints.get(i).getSourcePosition();
+      assert position != null;
+      lines[i] = position.getLine();
+    }
+
+    addRequest(() -> {
+      final Collection<String> uris = myDebugProcess.getUrisForFile(file);
+      if (lines.length <= MAX_UNCHECKED_BREAKPOINTS_PER_FILE && !myDebugProcess.hasScript(isolateId, uris)) {
+        // Checking the lines would cost more requests than it could save.
+        for (int i = 0; i < lines.length; i++) {
+          addBreakpointWithUris(isolateId, uris, lines[i] + 1, xBreakpoints.get(i), onEachDone);
         }
+        return;
+      }
 
-        @Override
-        public void received(Breakpoint vmBreakpoint) {
-          myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
-          checkDone();
+      findLibraryScript(isolateId, uris).thenCompose((scriptRef) -> {
+        if (scriptRef == null) {
+          return CompletableFuture.<Pair<ScriptRef, int[]>>completedFuture(null);
         }
+        return myDebugProcess.getBreakpointLines(isolateId, scriptRef.getId(), lines)
+          .thenApply((resolved) -> resolved == null ? null : Pair.create(scriptRef, resolved));
+      }).exceptionally((t) -> null).thenAccept((resolved) -> {
+        for (int i = 0; i < lines.length; i++) {
+          final XLineBreakpoint<XBreakpointProperties> xBreakpoint = xBreakpoints.get(i);
+          final int line = lines[i] + 1;
+          if (resolved == null) {
+            addBreakpointWithUris(isolateId, uris, line, xBreakpoint, onEachDone);
+          }
+          else if (resolved.second[i] < 0) {
+            myBreakpointHandler.breakpointFailed(xBreakpoint);
+            onEachDone.run();
+          }
+          else {
+            final String scriptId = resolved.first.getId();
+            addRequest(() -> myVmService.addBreakpoint(isolateId, scriptId, line, new BreakpointConsumer() {
+              @Override
+              public void received(Breakpoint vmBreakpoint) {
+                myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
+                onEachDone.run();
+              }
 
-        @Override
-        public void onError(RPCError error) {
-          myBreakpointHandler.breakpointFailed(xBreakpoint);
-          checkDone();
+              @Override
+              public void onError(RPCError error) {
+                myBreakpointHandler.breakpointFailed(xBreakpoint);
+                onEachDone.run();
+              }
+            }));
+          }
+        }
+      });
+    });
+  }
+
+  /**
+   * Finds the script of the isolate's library with one of the given uris.
+   * <p>
+   * Completes with null if there is no such library (for example, because the uris are of a part file)
+   * or if there is more than one.
+   */
+  @NotNull
+  private CompletableFuture<ScriptRef> findLibraryScript(@NotNull final String isolateId, @NotNull final Collection<String> uris) {
+    return getCachedIsolate(isolateId).thenCompose((isolate) -> {
+      LibraryRef match = null;
+      if (isolate != null) {
+        for (LibraryRef libraryRef : isolate.getLibraries()) {
+          if (uris.contains(libraryRef.getUri())) {
+            if (match != null) {
+              // Loaded under more than one uri; set the breakpoints in all of them by uri.
+              return CompletableFuture.<ScriptRef>completedFuture(null);
+            }
+            match = libraryRef;
+          }
         }
+      }
+      if (match == null) {
+        return CompletableFuture.<ScriptRef>completedFuture(null);
+      }
 
-        private void checkDone() {
-          if (counter.decrementAndGet() == 0 && onFinished != null) {
-            onFinished.run();
+      return getLibrary(isolateId, match.getId()).thenApply((library) -> {
+        if (library != null) {
+          for (ScriptRef scriptRef : library.getScripts()) {
+            if (uris.contains(scriptRef.getUri())) {
+              return scriptRef;
+            }
           }
         }
+        return null;
       });
-    }
+    });
   }
 
   public void addBreakpoint(@NotNull final String isolateId,
@@ -289,6 +419,51 @@ public class VmServiceWrapper implements Disposable {
     });
   }
 
+  /**
+   * Sets a breakpoint at each of the given uris that the isolate has, calling onDone once all the
+   * requests have been answered. The breakpoint fails if none of the uris could be used.
+   */
+  private void addBreakpointWithUris(@NotNull final String isolateId,
+                                     @NotNull final Collection<String> uris,
+                                     final int line,
+                                     @NotNull final XLineBreakpoint<XBreakpointProperties> xBreakpoint,
+                                     @NotNull final Runnable onDone) {
+    if (uris.isEmpty()) {
+      onDone.run();
+      return;
+    }
+
+    final AtomicInteger remaining = new AtomicInteger(uris.size());
+    final AtomicBoolean added = new AtomicBoolean();
+    final BreakpointConsumer consumer = new BreakpointConsumer() {
+      @Override
+      public void received(Breakpoint vmBreakpoint) {
+        added.set(true);
+        myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
+        checkDone();
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        checkDone();
+      }
+
+      private void checkDone() {
+        if (remaining.decrementAndGet() == 0) {
+          if (!added.get()) {
+            myBreakpointHandler.breakpointFailed(xBreakpoint);
+          }
+          onDone.run();
+        }
+      }
+    };
+    addRequest(() -> {
+      for (String uri : uris) {
+        myVmService.addBreakpointWithScriptUri(isolateId, uri, line, consumer);
+      }
+    });
+  }
+
   public void addBreakpointForIsolates(@NotNull final XLineBreakpoint<XBreakpointProperties> xBreakpoint,
                                        @NotNull final Collection<IsolatesInfo.IsolateInfo> isolateInfos) {
     for (final IsolatesInfo.IsolateInfo isolateInfo : isolateInfos) {
@@ -345,6 +520,7 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull final String isolateId, @Nullable final StepOption stepOption) {
+    myObjectCache.clear(isolateId);
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, null, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -364,6 +540,7 @@ public class VmServiceWrapper implements Disposable {
    * function, so frameIndex must be at least 1.
    */
   public void dropFrame(@NotNull final String isolateId, int frameIndex) {
+    myObjectCache.clear(isolateId);
     addRequest(() -> {
       myLatestStep = StepOption.Rewind;
       myVmService.resume(isolateId, StepOption.Rewind, frameIndex, new SuccessConsumer() {
@@ -391,19 +568,15 @@ public class VmServiceWrapper implements Disposable {
     addRequest(() -> myVmService.getStack(isolateId, new StackConsumer() {
       @Override
       public void received(final Stack vmStack) {
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-          InstanceRef exceptionToAddToFrame = exception;
+        final List<Frame> vmFrames = getFrames(vmStack);
 
-          // Check for async causal frames; fall back to using regular sync frames.
-          ElementList<Frame> elementList = vmStack.getAsyncCausalFrames();
-          if (elementList == null) {
-            elementList = vmStack.getFrames();
-          }
-
-          final List<Frame> vmFrames = Lists.newArrayList(elementList);
+        // Download the frames' scripts together, rather than one at a time as each frame is created.
+        getSourcePositions(isolateId, vmFrames).whenComplete((positions, error) -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+          InstanceRef exceptionToAddToFrame = exception;
           final List<XStackFrame> xStackFrames = new ArrayList<>(vmFrames.size());
 
-          for (final Frame vmFrame : vmFrames) {
+          for (int i = 0; i < vmFrames.size(); i++) {
+            final Frame vmFrame = vmFrames.get(i);
             if (vmFrame.getKind() == FrameKind.AsyncSuspensionMarker) {
               // Render an asynchronous gap.
               final XStackFrame markerFrame = new DartAsyncMarkerFrame();
@@ -411,7 +584,8 @@ public class VmServiceWrapper implements Disposable {
             }
             else {
               final DartVmServiceStackFrame stackFrame =
-                new DartVmServiceStackFrame(myDebugProcess, isolateId, vmFrame, vmFrames, exceptionToAddToFrame);
+                new DartVmServiceStackFrame(myDebugProcess, isolateId, vmFrame, vmFrames, exceptionToAddToFrame,
+                                            positions == null ? null : positions.get(i));
               stackFrame.setIsDroppableFrame(vmFrame.getKind() == FrameKind.Regular);
               xStackFrames.add(stackFrame);
 
@@ -422,7 +596,7 @@ public class VmServiceWrapper implements Disposable {
             }
           }
           container.addStackFrames(firstFrameIndex == 0 ? xStackFrames : xStackFrames.subList(firstFrameIndex, xStackFrames.size()), true);
-        });
+        }));
       }
 
       @Override
@@ -432,39 +606,114 @@ public class VmServiceWrapper implements Disposable {
     }));
   }
 
-  @Nullable
-  public Script getScriptSync(@NotNull final String isolateId, @NotNull final String scriptId) {
-    assertSyncRequestAllowed();
+  /**
+   * Returns where a paused isolate stopped, downloading the top frame's script if it isn't cached, so that the
+   * suspend context can be created without waiting for it.
+   * <p>
+   * The future completes with null if there is no top frame or its script isn't available.
+   */
+  @NotNull
+  public CompletableFuture<XSourcePosition> getTopFramePosition(@NotNull final String isolateId, @Nullable final Frame topFrame) {
+    if (topFrame == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return getSourcePositions(isolateId, Collections.singletonList(topFrame)).thenApply((positions) -> positions.get(0));
+  }
 
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
+  /**
+   * Returns the source position of each frame, downloading the scripts that aren't cached together.
+   * <p>
+   * The position is null for frames that have no location or whose script isn't available.
+   */
+  @NotNull
+  private CompletableFuture<List<XSourcePosition>> getSourcePositions(@NotNull final String isolateId,
+                                                                      @NotNull final List<Frame> vmFrames) {
+    // Looking for the local files takes a read action, so keep it off the VM service threads.
+    return CompletableFuture.supplyAsync(() -> {
+      final List<CompletableFuture<XSourcePosition>> positions = new ArrayList<>(vmFrames.size());
+      for (Frame vmFrame : vmFrames) {
+        final SourceLocation location = vmFrame.getLocation();
+        positions.add(location == null
+                      ? CompletableFuture.completedFuture(null)
+                      : myDebugProcess.getSourcePosition(isolateId, location.getScript(), location.getTokenPos())
+                        .exceptionally((error) -> null));
+      }
+      return positions;
+    }, AppExecutorUtil.getAppExecutorService()).thenCompose((positions) -> CompletableFuture
+      .allOf(positions.toArray(new CompletableFuture[0]))
+      .thenApply((ignored) -> {
+        final List<XSourcePosition> result = new ArrayList<>(positions.size());
+        for (CompletableFuture<XSourcePosition> position : positions) {
+          result.add(position.join());
+        }
+        return result;
+      }));
+  }
 
-    final Ref<Script> resultRef = Ref.create();
+  /**
+   * Returns the async causal frames if there are any, otherwise the regular sync frames.
+   */
+  @NotNull
+  private static List<Frame> getFrames(@NotNull final Stack vmStack) {
+    ElementList<Frame> elementList = vmStack.getAsyncCausalFrames();
+    if (elementList == null) {
+      elementList = vmStack.getFrames();
+    }
+    return Lists.newArrayList(elementList);
+  }
 
-    addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
+  /**
+   * Downloads a script without blocking. The future completes with null if the script isn't available.
+   */
+  @NotNull
+  public CompletableFuture<Script> getScript(@NotNull final String isolateId, @NotNull final String scriptId) {
+    return getObject(isolateId, scriptId, Script.class);
+  }
+
+  @NotNull
+  private CompletableFuture<Library> getLibrary(@NotNull final String isolateId, @NotNull final String libraryId) {
+    return getObject(isolateId, libraryId, Library.class);
+  }
+
+  @NotNull
+  private <T extends Obj> CompletableFuture<T> getObject(@NotNull final String isolateId,
+                                                         @NotNull final String objectId,
+                                                         @NotNull final Class<T> type) {
+    if (myRequestsScheduler.isDisposed()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    addRequest(() -> myVmService.getObject(isolateId, objectId, new GetObjectConsumer() {
       @Override
-      public void received(Obj script) {
-        resultRef.set((Script)script);
-        semaphore.up();
+      public void received(Obj response) {
+        future.complete(type.isInstance(response) ? type.cast(response) : null);
       }
 
       @Override
       public void received(Sentinel response) {
-        semaphore.up();
+        future.complete(null);
       }
 
       @Override
       public void onError(RPCError error) {
-        semaphore.up();
+        future.complete(null);
       }
     }));
-
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return future;
   }
 
+  /**
+   * Gets an object. While the isolate is paused, the object is fetched once and shared with
+   * other requests for it until the isolate resumes.
+   */
   public void getObject(@NotNull final String isolateId, @NotNull final String objectId, @NotNull final GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    if (myDebugProcess.isIsolateSuspended(isolateId)) {
+      myObjectCache.getObject(isolateId, objectId, consumer);
+    }
+    else {
+      addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    }
   }
 
   public void getCollectionObject(@NotNull final String isolateId,
@@ -472,31 +721,79 @@ public class VmServiceWrapper implements Disposable {
                                   final int offset,
                                   final int count,
                                   @NotNull final GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    if (myDebugProcess.isIsolateSuspended(isolateId)) {
+      myObjectCache.getCollectionObject(isolateId, objectId, offset, count, consumer);
+    }
+    else {
+      addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    }
+  }
+
+  /**
+   * Starts fetching an object of a paused isolate, so that it's ready when the debugger tree asks for it.
+   */
+  public void prefetchObject(@NotNull final String isolateId, @NotNull final String objectId) {
+    if (myDebugProcess.isIsolateSuspended(isolateId)) {
+      myObjectCache.prefetchObject(isolateId, objectId);
+    }
+  }
+
+  /**
+   * Starts fetching the elements of a collection in a paused isolate.
+   */
+  public void prefetchCollectionObject(@NotNull final String isolateId, @NotNull final String objectId, final int offset, final int count) {
+    if (myDebugProcess.isIsolateSuspended(isolateId)) {
+      myObjectCache.prefetchCollectionObject(isolateId, objectId, offset, count);
+    }
+  }
+
+  /**
+   * Evaluates toString() on an object. While the isolate is paused the result is kept, since
+   * the same values are presented again whenever the tree is rebuilt.
+   */
+  public void evaluateToString(@NotNull final String isolateId, @NotNull final String targetId, @NotNull final EvaluateConsumer consumer) {
+    if (myDebugProcess.isIsolateSuspended(isolateId)) {
+      myObjectCache.evaluate(isolateId, targetId, "toString()", consumer);
+    }
+    else {
+      evaluateInTargetContext(isolateId, targetId, "toString()", consumer);
+    }
+  }
+
+  /**
+   * Forgets the objects fetched while the isolate was paused.
+   */
+  public void clearObjectCache(@NotNull final String isolateId) {
+    myObjectCache.clear(isolateId);
   }
 
   public void evaluateInFrame(@NotNull final String isolateId,
                               @NotNull final Frame vmFrame,
                               @NotNull final String expression,
                               @NotNull final XDebuggerEvaluator.XEvaluationCallback callback) {
+    myObjectCache.beginEvaluation(isolateId);
     addRequest(() -> myVmService.evaluateInFrame(isolateId, vmFrame.getIndex(), expression, new EvaluateInFrameConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
+        myObjectCache.endEvaluation(isolateId);
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
       }
 
       @Override
       public void received(Sentinel sentinel) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(sentinel.getValueAsString());
       }
 
       @Override
       public void received(ErrorRef errorRef) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(DartVmServiceEvaluator.getPresentableError(errorRef.getMessage()));
       }
 
       @Override
       public void onError(RPCError error) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(error.getMessage());
       }
     }));
@@ -514,24 +811,29 @@ public class VmServiceWrapper implements Disposable {
                                       @NotNull final String targetId,
                                       @NotNull final String expression,
                                       @NotNull final XDebuggerEvaluator.XEvaluationCallback callback) {
+    myObjectCache.beginEvaluation(isolateId);
     evaluateInTargetContext(isolateId, targetId, expression, new EvaluateConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
+        myObjectCache.endEvaluation(isolateId);
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
       }
 
       @Override
       public void received(Sentinel sentinel) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(sentinel.getValueAsString());
       }
 
       @Override
       public void received(ErrorRef errorRef) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(DartVmServiceEvaluator.getPresentableError(errorRef.getMessage()));
       }
 
       @Override
       public void onError(RPCError error) {
+        myObjectCache.endEvaluation(isolateId);
         callback.errorOccurred(error.getMessage());
       }
     });
@@ -1,6 +1,7 @@
 package io.flutter.server.vmService.frame;
 
 import com.intellij.icons.AllIcons;
+import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.frame.XExecutionStack;
 import com.intellij.xdebugger.frame.XStackFrame;
 import io.flutter.server.vmService.DartVmServiceDebugProcess;
@@ -21,6 +22,7 @@ public class DartVmServiceExecutionStack extends XExecutionStack {
                                      @NotNull final String isolateId,
                                      @NotNull final String isolateName,
                                      @Nullable final Frame topFrame,
+                                     @Nullable final XSourcePosition topFramePosition,
                                      @Nullable final InstanceRef exception) {
     // topFrame is not null for (and only for) the active execution stack
     super(debugProcess.isIsolateSuspended(isolateId) ? beautify(isolateName)
@@ -31,7 +33,7 @@ public class DartVmServiceExecutionStack extends XExecutionStack {
     myDebugProcess = debugProcess;
     myIsolateId = isolateId;
     myException = exception;
-    myTopFrame = topFrame == null ? null : new DartVmServiceStackFrame(debugProcess, isolateId, topFrame, null, exception);
+    myTopFrame = topFrame == null ? null : new DartVmServiceStackFrame(debugProcess, isolateId, topFrame, null, exception, topFramePosition);
   }
 
   @NotNull
@@ -33,18 +33,14 @@ public class DartVmServiceStackFrame extends XStackFrame {
                                  @NotNull final String isolateId,
                                  @NotNull final Frame vmFrame,
                                  @Nullable List<Frame> vmFrames,
-                                 @Nullable final InstanceRef exception) {
+                                 @Nullable final InstanceRef exception,
+                                 @Nullable final XSourcePosition sourcePosition) {
     myDebugProcess = debugProcess;
     myIsolateId = isolateId;
     myVmFrame = vmFrame;
     myVmFrames = vmFrames;
     myException = exception;
-    if (vmFrame.getLocation() == null) {
-      mySourcePosition = null;
-    }
-    else {
-      mySourcePosition = debugProcess.getSourcePosition(isolateId, vmFrame.getLocation().getScript(), vmFrame.getLocation().getTokenPos());
-    }
+    mySourcePosition = sourcePosition;
   }
 
   @NotNull
@@ -107,6 +103,15 @@ public class DartVmServiceStackFrame extends XStackFrame {
       return;
     }
 
+    // Send the requests for the variables' children together, instead of one at a time as
+    // their nodes are expanded.
+    for (BoundVariable var : vars) {
+      final InstanceRef value = var.getValue();
+      if (value != null) {
+        DartVmServiceValue.prefetchChildren(myDebugProcess, myIsolateId, value);
+      }
+    }
+
     BoundVariable thisVar = null;
     for (BoundVariable var : vars) {
       if ("this".equals(var.getName())) {
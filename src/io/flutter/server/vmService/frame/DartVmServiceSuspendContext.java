@@ -1,5 +1,6 @@
 package io.flutter.server.vmService.frame;
 
+import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.frame.XExecutionStack;
 import com.intellij.xdebugger.frame.XSuspendContext;
 import io.flutter.server.vmService.DartVmServiceDebugProcess;
@@ -24,10 +25,11 @@ public class DartVmServiceSuspendContext extends XSuspendContext {
   public DartVmServiceSuspendContext(@NotNull final DartVmServiceDebugProcess debugProcess,
                                      @NotNull final IsolateRef isolateRef,
                                      @NotNull final Frame topFrame,
+                                     @Nullable final XSourcePosition topFramePosition,
                                      @Nullable final InstanceRef exception,
                                      boolean atAsyncSuspension) {
     myDebugProcess = debugProcess;
-    myActiveExecutionStack = new DartVmServiceExecutionStack(debugProcess, isolateRef.getId(), isolateRef.getName(), topFrame, exception);
+    myActiveExecutionStack = new DartVmServiceExecutionStack(debugProcess, isolateRef.getId(), isolateRef.getName(), topFrame, topFramePosition, exception);
     myAtAsyncSuspension = atAsyncSuspension;
   }
 
@@ -52,7 +54,7 @@ public class DartVmServiceSuspendContext extends XSuspendContext {
         }
         else {
           myExecutionStacks
-            .add(new DartVmServiceExecutionStack(myDebugProcess, isolateInfo.getIsolateId(), isolateInfo.getIsolateName(), null, null));
+            .add(new DartVmServiceExecutionStack(myDebugProcess, isolateInfo.getIsolateId(), isolateInfo.getIsolateName(), null, null, null));
         }
       }
     }
@@ -5,7 +5,6 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.LayeredIcon;
-import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.frame.*;
 import com.intellij.xdebugger.frame.presentation.XKeywordValuePresentation;
 import com.intellij.xdebugger.frame.presentation.XNumericValuePresentation;
@@ -137,10 +136,9 @@ public class DartVmServiceValue extends XNamedValue {
       return;
     }
 
-    ApplicationManager.getApplication().executeOnPooledThread(() -> {
-      final XSourcePosition sourcePosition = debugProcess.getSourcePosition(isolateId, script, tokenPos);
-      ApplicationManager.getApplication().runReadAction(() -> navigatable.setSourcePosition(sourcePosition));
-    });
+    ApplicationManager.getApplication().executeOnPooledThread(
+      () -> debugProcess.getSourcePosition(isolateId, script, tokenPos).whenComplete(
+        (sourcePosition, error) -> ApplicationManager.getApplication().runReadAction(() -> navigatable.setSourcePosition(sourcePosition))));
   }
 
   @Override
@@ -286,7 +284,7 @@ public class DartVmServiceValue extends XNamedValue {
 
   private void computeDefaultPresentation(@NotNull final XValueNode node) {
     myDebugProcess.getVmServiceWrapper()
-      .evaluateInTargetContext(myIsolateId, myInstanceRef.getId(), "toString()", new VmServiceConsumers.EvaluateConsumerWrapper() {
+      .evaluateToString(myIsolateId, myInstanceRef.getId(), new VmServiceConsumers.EvaluateConsumerWrapper() {
         @Override
         public void received(final InstanceRef toStringInstanceRef) {
           if (toStringInstanceRef.getKind() == InstanceKind.String) {
@@ -341,6 +339,29 @@ public class DartVmServiceValue extends XNamedValue {
     }
   }
 
+  /**
+   * Starts fetching what {@link #computeChildren} will ask for when the value is expanded, so
+   * that the first level of children of a frame's variables shows up without another round trip.
+   */
+  static void prefetchChildren(@NotNull final DartVmServiceDebugProcess debugProcess,
+                               @NotNull final String isolateId,
+                               @NotNull final InstanceRef instanceRef) {
+    final InstanceKind kind = instanceRef.getKind();
+    if (kind == InstanceKind.Null || hasStringValue(kind)) {
+      return;
+    }
+
+    if (isListKind(kind) || kind == InstanceKind.Map) {
+      final int count = Math.min(instanceRef.getLength(), XCompositeNode.MAX_CHILDREN_TO_SHOW);
+      if (count > 0) {
+        debugProcess.getVmServiceWrapper().prefetchCollectionObject(isolateId, instanceRef.getId(), 0, count);
+      }
+    }
+    else if (kind != InstanceKind.RegExp) {
+      debugProcess.getVmServiceWrapper().prefetchObject(isolateId, instanceRef.getId());
+    }
+  }
+
   private void computeCollectionChildren(@NotNull final XCompositeNode node) {
     final int offset = myCollectionChildrenAlreadyShown.get();
     final int count = Math.min(myInstanceRef.getLength() - offset, XCompositeNode.MAX_CHILDREN_TO_SHOW);
@@ -453,6 +474,20 @@ public class DartVmServiceValue extends XNamedValue {
     }
   }
 
+  /**
+   * Returns true for the kinds whose value is presented from getValueAsString(), without asking the VM.
+   */
+  private static boolean hasStringValue(@NotNull final InstanceKind kind) {
+    return kind == InstanceKind.Bool ||
+           kind == InstanceKind.Double ||
+           kind == InstanceKind.Int ||
+           kind == InstanceKind.String ||
+           kind == InstanceKind.Float32x4 ||
+           kind == InstanceKind.Float64x2 ||
+           kind == InstanceKind.Int32x4 ||
+           kind == InstanceKind.StackTrace;
+  }
+
   private static boolean isListKind(@NotNull final InstanceKind kind) {
     // List, Uint8ClampedList, Uint8List, Uint16List, Uint32List, Uint64List, Int8List, Int16List, Int32List, Int64List, Float32List, Float64List, Int32x4List, Float32x4List, Float64x2List
     return kind == InstanceKind.List ||
@@ -19,12 +19,15 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.Storage;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.SimpleToolWindowPanel;
 import com.intellij.openapi.util.ActionCallback;
 import com.intellij.openapi.util.ActiveRunnable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.openapi.wm.ex.ToolWindowEx;
@@ -42,7 +45,9 @@ import com.intellij.util.ui.UIUtil;
 import icons.FlutterIcons;
 import io.flutter.FlutterBundle;
 import io.flutter.FlutterInitializer;
+import io.flutter.FlutterMessages;
 import io.flutter.inspector.InspectorService;
+import io.flutter.perf.PerfService;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.run.daemon.FlutterDevice;
 import io.flutter.settings.FlutterSettings;
@@ -57,6 +62,8 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -415,7 +422,7 @@ public class FlutterView implements PersistentStateComponent<FlutterViewState>,
           }
         });
       }
-    });
+    }, VmService.EXTENSION_STREAM_ID);
 
     onAppChanged(app);
 
@@ -624,6 +631,42 @@ class OpenTimelineViewAction extends FlutterViewAction {
   }
 }
 
+class ExportHeapHistoryAction extends FlutterViewAction {
+  ExportHeapHistoryAction(@NotNull FlutterApp app) {
+    super(app, "Export Heap History...", "Save the heap samples recorded for this app as CSV", null);
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    e.getPresentation().setEnabled(app.isSessionActive() && app.getPerfService() != null);
+  }
+
+  @Override
+  public void perform(AnActionEvent event) {
+    final PerfService perfService = app.getPerfService();
+    if (perfService == null) {
+      return;
+    }
+
+    final FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Heap History", "Save the recorded heap samples as CSV", "csv");
+    final VirtualFileWrapper wrapper =
+      FileChooserFactory.getInstance().createSaveFileDialog(descriptor, app.getProject()).save(null, "heap_history.csv");
+    if (wrapper == null) {
+      return;
+    }
+
+    final File file = wrapper.getFile();
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        perfService.exportHeapHistory(file);
+      }
+      catch (IOException e) {
+        FlutterMessages.showError("Error Exporting Heap History", e.getMessage());
+      }
+    });
+  }
+}
+
 class TogglePlatformAction extends FlutterViewAction {
   private Boolean isCurrentlyAndroid;
   CompletableFuture<Boolean> cachedHasExtensionFuture;
@@ -911,6 +954,8 @@ class OverflowAction extends AnAction implements RightAlignedToolbarAction {
     group.addSeparator();
     group.add(view.registerAction(new HideSlowBannerAction(app)));
     group.addSeparator();
+    group.add(view.registerAction(new ExportHeapHistoryAction(app)));
+    group.addSeparator();
     group.add(view.registerAction(new AutoHorizontalScrollAction(app, view.shouldAutoHorizontalScroll)));
     group.add(view.registerAction(new HighlightNodesShownInBothTrees(app, view.highlightNodesShownInBothTrees)));
 
@@ -7,6 +7,7 @@ package io.flutter.view;
 
 import com.google.common.base.Joiner;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.ui.Splitter;
@@ -18,6 +19,7 @@ import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.dualView.TreeTableView;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.ui.treeStructure.treetable.ListTreeTableModelOnColumns;
+import com.intellij.util.Alarm;
 import com.intellij.util.ui.ColumnInfo;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.tree.TreeUtil;
@@ -67,6 +69,10 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
   // value for warnings.
   private static final SimpleTextAttributes WARNING_ATTRIBUTES = new SimpleTextAttributes(SimpleTextAttributes.STYLE_PLAIN, JBColor.ORANGE);
   private static final Logger LOG = Logger.getInstance(InspectorPanel.class);
+  /**
+   * Delay after the tree stops scrolling or changing before rows are prefetched.
+   */
+  private static final int PREFETCH_DELAY_MS = 100;
   protected final boolean detailsSubtree;
   protected final boolean isSummaryTree;
   /**
@@ -87,6 +93,12 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
   @NotNull private final InspectorService inspectorService;
   private final StreamSubscription<IsolateRef> flutterIsolateSubscription;
   private final TreeScrollAnimator scrollAnimator;
+  /**
+   * Loads the children and property values of rows near the viewport before
+   * they are expanded.
+   */
+  private final PrefetchScheduler<DiagnosticsNode> prefetcher;
+  private final Alarm prefetchAlarm;
   /**
    * Mode with a tree view and a property table instead of a details tree and
    * a summary tree.
@@ -225,6 +237,29 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     highlightNodesShownInBothTrees.listen(this::setHighlightNodesShownInBothTrees, true);
     myRootsTree.setScrollAnimator(scrollAnimator);
 
+    prefetcher = new PrefetchScheduler<>(new PrefetchScheduler.Fetcher<DiagnosticsNode>() {
+      @Override
+      public boolean needsFetch(@NotNull DiagnosticsNode node) {
+        if (node.isProperty()) {
+          return !node.valuePropertiesRequested();
+        }
+        return node.hasChildren() && !node.childrenRequested();
+      }
+
+      @Override
+      public boolean isDisposed(@NotNull DiagnosticsNode node) {
+        return node.getInspectorService().isDisposed();
+      }
+
+      @NotNull
+      @Override
+      public CompletableFuture<?> fetch(@NotNull DiagnosticsNode node) {
+        return node.isProperty() ? node.getValueProperties() : node.getChildren();
+      }
+    }, ApplicationManager.getApplication()::invokeLater);
+    prefetchAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    treeScrollPane.getViewport().addChangeListener((e) -> schedulePrefetch());
+
     if (!detailsSubtree) {
       treeSplitter = new Splitter(false);
       treeSplitter.setProportion(flutterView.getState().getSplitterProportion());
@@ -471,6 +506,9 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     programaticSelectionChangeInProgress = true;
     treeGroups.clear(isolateStopped);
     selectionGroups.clear(isolateStopped);
+    if (LOG.isDebugEnabled() && prefetcher.getStartedCount() > 0) {
+      LOG.debug(treeType.displayName + " tree " + prefetcher);
+    }
 
     currentShowNode = null;
     selectedNode = null;
@@ -576,10 +614,17 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
         treeGroups.cancelNext();
         return;
       }
-      // TODO(jacobr): as a performance optimization we should check if the
-      // new tree is identical to the existing tree in which case we should
-      // dispose the new tree and keep the old tree.
       treeGroups.promoteNext();
+      final DefaultMutableTreeNode oldRootNode = getRootNode();
+      final DiagnosticsNode oldRoot = getDiagnosticNode(oldRootNode);
+      if (n != null && !legacyMode && oldRoot != null && Objects.equals(oldRoot.getValueRef(), n.getValueRef())) {
+        // Same root as before. Reuse the tree nodes of the parts of the tree
+        // that are still there so expansion state and scroll position are kept.
+        updateTreeNode(oldRootNode, n);
+        refreshSelection(newSelection, detailsSelection, setSubtreeRoot);
+        schedulePrefetch();
+        return;
+      }
       clearValueToTreeNodeMapping();
       if (n != null) {
         final DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(n);
@@ -597,6 +642,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
         getTreeModel().setRoot(null);
       }
       refreshSelection(newSelection, detailsSelection, setSubtreeRoot);
+      schedulePrefetch();
     });
   }
 
@@ -776,6 +822,198 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     }
   }
 
+  /**
+   * Points an existing tree node at a newly fetched version of the node it shows, reusing the
+   * tree nodes of children that are still there.
+   * <p>
+   * Model events are only sent for nodes whose fingerprint changed and for children that were
+   * added, removed or moved, so unchanged parts of the tree keep their expansion state.
+   */
+  private void updateTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode diagnosticsNode) {
+    final DiagnosticsNode oldNode = getDiagnosticNode(treeNode);
+    bindTreeNode(treeNode, diagnosticsNode);
+    if (oldNode == null || oldNode.getNodeFingerprint() != diagnosticsNode.getNodeFingerprint()) {
+      getTreeModel().nodeChanged(treeNode);
+    }
+
+    if (!diagnosticsNode.hasChildren() && diagnosticsNode.getInlineProperties().isEmpty()) {
+      for (int i = treeNode.getChildCount() - 1; i >= 0; i--) {
+        removeTreeNode((DefaultMutableTreeNode)treeNode.getChildAt(i));
+      }
+      treeNode.setAllowsChildren(false);
+      return;
+    }
+
+    if (!diagnosticsNode.childrenReady()) {
+      if (hasPlaceholderChildren(treeNode)) {
+        if (treeNode.getChildCount() == 0) {
+          treeNode.setAllowsChildren(true);
+          getTreeModel().insertNodeInto(new DefaultMutableTreeNode("Loading..."), treeNode, 0);
+        }
+        // The children are loaded when the node is expanded.
+        return;
+      }
+      // The children were loaded before. Keep showing them until the new ones arrive.
+      diagnosticsNode.safeWhenComplete(diagnosticsNode.getChildren(), (ArrayList<DiagnosticsNode> children, Throwable throwable) -> {
+        if (throwable != null || treeNode.getUserObject() != diagnosticsNode) {
+          return;
+        }
+        updateChildren(treeNode, diagnosticsNode, children, false);
+      });
+      return;
+    }
+
+    final boolean subtreeUnchanged = oldNode != null && oldNode.getSubtreeFingerprint() == diagnosticsNode.getSubtreeFingerprint();
+    updateChildren(treeNode, diagnosticsNode, diagnosticsNode.getChildren().getNow(null), subtreeUnchanged);
+  }
+
+  private void updateChildren(DefaultMutableTreeNode treeNode,
+                              DiagnosticsNode parent,
+                              ArrayList<DiagnosticsNode> children,
+                              boolean subtreeUnchanged) {
+    final List<DiagnosticsNode> nodes = new ArrayList<>(parent.getInlineProperties());
+    nodes.addAll(children);
+
+    if (subtreeUnchanged && treeNode.getChildCount() == nodes.size() && !hasPlaceholderChildren(treeNode)) {
+      // Nothing changed, so the existing tree nodes line up with the new nodes.
+      for (int i = 0; i < nodes.size(); i++) {
+        updateTreeNode((DefaultMutableTreeNode)treeNode.getChildAt(i), nodes.get(i));
+      }
+      return;
+    }
+
+    final Map<String, Deque<DefaultMutableTreeNode>> existing = new HashMap<>();
+    for (int i = 0; i < treeNode.getChildCount(); i++) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      final DiagnosticsNode diagnostic = getDiagnosticNode(child);
+      if (diagnostic != null) {
+        existing.computeIfAbsent(getMatchKey(diagnostic), (key) -> new ArrayDeque<>()).add(child);
+      }
+    }
+
+    final List<DefaultMutableTreeNode> updated = new ArrayList<>(nodes.size());
+    final Set<DefaultMutableTreeNode> reused = new HashSet<>();
+    for (DiagnosticsNode node : nodes) {
+      final Deque<DefaultMutableTreeNode> matches = existing.get(getMatchKey(node));
+      final DefaultMutableTreeNode match = matches != null ? matches.poll() : null;
+      if (match != null) {
+        reused.add(match);
+        updateTreeNode(match, node);
+        updated.add(match);
+      }
+      else {
+        final DefaultMutableTreeNode childTreeNode = new DefaultMutableTreeNode();
+        setupTreeNode(childTreeNode, node, false);
+        if (node.isProperty()) {
+          childTreeNode.setAllowsChildren(childTreeNode.getChildCount() > 0);
+        }
+        updated.add(childTreeNode);
+      }
+    }
+
+    // Remove the children that are gone, including the loading placeholder.
+    for (int i = treeNode.getChildCount() - 1; i >= 0; i--) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      if (!reused.contains(child)) {
+        removeTreeNode(child);
+      }
+    }
+
+    // Insert the new children and move the reordered ones into place.
+    final DefaultTreeModel model = getTreeModel();
+    treeNode.setAllowsChildren(!updated.isEmpty() || parent.hasChildren());
+    for (int i = 0; i < updated.size(); i++) {
+      final DefaultMutableTreeNode child = updated.get(i);
+      if (i < treeNode.getChildCount() && treeNode.getChildAt(i) == child) {
+        continue;
+      }
+      if (child.getParent() == treeNode) {
+        model.removeNodeFromParent(child);
+      }
+      model.insertNodeInto(child, treeNode, i);
+    }
+  }
+
+  /**
+   * Returns the key used to match a child against the children shown before a refresh.
+   */
+  private static String getMatchKey(DiagnosticsNode node) {
+    if (node.isProperty()) {
+      return "property:" + node.getName();
+    }
+    final String id = node.getValueRef().getId();
+    return id != null ? "value:" + id : "description:" + node.getDescription();
+  }
+
+  private void bindTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode diagnosticsNode) {
+    treeNode.setUserObject(diagnosticsNode);
+    final InspectorInstanceRef valueRef = diagnosticsNode.getValueRef();
+    // Properties do not have unique values so should not go in the valueToTreeNode map.
+    if (valueRef.getId() != null && !diagnosticsNode.isProperty()) {
+      final DefaultMutableTreeNode previous = valueToTreeNode.put(valueRef, treeNode);
+      if (previous != treeNode && parentTree != null) {
+        parentTree.maybeUpdateValueUI(valueRef);
+      }
+    }
+  }
+
+  private void removeTreeNode(DefaultMutableTreeNode treeNode) {
+    getTreeModel().removeNodeFromParent(treeNode);
+    final Enumeration<?> nodes = treeNode.depthFirstEnumeration();
+    while (nodes.hasMoreElements()) {
+      final DefaultMutableTreeNode node = (DefaultMutableTreeNode)nodes.nextElement();
+      if (node == currentShowNode) {
+        currentShowNode = null;
+      }
+      if (node == lastExpanded) {
+        lastExpanded = null;
+      }
+      final DiagnosticsNode diagnostic = getDiagnosticNode(node);
+      if (diagnostic == null || diagnostic.isProperty()) {
+        continue;
+      }
+      final InspectorInstanceRef valueRef = diagnostic.getValueRef();
+      if (valueRef.getId() != null && valueToTreeNode.remove(valueRef, node) && parentTree != null) {
+        parentTree.maybeUpdateValueUI(valueRef);
+      }
+    }
+  }
+
+  private void schedulePrefetch() {
+    if (!prefetchAlarm.isDisposed()) {
+      prefetchAlarm.cancelAllRequests();
+      prefetchAlarm.addRequest(this::prefetchVisibleRows, PREFETCH_DELAY_MS);
+    }
+  }
+
+  /**
+   * Prefetches the next level of the rows in view, followed by the rows in
+   * the page below the view as those are the most likely to be scrolled to.
+   * <p>
+   * Collapsed rows get their children loaded so they expand without a
+   * placeholder, and property rows get the values shown in their icons and
+   * tooltips.
+   */
+  private void prefetchVisibleRows() {
+    final Rectangle visible = myRootsTree.getVisibleRect();
+    if (!visibleToUser || visible.isEmpty() || myRootsTree.getRowCount() == 0) {
+      prefetcher.setTargets(Collections.emptyList());
+      return;
+    }
+    final int first = myRootsTree.getClosestRowForLocation(visible.x, visible.y);
+    final int last = myRootsTree.getClosestRowForLocation(visible.x, visible.y + visible.height);
+    final int end = Math.min(myRootsTree.getRowCount() - 1, last + (last - first + 1));
+    final List<DiagnosticsNode> targets = new ArrayList<>();
+    for (int row = first; row <= end; row++) {
+      final TreePath path = myRootsTree.getPathForRow(row);
+      final DiagnosticsNode diagnostic = path != null ? TreeUtils.maybeGetDiagnostic((DefaultMutableTreeNode)path.getLastPathComponent()) : null;
+      if (diagnostic != null) {
+        targets.add(diagnostic);
+      }
+    }
+    prefetcher.setTargets(targets);
+  }
+
   void maybeLoadChildren(DefaultMutableTreeNode node) {
     if (!(node.getUserObject() instanceof DiagnosticsNode)) {
       return;
@@ -783,6 +1021,9 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     final DiagnosticsNode diagnosticsNode = (DiagnosticsNode)node.getUserObject();
     if (diagnosticsNode.hasChildren() || !diagnosticsNode.getInlineProperties().isEmpty()) {
       if (hasPlaceholderChildren(node)) {
+        if (diagnosticsNode.hasChildren()) {
+          prefetcher.recordUse(diagnosticsNode);
+        }
         diagnosticsNode.safeWhenComplete(diagnosticsNode.getChildren(), (ArrayList<DiagnosticsNode> children, Throwable throwable) -> {
           if (throwable != null) {
             // TODO(jacobr): Display that children failed to load.
@@ -1006,6 +1247,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     if (userObject instanceof DiagnosticsNode) {
       final DiagnosticsNode diagnostic = (DiagnosticsNode)userObject;
       if (diagnostic.hasChildren() && treeNode.getChildCount() == 0) {
+        prefetcher.recordUse(diagnostic);
         diagnostic.safeWhenComplete(diagnostic.getChildren(), (ArrayList<DiagnosticsNode> children, Throwable throwable) -> {
           if (throwable != null) {
             LOG.error(throwable);
@@ -1167,6 +1409,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
   @Override
   public void dispose() {
     flutterIsolateSubscription.dispose();
+    prefetcher.dispose();
     // TODO(jacobr): actually implement.
     final InspectorService service = getInspectorService();
     if (service != null) {
@@ -1552,6 +1795,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     public void treeExpanded(TreeExpansionEvent event) {
       final DefaultMutableTreeNode treeNode = (DefaultMutableTreeNode)event.getPath().getLastPathComponent();
       maybeLoadChildren(treeNode);
+      schedulePrefetch();
 
       if (!programaticExpansionInProgress) {
         lastExpanded = treeNode;
@@ -6,10 +6,14 @@
 package io.flutter.view;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
 import io.flutter.inspector.FPSDisplay;
 import io.flutter.inspector.HeapDisplay;
 import io.flutter.run.FlutterLaunchMode;
+import io.flutter.run.FlutterReloadManager;
+import io.flutter.run.ReloadStats;
 import io.flutter.run.daemon.FlutterApp;
 import org.jetbrains.annotations.NotNull;
 
@@ -45,9 +49,29 @@ public class InspectorPerfTab extends JPanel implements InspectorTabPanel {
     add(FPSDisplay.createJPanelView(parentDisposable, app), BorderLayout.NORTH);
     add(Box.createVerticalStrut(16));
     add(HeapDisplay.createJPanelView(parentDisposable, app), BorderLayout.SOUTH);
+    add(Box.createVerticalStrut(16));
+    add(createReloadStatsView(parentDisposable, app));
     add(Box.createVerticalGlue());
   }
 
+  private static JComponent createReloadStatsView(Disposable parentDisposable, @NotNull FlutterApp app) {
+    final ReloadStats stats = FlutterReloadManager.getInstance(app.getProject()).getReloadStats();
+    final JLabel label = new JLabel(stats.getSummary());
+
+    final ReloadStats.Listener listener = (updated) -> {
+      final String summary = updated.getSummary();
+      UIUtil.invokeLaterIfNeeded(() -> label.setText(summary));
+    };
+    stats.addListener(listener);
+    Disposer.register(parentDisposable, () -> stats.removeListener(listener));
+
+    final Box labelBox = Box.createHorizontalBox();
+    labelBox.add(label);
+    labelBox.add(Box.createHorizontalGlue());
+    labelBox.setBorder(JBUI.Borders.empty(3, 10));
+    return labelBox;
+  }
+
   @Override
   public void setVisibleToUser(boolean visible) {
     assert app.getPerfService() != null;
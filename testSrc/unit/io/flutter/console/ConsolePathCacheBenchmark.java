@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.console;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how many console path lookups have to be resolved again when files
+ * elsewhere in the project change, with invalidation limited to the probed
+ * paths compared with clearing the whole cache on every change.
+ * <p>
+ * The console output mentions a few hundred paths, most often a handful of
+ * them, while a build writes files under build/ and .dart_tool/. The workload
+ * is generated with a fixed seed, so runs are comparable. This is not run as
+ * part of the unit tests; run the main method directly.
+ */
+public class ConsolePathCacheBenchmark {
+  private static final String ROOT = "/work/app";
+  private static final int PATH_COUNT = 300;
+  private static final int LOOKUP_COUNT = 200000;
+  private static final int LOOKUPS_PER_CHANGE = 50;
+
+  /**
+   * The time to resolve a path against the VFS, simulated since there is none here.
+   */
+  private static final int RESOLVE_SPIN = 2000;
+
+  public static void main(String[] args) {
+    final Module module = (Module)Proxy.newProxyInstance(
+      Module.class.getClassLoader(), new Class[]{Module.class},
+      (proxy, method, methodArgs) -> {
+        switch (method.getName()) {
+          case "equals":
+            return proxy == methodArgs[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return "app";
+        }
+      });
+
+    final Random random = new Random(42);
+    final List<String> paths = new ArrayList<>();
+    final Map<String, VirtualFile> files = new HashMap<>();
+    for (int i = 0; i < PATH_COUNT; i++) {
+      final String path = "lib/src/widget_" + i + ".dart";
+      paths.add(path);
+      // Stack traces also mention files from other packages that aren't in the project.
+      if (random.nextInt(4) != 0) {
+        files.put(path, new LightVirtualFile("widget_" + i + ".dart"));
+      }
+    }
+    final int[] lookups = new int[LOOKUP_COUNT];
+    for (int i = 0; i < LOOKUP_COUNT; i++) {
+      // Skewed towards the first paths, like a stack trace that keeps repeating.
+      lookups[i] = (int)(PATH_COUNT * Math.pow(random.nextDouble(), 3));
+    }
+    final List<String> changes = new ArrayList<>();
+    for (int i = 0; i < LOOKUP_COUNT / LOOKUPS_PER_CHANGE; i++) {
+      changes.add(ROOT + (random.nextBoolean() ? "/build/app/intermediates/out_" : "/.dart_tool/flutter_build/out_") + i);
+    }
+
+    // Warm up.
+    run(module, paths, files, lookups, changes, true);
+    run(module, paths, files, lookups, changes, false);
+
+    final Result targeted = run(module, paths, files, lookups, changes, true);
+    final Result cleared = run(module, paths, files, lookups, changes, false);
+
+    System.out.printf("lookups: %d, file changes: %d%n", LOOKUP_COUNT, changes.size());
+    System.out.printf("invalidate probed paths: %d resolves, %.1f ms%n", targeted.resolves, targeted.nanos / 1e6);
+    System.out.printf("clear on every change:   %d resolves, %.1f ms%n", cleared.resolves, cleared.nanos / 1e6);
+  }
+
+  private static Result run(Module module,
+                            List<String> paths,
+                            Map<String, VirtualFile> files,
+                            int[] lookups,
+                            List<String> changes,
+                            boolean targeted) {
+    final int[] resolves = new int[1];
+    final ConsolePathCache cache = new ConsolePathCache((m, path, probedPaths) -> {
+      resolves[0]++;
+      spin();
+      probedPaths.add(ROOT + "/" + path);
+      if (files.containsKey(path)) {
+        return files.get(path);
+      }
+      probedPaths.add(ROOT + "/example");
+      return null;
+    });
+
+    int hash = 0;
+    final long start = System.nanoTime();
+    for (int i = 0; i < lookups.length; i++) {
+      final VirtualFile file = cache.findFile(module, paths.get(lookups[i]));
+      hash += file == null ? 0 : 1;
+      if ((i + 1) % LOOKUPS_PER_CHANGE == 0) {
+        if (targeted) {
+          cache.invalidate(Collections.singletonList(changes.get(i / LOOKUPS_PER_CHANGE)));
+        }
+        else {
+          cache.clear();
+        }
+      }
+    }
+    final long elapsed = System.nanoTime() - start;
+    if (hash == 42) {
+      System.out.println();
+    }
+    return new Result(resolves[0], elapsed);
+  }
+
+  private static int spinSink;
+
+  private static void spin() {
+    int value = spinSink;
+    for (int i = 0; i < RESOLVE_SPIN; i++) {
+      value = value * 31 + i;
+    }
+    spinSink = value;
+  }
+
+  private static class Result {
+    final int resolves;
+    final long nanos;
+
+    Result(int resolves, long nanos) {
+      this.resolves = resolves;
+      this.nanos = nanos;
+    }
+  }
+}
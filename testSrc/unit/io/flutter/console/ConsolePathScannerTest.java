@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.console;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ConsolePathScannerTest {
+
+  @Test
+  public void testLaunchingAndOpen() {
+    checkMatch("Launching lib/main.dart on Pixel in debug mode...", "lib/main.dart", "lib/main.dart", 0);
+    checkMatch("  open ios/Runner.xcworkspace", "ios/Runner.xcworkspace", "ios/Runner.xcworkspace", 0);
+  }
+
+  @Test
+  public void testParenthesizedPaths() {
+    checkMatch("  • MyApp.build (lib/main.dart:6)", "lib/main.dart", "lib/main.dart:6", 5);
+    checkMatch("#1 _MyHomePageState._incrementCounter (lib/main.dart:49) (other/file.dart:1)",
+               "other/file.dart", "other/file.dart:1", 0);
+    checkMatch("(lib/main.dart)", "lib/main.dart", "lib/main.dart", 0);
+    checkMatch("(lib/main.dart:x)", "lib/main.dart", "lib/main.dart:x", 0);
+    checkMatch("(package:foo/foo.dart:3:4)", "package", "package:foo/foo.dart:3:4", 0);
+  }
+
+  @Test
+  public void testWholeLine() {
+    checkMatch("  lib/main.dart:12  ", "lib/main.dart", "lib/main.dart:12", 0);
+    checkMatch("flutter: hello world", "flutter", "flutter: hello world", 0);
+  }
+
+  @Test
+  public void testNoCandidate() {
+    assertNull(ConsolePathScanner.scan(""));
+    assertNull(ConsolePathScanner.scan("   "));
+    assertNull(ConsolePathScanner.scan(":12"));
+    assertNull(ConsolePathScanner.scan("see ()"));
+  }
+
+  private static void checkMatch(String line, String path, String text, int lineNumber) {
+    final ConsolePathScanner.Match match = ConsolePathScanner.scan(line);
+    assertNotNull(match);
+    assertEquals(path, match.getPath());
+    assertEquals(text, match.getText());
+    assertEquals(text, line.substring(match.start, match.end));
+    assertEquals(lineNumber, match.lineNumber);
+  }
+}
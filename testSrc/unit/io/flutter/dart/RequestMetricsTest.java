@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestMetricsTest {
+
+  @Test
+  public void testCountsByMethod() {
+    final RequestMetrics metrics = new RequestMetrics();
+    metrics.recordSent("a");
+    metrics.recordSent("a");
+    metrics.recordSent("a");
+    metrics.recordSent("b");
+    metrics.recordResponse("a", 2000000);
+    metrics.recordResponse("a", 4000000);
+    metrics.recordTimeout("a");
+    metrics.recordError("b");
+
+    assertEquals(3, metrics.getSentCount("a"));
+    assertEquals(2, metrics.getResponseCount("a"));
+    assertEquals(1, metrics.getTimeoutCount("a"));
+    assertEquals(0, metrics.getErrorCount("a"));
+    assertEquals(3.0, metrics.getMeanLatencyMs("a"), 0.001);
+    assertEquals(4.0, metrics.getMaxLatencyMs("a"), 0.001);
+
+    assertEquals(1, metrics.getErrorCount("b"));
+    assertEquals(0.0, metrics.getMeanLatencyMs("b"), 0.001);
+    assertEquals(0, metrics.getSentCount("c"));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DiagnosticsFingerprintTest {
+
+  @Test
+  public void testIgnoresObjectIds() {
+    final JsonObject first = parse("{'description': 'Text', 'objectId': 'inspector-1', 'valueId': 'inspector-2'}");
+    final JsonObject second = parse("{'description': 'Text', 'objectId': 'inspector-7', 'valueId': 'inspector-2'}");
+    assertEquals(nodeFingerprint(first), nodeFingerprint(second));
+  }
+
+  @Test
+  public void testIgnoresPropertyValueIds() {
+    final JsonObject first =
+      parse("{'description': 'Text', 'valueId': 'inspector-2', 'properties': [{'name': 'data', 'valueId': 'inspector-3'}]}");
+    final JsonObject second =
+      parse("{'description': 'Text', 'valueId': 'inspector-2', 'properties': [{'name': 'data', 'valueId': 'inspector-9'}]}");
+    assertEquals(nodeFingerprint(first), nodeFingerprint(second));
+  }
+
+  @Test
+  public void testDetectsChanges() {
+    final JsonObject node = parse("{'description': 'Text', 'valueId': 'inspector-2'}");
+    assertFalse(nodeFingerprint(node) == nodeFingerprint(parse("{'description': 'Text2', 'valueId': 'inspector-2'}")));
+    assertFalse(nodeFingerprint(node) == nodeFingerprint(parse("{'description': 'Text', 'valueId': 'inspector-5'}")));
+    assertFalse(nodeFingerprint(parse("{'a': '1'}")) == nodeFingerprint(parse("{'a': 1}")));
+  }
+
+  @Test
+  public void testIgnoresChildrenOfNode() {
+    final JsonObject withChildren = parse("{'description': 'Row', 'children': [{'description': 'Text'}]}");
+    final JsonObject withoutChildren = parse("{'description': 'Row'}");
+    assertEquals(nodeFingerprint(withChildren), nodeFingerprint(withoutChildren));
+  }
+
+  @Test
+  public void testSubtreeDependsOnChildOrder() {
+    final long node = nodeFingerprint(parse("{'description': 'Row'}"));
+    assertEquals(DiagnosticsFingerprint.ofSubtree(node, Arrays.asList(1L, 2L)), DiagnosticsFingerprint.ofSubtree(node, Arrays.asList(1L, 2L)));
+    assertFalse(DiagnosticsFingerprint.ofSubtree(node, Arrays.asList(1L, 2L)) == DiagnosticsFingerprint.ofSubtree(node, Arrays.asList(2L, 1L)));
+    assertFalse(DiagnosticsFingerprint.ofSubtree(node, Collections.emptyList()) ==
+                DiagnosticsFingerprint.ofSubtree(node, Collections.singletonList(DiagnosticsFingerprint.CHILDREN_NOT_LOADED)));
+  }
+
+  /**
+   * Returns the fingerprint of the node as computed when it is decoded.
+   */
+  private static long nodeFingerprint(JsonObject json) {
+    return new DiagnosticsNode(json, null, false).getNodeFingerprint();
+  }
+
+  private static JsonObject parse(String json) {
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the memory used by a decoded 10,000 node widget tree and the time
+ * the tree renderers spend reading the members of each node, compared with
+ * reading the same members from the raw JSON.
+ * <p>
+ * The tree dump is generated with a fixed seed in the shape of a
+ * getRootWidgetSummaryTree response, so runs are comparable. This is not run
+ * as part of the unit tests; run the main method directly.
+ */
+public class DiagnosticsNodeBenchmark {
+  private static final int NODE_COUNT = 10000;
+  private static final int PAINT_PASSES = 200;
+
+  private static final String[] WIDGETS = {
+    "Container", "Padding", "Row", "Column", "Text", "Icon", "Center", "SizedBox", "Expanded", "GestureDetector", "Material", "InkWell",
+  };
+  private static final String[] PROPERTIES = {"padding", "alignment", "color", "mainAxisAlignment", "textAlign", "size"};
+  private static final String[] LEVELS = {"info", "fine", "debug"};
+
+  public static void main(String[] args) {
+    final String dump = generateTreeDump(new Random(42));
+
+    final long baseline = usedMemory();
+    JsonObject json = new JsonParser().parse(dump).getAsJsonObject();
+    final long jsonBytes = usedMemory() - baseline;
+
+    final List<JsonObject> jsonNodes = new ArrayList<>();
+    collectJson(json, jsonNodes);
+    final long jsonPaintNanos = timePaint(() -> {
+      int hash = 0;
+      for (JsonObject node : jsonNodes) {
+        hash += readMembers(node);
+      }
+      return hash;
+    });
+    jsonNodes.clear();
+
+    final long decodeStart = System.nanoTime();
+    final DiagnosticsNode root = new DiagnosticsNode(json, null, false);
+    final List<DiagnosticsNode> nodes = new ArrayList<>();
+    collectNodes(root, nodes);
+    final long decodeNanos = System.nanoTime() - decodeStart;
+    //noinspection UnusedAssignment
+    json = null;
+    final long nodeBytes = usedMemory() - baseline;
+
+    final long nodePaintNanos = timePaint(() -> {
+      int hash = 0;
+      for (DiagnosticsNode node : nodes) {
+        hash += readMembers(node);
+      }
+      return hash;
+    });
+
+    System.out.printf("nodes: %d (including inline properties)%n", nodes.size());
+    System.out.printf("decode: %.1f ms%n", decodeNanos / 1e6);
+    System.out.printf("memory: raw JSON %d KB, decoded %d KB%n", jsonBytes / 1024, nodeBytes / 1024);
+    System.out.printf("paint pass: raw JSON %.1f ns/node, decoded %.1f ns/node%n",
+                      (double)jsonPaintNanos / PAINT_PASSES / nodes.size(), (double)nodePaintNanos / PAINT_PASSES / nodes.size());
+  }
+
+  private static String generateTreeDump(Random random) {
+    final JsonObject root = createNode(random, 0);
+    final List<JsonObject> open = new ArrayList<>();
+    open.add(root);
+    int count = 1;
+    for (int i = 0; i < open.size() && count < NODE_COUNT; i++) {
+      final JsonObject parent = open.get(i);
+      final JsonArray children = new JsonArray();
+      final int childCount = 1 + random.nextInt(3);
+      for (int j = 0; j < childCount && count < NODE_COUNT; j++) {
+        final JsonObject child = createNode(random, count++);
+        children.add(child);
+        open.add(child);
+      }
+      parent.add("children", children);
+      parent.addProperty("hasChildren", true);
+    }
+    return root.toString();
+  }
+
+  private static JsonObject createNode(Random random, int id) {
+    final JsonObject node = new JsonObject();
+    node.addProperty("description", WIDGETS[random.nextInt(WIDGETS.length)]);
+    node.addProperty("type", "_ElementDiagnosticableTreeNode");
+    node.addProperty("style", "sparse");
+    node.addProperty("hasChildren", false);
+    node.addProperty("summaryTree", true);
+    node.addProperty("createdByLocalProject", random.nextBoolean());
+    node.addProperty("objectId", "inspector-" + (2 * id));
+    node.addProperty("valueId", "inspector-" + (2 * id + 1));
+    if (random.nextInt(3) == 0) {
+      final JsonArray properties = new JsonArray();
+      final JsonObject property = new JsonObject();
+      property.addProperty("name", PROPERTIES[random.nextInt(PROPERTIES.length)]);
+      property.addProperty("description", "value " + random.nextInt(20));
+      property.addProperty("level", LEVELS[random.nextInt(LEVELS.length)]);
+      property.addProperty("type", "DiagnosticsProperty<Object>");
+      property.addProperty("propertyType", "Object");
+      property.addProperty("showName", true);
+      property.add("valueId", JsonNull.INSTANCE);
+      properties.add(property);
+      node.add("properties", properties);
+    }
+    return node;
+  }
+
+  private static void collectJson(JsonObject node, List<JsonObject> out) {
+    out.add(node);
+    for (String member : new String[]{"properties", "children"}) {
+      if (node.has(member)) {
+        for (JsonElement element : node.getAsJsonArray(member)) {
+          collectJson(element.getAsJsonObject(), out);
+        }
+      }
+    }
+  }
+
+  private static void collectNodes(DiagnosticsNode node, List<DiagnosticsNode> out) {
+    out.add(node);
+    out.addAll(node.getInlineProperties());
+    for (DiagnosticsNode child : node.getChildren().getNow(null)) {
+      collectNodes(child, out);
+    }
+  }
+
+  /**
+   * Reads the members the tree cell renderer and tree UI read for each row.
+   */
+  private static int readMembers(DiagnosticsNode node) {
+    int hash = node.getLevel().ordinal() + node.getStyle().ordinal();
+    hash += node.getShowName() ? 1 : 0;
+    hash += node.getShowSeparator() ? 1 : 0;
+    hash += node.isCreatedByLocalProject() ? 1 : 0;
+    hash += node.hasChildren() ? 1 : 0;
+    final String name = node.getName();
+    final String description = node.getDescription();
+    return hash + (name == null ? 0 : name.length()) + (description == null ? 0 : description.length());
+  }
+
+  private static int readMembers(JsonObject node) {
+    int hash = DiagnosticLevel.valueOf(getString(node, "level", "info")).ordinal() +
+               DiagnosticsTreeStyle.valueOf(getString(node, "style", "sparse")).ordinal();
+    hash += getBoolean(node, "showName", true) ? 1 : 0;
+    hash += getBoolean(node, "showSeparator", true) ? 1 : 0;
+    hash += getBoolean(node, "createdByLocalProject", false) ? 1 : 0;
+    hash += getBoolean(node, "hasChildren", false) ? 1 : 0;
+    final String name = getString(node, "name", null);
+    final String description = getString(node, "description", null);
+    return hash + (name == null ? 0 : name.length()) + (description == null ? 0 : description.length());
+  }
+
+  private static String getString(JsonObject node, String member, String defaultValue) {
+    final JsonElement value = node.get(member);
+    return value == null || value.isJsonNull() ? defaultValue : value.getAsString();
+  }
+
+  private static boolean getBoolean(JsonObject node, String member, boolean defaultValue) {
+    final JsonElement value = node.get(member);
+    return value == null || value.isJsonNull() ? defaultValue : value.getAsBoolean();
+  }
+
+  private interface Pass {
+    int run();
+  }
+
+  private static long timePaint(Pass pass) {
+    int hash = 0;
+    // Warm up.
+    for (int i = 0; i < PAINT_PASSES; i++) {
+      hash += pass.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < PAINT_PASSES; i++) {
+      hash += pass.run();
+    }
+    final long elapsed = System.nanoTime() - start;
+    if (hash == 42) {
+      System.out.println();
+    }
+    return elapsed;
+  }
+
+  private static long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
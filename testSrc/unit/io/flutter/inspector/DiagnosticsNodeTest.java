@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsNodeTest {
+
+  @Test
+  public void testDecodesMembers() {
+    final DiagnosticsNode node = parse("{'name': 'padding', 'description': 'EdgeInsets.all(8.0)', 'level': 'fine', " +
+                                       "'style': 'singleLine', 'showName': false, 'quoted': true, 'unit': 'px', " +
+                                       "'values': ['a', 'b'], 'objectId': 'inspector-1', 'valueId': 'inspector-2', " +
+                                       "'propertyType': 'EdgeInsets', 'hasChildren': true}", true);
+    assertEquals("padding", node.getName());
+    assertEquals("EdgeInsets.all(8.0)", node.getDescription());
+    assertEquals(DiagnosticLevel.fine, node.getLevel());
+    assertEquals(DiagnosticLevel.info, node.getDefaultLevel());
+    assertEquals(DiagnosticsTreeStyle.singleLine, node.getStyle());
+    assertFalse(node.getShowName());
+    assertTrue(node.getShowSeparator());
+    assertTrue(node.getIsQuoted());
+    assertTrue(node.hasIsQuoted());
+    assertEquals("px", node.getUnit());
+    assertTrue(node.hasUnit());
+    assertFalse(node.hasTooltip());
+    assertNull(node.getTooltip());
+    assertEquals(new ArrayList<>(Arrays.asList("a", "b")), node.getValues());
+    assertEquals("inspector-1", node.getDartDiagnosticRef().getId());
+    assertEquals("inspector-2", node.getValueRef().getId());
+    assertEquals("EdgeInsets", node.getPropertyType());
+    assertTrue(node.hasChildren());
+    assertTrue(node.isProperty());
+  }
+
+  @Test
+  public void testNullMembersUseDefaults() {
+    final DiagnosticsNode node = parse("{'description': null, 'level': null, 'showSeparator': null, 'tooltip': null, 'valueId': null}", false);
+    assertNull(node.getDescription());
+    assertEquals(DiagnosticLevel.info, node.getLevel());
+    assertTrue(node.getShowSeparator());
+    assertNull(node.getTooltip());
+    assertTrue(node.hasTooltip());
+    assertNull(node.getValueRef().getId());
+  }
+
+  @Test
+  public void testInternsStrings() {
+    final DiagnosticsNode first = parse("{'name': 'child', 'description': 'Container'}", false);
+    final DiagnosticsNode second = parse("{'name': 'child', 'description': 'Container'}", false);
+    assertSame(first.getName(), second.getName());
+    assertSame(first.getDescription(), second.getDescription());
+  }
+
+  @Test
+  public void testDecodesChildrenAndProperties() {
+    final DiagnosticsNode node = parse("{'description': 'Row', 'hasChildren': true, " +
+                                       "'children': [{'description': 'Text', 'objectId': 'inspector-3'}], " +
+                                       "'properties': [{'name': 'mainAxisAlignment', 'description': 'start'}]}", false);
+    assertTrue(node.childrenReady());
+    final ArrayList<DiagnosticsNode> children = node.getChildren().getNow(null);
+    assertEquals(1, children.size());
+    assertEquals("Text", children.get(0).getDescription());
+    assertSame(children, node.getChildren().getNow(null));
+    assertTrue(node.childrenReady());
+
+    final ArrayList<DiagnosticsNode> properties = node.getInlineProperties();
+    assertEquals(1, properties.size());
+    assertEquals("mainAxisAlignment", properties.get(0).getName());
+    assertTrue(properties.get(0).isProperty());
+    assertSame(properties, node.getInlineProperties());
+  }
+
+  @Test
+  public void testIdenticalDisplay() {
+    final DiagnosticsNode node = parse("{'name': 'color', 'description': 'red', 'objectId': 'inspector-1', 'valueId': 'inspector-2'}", true);
+    final DiagnosticsNode refetched = parse("{'name': 'color', 'description': 'red', 'objectId': 'inspector-5', 'valueId': 'inspector-6'}", true);
+    final DiagnosticsNode changed = parse("{'name': 'color', 'description': 'blue', 'objectId': 'inspector-1', 'valueId': 'inspector-2'}", true);
+    assertTrue(node.identicalDisplay(refetched));
+    assertFalse(node.identicalDisplay(changed));
+    assertFalse(node.identicalDisplay(null));
+  }
+
+  @Test
+  public void testNodeFingerprintMatchesJson() {
+    final JsonObject json = new JsonParser().parse("{'description': 'Text', 'objectId': 'inspector-1', 'valueId': 'inspector-2'}")
+      .getAsJsonObject();
+    final DiagnosticsNode node = new DiagnosticsNode(json, null, false);
+    assertEquals(DiagnosticsFingerprint.withValueId(DiagnosticsFingerprint.ofDisplay(json), "inspector-2"), node.getNodeFingerprint());
+  }
+
+  private static DiagnosticsNode parse(String json, boolean isProperty) {
+    return new DiagnosticsNode(new JsonParser().parse(json).getAsJsonObject(), null, isProperty);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchSchedulerTest {
+
+  @Test
+  public void testLimitsFetchesInFlight() {
+    final FakeFetcher fetcher = new FakeFetcher();
+    final PrefetchScheduler<String> scheduler = new PrefetchScheduler<>(fetcher, Runnable::run, 2);
+
+    scheduler.setTargets(Arrays.asList("a", "b", "c", "d"));
+    assertEquals(Arrays.asList("a", "b"), fetcher.fetched);
+
+    fetcher.complete("a");
+    assertEquals(Arrays.asList("a", "b", "c"), fetcher.fetched);
+    fetcher.complete("b");
+    fetcher.complete("c");
+    assertEquals(Arrays.asList("a", "b", "c", "d"), fetcher.fetched);
+    assertEquals(4, scheduler.getStartedCount());
+  }
+
+  @Test
+  public void testDropsItemsThatScrollAway() {
+    final FakeFetcher fetcher = new FakeFetcher();
+    final PrefetchScheduler<String> scheduler = new PrefetchScheduler<>(fetcher, Runnable::run, 1);
+
+    scheduler.setTargets(Arrays.asList("a", "b", "c"));
+    scheduler.setTargets(Arrays.asList("a", "d"));
+    assertEquals(2, scheduler.getCancelledCount());
+
+    fetcher.complete("a");
+    assertEquals(Arrays.asList("a", "d"), fetcher.fetched);
+  }
+
+  @Test
+  public void testReleasesFetchesOfDisposedItems() {
+    final FakeFetcher fetcher = new FakeFetcher();
+    final PrefetchScheduler<String> scheduler = new PrefetchScheduler<>(fetcher, Runnable::run, 1);
+
+    scheduler.setTargets(Arrays.asList("a", "b"));
+    fetcher.disposed.add("a");
+    scheduler.setTargets(Arrays.asList("b"));
+    assertEquals(Arrays.asList("a", "b"), fetcher.fetched);
+  }
+
+  @Test
+  public void testHitRate() {
+    final FakeFetcher fetcher = new FakeFetcher();
+    final PrefetchScheduler<String> scheduler = new PrefetchScheduler<>(fetcher, Runnable::run, 1);
+
+    scheduler.setTargets(Arrays.asList("a", "b"));
+    fetcher.complete("a");
+    scheduler.recordUse("a");
+    scheduler.recordUse("b");
+    scheduler.recordUse("c");
+
+    assertEquals(1, scheduler.getHitCount());
+    assertEquals(1, scheduler.getLateCount());
+    assertEquals(1, scheduler.getMissCount());
+    assertEquals(1.0 / 3, scheduler.getHitRate(), 0.0001);
+  }
+
+  @Test
+  public void testStopsWhenDisposed() {
+    final FakeFetcher fetcher = new FakeFetcher();
+    final PrefetchScheduler<String> scheduler = new PrefetchScheduler<>(fetcher, Runnable::run, 1);
+
+    scheduler.setTargets(Arrays.asList("a", "b"));
+    scheduler.dispose();
+    fetcher.complete("a");
+    scheduler.setTargets(Arrays.asList("c"));
+    assertEquals(Collections.singletonList("a"), fetcher.fetched);
+    assertTrue(fetcher.futures.get("b") == null);
+  }
+
+  private static class FakeFetcher implements PrefetchScheduler.Fetcher<String> {
+    final List<String> fetched = new ArrayList<>();
+    final Map<String, CompletableFuture<String>> futures = new HashMap<>();
+    final Set<String> disposed = new HashSet<>();
+
+    @Override
+    public boolean needsFetch(@NotNull String item) {
+      return !futures.containsKey(item);
+    }
+
+    @Override
+    public boolean isDisposed(@NotNull String item) {
+      return disposed.contains(item);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<?> fetch(@NotNull String item) {
+      fetched.add(item);
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      futures.put(item, future);
+      return future;
+    }
+
+    void complete(String item) {
+      futures.get(item).complete(item);
+    }
+  }
+}
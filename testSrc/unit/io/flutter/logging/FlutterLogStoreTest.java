@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlutterLogStoreTest {
+
+  @Test
+  public void testEvictsOldestSegment() {
+    final FlutterLogStore store = new FlutterLogStore();
+    store.setLimits(FlutterLogStore.SEGMENT_SIZE * 2, Long.MAX_VALUE);
+    addEntries(store, FlutterLogStore.SEGMENT_SIZE * 2 + 1);
+
+    assertEquals(FlutterLogStore.SEGMENT_SIZE + 1, store.size());
+    assertEquals(FlutterLogStore.SEGMENT_SIZE + 1, store.getFirstSequenceNumber());
+    final List<FlutterLogEntry> entries = store.getEntries(1, FlutterLogStore.SEGMENT_SIZE * 3);
+    assertEquals(FlutterLogStore.SEGMENT_SIZE + 1, entries.size());
+    assertEquals(FlutterLogStore.SEGMENT_SIZE + 1, entries.get(0).getSequenceNumber());
+    assertEquals(FlutterLogStore.SEGMENT_SIZE * 2 + 1, entries.get(entries.size() - 1).getSequenceNumber());
+  }
+
+  @Test
+  public void testByteLimitCountsTrigramIndex() {
+    final FlutterLogStore store = new FlutterLogStore();
+    // Enough for three segments of these entries, but not for their trigram indexes as well.
+    store.setLimits(Integer.MAX_VALUE, FlutterLogStore.SEGMENT_SIZE * 3 * 100L);
+    addEntries(store, FlutterLogStore.SEGMENT_SIZE * 3);
+
+    assertTrue(store.getFirstSequenceNumber() > 1);
+  }
+
+  @Test
+  public void testWindowedRead() {
+    final FlutterLogStore store = new FlutterLogStore();
+    addEntries(store, 3000);
+
+    final List<FlutterLogEntry> window = store.getEntries(1020, 10);
+    assertEquals(10, window.size());
+    assertEquals(1020, window.get(0).getSequenceNumber());
+    assertEquals(1029, window.get(9).getSequenceNumber());
+    assertEquals("message 1019", window.get(0).getMessage());
+  }
+
+  @Test
+  public void testIndexedFiltering() {
+    final FlutterLogStore store = new FlutterLogStore();
+    store.add(new FlutterLogEntry(0, "gc", FlutterLog.Level.FINE.value, "collected"));
+    store.add(new FlutterLogEntry(0, "app", FlutterLog.Level.SEVERE.value, "hello failure"));
+    store.add(new FlutterLogEntry(0, "app", FlutterLog.Level.INFO.value, "hello world"));
+
+    final FlutterLogTree.EntryFilter filter = new FlutterLogTree.EntryFilter(
+      new FlutterLogFilterPanel.FilterParam("hello", false, false, FlutterLog.Level.WARNING));
+    final List<FlutterLogEntry> matches = new ArrayList<>();
+    store.search(filter, () -> false, matches::addAll);
+    assertEquals(1, matches.size());
+    assertEquals("hello failure", matches.get(0).getMessage());
+  }
+
+  @Test
+  public void testSpilledSegmentsAreReadBack() {
+    final FlutterLogStore store = new FlutterLogStore();
+    store.setLimits(FlutterLogStore.SEGMENT_SIZE, Long.MAX_VALUE);
+    store.setMaxSpillBytes(Long.MAX_VALUE);
+    addEntries(store, FlutterLogStore.SEGMENT_SIZE * 2);
+
+    assertEquals(FlutterLogStore.SEGMENT_SIZE, store.size());
+    assertEquals(1, store.getFirstSequenceNumber());
+    final List<FlutterLogEntry> window = store.getEntries(1, 2);
+    assertEquals("message 0", window.get(0).getMessage());
+    assertEquals(2, window.get(1).getSequenceNumber());
+
+    store.setMaxSpillBytes(0);
+    assertEquals(FlutterLogStore.SEGMENT_SIZE + 1, store.getFirstSequenceNumber());
+    store.clear();
+  }
+
+  @Test
+  public void testSearchSkipsSpilledSegments() {
+    final FlutterLogStore store = new FlutterLogStore();
+    store.setLimits(FlutterLogStore.SEGMENT_SIZE, Long.MAX_VALUE);
+    store.setMaxSpillBytes(Long.MAX_VALUE);
+    store.add(new FlutterLogEntry(0, "gc", FlutterLog.Level.SEVERE.value, "Needle in a haystack"));
+    addEntries(store, FlutterLogStore.SEGMENT_SIZE * 2 - 1);
+
+    final List<FlutterLogEntry> found = new ArrayList<>();
+    store.search(filter("needle", false), () -> false, found::addAll);
+    assertEquals(0, found.size());
+    store.search(filter("message", false), () -> false, found::addAll);
+    assertEquals(FlutterLogStore.SEGMENT_SIZE, found.size());
+
+    assertEquals(FlutterLogStore.SEGMENT_SIZE * 2 + 1, store.getNextSequenceNumber());
+    assertEquals(1, store.getFirstSequenceNumber());
+    assertEquals("Needle in a haystack", store.getEntries(1, 1).get(0).getMessage());
+    store.clear();
+  }
+
+  @Test
+  public void testClearResetsSequenceNumbers() {
+    final FlutterLogStore store = new FlutterLogStore();
+    addEntries(store, 5);
+    store.clear();
+    assertEquals(0, store.size());
+    addEntries(store, 1);
+    assertEquals(1, store.getEntries(1, 1).get(0).getSequenceNumber());
+  }
+
+  @Test
+  public void testSearchUsesTrigramIndex() {
+    final FlutterLogStore store = new FlutterLogStore();
+    addEntries(store, 3000);
+    store.add(new FlutterLogEntry(0, "app", "Needle in a haystack"));
+
+    final List<FlutterLogEntry> found = new ArrayList<>();
+    final int end = store.search(filter("needle", false), () -> false, found::addAll);
+    assertEquals(1, found.size());
+    assertEquals("Needle in a haystack", found.get(0).getMessage());
+    assertEquals(3002, end);
+
+    // Candidates from the index are still checked exactly.
+    found.clear();
+    store.search(filter("message 29", false), () -> false, found::addAll);
+    assertEquals(111, found.size());
+
+    found.clear();
+    store.search(filter("mess.ge 2999", true), () -> false, found::addAll);
+    assertEquals(1, found.size());
+
+    found.clear();
+    store.search(filter("no such text", false), () -> false, found::addAll);
+    assertEquals(0, found.size());
+  }
+
+  @Test
+  public void testSearchStopsWhenCancelled() {
+    final FlutterLogStore store = new FlutterLogStore();
+    addEntries(store, FlutterLogStore.SEGMENT_SIZE * 3);
+
+    final List<List<FlutterLogEntry>> chunks = new ArrayList<>();
+    store.search(filter("message", false), () -> !chunks.isEmpty(), chunks::add);
+    assertEquals(1, chunks.size());
+    assertEquals(FlutterLogStore.SEGMENT_SIZE, chunks.get(0).size());
+  }
+
+  @Test
+  public void testRequiredText() {
+    assertEquals("hello", filter("hello", false).getRequiredText());
+    assertEquals("hello", filter("hello", true).getRequiredText());
+    assertNull(filter("hel+o", true).getRequiredText());
+    assertFalse(filter("(unclosed", true).isValid());
+  }
+
+  private static FlutterLogTree.EntryFilter filter(String expression, boolean isRegex) {
+    return new FlutterLogTree.EntryFilter(new FlutterLogFilterPanel.FilterParam(expression, false, isRegex, FlutterLog.Level.NONE));
+  }
+
+  private static void addEntries(FlutterLogStore store, int count) {
+    for (int i = 0; i < count; i++) {
+      store.add(new FlutterLogEntry(i, "test", "message " + i));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameHistoryTest {
+  @Test
+  public void keepsMostRecentFrames() {
+    final FrameHistory history = new FrameHistory(FrameHistory.FPS_WINDOW);
+    for (int i = 0; i < FrameHistory.FPS_WINDOW + 10; i++) {
+      history.add(i, i * 20000L, 1000, false);
+    }
+    assertEquals(FrameHistory.FPS_WINDOW, history.size());
+
+    final List<FlutterFramesMonitor.FlutterFrameEvent> frames = history.getRecentFrames(3);
+    assertEquals(3, frames.size());
+    assertEquals(FrameHistory.FPS_WINDOW + 9, frames.get(0).frameId);
+    assertEquals(FrameHistory.FPS_WINDOW + 7, frames.get(2).frameId);
+    assertEquals(FrameHistory.FPS_WINDOW, history.getRecentFrames(Integer.MAX_VALUE).size());
+  }
+
+  @Test
+  public void computesFpsForCurrentSetOfFrames() {
+    final FrameHistory history = new FrameHistory();
+    // A slow set of frames, followed by a new set of two fast frames and one taking two intervals.
+    history.add(1, 0, FlutterFramesMonitor.microsPerFrame * 3, true);
+    history.add(2, 0, 1000, true);
+    history.add(3, 0, 1000, false);
+    history.add(4, 0, FlutterFramesMonitor.microsPerFrame + 1, false);
+    assertEquals(3 * 60.0 / 4, history.getFPS(), 0.0001);
+  }
+
+  @Test
+  public void tracksPercentilesAndJank() {
+    final FrameHistory history = new FrameHistory(FrameHistory.FPS_WINDOW);
+    for (int i = 1; i <= 100; i++) {
+      history.add(i, 0, i * 1000L, false);
+    }
+    assertEquals(50000, history.getElapsedPercentile(50), 50000 / 32);
+    assertEquals(90000, history.getElapsedPercentile(90), 90000 / 32);
+    assertEquals(99000, history.getElapsedPercentile(99), 99000 / 32);
+    // Frames of 17ms and more are slower than a 60 FPS interval.
+    assertEquals(84, history.getJankCount());
+
+    // Push the slow frames out of the window.
+    for (int i = 0; i < FrameHistory.FPS_WINDOW; i++) {
+      history.add(1000 + i, 0, 1000, false);
+    }
+    assertEquals(0, history.getJankCount());
+    assertEquals(84, history.getTotalJankCount());
+    assertTrue(history.getElapsedPercentile(99) <= 1000 + 1000 / 32);
+  }
+
+  @Test
+  public void histogramBucketsAreContiguous() {
+    long previous = -1;
+    for (int index = 0; index < 300; index++) {
+      final long highest = FrameHistory.BuildTimeHistogram.highestValueInBucket(index);
+      assertEquals(index, FrameHistory.BuildTimeHistogram.bucketIndex(highest));
+      assertEquals(index, FrameHistory.BuildTimeHistogram.bucketIndex(previous + 1));
+      previous = highest;
+    }
+  }
+}
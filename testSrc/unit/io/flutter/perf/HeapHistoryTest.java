@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HeapHistoryTest {
+  @Test
+  public void roundTripsSamples() {
+    final HeapHistory history = new HeapHistory();
+    history.add(new HeapHistory.Sample(1000, 5000, 8000, 10, 1 << 30, 1L << 31, 0, false));
+    history.add(new HeapHistory.Sample(2000, 100, 8000, 0, (1 << 30) + 7, 1L << 31, 0, true));
+
+    final List<HeapHistory.Sample> samples = history.getSamples(0);
+    assertEquals(2, samples.size());
+    assertEquals(5000, samples.get(0).newUsed);
+    assertEquals(10, samples.get(0).newExternal);
+    assertEquals(100, samples.get(1).newUsed);
+    assertEquals((1 << 30) + 7, samples.get(1).oldUsed);
+    assertTrue(samples.get(1).isGC);
+    assertFalse(samples.get(0).isGC);
+    assertEquals(1, history.getSamples(1500).size());
+  }
+
+  @Test
+  public void downsamplesOlderSamples() {
+    final HeapHistory history = new HeapHistory();
+    // Two hours of samples, one a second; only the last hour or so is kept at full resolution.
+    final int count = 2 * 3600;
+    for (int i = 0; i < count; i++) {
+      history.add(new HeapHistory.Sample(i * 1000L, i % 10, 10, 0, 1000, 2000, 0, i == 5));
+    }
+
+    final List<HeapHistory.Sample> all = history.getSamples(0);
+    assertTrue(all.size() < count);
+    assertEquals(0, all.get(0).timeMillis);
+    // The first ten second interval keeps the peak and the GC.
+    assertEquals(9, all.get(0).newUsed);
+    assertTrue(all.get(0).isGC);
+    assertEquals((count - 1) * 1000L, all.get(all.size() - 1).timeMillis);
+    for (int i = 1; i < all.size(); i++) {
+      assertTrue(all.get(i).timeMillis > all.get(i - 1).timeMillis);
+    }
+
+    // The most recent samples are at full resolution.
+    assertEquals(60, history.getSamples((count - 60) * 1000L).size());
+
+    // Small deltas take a byte or two per value.
+    assertTrue(history.getEncodedSize() < count * 8 * 2);
+  }
+
+  @Test
+  public void exportsCsv() throws IOException {
+    final HeapHistory history = new HeapHistory();
+    history.add(new HeapHistory.Sample(1000, 1, 2, 3, 4, 5, 6, true));
+    final StringWriter writer = new StringWriter();
+    history.export(writer);
+    assertEquals("time,newUsed,newCapacity,newExternal,oldUsed,oldCapacity,oldExternal,gc\n1000,1,2,3,4,5,6,1\n", writer.toString());
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class OutlineDiffTest {
+
+  @Test
+  public void testOffsetChangesAreNotChanges() {
+    final FlutterOutline oldText = widget("Text", "'a'", 10);
+    final FlutterOutline oldRoot = widget("Column", null, 0, oldText);
+    final FlutterOutline newText = widget("Text", "'a'", 15);
+    final FlutterOutline newRoot = widget("Column", null, 5, newText);
+
+    final OutlineDiff diff = OutlineDiff.compute(oldRoot, newRoot);
+    assertFalse(diff.isChanged(newRoot));
+    assertFalse(diff.isChanged(newText));
+    assertSame(oldRoot, diff.getOldOutline(newRoot));
+    assertSame(oldText, diff.getOldOutline(newText));
+  }
+
+  @Test
+  public void testChangedLabel() {
+    final FlutterOutline oldText = widget("Text", "'a'", 10);
+    final FlutterOutline newText = widget("Text", "'b'", 10);
+    final FlutterOutline newRoot = widget("Column", null, 0, newText);
+
+    final OutlineDiff diff = OutlineDiff.compute(widget("Column", null, 0, oldText), newRoot);
+    assertSame(oldText, diff.getOldOutline(newText));
+    assertTrue(diff.isChanged(newText));
+    assertFalse(diff.isChanged(newRoot));
+  }
+
+  @Test
+  public void testInsertAndRemove() {
+    final FlutterOutline oldText = widget("Text", "'a'", 10);
+    final FlutterOutline oldIcon = widget("Icon", null, 20);
+    final FlutterOutline oldRoot = widget("Column", null, 0, oldText, oldIcon);
+
+    final FlutterOutline newButtonText = widget("Text", "'ok'", 6);
+    final FlutterOutline newButton = widget("Button", null, 5, newButtonText);
+    final FlutterOutline newText = widget("Text", "'a'", 10);
+    final FlutterOutline newRoot = widget("Column", null, 0, newButton, newText);
+
+    final OutlineDiff diff = OutlineDiff.compute(oldRoot, newRoot);
+    assertNull(diff.getOldOutline(newButton));
+    assertNull(diff.getOldOutline(newButtonText));
+    assertSame(oldText, diff.getOldOutline(newText));
+    assertFalse(diff.isChanged(newText));
+  }
+
+  @Test
+  public void testMatchesSameKeyByPosition() {
+    final FlutterOutline oldFirst = widget("Text", "'a'", 10);
+    final FlutterOutline oldSecond = widget("Text", "'b'", 20);
+    final FlutterOutline oldRoot = widget("Column", null, 0, oldFirst, oldSecond);
+
+    final FlutterOutline newFirst = widget("Text", "'a'", 10);
+    final FlutterOutline newSecond = widget("Text", "'b'", 20);
+    final FlutterOutline newThird = widget("Text", "'c'", 30);
+    final FlutterOutline newRoot = widget("Column", null, 0, newFirst, newSecond, newThird);
+
+    final OutlineDiff diff = OutlineDiff.compute(oldRoot, newRoot);
+    assertSame(oldFirst, diff.getOldOutline(newFirst));
+    assertSame(oldSecond, diff.getOldOutline(newSecond));
+    assertNull(diff.getOldOutline(newThird));
+  }
+
+  private static FlutterOutline widget(String className, String label, int offset, FlutterOutline... children) {
+    return new FlutterOutline("NEW_INSTANCE", offset, 5, offset, 5, label, null, null, className, null, null,
+                              Arrays.asList(children), null, false, null, null, null, null);
+  }
+}
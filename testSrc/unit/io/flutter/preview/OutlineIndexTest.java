@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import com.google.common.collect.ImmutableList;
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OutlineIndexTest {
+  // unit [0, 100]
+  //   a [10, 40]
+  //     a1 [12, 20]
+  //     a2 [20, 30]
+  //   b [50, 90], state [95, 99]
+  //     b1 [60, 70]
+  private final FlutterOutline a1 = outline(12, 8);
+  private final FlutterOutline a2 = outline(20, 10);
+  private final FlutterOutline a = outline(10, 30, a1, a2);
+  private final FlutterOutline b1 = outline(60, 10);
+  private final FlutterOutline b = outline(50, 40, 95, 4, b1);
+  private final FlutterOutline unit = outline(0, 100, a, b);
+
+  @Test
+  public void testConvertsOffsetsOnce() {
+    final int[] conversions = new int[1];
+    final OutlineIndex index = new OutlineIndex(unit, (offset) -> {
+      conversions[0]++;
+      return offset + 1;
+    });
+
+    // Two offsets per outline, and two for the state range of b.
+    assertEquals(14, conversions[0]);
+    assertEquals(11, index.getStart(a));
+    assertEquals(41, index.getEnd(a));
+    assertEquals(-1, index.getStart(outline(0, 1)));
+
+    index.findAt(21);
+    index.findCoveredBy(0, 100);
+    assertEquals(14, conversions[0]);
+  }
+
+  @Test
+  public void testFindAt() {
+    final OutlineIndex index = new OutlineIndex(unit, (offset) -> offset);
+
+    assertSame(unit, index.findAt(0));
+    assertSame(unit, index.findAt(45));
+    assertSame(a, index.findAt(10));
+    assertSame(a1, index.findAt(15));
+    // a1 and a2 touch at 20; the first one wins.
+    assertSame(a1, index.findAt(20));
+    assertSame(a2, index.findAt(25));
+    assertSame(a, index.findAt(35));
+    assertSame(b1, index.findAt(70));
+    assertNull(index.findAt(101));
+  }
+
+  @Test
+  public void testFindCoveredBy() {
+    final OutlineIndex index = new OutlineIndex(unit, (offset) -> offset);
+
+    assertEquals(ImmutableList.of(unit), index.findCoveredBy(0, 100));
+    assertEquals(ImmutableList.of(a, b), index.findCoveredBy(5, 95));
+    assertEquals(ImmutableList.of(a1, a2), index.findCoveredBy(11, 35));
+    assertEquals(ImmutableList.of(a2), index.findCoveredBy(15, 30));
+    assertEquals(ImmutableList.of(), index.findCoveredBy(42, 48));
+  }
+
+  @Test
+  public void testFindTopLevelAt() {
+    final OutlineIndex index = new OutlineIndex(unit, (offset) -> offset);
+
+    assertSame(a, index.findTopLevelAt(15));
+    assertSame(b, index.findTopLevelAt(60));
+    assertSame(b, index.findTopLevelAt(97));
+    assertNull(index.findTopLevelAt(10));
+    assertNull(index.findTopLevelAt(45));
+  }
+
+  @Test
+  public void testUnsortedChildren() {
+    final FlutterOutline first = outline(30, 10);
+    final FlutterOutline second = outline(10, 10);
+    final OutlineIndex index = new OutlineIndex(outline(0, 50, first, second), (offset) -> offset);
+
+    assertSame(first, index.findAt(35));
+    assertSame(second, index.findAt(15));
+    assertEquals(ImmutableList.of(first, second), index.findCoveredBy(5, 45));
+  }
+
+  private static FlutterOutline outline(int offset, int length, FlutterOutline... children) {
+    return outline(offset, length, null, null, children);
+  }
+
+  private static FlutterOutline outline(int offset, int length, Integer stateOffset, Integer stateLength,
+                                        FlutterOutline... children) {
+    final List<FlutterOutline> childList = Arrays.asList(children);
+    return new FlutterOutline("CLASS", offset, length, offset, length, null, null, null, null, null, null,
+                              childList, null, false, null, null, stateOffset, stateLength);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RenderCacheTest {
+
+  @Test
+  public void testKeyDependsOnAllInputs() {
+    final String key = RenderCache.createKey("/app", "code", "MyWidget", "forDesignTime", 100, 200);
+    assertEquals(key, RenderCache.createKey("/app", "code", "MyWidget", "forDesignTime", 100, 200));
+
+    final Set<String> keys = new HashSet<>();
+    keys.add(key);
+    keys.add(RenderCache.createKey("/other", "code", "MyWidget", "forDesignTime", 100, 200));
+    keys.add(RenderCache.createKey("/app", "code2", "MyWidget", "forDesignTime", 100, 200));
+    keys.add(RenderCache.createKey("/app", "code", "OtherWidget", "forDesignTime", 100, 200));
+    keys.add(RenderCache.createKey("/app", "code", "MyWidget", "other", 100, 200));
+    keys.add(RenderCache.createKey("/app", "code", "MyWidget", "forDesignTime", 101, 200));
+    keys.add(RenderCache.createKey("/app", "code", "MyWidget", "forDesignTime", 100, 201));
+    assertEquals(7, keys.size());
+
+    // Values are delimited, so moving text from one value to the next changes the key.
+    assertFalse(RenderCache.createKey("/app", "ab", "c", "d", 1, 1).equals(RenderCache.createKey("/app", "a", "bc", "d", 1, 1)));
+  }
+
+  @Test
+  public void testDropsLeastRecentlyUsed() {
+    final RenderCache cache = new RenderCache();
+    for (int i = 0; i < RenderCache.MAX_ENTRIES; i++) {
+      cache.put("key" + i, new JsonObject());
+    }
+    assertNotNull(cache.get("key0"));
+
+    cache.put("new", new JsonObject());
+    assertNotNull(cache.get("key0"));
+    assertNull(cache.get("key1"));
+    assertNotNull(cache.get("new"));
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PathTrieTest {
+
+  @Test
+  public void testGetFindsExactPaths() {
+    final PathTrie<String> trie = new PathTrie<>();
+    trie.put("/work/app", "app");
+    trie.put("/work/app/plugin/", "plugin");
+    trie.put("/work/app", "app2");
+
+    assertEquals(2, trie.size());
+    assertEquals("app2", trie.get("/work/app"));
+    assertEquals("plugin", trie.get("/work/app/plugin"));
+    assertNull(trie.get("/work"));
+    assertNull(trie.get("/work/other"));
+  }
+
+  @Test
+  public void testFindLongestPrefix() {
+    final PathTrie<String> trie = new PathTrie<>();
+    trie.put("/work/app", "app");
+    trie.put("/work/app/packages/plugin", "plugin");
+
+    assertEquals("app", trie.findLongestPrefix("/work/app", (value) -> true));
+    assertEquals("app", trie.findLongestPrefix("/work/app/lib/main.dart", (value) -> true));
+    assertEquals("plugin", trie.findLongestPrefix("/work/app/packages/plugin/lib/plugin.dart", (value) -> true));
+    assertNull(trie.findLongestPrefix("/work/application/lib/main.dart", (value) -> true));
+    assertNull(trie.findLongestPrefix("/other", (value) -> true));
+  }
+
+  @Test
+  public void testFindLongestPrefixSkipsRejectedValues() {
+    final PathTrie<String> trie = new PathTrie<>();
+    trie.put("/work/app", "app");
+    trie.put("/work/app/packages/plugin", "plugin");
+
+    assertEquals("app", trie.findLongestPrefix("/work/app/packages/plugin/lib", (value) -> !value.equals("plugin")));
+    assertNull(trie.findLongestPrefix("/work/app/lib", (value) -> false));
+  }
+}
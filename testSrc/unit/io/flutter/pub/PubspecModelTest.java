@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.pub;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PubspecModelTest {
+
+  @Test
+  public void testParsesFlutterApp() {
+    final PubspecModel model = PubspecModel.parse(
+      "name: hello_world\n" +
+      "dependencies:\n" +
+      "  flutter:\n" +
+      "    sdk: flutter\n" +
+      "  http: ^0.11.0\n" +
+      "dev_dependencies:\n" +
+      "  flutter_test:\n" +
+      "    sdk: flutter\n" +
+      "flutter:\n" +
+      "  uses-material-design: true\n");
+
+    assertEquals("hello_world", model.getName());
+    assertEquals(ImmutableSet.of("flutter", "http"), model.getDependencies());
+    assertEquals(ImmutableSet.of("flutter_test"), model.getDevDependencies());
+    assertNotNull(model.getFlutterSection());
+    assertEquals(Boolean.TRUE, model.getFlutterSection().get("uses-material-design"));
+    assertTrue(model.declaresFlutter());
+    assertFalse(model.isFlutterPlugin());
+  }
+
+  @Test
+  public void testParsesPlugin() {
+    final PubspecModel model = PubspecModel.parse(
+      "name: my_plugin\n" +
+      "flutter:\n" +
+      "  plugin:\n");
+
+    assertFalse(model.declaresFlutter());
+    assertTrue(model.isFlutterPlugin());
+  }
+
+  @Test
+  public void testFlutterPackageDeclaresFlutter() {
+    assertTrue(PubspecModel.parse("name: flutter\n").declaresFlutter());
+  }
+
+  @Test
+  public void testInvalidPubspec() {
+    final PubspecModel model = PubspecModel.parse("name: [unclosed\n");
+    assertNull(model.getName());
+    assertTrue(model.getDependencies().isEmpty());
+    assertNull(model.getFlutterSection());
+    assertFalse(model.declaresFlutter());
+
+    assertFalse(PubspecModel.parse("just a string").declaresFlutter());
+  }
+}
@@ -14,6 +14,7 @@ import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import com.jetbrains.lang.dart.util.DartUrlResolverImpl;
 import io.flutter.server.vmService.DartVmServiceDebugProcess;
+import io.flutter.server.vmService.TokenPositionCache;
 import io.flutter.testing.ProjectFixture;
 import io.flutter.testing.TestDir;
 import io.flutter.testing.Testing;
@@ -21,17 +22,17 @@ import org.dartlang.vm.service.element.LibraryRef;
 import org.dartlang.vm.service.element.Script;
 import org.dartlang.vm.service.element.ScriptRef;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 /**
  * Verifies that we can map file locations.
@@ -69,7 +70,7 @@ public class PositionMapperTest {
 
     scripts.addScript("1", "2", "some/stuff/to/ignore/lib/hello.dart", ImmutableList.of(new Line(10, 123, 1)));
 
-    final XSourcePosition pos = mapper.getSourcePosition("1", makeScriptRef("2", "some/stuff/to/ignore/lib/hello.dart"), 123);
+    final XSourcePosition pos = mapper.getSourcePosition("1", makeScriptRef("2", "some/stuff/to/ignore/lib/hello.dart"), 123).get();
     assertNotNull(pos);
     assertEquals(pos.getFile(), hello);
     assertEquals(pos.getLine(), 9); // zero-based
@@ -86,17 +87,66 @@ public class PositionMapperTest {
 
     scripts.addScript("1", "2", "remote:root/lib/hello.dart", ImmutableList.of(new Line(10, 123, 1)));
 
-    final XSourcePosition pos = mapper.getSourcePosition("1", makeScriptRef("2", "remote:root/lib/hello.dart"), 123);
+    final XSourcePosition pos = mapper.getSourcePosition("1", makeScriptRef("2", "remote:root/lib/hello.dart"), 123).get();
     assertNotNull(pos);
     assertEquals(pos.getFile(), hello);
     assertEquals(pos.getLine(), 9); // zero-based
   }
 
+  @Test
+  public void shouldResolveBreakpointLinesInOnePass() throws Exception {
+    tmp.writeFile("root/pubspec.yaml", "");
+    tmp.ensureDir("root/lib");
+    final VirtualFile main = tmp.writeFile("root/lib/main.dart", "");
+
+    final PositionMapper mapper = setUpMapper(main, "remote:root");
+
+    final Line first = new Line(3, 10, 1);
+    first.addToken(11, 5);
+    scripts.addScript("1", "3", "remote:root/lib/main.dart", ImmutableList.of(first, new Line(4), new Line(7, 20, 3)));
+
+    assertFalse(mapper.hasScript("1", ImmutableList.of("remote:root/lib/main.dart")));
+    final int[] lines = mapper.getBreakpointLines("1", "3", new int[]{0, 2, 3, 6, 7}).get();
+    assertArrayEquals(new int[]{2, 2, 6, 6, -1}, lines);
+    assertTrue(mapper.hasScript("1", ImmutableList.of("remote:root/lib/main.dart")));
+    assertFalse(mapper.hasScript("2", ImmutableList.of("remote:root/lib/main.dart")));
+
+    assertNull(mapper.getBreakpointLines("1", "missing", new int[]{0}).get());
+  }
+
+  @Test
+  public void shouldDownloadEachScriptOnce() throws Exception {
+    tmp.writeFile("root/pubspec.yaml", "");
+    tmp.ensureDir("root/lib");
+    final VirtualFile main = tmp.writeFile("root/lib/main.dart", "");
+    final VirtualFile hello = tmp.writeFile("root/lib/hello.dart", "");
+
+    final PositionMapper mapper = setUpMapper(main, "remote:root");
+
+    scripts.addScript("1", "2", "remote:root/lib/hello.dart", ImmutableList.of(new Line(10, 123, 1)));
+    final ScriptRef helloRef = makeScriptRef("2", "remote:root/lib/hello.dart");
+
+    // Two frames in the same script, looked up while its download is in progress.
+    scripts.holdDownloads = true;
+    final CompletableFuture<XSourcePosition> first = mapper.getSourcePosition("1", helloRef, 123);
+    final CompletableFuture<XSourcePosition> second = mapper.getSourcePosition("1", helloRef, 123);
+    assertFalse(first.isDone());
+    assertEquals(1, scripts.downloadCount);
+
+    scripts.releaseDownloads();
+    assertEquals(hello, first.get().getFile());
+    assertEquals(hello, second.get().getFile());
+
+    final CompletableFuture<XSourcePosition> cached = mapper.getSourcePosition("1", helloRef, 123);
+    assertTrue(cached.isDone());
+    assertEquals(1, scripts.downloadCount);
+  }
+
   @NotNull
   private PositionMapper setUpMapper(VirtualFile contextFile, String remoteBaseUri) {
     final DartUrlResolver resolver = new DartUrlResolverImpl(fixture.getProject(), contextFile);
     final PositionMapper mapper = new PositionMapper(fixture.getProject(), sourceRoot, resolver, null);
-    mapper.onConnect(scripts, remoteBaseUri);
+    mapper.onConnect(scripts, new TokenPositionCache(), remoteBaseUri);
     return mapper;
   }
 
@@ -126,10 +176,27 @@ public class PositionMapperTest {
       scripts.put(isolateId + "-" + scriptId, new Script(elt));
     }
 
-    @Nullable
+    int downloadCount;
+    boolean holdDownloads;
+    final List<Runnable> heldDownloads = new ArrayList<>();
+
+    @NotNull
     @Override
-    public Script downloadScript(@NotNull String isolateId, @NotNull String scriptId) {
-      return scripts.get(isolateId + "-" + scriptId);
+    public CompletableFuture<Script> downloadScript(@NotNull String isolateId, @NotNull String scriptId) {
+      downloadCount++;
+      final Script script = scripts.get(isolateId + "-" + scriptId);
+      if (!holdDownloads) {
+        return CompletableFuture.completedFuture(script);
+      }
+      final CompletableFuture<Script> download = new CompletableFuture<>();
+      heldDownloads.add(() -> download.complete(script));
+      return download;
+    }
+
+    void releaseDownloads() {
+      holdDownloads = false;
+      heldDownloads.forEach(Runnable::run);
+      heldDownloads.clear();
     }
   }
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReloadStatsTest {
+
+  @Test
+  public void testPercentiles() {
+    final ReloadStats stats = new ReloadStats(10);
+    assertEquals(0, stats.getCount());
+    assertEquals(0, stats.getPercentile(ReloadStats.Phase.TOTAL, 50));
+
+    for (int i = 1; i <= 10; i++) {
+      stats.record(i, 10 * i, 100 * i);
+    }
+
+    assertEquals(10, stats.getCount());
+    assertEquals(5, stats.getPercentile(ReloadStats.Phase.ANALYSIS, 50));
+    assertEquals(90, stats.getPercentile(ReloadStats.Phase.RESTART, 90));
+    assertEquals(1000, stats.getPercentile(ReloadStats.Phase.TOTAL, 100));
+    assertEquals(100, stats.getPercentile(ReloadStats.Phase.TOTAL, 0));
+  }
+
+  @Test
+  public void testKeepsOnlyRecentReloads() {
+    final ReloadStats stats = new ReloadStats(3);
+    for (int i = 1; i <= 5; i++) {
+      stats.record(0, 0, i);
+    }
+
+    assertEquals(3, stats.getCount());
+    assertEquals(3, stats.getPercentile(ReloadStats.Phase.TOTAL, 0));
+    assertEquals(5, stats.getPercentile(ReloadStats.Phase.TOTAL, 100));
+  }
+
+  @Test
+  public void testNotifiesListeners() {
+    final ReloadStats stats = new ReloadStats();
+    final AtomicInteger calls = new AtomicInteger();
+    final ReloadStats.Listener listener = (updated) -> calls.incrementAndGet();
+
+    stats.addListener(listener);
+    stats.record(1, 2, 3);
+    stats.removeListener(listener);
+    stats.record(1, 2, 3);
+
+    assertEquals(1, calls.get());
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.server.vmService;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.element.Script;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenPositionTableTest {
+
+  @Test
+  public void testLooksUpLinesAndColumns() {
+    final TokenPositionTable table = TokenPositionTable.create(makeTable(
+      line(1, 0, 1, 5, 7),
+      line(3, 10, 3),
+      line(4)
+    ));
+
+    assertEquals(3, table.size());
+    assertEquals(0, table.getLine(0));
+    assertEquals(0, table.getColumn(0));
+    assertEquals(0, table.getLine(5));
+    assertEquals(6, table.getColumn(5));
+    assertEquals(2, table.getLine(10));
+    assertEquals(2, table.getColumn(10));
+    assertEquals(-1, table.getLine(7));
+    assertEquals(-1, table.getColumn(11));
+    assertArrayEquals(new int[]{0, 2, 3}, table.getLines());
+  }
+
+  @Test
+  public void testSortsOutOfOrderTokens() {
+    final TokenPositionTable table = TokenPositionTable.create(makeTable(
+      line(2, 30, 1),
+      line(1, 20, 4, 10, 2)
+    ));
+
+    assertEquals(1, table.getLine(30));
+    assertEquals(0, table.getLine(20));
+    assertEquals(3, table.getColumn(20));
+    assertEquals(0, table.getLine(10));
+    assertEquals(1, table.getColumn(10));
+  }
+
+  @Test
+  public void testReverseIndex() {
+    final TokenPositionTable table = TokenPositionTable.create(makeTable(
+      line(2, 12, 5, 10, 1, 11, 3),
+      line(3),
+      line(5, 20, 1)
+    ));
+
+    assertEquals(10, table.getFirstToken(1));
+    assertEquals(12, table.getLastToken(1));
+    assertEquals(-1, table.getFirstToken(2));
+    assertEquals(20, table.getFirstToken(4));
+    assertEquals(20, table.getLastToken(4));
+
+    assertEquals(1, table.findLineWithCode(0));
+    assertEquals(1, table.findLineWithCode(1));
+    assertEquals(4, table.findLineWithCode(2));
+    assertEquals(4, table.findLineWithCode(4));
+    assertEquals(-1, table.findLineWithCode(5));
+  }
+
+  @Test
+  public void testScriptWithoutTable() {
+    final TokenPositionTable table = TokenPositionTable.create(new Script(new JsonObject()));
+    assertEquals(0, table.size());
+    assertEquals(-1, table.getLine(0));
+  }
+
+  @Test
+  public void testCacheIsSharedUntilIsolateExits() {
+    final JsonObject json = new JsonObject();
+    json.add("tokenPosTable", makeTable(line(5, 1, 1)));
+    final Script script = new Script(json);
+    final TokenPositionCache cache = new TokenPositionCache();
+
+    final TokenPositionTable first = cache.get("isolates/1", "scripts/1", script);
+    assertSame(first, cache.get("isolates/1", "scripts/1", new Script(new JsonObject())));
+    assertSame(first, cache.getIfPresent("isolates/1", "scripts/1"));
+    assertNull(cache.getIfPresent("isolates/2", "scripts/1"));
+
+    cache.evict("isolates/1");
+    assertNull(cache.getIfPresent("isolates/1", "scripts/1"));
+  }
+
+  @Test
+  public void testDisposedCacheDropsTables() {
+    final JsonObject json = new JsonObject();
+    json.add("tokenPosTable", makeTable(line(5, 1, 1)));
+    final Script script = new Script(json);
+    final TokenPositionCache cache = new TokenPositionCache();
+
+    cache.get("isolates/1", "scripts/1", script);
+    cache.dispose();
+    assertNull(cache.getIfPresent("isolates/1", "scripts/1"));
+
+    // Late users still get a table, but it isn't kept.
+    assertEquals(4, cache.get("isolates/1", "scripts/2", script).getLine(1));
+    assertNull(cache.getIfPresent("isolates/1", "scripts/2"));
+  }
+
+  private static JsonArray makeTable(JsonArray... lines) {
+    final JsonArray table = new JsonArray();
+    for (JsonArray line : lines) {
+      table.add(line);
+    }
+    return table;
+  }
+
+  private static JsonArray line(int number, int... tokensAndColumns) {
+    final JsonArray line = new JsonArray();
+    line.add(number);
+    for (int value : tokensAndColumns) {
+      line.add(value);
+    }
+    return line;
+  }
+}
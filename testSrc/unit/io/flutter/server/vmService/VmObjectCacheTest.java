@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.server.vmService;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.consumer.EvaluateConsumer;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VmObjectCacheTest {
+  private final FakeVmService vmService = new FakeVmService();
+  private final VmObjectCache cache = new VmObjectCache(vmService);
+
+  @Test
+  public void testOneRequestPerObjectPerPause() {
+    // Prefetching a frame's variables, and then expanding them and presenting them again.
+    cache.prefetchObject("isolate", "objects/1");
+    cache.prefetchObject("isolate", "objects/2");
+    cache.prefetchCollectionObject("isolate", "objects/3", 0, 100);
+    vmService.respondAll();
+
+    final CountingConsumer consumer = new CountingConsumer();
+    cache.getObject("isolate", "objects/1", consumer);
+    cache.getObject("isolate", "objects/2", consumer);
+    cache.getCollectionObject("isolate", "objects/3", 0, 100, consumer);
+    cache.getObject("isolate", "objects/1", consumer);
+    assertEquals(3, vmService.requestCount);
+    assertEquals(4, consumer.received);
+
+    // The next step.
+    cache.clear("isolate");
+    cache.getObject("isolate", "objects/1", consumer);
+    vmService.respondAll();
+    assertEquals(4, vmService.requestCount);
+    assertEquals(5, consumer.received);
+  }
+
+  @Test
+  public void testMergesConcurrentRequests() {
+    final CountingConsumer consumer = new CountingConsumer();
+    cache.getObject("isolate", "objects/1", consumer);
+    cache.getObject("isolate", "objects/1", consumer);
+    cache.evaluate("isolate", "objects/1", "toString()", new EmptyEvaluateConsumer());
+    cache.evaluate("isolate", "objects/1", "toString()", new EmptyEvaluateConsumer());
+    assertEquals(2, vmService.requestCount);
+    assertEquals(0, consumer.received);
+
+    vmService.respondAll();
+    assertEquals(2, consumer.received);
+    assertEquals(2, cache.size("isolate"));
+    assertEquals(0, cache.size("other"));
+  }
+
+  @Test
+  public void testErrorsAreNotKept() {
+    final CountingConsumer consumer = new CountingConsumer();
+    cache.getObject("isolate", "objects/1", consumer);
+    vmService.failAll();
+    assertEquals(1, consumer.errors);
+    assertEquals(0, cache.size("isolate"));
+
+    cache.getObject("isolate", "objects/1", consumer);
+    vmService.respondAll();
+    assertEquals(2, vmService.requestCount);
+    assertEquals(1, consumer.received);
+  }
+
+  @Test
+  public void testEvaluationClearsCache() {
+    final CountingConsumer consumer = new CountingConsumer();
+    cache.getObject("isolate", "objects/1", consumer);
+    cache.evaluate("isolate", "objects/1", "toString()", new EmptyEvaluateConsumer());
+    vmService.respondAll();
+    assertEquals(2, cache.size("isolate"));
+
+    // The user evaluates an expression, which may change objects.
+    cache.beginEvaluation("isolate");
+    assertEquals(0, cache.size("isolate"));
+
+    // Responses to requests sent while it runs aren't kept.
+    cache.getObject("isolate", "objects/1", consumer);
+    vmService.respondAll();
+    assertEquals(0, cache.size("isolate"));
+    assertEquals(3, vmService.requestCount);
+
+    cache.endEvaluation("isolate");
+    cache.getObject("isolate", "objects/1", consumer);
+    cache.getObject("isolate", "objects/1", consumer);
+    vmService.respondAll();
+    assertEquals(4, vmService.requestCount);
+    assertEquals(1, cache.size("isolate"));
+    assertEquals(4, consumer.received);
+  }
+
+  @Test
+  public void testEvaluationEndClearsResponsesFetchedBeforeIt() {
+    cache.beginEvaluation("isolate");
+    cache.endEvaluation("isolate");
+    cache.prefetchObject("isolate", "objects/1");
+    assertEquals(1, cache.size("isolate"));
+
+    // A response that arrives after a second evaluation started isn't kept.
+    cache.beginEvaluation("isolate");
+    vmService.respondAll();
+    cache.endEvaluation("isolate");
+    assertEquals(0, cache.size("isolate"));
+  }
+
+  private static class FakeVmService implements VmObjectCache.Loader {
+    int requestCount;
+    final List<GetObjectConsumer> pendingObjects = new ArrayList<>();
+    final List<EvaluateConsumer> pendingEvaluations = new ArrayList<>();
+
+    @Override
+    public void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer) {
+      requestCount++;
+      pendingObjects.add(consumer);
+    }
+
+    @Override
+    public void getCollectionObject(@NotNull String isolateId,
+                                    @NotNull String objectId,
+                                    int offset,
+                                    int count,
+                                    @NotNull GetObjectConsumer consumer) {
+      requestCount++;
+      pendingObjects.add(consumer);
+    }
+
+    @Override
+    public void evaluate(@NotNull String isolateId,
+                         @NotNull String targetId,
+                         @NotNull String expression,
+                         @NotNull EvaluateConsumer consumer) {
+      requestCount++;
+      pendingEvaluations.add(consumer);
+    }
+
+    void respondAll() {
+      for (GetObjectConsumer consumer : pendingObjects) {
+        consumer.received(new Instance(new JsonObject()));
+      }
+      for (EvaluateConsumer consumer : pendingEvaluations) {
+        consumer.received(new InstanceRef(new JsonObject()));
+      }
+      pendingObjects.clear();
+      pendingEvaluations.clear();
+    }
+
+    void failAll() {
+      for (GetObjectConsumer consumer : pendingObjects) {
+        consumer.onError(new RPCError(new JsonObject()));
+      }
+      pendingObjects.clear();
+    }
+  }
+
+  private static class CountingConsumer implements GetObjectConsumer {
+    int received;
+    int errors;
+
+    @Override
+    public void received(Obj response) {
+      received++;
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      received++;
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      errors++;
+    }
+  }
+
+  private static class EmptyEvaluateConsumer implements EvaluateConsumer {
+    @Override
+    public void received(InstanceRef response) {
+    }
+
+    @Override
+    public void received(ErrorRef response) {
+    }
+
+    @Override
+    public void received(Sentinel response) {
+    }
+
+    @Override
+    public void onError(RPCError error) {
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.element.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventDispatcherTest {
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final RecordingListener listener = new RecordingListener();
+  private EventDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    dispatcher = new EventDispatcher(scheduled::add);
+    dispatcher.addListener(listener, null);
+  }
+
+  @Test
+  public void deliversInWireOrderAcrossStreams() {
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(1));
+    dispatcher.dispatch(VmService.ISOLATE_STREAM_ID, event(2));
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(3));
+
+    // One drain per listener, however many events are queued.
+    assertEquals(1, scheduled.size());
+    assertEquals(2, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getQueueDepth());
+
+    runScheduled();
+    assertEquals("[Debug:1, Isolate:2, Debug:3]", listener.received.toString());
+    assertEquals(2, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getDispatchedCount());
+    assertEquals(0, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getQueueDepth());
+  }
+
+  @Test
+  public void queuesOnlyObservedStreams() {
+    final RecordingListener debugOnly = new RecordingListener();
+    dispatcher.addListener(debugOnly, ImmutableSet.of(VmService.DEBUG_STREAM_ID));
+
+    dispatcher.dispatch(VmService.GC_STREAM_ID, event(1));
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(2));
+    runScheduled();
+
+    assertEquals("[GC:1, Debug:2]", listener.received.toString());
+    assertEquals("[Debug:2]", debugOnly.received.toString());
+  }
+
+  @Test
+  public void reportsObservedStreams() {
+    final EventDispatcher filtered = new EventDispatcher(scheduled::add);
+    filtered.addListener(listener, ImmutableSet.of(VmService.DEBUG_STREAM_ID));
+
+    assertTrue(filtered.isObserved(VmService.DEBUG_STREAM_ID));
+    assertFalse(filtered.isObserved(VmService.GC_STREAM_ID));
+    assertTrue(dispatcher.isObserved(VmService.GC_STREAM_ID));
+
+    filtered.removeListener(listener);
+    assertFalse(filtered.isObserved(VmService.DEBUG_STREAM_ID));
+  }
+
+  @Test
+  public void dropsOldestWhenFull() {
+    dispatcher.configureStream(VmService.GC_STREAM_ID, EventDispatcher.OverflowPolicy.DROP_OLDEST, 2);
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(0));
+    for (int i = 1; i <= 5; i++) {
+      dispatcher.dispatch(VmService.GC_STREAM_ID, event(i));
+    }
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(6));
+    runScheduled();
+    assertEquals("[Debug:0, GC:4, GC:5, Debug:6]", listener.received.toString());
+    assertEquals(3, dispatcher.getStats(VmService.GC_STREAM_ID).getDroppedCount());
+    assertEquals(0, dispatcher.getStats(VmService.GC_STREAM_ID).getQueueDepth());
+  }
+
+  @Test
+  public void neverDropsDebugEvents() {
+    dispatcher.configureStream(VmService.DEBUG_STREAM_ID, EventDispatcher.OverflowPolicy.NEVER_DROP, 2);
+    for (int i = 1; i <= 5; i++) {
+      dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(i));
+    }
+    assertEquals(5, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getMaxQueueDepth());
+    runScheduled();
+    assertEquals(5, listener.received.size());
+    assertEquals(0, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getDroppedCount());
+  }
+
+  @Test
+  public void notifiesCloseAfterQueuedEvents() {
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(1));
+    dispatcher.close();
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(2));
+    runScheduled();
+    assertEquals("[Debug:1, closed]", listener.received.toString());
+  }
+
+  @Test
+  public void removedListenerIsNotNotified() {
+    dispatcher.dispatch(VmService.DEBUG_STREAM_ID, event(1));
+    dispatcher.removeListener(listener);
+    dispatcher.close();
+    runScheduled();
+    assertEquals("[]", listener.received.toString());
+    assertEquals(0, dispatcher.getStats(VmService.DEBUG_STREAM_ID).getQueueDepth());
+  }
+
+  private void runScheduled() {
+    while (!scheduled.isEmpty()) {
+      scheduled.remove(0).run();
+    }
+  }
+
+  private static Event event(int n) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Event");
+    json.addProperty("n", n);
+    return new Event(json);
+  }
+
+  private static class RecordingListener implements VmServiceListener {
+    final List<String> received = new ArrayList<>();
+
+    @Override
+    public void connectionOpened() {
+    }
+
+    @Override
+    public void received(String streamId, Event event) {
+      received.add(streamId + ":" + event.getJson().get("n").getAsInt());
+    }
+
+    @Override
+    public void connectionClosed() {
+      received.add("closed");
+    }
+  }
+}
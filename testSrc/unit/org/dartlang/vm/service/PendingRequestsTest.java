@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.consumer.Consumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PendingRequestsTest {
+  @Test
+  public void completesById() {
+    final PendingRequests requests = new PendingRequests();
+    final Consumer first = error -> fail();
+    final Consumer second = error -> fail();
+    assertTrue(requests.add(1, "getVM", first));
+    assertTrue(requests.add(2, "getIsolate", second));
+    assertEquals(2, requests.getInFlightCount());
+
+    assertSame(second, requests.complete("2"));
+    assertSame(first, requests.complete("1"));
+    assertNull(requests.complete("1"));
+    assertNull(requests.complete("not-an-id"));
+    assertEquals(0, requests.getInFlightCount());
+    assertEquals(1, requests.getMethodStats().get("getVM").getResponseCount());
+  }
+
+  @Test
+  public void collidingIdsAreKept() {
+    final PendingRequests requests = new PendingRequests();
+    final Consumer first = error -> fail();
+    final Consumer second = error -> fail();
+    requests.add(1, "getVM", first);
+    requests.add(1 + 1024, "getVM", second);
+
+    assertSame(second, requests.complete(Integer.toString(1 + 1024)));
+    assertSame(first, requests.complete("1"));
+  }
+
+  @Test
+  public void expiresAfterTimeout() throws InterruptedException {
+    final PendingRequests requests = new PendingRequests();
+    requests.setTimeout("getSourceReport", 1);
+    final CountDownLatch latch = new CountDownLatch(1);
+    final RPCError[] received = new RPCError[1];
+    requests.add(1, "getSourceReport", error -> {
+      received[0] = error;
+      latch.countDown();
+    });
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(RPCError.REQUEST_TIMEOUT, received[0].getCode());
+    assertNull(requests.complete("1"));
+    assertEquals(1, requests.getMethodStats().get("getSourceReport").getTimeoutCount());
+  }
+
+  @Test
+  public void longRunningMethodsDoNotExpire() throws InterruptedException {
+    final PendingRequests requests = new PendingRequests();
+    requests.setDefaultTimeout(1);
+    final Consumer consumer = error -> fail();
+    requests.add(1, "evaluate", consumer);
+    requests.add(2, "reloadSources", consumer);
+
+    Thread.sleep(500);
+    assertSame(consumer, requests.complete("1"));
+    assertSame(consumer, requests.complete("2"));
+  }
+
+  @Test
+  public void noTimeoutCanBeSetPerMethod() throws InterruptedException {
+    final PendingRequests requests = new PendingRequests();
+    requests.setDefaultTimeout(1);
+    requests.setTimeout("getVM", PendingRequests.NO_TIMEOUT);
+    final Consumer consumer = error -> fail();
+    requests.add(1, "getVM", consumer);
+
+    Thread.sleep(500);
+    assertSame(consumer, requests.complete("1"));
+  }
+
+  @Test
+  public void failsAllWhenClosed() {
+    final PendingRequests requests = new PendingRequests();
+    final int[] errors = new int[1];
+    final Consumer consumer = error -> {
+      assertEquals(RPCError.CONNECTION_CLOSED, error.getCode());
+      errors[0]++;
+    };
+    requests.add(1, "getVM", consumer);
+    requests.add(2, "getVM", consumer);
+    requests.failAll();
+    assertEquals(2, errors[0]);
+    assertEquals(0, requests.getInFlightCount());
+
+    assertFalse(requests.add(3, "getVM", consumer));
+    assertEquals(3, errors[0]);
+    assertEquals(0, requests.getInFlightCount());
+  }
+
+  @Test
+  public void notifiesTimeoutsOnConnectionExecutor() throws InterruptedException {
+    final BlockingQueue<Runnable> notifications = new LinkedBlockingQueue<>();
+    final PendingRequests requests = new PendingRequests(notifications::add);
+    requests.setTimeout("getSourceReport", 1);
+    final RPCError[] received = new RPCError[1];
+    requests.add(1, "getSourceReport", error -> received[0] = error);
+
+    final Runnable notification = notifications.poll(5, TimeUnit.SECONDS);
+    assertNotNull(notification);
+    // The timer thread only hands the timeout over; the consumer runs on the connection's executor.
+    assertNull(received[0]);
+    notification.run();
+    assertEquals(RPCError.REQUEST_TIMEOUT, received[0].getCode());
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.element.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the time {@link VmServiceBase#processMessage} spends on the web socket thread for a
+ * stream of high-rate events, when the listener only subscribes to the stream it uses compared with
+ * a listener that receives every stream and discards what it doesn't need.
+ * <p>
+ * The second case is what every message cost before the header scan: the whole JSON tree is built
+ * and the event decoded before anyone looks at the stream. The workload is generated with a fixed
+ * seed, so runs are comparable. This is not run as part of the unit tests; run the main method
+ * directly.
+ */
+public class ProcessMessageBenchmark {
+  private static final int MESSAGE_COUNT = 200000;
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) {
+    final List<String> messages = generateMessages();
+
+    // Warm up.
+    run(messages, true);
+    run(messages, false);
+
+    long filteredNanos = Long.MAX_VALUE;
+    long unfilteredNanos = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      filteredNanos = Math.min(filteredNanos, run(messages, true));
+      unfilteredNanos = Math.min(unfilteredNanos, run(messages, false));
+    }
+
+    System.out.printf("messages: %d, best of %d runs%n", messages.size(), RUNS);
+    System.out.printf("listener on Debug only:   %.1f ms (%.0f ns/message)%n",
+                      filteredNanos / 1e6, (double)filteredNanos / messages.size());
+    System.out.printf("listener on every stream: %.1f ms (%.0f ns/message)%n",
+                      unfilteredNanos / 1e6, (double)unfilteredNanos / messages.size());
+  }
+
+  private static long run(List<String> messages, boolean filtered) {
+    final VmService vmService = new VmService();
+    final AtomicInteger debugEvents = new AtomicInteger();
+    final VmServiceListener listener = new VmServiceListener() {
+      @Override
+      public void connectionOpened() {
+      }
+
+      @Override
+      public void received(String streamId, Event event) {
+        if (VmService.DEBUG_STREAM_ID.equals(streamId)) {
+          debugEvents.incrementAndGet();
+        }
+      }
+
+      @Override
+      public void connectionClosed() {
+      }
+    };
+    if (filtered) {
+      vmService.addVmServiceListener(listener, VmService.DEBUG_STREAM_ID);
+    }
+    else {
+      vmService.addVmServiceListener(listener);
+    }
+
+    final long start = System.nanoTime();
+    for (String message : messages) {
+      vmService.processMessage(message);
+    }
+    final long elapsed = System.nanoTime() - start;
+    vmService.connectionClosed();
+    return elapsed;
+  }
+
+  private static List<String> generateMessages() {
+    final Random random = new Random(42);
+    final List<String> messages = new ArrayList<>(MESSAGE_COUNT);
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      final int kind = random.nextInt(100);
+      if (kind < 60) {
+        messages.add(frameEvent(i, random));
+      }
+      else if (kind < 99) {
+        messages.add(gcEvent(i, random));
+      }
+      else {
+        messages.add(debugEvent(i));
+      }
+    }
+    return messages;
+  }
+
+  private static String frameEvent(int i, Random random) {
+    return "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Extension\",\"event\":" +
+           "{\"type\":\"Event\",\"kind\":\"Extension\",\"isolate\":" + isolate() + ",\"extensionKind\":\"Flutter.Frame\"," +
+           "\"extensionData\":{\"number\":" + i + ",\"startTime\":" + (i * 16667L) + ",\"elapsed\":" +
+           (8000 + random.nextInt(10000)) + "},\"timestamp\":" + (1500000000000L + i * 16L) + "}}}";
+  }
+
+  private static String gcEvent(int i, Random random) {
+    return "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"GC\",\"event\":" +
+           "{\"type\":\"Event\",\"kind\":\"GC\",\"isolate\":" + isolate() + ",\"timestamp\":" + (1500000000000L + i * 16L) + "," +
+           "\"new\":" + heapSpace("new", random) + ",\"old\":" + heapSpace("old", random) + "}}}";
+  }
+
+  private static String heapSpace(String name, Random random) {
+    return "{\"type\":\"HeapSpace\",\"name\":\"" + name + "\",\"vmName\":\"" + name + "\",\"collections\":" + random.nextInt(1000) +
+           ",\"avgCollectionPeriodMillis\":" + random.nextDouble() * 100 + ",\"used\":" + random.nextInt(50000000) +
+           ",\"capacity\":" + random.nextInt(100000000) + ",\"external\":" + random.nextInt(1000000) +
+           ",\"time\":" + random.nextDouble() + "}";
+  }
+
+  private static String debugEvent(int i) {
+    return "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Debug\",\"event\":" +
+           "{\"type\":\"Event\",\"kind\":\"Resume\",\"isolate\":" + isolate() + ",\"timestamp\":" + (1500000000000L + i * 16L) + "}}}";
+  }
+
+  private static String isolate() {
+    return "{\"type\":\"@Isolate\",\"id\":\"isolates/1234\",\"name\":\"main\",\"number\":\"1234\"}";
+  }
+}
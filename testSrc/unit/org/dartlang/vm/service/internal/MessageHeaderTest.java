@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MessageHeaderTest {
+  @Test
+  public void readsStreamNotification() throws IOException {
+    final MessageHeader header = MessageHeader.scan(
+      "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":" +
+      "{\"event\":{\"type\":\"Event\",\"kind\":\"GC\",\"new\":{\"used\":12}},\"streamId\":\"GC\"}}");
+    assertEquals("streamNotify", header.getMethod());
+    assertEquals("GC", header.getStreamId());
+    assertFalse(header.isResponse());
+    assertTrue(header.isStreamNotification());
+  }
+
+  @Test
+  public void readsResponse() throws IOException {
+    final MessageHeader header = MessageHeader.scan(
+      "{\"jsonrpc\":\"2.0\",\"result\":{\"type\":\"Success\"},\"id\":42}");
+    assertNull(header.getMethod());
+    assertTrue(header.isResponse());
+    assertFalse(header.isStreamNotification());
+  }
+
+  @Test
+  public void readsRequestFromVm() throws IOException {
+    final MessageHeader header = MessageHeader.scan(
+      "{\"jsonrpc\":\"2.0\",\"id\":\"7\",\"method\":\"ext.foo\",\"params\":{\"streamId\":\"x\"}}");
+    assertEquals("ext.foo", header.getMethod());
+    assertFalse(header.isStreamNotification());
+  }
+
+  @Test
+  public void stopsAtEventOnceStreamIsKnown() throws IOException {
+    // The event is left unread, so the truncated text after it isn't an error.
+    final MessageHeader header = MessageHeader.scan(
+      "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Debug\",\"event\":{\"type\":");
+    assertEquals("Debug", header.getStreamId());
+    assertTrue(header.isStreamNotification());
+  }
+
+  @Test
+  public void stopsAtResult() throws IOException {
+    final MessageHeader header = MessageHeader.scan("{\"jsonrpc\":\"2.0\",\"id\":\"3\",\"result\":{\"type\":");
+    assertTrue(header.isResponse());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsNonObject() throws IOException {
+    MessageHeader.scan("[1, 2, 3]");
+  }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import com.google.common.collect.Maps;
+
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.logging.Logging;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers {@link Event}s to {@link VmServiceListener}s away from the thread reading the web
+ * socket, so that a slow listener cannot delay the responses to pending requests.
+ *
+ * Each listener has its own queue that is drained by at most one thread at a time, so a listener
+ * receives the events of the streams it observes in the order they arrived on the connection, and
+ * a slow listener doesn't hold up the others. Events are only queued for the listeners that
+ * observe their stream. When the connection closes, each listener is told after the events already
+ * queued for it have been delivered.
+ *
+ * What happens when a listener has too many events of one stream queued is determined by the
+ * stream's {@link OverflowPolicy}.
+ */
+public class EventDispatcher {
+
+  /**
+   * What to do with a new event when a listener's queue already holds the maximum number of events
+   * for its stream.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Discard the oldest queued event of the stream to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Let the queue grow beyond its capacity; no event is ever discarded.
+     */
+    NEVER_DROP
+  }
+
+  /**
+   * The default number of events of one stream a listener's queue holds.
+   */
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  private static final AtomicInteger nextThreadId = new AtomicInteger();
+
+  private final Executor executor;
+
+  /**
+   * Whether {@link #executor} was created by this dispatcher and should be shut down on close.
+   */
+  private final boolean ownsExecutor;
+
+  private final List<ListenerQueue> listenerQueues = new CopyOnWriteArrayList<ListenerQueue>();
+
+  /**
+   * A mapping from stream id to the settings and counters for that stream. Synchronize against
+   * this field before accessing it.
+   */
+  private final Map<String, StreamCounters> streams = Maps.newHashMap();
+
+  private volatile boolean closed;
+
+  EventDispatcher() {
+    this(newDispatchExecutor(), true);
+  }
+
+  EventDispatcher(Executor executor) {
+    this(executor, false);
+  }
+
+  private EventDispatcher(Executor executor, boolean ownsExecutor) {
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    configureStream(VmService.EXTENSION_STREAM_ID, OverflowPolicy.DROP_OLDEST, DEFAULT_CAPACITY);
+    configureStream(VmService.GC_STREAM_ID, OverflowPolicy.DROP_OLDEST, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Set the overflow policy and capacity for the given stream. Streams that have not been
+   * configured use {@link OverflowPolicy#NEVER_DROP}.
+   */
+  public void configureStream(String streamId, OverflowPolicy policy, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    getStream(streamId).configure(policy, capacity);
+  }
+
+  /**
+   * Start queueing events for the given listener. If {@code streamIds} is {@code null}, the
+   * listener receives the events of every stream.
+   */
+  void addListener(VmServiceListener listener, Set<String> streamIds) {
+    if (!closed) {
+      listenerQueues.add(new ListenerQueue(listener, streamIds));
+    }
+  }
+
+  /**
+   * Stop queueing events for the given listener. Events already queued for it are discarded.
+   */
+  void removeListener(VmServiceListener listener) {
+    for (ListenerQueue queue : listenerQueues) {
+      if (queue.listener == listener) {
+        listenerQueues.remove(queue);
+        queue.discard();
+      }
+    }
+  }
+
+  /**
+   * Return {@code true} if at least one listener should receive the events from the given stream.
+   */
+  boolean isObserved(String streamId) {
+    for (ListenerQueue queue : listenerQueues) {
+      if (queue.observes(streamId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Queue the given event for the listeners observing its stream and return immediately.
+   */
+  void dispatch(String streamId, Event event) {
+    if (closed) {
+      return;
+    }
+    StreamCounters stream = getStream(streamId);
+    long receivedNanos = System.nanoTime();
+    for (ListenerQueue queue : listenerQueues) {
+      if (queue.observes(streamId)) {
+        queue.add(new PendingEvent(stream, event, receivedNanos));
+      }
+    }
+  }
+
+  /**
+   * Notify each listener that the connection closed once its queued events have been delivered,
+   * then stop accepting events and release the dispatch threads.
+   */
+  void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (ListenerQueue queue : listenerQueues) {
+      queue.close();
+    }
+    if (ownsExecutor) {
+      // Drains that have already been handed to the executor still run to completion.
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+
+  /**
+   * Return a snapshot of the counters for the given stream.
+   */
+  public StreamStats getStats(String streamId) {
+    return getStream(streamId).getStats();
+  }
+
+  private StreamCounters getStream(String streamId) {
+    synchronized (streams) {
+      StreamCounters stream = streams.get(streamId);
+      if (stream == null) {
+        stream = new StreamCounters(streamId);
+        streams.put(streamId, stream);
+      }
+      return stream;
+    }
+  }
+
+  private static ExecutorService newDispatchExecutor() {
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "VM service event dispatch " + nextThreadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Counters describing the traffic on one stream, summed over the listeners observing it.
+   */
+  public static class StreamStats {
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final long dispatchedCount;
+    private final long droppedCount;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+
+    StreamStats(int queueDepth, int maxQueueDepth, long dispatchedCount, long droppedCount,
+        long totalLatencyNanos, long maxLatencyNanos) {
+      this.queueDepth = queueDepth;
+      this.maxQueueDepth = maxQueueDepth;
+      this.dispatchedCount = dispatchedCount;
+      this.droppedCount = droppedCount;
+      this.totalLatencyNanos = totalLatencyNanos;
+      this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * The number of events of the stream waiting to be delivered.
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    /**
+     * The largest number of events of the stream that have been waiting at the same time.
+     */
+    public int getMaxQueueDepth() {
+      return maxQueueDepth;
+    }
+
+    /**
+     * The number of times an event was delivered to a listener.
+     */
+    public long getDispatchedCount() {
+      return dispatchedCount;
+    }
+
+    /**
+     * The number of events discarded by {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long getDroppedCount() {
+      return droppedCount;
+    }
+
+    /**
+     * The mean time between an event being received and a listener having been called.
+     */
+    public long getAverageLatencyMicros() {
+      return dispatchedCount == 0 ? 0 : totalLatencyNanos / dispatchedCount / 1000;
+    }
+
+    public long getMaxLatencyMicros() {
+      return maxLatencyNanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+      return "depth=" + queueDepth + " maxDepth=" + maxQueueDepth + " dispatched=" + dispatchedCount
+          + " dropped=" + droppedCount + " avgLatency=" + getAverageLatencyMicros() + "us"
+          + " maxLatency=" + getMaxLatencyMicros() + "us";
+    }
+  }
+
+  /**
+   * The overflow settings and counters of one stream. Synchronize against the object before
+   * accessing its fields.
+   */
+  private static class StreamCounters {
+    final String streamId;
+    private OverflowPolicy policy = OverflowPolicy.NEVER_DROP;
+    private int capacity = DEFAULT_CAPACITY;
+
+    private int queueDepth;
+    private int maxQueueDepth;
+    private long dispatchedCount;
+    private long droppedCount;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    StreamCounters(String streamId) {
+      this.streamId = streamId;
+    }
+
+    synchronized void configure(OverflowPolicy policy, int capacity) {
+      this.policy = policy;
+      this.capacity = capacity;
+    }
+
+    /**
+     * Return the number of events of this stream a listener may have queued before the oldest is
+     * dropped, or -1 if they are never dropped.
+     */
+    synchronized int getDropThreshold() {
+      return policy == OverflowPolicy.DROP_OLDEST ? capacity : -1;
+    }
+
+    synchronized void queued() {
+      queueDepth++;
+      maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+    }
+
+    synchronized void dropped() {
+      queueDepth--;
+      droppedCount++;
+    }
+
+    synchronized void discarded() {
+      queueDepth--;
+    }
+
+    synchronized void delivered(long latencyNanos) {
+      queueDepth--;
+      dispatchedCount++;
+      totalLatencyNanos += latencyNanos;
+      maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+    }
+
+    synchronized StreamStats getStats() {
+      return new StreamStats(queueDepth, maxQueueDepth, dispatchedCount, droppedCount,
+          totalLatencyNanos, maxLatencyNanos);
+    }
+  }
+
+  private static class PendingEvent {
+    final StreamCounters stream;
+    final Event event;
+    final long receivedNanos;
+
+    /**
+     * Set when the event is discarded by {@link OverflowPolicy#DROP_OLDEST}; the entry is then
+     * skipped when the queue is drained.
+     */
+    boolean dropped;
+
+    PendingEvent(StreamCounters stream, Event event, long receivedNanos) {
+      this.stream = stream;
+      this.event = event;
+      this.receivedNanos = receivedNanos;
+    }
+  }
+
+  /**
+   * The queue for one listener. Synchronize against the queue before accessing its fields.
+   */
+  private class ListenerQueue implements Runnable {
+    final VmServiceListener listener;
+
+    /**
+     * The streams the listener observes, or {@code null} for all streams.
+     */
+    private final Set<String> streamIds;
+
+    /**
+     * The events in the order they were received, including dropped entries not yet skipped.
+     */
+    private final ArrayDeque<PendingEvent> events = new ArrayDeque<PendingEvent>();
+
+    /**
+     * The live entries of {@link #events} for each stream, oldest first.
+     */
+    private final Map<String, ArrayDeque<PendingEvent>> eventsByStream = Maps.newHashMap();
+
+    private int droppedInQueue;
+
+    /**
+     * Whether a drain of this queue has been handed to the executor and not yet finished.
+     */
+    private boolean scheduled;
+
+    /**
+     * Whether the connection closed. No events are queued after that, and the listener is told
+     * once the queue is empty.
+     */
+    private boolean closed;
+
+    private boolean closeDelivered;
+
+    ListenerQueue(VmServiceListener listener, Set<String> streamIds) {
+      this.listener = listener;
+      this.streamIds = streamIds;
+    }
+
+    boolean observes(String streamId) {
+      return streamIds == null || streamIds.contains(streamId);
+    }
+
+    void add(PendingEvent pending) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        StreamCounters stream = pending.stream;
+        ArrayDeque<PendingEvent> streamEvents = eventsByStream.get(stream.streamId);
+        if (streamEvents == null) {
+          streamEvents = new ArrayDeque<PendingEvent>();
+          eventsByStream.put(stream.streamId, streamEvents);
+        }
+        int threshold = stream.getDropThreshold();
+        if (threshold > 0) {
+          while (streamEvents.size() >= threshold) {
+            streamEvents.removeFirst().dropped = true;
+            droppedInQueue++;
+            stream.dropped();
+          }
+          if (droppedInQueue > events.size() / 2) {
+            removeDroppedEntries();
+          }
+        }
+        events.addLast(pending);
+        streamEvents.addLast(pending);
+        stream.queued();
+      }
+      schedule();
+    }
+
+    void close() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+      }
+      schedule();
+    }
+
+    synchronized void discard() {
+      closed = true;
+      closeDelivered = true;
+      for (PendingEvent pending : events) {
+        if (!pending.dropped) {
+          pending.stream.discarded();
+        }
+      }
+      events.clear();
+      eventsByStream.clear();
+      droppedInQueue = 0;
+    }
+
+    private void schedule() {
+      synchronized (this) {
+        if (scheduled) {
+          return;
+        }
+        scheduled = true;
+      }
+      try {
+        executor.execute(this);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          scheduled = false;
+        }
+        Logging.getLogger().logError("Failed to dispatch events for " + listener, e);
+      }
+    }
+
+    private void removeDroppedEntries() {
+      Iterator<PendingEvent> iterator = events.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().dropped) {
+          iterator.remove();
+        }
+      }
+      droppedInQueue = 0;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        PendingEvent pending;
+        synchronized (this) {
+          pending = events.pollFirst();
+          while (pending != null && pending.dropped) {
+            droppedInQueue--;
+            pending = events.pollFirst();
+          }
+          if (pending == null) {
+            if (closed && !closeDelivered) {
+              closeDelivered = true;
+            } else {
+              scheduled = false;
+              return;
+            }
+          } else {
+            eventsByStream.get(pending.stream.streamId).removeFirst();
+          }
+        }
+        if (pending == null) {
+          try {
+            listener.connectionClosed();
+          } catch (Exception e) {
+            Logging.getLogger().logError("Exception notifying listener", e);
+          }
+          continue;
+        }
+        try {
+          listener.received(pending.stream.streamId, pending.event);
+        } catch (Exception e) {
+          Logging.getLogger().logError("Exception processing event: " + pending.stream.streamId + ", "
+              + pending.event.getJson(), e);
+        }
+        pending.stream.delivered(System.nanoTime() - pending.receivedNanos);
+      }
+    }
+  }
+}
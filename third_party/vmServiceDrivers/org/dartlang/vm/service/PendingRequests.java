@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import com.google.common.collect.Maps;
+
+import org.dartlang.vm.service.consumer.Consumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The requests that have been sent to the VM and not yet answered, keyed by their integer id.
+ *
+ * Every request has a deadline, except those of long-running methods such as {@code evaluate}
+ * and {@code reloadSources} (see {@link #setTimeout}). A hashed timer wheel, advanced by a timer
+ * thread shared by all connections, fails the {@link Consumer} of a request with an {@link RPCError#REQUEST_TIMEOUT}
+ * error once its deadline has passed. The consumer is called on a thread owned by this connection,
+ * so a slow consumer cannot delay the timeouts of other connections. {@link #failAll}
+ * fails every remaining request when the connection is closed. Whichever of a response, a timeout
+ * or a close first removes a request from the table is the only one to call its consumer.
+ */
+public class PendingRequests {
+
+  /**
+   * The timeout used for methods without an explicit timeout.
+   */
+  public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+  /**
+   * A timeout that never expires, for methods whose duration depends on user code or on the size
+   * of the program rather than on the responsiveness of the VM.
+   */
+  public static final long NO_TIMEOUT = 0;
+
+  /**
+   * The methods that are not timed out unless {@link #setTimeout} says otherwise.
+   */
+  private static final String[] LONG_RUNNING_METHODS = {
+      "evaluate", "evaluateInFrame", "getSourceReport", "reloadSources"
+  };
+
+  /**
+   * The number of slots in the table. Ids are allocated sequentially, so a request only ends up in
+   * {@link #overflow} if it is still pending when the id that is this many ahead of it is sent.
+   */
+  private static final int TABLE_SIZE = 1024;
+
+  private static final long TICK_MILLIS = 100;
+
+  private static final int WHEEL_SIZE = 512;
+
+  private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "VM service request timeouts");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Calls the consumers of requests that have timed out.
+   */
+  private final Executor timeoutExecutor;
+
+  private final AtomicReferenceArray<PendingRequest> table =
+      new AtomicReferenceArray<PendingRequest>(TABLE_SIZE);
+
+  private final ConcurrentMap<Integer, PendingRequest> overflow = Maps.newConcurrentMap();
+
+  private final AtomicInteger inFlightCount = new AtomicInteger();
+
+  private final ConcurrentMap<String, Long> methodTimeouts = Maps.newConcurrentMap();
+
+  private final ConcurrentMap<String, MethodStats> methodStats = Maps.newConcurrentMap();
+
+  private volatile long defaultTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+  /**
+   * The timer wheel. A request is placed in the bucket for the tick of its deadline, and is
+   * expired when the wheel reaches that tick on the right revolution.
+   */
+  @SuppressWarnings("unchecked")
+  private final ConcurrentLinkedQueue<PendingRequest>[] wheel = new ConcurrentLinkedQueue[WHEEL_SIZE];
+
+  private final long startNanos = System.nanoTime();
+
+  /**
+   * The last tick processed by {@link #advanceWheel}. Only accessed from the timer thread.
+   */
+  private long lastTick;
+
+  /**
+   * Started by the first request. Guarded by {@code this}, as is {@link #closed}.
+   */
+  private ScheduledFuture<?> ticker;
+
+  private boolean closed;
+
+  PendingRequests() {
+    this(newTimeoutExecutor());
+  }
+
+  PendingRequests(Executor timeoutExecutor) {
+    this.timeoutExecutor = timeoutExecutor;
+    for (String method : LONG_RUNNING_METHODS) {
+      methodTimeouts.put(method, NO_TIMEOUT);
+    }
+    for (int index = 0; index < WHEEL_SIZE; ++index) {
+      wheel[index] = new ConcurrentLinkedQueue<PendingRequest>();
+    }
+  }
+
+  /**
+   * Set the timeout used for methods without an explicit timeout.
+   */
+  public void setDefaultTimeout(long timeoutMillis) {
+    defaultTimeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Set the timeout for every subsequent request of the given method, or {@link #NO_TIMEOUT} for
+   * none.
+   */
+  public void setTimeout(String method, long timeoutMillis) {
+    methodTimeouts.put(method, timeoutMillis);
+  }
+
+  /**
+   * Return the number of requests that have been sent and not yet completed.
+   */
+  public int getInFlightCount() {
+    return inFlightCount.get();
+  }
+
+  /**
+   * Return a snapshot of the round trip statistics for each method that has been requested.
+   */
+  public Map<String, MethodStats> getMethodStats() {
+    Map<String, MethodStats> result = Maps.newTreeMap();
+    for (Map.Entry<String, MethodStats> entry : methodStats.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().copy());
+    }
+    return result;
+  }
+
+  /**
+   * Record that a request with the given id is about to be sent. Return {@code false}, after
+   * failing the consumer, if the connection has already been closed.
+   */
+  boolean add(int id, String method, Consumer consumer) {
+    Long timeout = methodTimeouts.get(method);
+    long timeoutMillis = timeout != null ? timeout : defaultTimeoutMillis;
+    long now = System.nanoTime();
+    PendingRequest request = new PendingRequest(id, method, consumer, now, timeoutMillis);
+    boolean expires = timeoutMillis != NO_TIMEOUT;
+    if (expires) {
+      long deadlineTick = toTick(now) + (timeoutMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+      request.deadlineTick = Math.max(deadlineTick, toTick(now) + 1);
+    }
+
+    // Insert while holding the lock, so that a request is either drained by failAll or rejected
+    // here, and never inserted after failAll has drained the table.
+    synchronized (this) {
+      if (!closed) {
+        if (!table.compareAndSet(id & (TABLE_SIZE - 1), null, request)) {
+          overflow.put(id, request);
+        }
+        inFlightCount.incrementAndGet();
+        if (!expires) {
+          return true;
+        }
+        wheel[(int) (request.deadlineTick % WHEEL_SIZE)].add(request);
+
+        if (ticker == null) {
+          ticker = timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+              advanceWheel();
+            }
+          }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return true;
+      }
+    }
+    notifyError(request, RPCError.connectionClosed(method));
+    return false;
+  }
+
+  /**
+   * Remove the request with the given id and return its consumer, or {@code null} if there is no
+   * such request (e.g. because it has already timed out).
+   */
+  Consumer complete(String id) {
+    int intId;
+    try {
+      intId = Integer.parseInt(id);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    PendingRequest request = remove(intId);
+    if (request == null) {
+      return null;
+    }
+    getStats(request.method).recordResponse(System.nanoTime() - request.sentNanos);
+    return request.takeConsumer();
+  }
+
+  /**
+   * Fail every pending request with an {@link RPCError#CONNECTION_CLOSED} error and stop expiring
+   * requests.
+   */
+  void failAll() {
+    synchronized (this) {
+      closed = true;
+      if (ticker != null) {
+        ticker.cancel(false);
+        ticker = null;
+      }
+    }
+    List<PendingRequest> requests = new ArrayList<PendingRequest>();
+    for (int index = 0; index < TABLE_SIZE; ++index) {
+      PendingRequest request = table.getAndSet(index, null);
+      if (request != null) {
+        requests.add(request);
+      }
+    }
+    for (Integer id : overflow.keySet()) {
+      PendingRequest request = overflow.remove(id);
+      if (request != null) {
+        requests.add(request);
+      }
+    }
+    for (ConcurrentLinkedQueue<PendingRequest> bucket : wheel) {
+      bucket.clear();
+    }
+    for (PendingRequest request : requests) {
+      inFlightCount.decrementAndGet();
+      notifyError(request, RPCError.connectionClosed(request.method));
+    }
+  }
+
+  private PendingRequest remove(int id) {
+    int slot = id & (TABLE_SIZE - 1);
+    PendingRequest request = table.get(slot);
+    if (request != null && request.id == id && table.compareAndSet(slot, request, null)) {
+      inFlightCount.decrementAndGet();
+      return request;
+    }
+    request = overflow.remove(id);
+    if (request != null) {
+      inFlightCount.decrementAndGet();
+    }
+    return request;
+  }
+
+  private void advanceWheel() {
+    long nowTick = toTick(System.nanoTime());
+    while (lastTick < nowTick) {
+      lastTick++;
+      Iterator<PendingRequest> iter = wheel[(int) (lastTick % WHEEL_SIZE)].iterator();
+      while (iter.hasNext()) {
+        PendingRequest request = iter.next();
+        if (request.isDone()) {
+          iter.remove();
+        } else if (request.deadlineTick <= lastTick) {
+          iter.remove();
+          if (remove(request.id) == request) {
+            getStats(request.method).timeoutCount.incrementAndGet();
+            notifyTimeout(request);
+          }
+        }
+      }
+    }
+  }
+
+  private void notifyTimeout(final PendingRequest request) {
+    try {
+      timeoutExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          notifyError(request, RPCError.timeout(request.method, request.timeoutMillis));
+        }
+      });
+    } catch (RuntimeException e) {
+      Logging.getLogger().logError("Failed to notify timeout of " + request.method, e);
+    }
+  }
+
+  private void notifyError(PendingRequest request, RPCError error) {
+    Consumer consumer = request.takeConsumer();
+    if (consumer == null) {
+      return;
+    }
+    try {
+      consumer.onError(error);
+    } catch (Exception e) {
+      Logging.getLogger().logError("Exception notifying consumer of " + request.method, e);
+    }
+  }
+
+  private MethodStats getStats(String method) {
+    MethodStats stats = methodStats.get(method);
+    if (stats == null) {
+      MethodStats newStats = new MethodStats();
+      stats = methodStats.putIfAbsent(method, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Return an executor with at most one thread, which exits when there are no timeouts to report.
+   */
+  private static Executor newTimeoutExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "VM service request timeout notification");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private long toTick(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos - startNanos) / TICK_MILLIS;
+  }
+
+  /**
+   * Round trip statistics for one method.
+   */
+  public static class MethodStats {
+    private final AtomicLong responseCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    void recordResponse(long latencyNanos) {
+      responseCount.incrementAndGet();
+      totalLatencyNanos.addAndGet(latencyNanos);
+      long max = maxLatencyNanos.get();
+      while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+        max = maxLatencyNanos.get();
+      }
+    }
+
+    MethodStats copy() {
+      MethodStats copy = new MethodStats();
+      copy.responseCount.set(responseCount.get());
+      copy.totalLatencyNanos.set(totalLatencyNanos.get());
+      copy.maxLatencyNanos.set(maxLatencyNanos.get());
+      copy.timeoutCount.set(timeoutCount.get());
+      return copy;
+    }
+
+    /**
+     * The number of responses (results or errors) received from the VM.
+     */
+    public long getResponseCount() {
+      return responseCount.get();
+    }
+
+    /**
+     * The number of requests failed because the VM did not respond in time.
+     */
+    public long getTimeoutCount() {
+      return timeoutCount.get();
+    }
+
+    public long getAverageLatencyMicros() {
+      long count = responseCount.get();
+      return count == 0 ? 0 : totalLatencyNanos.get() / count / 1000;
+    }
+
+    public long getMaxLatencyMicros() {
+      return maxLatencyNanos.get() / 1000;
+    }
+
+    @Override
+    public String toString() {
+      return "responses=" + getResponseCount() + " timeouts=" + getTimeoutCount() + " avgLatency="
+          + getAverageLatencyMicros() + "us maxLatency=" + getMaxLatencyMicros() + "us";
+    }
+  }
+
+  private static class PendingRequest {
+    final int id;
+    final String method;
+    final long sentNanos;
+    final long timeoutMillis;
+    long deadlineTick;
+
+    /**
+     * The consumer to notify, or {@code null} once the request has completed. Cleared so that
+     * completed requests waiting to be swept from the wheel do not keep their consumer alive.
+     */
+    private volatile Consumer consumer;
+
+    PendingRequest(int id, String method, Consumer consumer, long sentNanos, long timeoutMillis) {
+      this.id = id;
+      this.method = method;
+      this.consumer = consumer;
+      this.sentNanos = sentNanos;
+      this.timeoutMillis = timeoutMillis;
+    }
+
+    boolean isDone() {
+      return consumer == null;
+    }
+
+    Consumer takeConsumer() {
+      Consumer result = consumer;
+      consumer = null;
+      return result;
+    }
+  }
+}
@@ -31,6 +31,7 @@ import org.dartlang.vm.service.element.Obj;
 import org.dartlang.vm.service.element.RPCError;
 import org.dartlang.vm.service.element.Sentinel;
 import org.dartlang.vm.service.element.Version;
+import org.dartlang.vm.service.internal.MessageHeader;
 import org.dartlang.vm.service.internal.RequestSink;
 import org.dartlang.vm.service.internal.VmServiceConst;
 import org.dartlang.vm.service.internal.WebSocketRequestSink;
@@ -39,9 +40,11 @@ import org.dartlang.vm.service.logging.Logging;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -184,15 +187,9 @@ abstract class VmServiceBase implements VmServiceConst {
   }
 
   /**
-   * A mapping between {@link String} ids' and the associated {@link Consumer} that was passed when
-   * the request was made. Synchronize against {@link #consumerMapLock} before accessing this field.
+   * The {@link Consumer}s of the requests that have not yet been answered, keyed by request id.
    */
-  private final Map<String, Consumer> consumerMap = Maps.newHashMap();
-
-  /**
-   * The object used to synchronize access to {@link #consumerMap}.
-   */
-  private final Object consumerMapLock = new Object();
+  private final PendingRequests pendingRequests = new PendingRequests();
 
   /**
    * The unique ID for the next request.
@@ -202,7 +199,13 @@ abstract class VmServiceBase implements VmServiceConst {
   /**
    * A list of objects to which {@link Event}s from the VM are forwarded.
    */
-  private final List<VmServiceListener> vmListeners = new ArrayList<VmServiceListener>();
+  private final List<VmServiceListener> vmListeners = new CopyOnWriteArrayList<VmServiceListener>();
+
+  /**
+   * Delivers {@link Event}s to {@link #vmListeners} off the thread reading the web socket, and
+   * keeps track of the streams that each listener has asked for.
+   */
+  private final EventDispatcher eventDispatcher = new EventDispatcher();
 
   /**
    * A list of objects to which {@link Event}s from the VM are forwarded.
@@ -219,6 +222,7 @@ abstract class VmServiceBase implements VmServiceConst {
    */
   public void addVmServiceListener(VmServiceListener listener) {
     vmListeners.add(listener);
+    eventDispatcher.addListener(listener, null);
   }
 
   /**
@@ -226,6 +230,39 @@ abstract class VmServiceBase implements VmServiceConst {
    */
   public void removeVmServiceListener(VmServiceListener listener) {
     vmListeners.remove(listener);
+    eventDispatcher.removeListener(listener);
+  }
+
+  /**
+   * Add a listener to receive {@link Event}s from the given streams only. Events from streams that
+   * no listener has asked for are dropped before their JSON is decoded.
+   */
+  public void addVmServiceListener(VmServiceListener listener, String... streamIds) {
+    vmListeners.add(listener);
+    eventDispatcher.addListener(listener, new HashSet<String>(Arrays.asList(streamIds)));
+  }
+
+  /**
+   * Return {@code true} if at least one listener should receive the events from the given stream.
+   */
+  boolean isStreamObserved(String streamId) {
+    return eventDispatcher.isObserved(streamId);
+  }
+
+  /**
+   * Return the object that queues {@link Event}s for the listeners, which can be used to configure
+   * the per-stream overflow policies and read their counters.
+   */
+  public EventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
+
+  /**
+   * Return the table of requests awaiting a response, which can be used to configure request
+   * timeouts and read round trip statistics.
+   */
+  public PendingRequests getPendingRequests() {
+    return pendingRequests;
   }
 
   /**
@@ -332,7 +369,8 @@ abstract class VmServiceBase implements VmServiceConst {
   protected void request(String method, JsonObject params, Consumer consumer) {
 
     // Assemble the request
-    String id = Integer.toString(nextId.incrementAndGet());
+    int intId = nextId.incrementAndGet();
+    String id = Integer.toString(intId);
     JsonObject request = new JsonObject();
 
     request.addProperty(JSONRPC, JSONRPC_VERSION);
@@ -341,8 +379,8 @@ abstract class VmServiceBase implements VmServiceConst {
     request.add(PARAMS, params);
 
     // Cache the consumer to receive the response
-    synchronized (consumerMapLock) {
-      consumerMap.put(id, consumer);
+    if (!pendingRequests.add(intId, method, consumer)) {
+      return;
     }
 
     // Send the request
@@ -360,23 +398,16 @@ abstract class VmServiceBase implements VmServiceConst {
   }
 
   private void forwardEvent(String streamId, Event event) {
-    for (VmServiceListener listener : vmListeners) {
-      try {
-        listener.received(streamId, event);
-      } catch (Exception e) {
-        Logging.getLogger().logError("Exception processing event: " + streamId + ", " + event.getJson(), e);
-      }
-    }
+    eventDispatcher.dispatch(streamId, event);
   }
 
+  /**
+   * Fail the requests still awaiting a response, and notify the listeners once the events already
+   * received have been delivered to them.
+   */
   public void connectionClosed() {
-    for (VmServiceListener listener : vmListeners) {
-      try {
-        listener.connectionClosed();
-      } catch (Exception e) {
-        Logging.getLogger().logError("Exception notifying listener", e);
-      }
-    }
+    pendingRequests.failAll();
+    eventDispatcher.close();
   }
 
   abstract void forwardResponse(Consumer consumer, String type, JsonObject json);
@@ -401,6 +432,19 @@ abstract class VmServiceBase implements VmServiceConst {
       return;
     }
 
+    // Read the routing fields without building a JSON tree, so that events nobody listens to
+    // are dropped cheaply.
+    MessageHeader header;
+    try {
+      header = MessageHeader.scan(jsonText);
+    } catch (Exception e) {
+      Logging.getLogger().logError("Parse message failed: " + jsonText, e);
+      return;
+    }
+    if (header.isStreamNotification() && !isStreamObserved(header.getStreamId())) {
+      return;
+    }
+
     // Decode the JSON
     JsonObject json;
     try {
@@ -599,7 +643,7 @@ abstract class VmServiceBase implements VmServiceConst {
       Logging.getLogger().logError("Response missing " + ID, e);
       return;
     }
-    Consumer consumer = consumerMap.remove(id);
+    Consumer consumer = pendingRequests.complete(id);
     if (consumer == null) {
       Logging.getLogger().logError("No consumer associated with " + ID + ": " + id);
       return;
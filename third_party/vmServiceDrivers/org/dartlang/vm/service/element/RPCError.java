@@ -60,6 +60,36 @@ public class RPCError extends Element implements VmServiceConst {
    */
   public static final int UNEXPECTED_RESPONSE = 5;
 
+  /**
+   * The response code used by the client when the server did not respond to a request before its
+   * deadline.
+   */
+  public static final int REQUEST_TIMEOUT = 6;
+
+  /**
+   * The response code used by the client for requests that were still pending when the connection
+   * to the server was closed.
+   */
+  public static final int CONNECTION_CLOSED = 7;
+
+  public static RPCError timeout(String method, long timeoutMillis) {
+    return clientError(REQUEST_TIMEOUT, "No response to " + method + " within " + timeoutMillis + "ms");
+  }
+
+  public static RPCError connectionClosed(String method) {
+    return clientError(CONNECTION_CLOSED, "Connection closed before " + method + " completed");
+  }
+
+  private static RPCError clientError(int code, String errMsg) {
+    JsonObject json = new JsonObject();
+    json.addProperty("code", code);
+    json.addProperty("message", errMsg);
+    JsonObject data = new JsonObject();
+    data.addProperty("details", errMsg);
+    json.add("data", data);
+    return new RPCError(json);
+  }
+
   public static RPCError unexpected(String expectedType, Response response) {
     String errMsg = "Expected type " + expectedType + " but received " + response.getType();
     if (response instanceof Sentinel) {
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * The routing fields of a message from the VM, read with a streaming {@link JsonReader} so that
+ * a message can be dispatched (or dropped) before a full JSON tree is built for it.
+ * <p>
+ * The scan stops as soon as the message is known to be a response, a request, or an event
+ * notification from a known stream, so messages that are decoded afterwards are only scanned
+ * up to their routing fields. The VM writes these before the payload.
+ */
+public class MessageHeader implements VmServiceConst {
+  private static final String STREAM_NOTIFY = "streamNotify";
+
+  /**
+   * Scan the given message text up to its routing fields, skipping over every other value.
+   * <p>
+   * Text after the point where the scan stops isn't checked.
+   *
+   * @throws IOException if the text scanned is not well formed JSON
+   * @throws IllegalStateException if the text is not a JSON object
+   */
+  public static MessageHeader scan(String jsonText) throws IOException {
+    MessageHeader header = new MessageHeader();
+    JsonReader reader = new JsonReader(new StringReader(jsonText));
+    try {
+      reader.beginObject();
+      while (!header.isComplete() && reader.hasNext()) {
+        String name = reader.nextName();
+        if (METHOD.equals(name)) {
+          header.method = nextStringOrNull(reader);
+        } else if (PARAMS.equals(name)) {
+          scanParams(reader, header);
+        } else if (RESULT.equals(name) || ERROR.equals(name)) {
+          // A response. Its value isn't needed for routing.
+          header.isResponse = true;
+        } else {
+          reader.skipValue();
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return header;
+  }
+
+  private static void scanParams(JsonReader reader, MessageHeader header) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (STREAM_ID.equals(name)) {
+        header.streamId = nextStringOrNull(reader);
+        if (header.isComplete()) {
+          // Leave the event itself unread.
+          return;
+        }
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private static String nextStringOrNull(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+      return reader.nextString();
+    }
+    reader.skipValue();
+    return null;
+  }
+
+  private String method;
+  private String streamId;
+  private boolean isResponse;
+
+  private MessageHeader() {
+  }
+
+  private boolean isComplete() {
+    return isResponse || (method != null && (!STREAM_NOTIFY.equals(method) || streamId != null));
+  }
+
+  /**
+   * Return the {@code method} of a request or notification, or {@code null} for a response.
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Return the {@code params.streamId} of a {@code streamNotify} notification, or {@code null}.
+   */
+  public String getStreamId() {
+    return streamId;
+  }
+
+  /**
+   * Return {@code true} if the message has a {@code result} or an {@code error}.
+   */
+  public boolean isResponse() {
+    return isResponse;
+  }
+
+  /**
+   * Return {@code true} if this is an event notification from one of the VM's event streams.
+   */
+  public boolean isStreamNotification() {
+    return !isResponse && STREAM_NOTIFY.equals(method) && streamId != null;
+  }
+}